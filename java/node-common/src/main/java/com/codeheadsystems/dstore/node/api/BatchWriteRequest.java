@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.dstore.node.api.ImmutableBatchWriteRequest;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.List;
+import java.util.Map;
+import org.immutables.value.Value;
+
+/**
+ * A set of puts and deletes against one tenant table, applied together.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableBatchWriteRequest.class)
+@JsonDeserialize(builder = ImmutableBatchWriteRequest.Builder.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public interface BatchWriteRequest {
+
+  /**
+   * Entries to write, keyed by entry id. Each replaces the existing entry.
+   *
+   * @return Map.
+   */
+  @JsonProperty("put")
+  Map<String, JsonNode> put();
+
+  /**
+   * Entries to delete.
+   *
+   * @return List.
+   */
+  @JsonProperty("delete")
+  List<String> delete();
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.dstore.node.api.ImmutableChangeInfo;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * One change to an entry, from a table's change stream.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableChangeInfo.class)
+@JsonDeserialize(builder = ImmutableChangeInfo.Builder.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public interface ChangeInfo {
+
+  /**
+   * Position of the change in the stream.
+   *
+   * @return long.
+   */
+  @JsonProperty("sequence")
+  long sequence();
+
+  /**
+   * The entry id.
+   *
+   * @return String.
+   */
+  @JsonProperty("id")
+  String id();
+
+  /**
+   * The entry before the change, absent if it was created.
+   *
+   * @return Optional.
+   */
+  @JsonProperty("oldImage")
+  Optional<JsonNode> oldImage();
+
+  /**
+   * The entry after the change, absent if it was deleted.
+   *
+   * @return Optional.
+   */
+  @JsonProperty("newImage")
+  Optional<JsonNode> newImage();
+
+}
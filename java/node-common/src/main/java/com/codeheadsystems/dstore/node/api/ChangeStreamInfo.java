@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.dstore.node.api.ImmutableChangeStreamInfo;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.List;
+import org.immutables.value.Value;
+
+/**
+ * One page of a table's change stream.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableChangeStreamInfo.class)
+@JsonDeserialize(builder = ImmutableChangeStreamInfo.Builder.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public interface ChangeStreamInfo {
+
+  /**
+   * The epoch of the stream, to pass back with the next sequence. Sequences start again in a new epoch.
+   *
+   * @return String.
+   */
+  @JsonProperty("epoch")
+  String epoch();
+
+  /**
+   * The changes, in sequence order.
+   *
+   * @return List.
+   */
+  @JsonProperty("changes")
+  List<ChangeInfo> changes();
+
+  /**
+   * The sequence to pass back as after for the next page.
+   *
+   * @return long.
+   */
+  @JsonProperty("next")
+  long next();
+
+  /**
+   * True if changes were missed because the stream already dropped them, so the reader should resync from the table.
+   *
+   * @return boolean.
+   */
+  @JsonProperty("trimmed")
+  boolean trimmed();
+
+}
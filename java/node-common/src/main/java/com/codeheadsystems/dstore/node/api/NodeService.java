@@ -2,11 +2,14 @@ package com.codeheadsystems.dstore.node.api;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import java.util.List;
+import java.util.Map;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
+import javax.ws.rs.PATCH;
+import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
@@ -87,11 +90,12 @@ public interface NodeService {
                                   @PathParam("table") final String table);
 
   /**
-   * Create the tenant.
+   * Create the tenant table.
    *
-   * @param tenantId   that owns the table.
-   * @param table      the table.
-   * @param primaryKey for the table.
+   * @param tenantId     that owns the table.
+   * @param table        the table.
+   * @param primaryKey   for the table.
+   * @param tableVersion the table definition engine to use, or null for the V1 engine.
    * @return response.
    */
   @PUT
@@ -99,7 +103,8 @@ public interface NodeService {
   @Produces(MediaType.APPLICATION_JSON)
   TenantTableInfo createTenantTable(@PathParam("tenant") final String tenantId,
                                     @PathParam("table") final String table,
-                                    @NotNull @QueryParam("primaryKey") final String primaryKey);
+                                    @NotNull @QueryParam("primaryKey") final String primaryKey,
+                                    @QueryParam("tableVersion") final String tableVersion);
 
   /**
    * Delete the tenant table.
@@ -112,6 +117,78 @@ public interface NodeService {
   void deleteTenantTable(@PathParam("tenant") final String tenantId,
                          @PathParam("table") final String table);
 
+  /**
+   * Sets the attribute that holds each entry's expiry time, in epoch seconds.
+   *
+   * @param tenantId  that owns the table.
+   * @param table     the table.
+   * @param attribute the ttl attribute.
+   */
+  @PUT
+  @Path("/v1/tenant/{tenant}/table/{table}/ttl")
+  void setTenantTableTtl(@PathParam("tenant") final String tenantId,
+                         @PathParam("table") final String table,
+                         @QueryParam("attribute") final String attribute);
+
+  /**
+   * Turns off expiry for the table.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   */
+  @DELETE
+  @Path("/v1/tenant/{tenant}/table/{table}/ttl")
+  void deleteTenantTableTtl(@PathParam("tenant") final String tenantId,
+                            @PathParam("table") final String table);
+
+  /**
+   * Sets the attribute that holds each entry's version.
+   *
+   * @param tenantId  that owns the table.
+   * @param table     the table.
+   * @param attribute the version attribute.
+   */
+  @PUT
+  @Path("/v1/tenant/{tenant}/table/{table}/version")
+  void setTenantTableVersion(@PathParam("tenant") final String tenantId,
+                             @PathParam("table") final String table,
+                             @QueryParam("attribute") final String attribute);
+
+  /**
+   * Turns off versioning for the table.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   */
+  @DELETE
+  @Path("/v1/tenant/{tenant}/table/{table}/version")
+  void deleteTenantTableVersion(@PathParam("tenant") final String tenantId,
+                                @PathParam("table") final String table);
+
+  /**
+   * Sets how many bytes of the table's entries the node caches.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param maxBytes the cache size.
+   */
+  @PUT
+  @Path("/v1/tenant/{tenant}/table/{table}/cache")
+  void setTenantTableCache(@PathParam("tenant") final String tenantId,
+                           @PathParam("table") final String table,
+                           @QueryParam("maxBytes") final long maxBytes);
+
+  /**
+   * Turns off the entry cache for the table.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   */
+  @DELETE
+  @Path("/v1/tenant/{tenant}/table/{table}/cache")
+  void deleteTenantTableCache(@PathParam("tenant") final String tenantId,
+                              @PathParam("table") final String table);
+
   // Tenant Table Entry
 
 
@@ -130,6 +207,160 @@ public interface NodeService {
                                 @PathParam("table") final String table,
                                 @PathParam("entry") final String entry);
 
+  /**
+   * Gets only the named attributes of the entry.
+   *
+   * @param tenantId   that owns the table.
+   * @param table      the table.
+   * @param entry      the entry.
+   * @param attributes comma separated list of the attributes wanted.
+   * @return response.
+   */
+  @GET
+  @Path("/v1/tenant/{tenant}/table/{table}/entry//{entry}")
+  @Produces(MediaType.APPLICATION_JSON)
+  JsonNode readTenantTableEntry(@PathParam("tenant") final String tenantId,
+                                @PathParam("table") final String table,
+                                @PathParam("entry") final String entry,
+                                @QueryParam("attributes") final String attributes);
+
+  /**
+   * Gets many entries at once. Entries not found are left out of the result.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param entries  the entries.
+   * @return the entries found, keyed by entry.
+   */
+  @POST
+  @Path("/v1/tenant/{tenant}/table/{table}/entry/batch/get")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  Map<String, JsonNode> readTenantTableEntries(@PathParam("tenant") final String tenantId,
+                                               @PathParam("table") final String table,
+                                               @NotNull @Valid final List<String> entries);
+
+  /**
+   * Queries one partition of a sort key table.
+   *
+   * @param tenantId   that owns the table.
+   * @param table      the table.
+   * @param partition  the partition key.
+   * @param op         one of begins_with, between, gt, lt, or null for the whole partition.
+   * @param value      what the op compares with, the lower bound for between.
+   * @param to         upper bound for between, inclusive.
+   * @param limit      most entries to return.
+   * @param reverse    return in descending sort key order.
+   * @param startAfter the next value from the previous page, if any.
+   * @return the page of entries.
+   */
+  @GET
+  @Path("/v1/tenant/{tenant}/table/{table}/query/{partition}")
+  @Produces(MediaType.APPLICATION_JSON)
+  QueryInfo queryTenantTable(@PathParam("tenant") final String tenantId,
+                             @PathParam("table") final String table,
+                             @PathParam("partition") final String partition,
+                             @QueryParam("op") final String op,
+                             @QueryParam("value") final String value,
+                             @QueryParam("to") final String to,
+                             @QueryParam("limit") final int limit,
+                             @QueryParam("reverse") final boolean reverse,
+                             @QueryParam("startAfter") final String startAfter);
+
+  /**
+   * Defines a secondary index on the attribute.
+   *
+   * @param tenantId  that owns the table.
+   * @param table     the table.
+   * @param index     name of the index.
+   * @param attribute the attribute to index.
+   * @return map of index name to attribute for the table.
+   */
+  @PUT
+  @Path("/v1/tenant/{tenant}/table/{table}/index/{index}")
+  @Produces(MediaType.APPLICATION_JSON)
+  Map<String, String> createTenantTableIndex(@PathParam("tenant") final String tenantId,
+                                             @PathParam("table") final String table,
+                                             @PathParam("index") final String index,
+                                             @QueryParam("attribute") final String attribute);
+
+  /**
+   * Finds the entries whose indexed attribute has the value.
+   *
+   * @param tenantId   that owns the table.
+   * @param table      the table.
+   * @param index      name of the index.
+   * @param value      the value to find.
+   * @param limit      most entries to return.
+   * @param startAfter the next value from the previous page, if any.
+   * @return the page of entries.
+   */
+  @GET
+  @Path("/v1/tenant/{tenant}/table/{table}/index/{index}")
+  @Produces(MediaType.APPLICATION_JSON)
+  QueryInfo lookupTenantTableIndex(@PathParam("tenant") final String tenantId,
+                                   @PathParam("table") final String table,
+                                   @PathParam("index") final String index,
+                                   @QueryParam("value") final String value,
+                                   @QueryParam("limit") final int limit,
+                                   @QueryParam("startAfter") final String startAfter);
+
+  /**
+   * Removes the secondary index.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param index    name of the index.
+   */
+  @DELETE
+  @Path("/v1/tenant/{tenant}/table/{table}/index/{index}")
+  void deleteTenantTableIndex(@PathParam("tenant") final String tenantId,
+                              @PathParam("table") final String table,
+                              @PathParam("index") final String index);
+
+  /**
+   * Turns on the table's change stream.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   */
+  @PUT
+  @Path("/v1/tenant/{tenant}/table/{table}/stream")
+  void enableTenantTableStream(@PathParam("tenant") final String tenantId,
+                               @PathParam("table") final String table);
+
+  /**
+   * Turns off the table's change stream.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   */
+  @DELETE
+  @Path("/v1/tenant/{tenant}/table/{table}/stream")
+  void disableTenantTableStream(@PathParam("tenant") final String tenantId,
+                                @PathParam("table") final String table);
+
+  /**
+   * Reads the table's changes after a sequence, waiting for one if there are none yet.
+   *
+   * @param tenantId    that owns the table.
+   * @param table       the table.
+   * @param epoch       the epoch of the last sequence processed.
+   * @param after       the last sequence processed.
+   * @param limit       most changes to return.
+   * @param waitSeconds how long to wait for a change.
+   * @return the page of changes.
+   */
+  @GET
+  @Path("/v1/tenant/{tenant}/table/{table}/stream")
+  @Produces(MediaType.APPLICATION_JSON)
+  ChangeStreamInfo readTenantTableStream(@PathParam("tenant") final String tenantId,
+                                         @PathParam("table") final String table,
+                                         @QueryParam("epoch") final String epoch,
+                                         @QueryParam("after") final long after,
+                                         @QueryParam("limit") final int limit,
+                                         @QueryParam("waitSeconds") final int waitSeconds);
+
   /**
    * Create the tenant table entry.
    *
@@ -146,6 +377,93 @@ public interface NodeService {
                               @PathParam("entry") final String entry,
                               @NotNull @Valid final JsonNode data);
 
+  /**
+   * Create the tenant table entry if the conditions hold against the existing entry. Fails with a 412 if not.
+   *
+   * @param tenantId    that owns the table.
+   * @param table       the table.
+   * @param entry       for the table.
+   * @param ifExists    attributes that must exist.
+   * @param ifNotExists attributes that must not exist.
+   * @param ifEquals    attribute:value pairs that must match.
+   * @param ifVersion   the version the entry must have, zero if it must not exist.
+   * @param data        the data we care about in JSON form.
+   */
+  @PUT
+  @Path("/v1/tenant/{tenant}/table/{table}/entry//{entry}")
+  @Consumes(MediaType.APPLICATION_JSON)
+  void createTenantTableEntry(@PathParam("tenant") final String tenantId,
+                              @PathParam("table") final String table,
+                              @PathParam("entry") final String entry,
+                              @QueryParam("ifExists") final List<String> ifExists,
+                              @QueryParam("ifNotExists") final List<String> ifNotExists,
+                              @QueryParam("ifEquals") final List<String> ifEquals,
+                              @QueryParam("ifVersion") final Long ifVersion,
+                              @NotNull @Valid final JsonNode data);
+
+  /**
+   * Writes and deletes many entries in a single transaction.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param request  the puts and deletes.
+   */
+  @POST
+  @Path("/v1/tenant/{tenant}/table/{table}/entry/batch/write")
+  @Consumes(MediaType.APPLICATION_JSON)
+  void writeTenantTableEntries(@PathParam("tenant") final String tenantId,
+                               @PathParam("table") final String table,
+                               @NotNull @Valid final BatchWriteRequest request);
+
+  /**
+   * Applies puts, deletes and condition checks on different entries all or nothing.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param request  the items.
+   */
+  @POST
+  @Path("/v1/tenant/{tenant}/table/{table}/entry/batch/transact")
+  @Consumes(MediaType.APPLICATION_JSON)
+  void transactTenantTableEntries(@PathParam("tenant") final String tenantId,
+                                  @PathParam("table") final String table,
+                                  @NotNull @Valid final TransactWriteRequest request);
+
+  /**
+   * Update individual attributes of the tenant table entry. Attributes set to null are removed.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param entry    for the table.
+   * @param data     the attributes to change in JSON form.
+   */
+  @PATCH
+  @Path("/v1/tenant/{tenant}/table/{table}/entry//{entry}")
+  @Consumes(MediaType.APPLICATION_JSON)
+  void updateTenantTableEntry(@PathParam("tenant") final String tenantId,
+                              @PathParam("table") final String table,
+                              @PathParam("entry") final String entry,
+                              @NotNull @Valid final JsonNode data);
+
+  /**
+   * Atomically add to a numeric attribute of the tenant table entry, creating it if missing.
+   *
+   * @param tenantId  that owns the table.
+   * @param table     the table.
+   * @param entry     for the table.
+   * @param attribute the numeric attribute.
+   * @param delta     the amount to add.
+   * @return the new value.
+   */
+  @POST
+  @Path("/v1/tenant/{tenant}/table/{table}/entry//{entry}/increment/{attribute}")
+  @Produces(MediaType.APPLICATION_JSON)
+  long incrementTenantTableEntry(@PathParam("tenant") final String tenantId,
+                                 @PathParam("table") final String table,
+                                 @PathParam("entry") final String entry,
+                                 @PathParam("attribute") final String attribute,
+                                 @QueryParam("delta") final long delta);
+
   /**
    * Delete the tenant table entry.
    *
@@ -158,4 +476,25 @@ public interface NodeService {
   void deleteTenantTableEntry(@PathParam("tenant") final String tenantId,
                               @PathParam("table") final String table,
                               @PathParam("entry") final String entry);
-}
\ No newline at end of file
+
+  /**
+   * Delete the tenant table entry if the conditions hold against it. Fails with a 412 if not.
+   *
+   * @param tenantId    that owns the table.
+   * @param table       the table.
+   * @param entry       to delete.
+   * @param ifExists    attributes that must exist.
+   * @param ifNotExists attributes that must not exist.
+   * @param ifEquals    attribute:value pairs that must match.
+   * @param ifVersion   the version the entry must have.
+   */
+  @DELETE
+  @Path("/v1/tenant/{tenant}/table/{table}/entry//{entry}")
+  void deleteTenantTableEntry(@PathParam("tenant") final String tenantId,
+                              @PathParam("table") final String table,
+                              @PathParam("entry") final String entry,
+                              @QueryParam("ifExists") final List<String> ifExists,
+                              @QueryParam("ifNotExists") final List<String> ifNotExists,
+                              @QueryParam("ifEquals") final List<String> ifEquals,
+                              @QueryParam("ifVersion") final Long ifVersion);
+}
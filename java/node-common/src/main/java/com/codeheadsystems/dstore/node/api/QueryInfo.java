@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.dstore.node.api.ImmutableQueryInfo;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.Map;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * One page of entries from a query on a sort key table.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableQueryInfo.class)
+@JsonDeserialize(builder = ImmutableQueryInfo.Builder.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public interface QueryInfo {
+
+  /**
+   * Entries found, keyed by entry id, in sort key order.
+   *
+   * @return Map.
+   */
+  @JsonProperty("entries")
+  Map<String, JsonNode> entries();
+
+  /**
+   * Sort key to pass back as startAfter for the next page, if more remain.
+   *
+   * @return Optional.
+   */
+  @JsonProperty("next")
+  Optional<String> next();
+
+}
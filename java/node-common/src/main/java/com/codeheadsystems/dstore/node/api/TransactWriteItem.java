@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.dstore.node.api.ImmutableTransactWriteItem;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.List;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * One put, delete or condition check in a transaction. An item with neither a put nor a delete only checks its
+ * conditions.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableTransactWriteItem.class)
+@JsonDeserialize(builder = ImmutableTransactWriteItem.Builder.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public interface TransactWriteItem {
+
+  /**
+   * The entry id.
+   *
+   * @return String.
+   */
+  @JsonProperty("id")
+  String id();
+
+  /**
+   * The entry to write, replacing the existing one.
+   *
+   * @return Optional.
+   */
+  @JsonProperty("put")
+  Optional<JsonNode> put();
+
+  /**
+   * If the entry is deleted.
+   *
+   * @return boolean.
+   */
+  @JsonProperty("delete")
+  @Value.Default
+  default boolean delete() {
+    return false;
+  }
+
+  /**
+   * Attributes that must exist.
+   *
+   * @return List.
+   */
+  @JsonProperty("ifExists")
+  List<String> ifExists();
+
+  /**
+   * Attributes that must not exist.
+   *
+   * @return List.
+   */
+  @JsonProperty("ifNotExists")
+  List<String> ifNotExists();
+
+  /**
+   * Attribute:value pairs that must match, in the same form as the ifEquals query parameter.
+   *
+   * @return List.
+   */
+  @JsonProperty("ifEquals")
+  List<String> ifEquals();
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.dstore.node.api.ImmutableTransactWriteRequest;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.List;
+import org.immutables.value.Value;
+
+/**
+ * Puts, deletes and condition checks against one tenant table, applied all or nothing.
+ */
+@Value.Immutable
+@JsonSerialize(as = ImmutableTransactWriteRequest.class)
+@JsonDeserialize(builder = ImmutableTransactWriteRequest.Builder.class)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public interface TransactWriteRequest {
+
+  /**
+   * The items, each for a different entry.
+   *
+   * @return List.
+   */
+  @JsonProperty("items")
+  List<TransactWriteItem> items();
+
+}
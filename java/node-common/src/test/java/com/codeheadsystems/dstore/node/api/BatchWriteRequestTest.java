@@ -0,0 +1,20 @@
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.test.model.BaseJacksonTest;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+class BatchWriteRequestTest extends BaseJacksonTest<BatchWriteRequest> {
+
+  @Override
+  protected Class<BatchWriteRequest> getBaseClass() {
+    return BatchWriteRequest.class;
+  }
+
+  @Override
+  protected BatchWriteRequest getInstance() {
+    return ImmutableBatchWriteRequest.builder()
+        .putPut("id", JsonNodeFactory.instance.objectNode().put("a", 1))
+        .addDelete("other")
+        .build();
+  }
+}
@@ -0,0 +1,27 @@
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.test.model.BaseJacksonTest;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+class ChangeStreamInfoTest extends BaseJacksonTest<ChangeStreamInfo> {
+
+  @Override
+  protected Class<ChangeStreamInfo> getBaseClass() {
+    return ChangeStreamInfo.class;
+  }
+
+  @Override
+  protected ChangeStreamInfo getInstance() {
+    return ImmutableChangeStreamInfo.builder()
+        .epoch("epoch")
+        .addChanges(ImmutableChangeInfo.builder()
+            .sequence(7)
+            .id("0001")
+            .oldImage(JsonNodeFactory.instance.objectNode().put("a", 1))
+            .newImage(JsonNodeFactory.instance.objectNode().put("a", 2))
+            .build())
+        .next(7)
+        .trimmed(false)
+        .build();
+  }
+}
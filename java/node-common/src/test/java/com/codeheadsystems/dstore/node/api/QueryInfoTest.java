@@ -0,0 +1,20 @@
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.test.model.BaseJacksonTest;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+class QueryInfoTest extends BaseJacksonTest<QueryInfo> {
+
+  @Override
+  protected Class<QueryInfo> getBaseClass() {
+    return QueryInfo.class;
+  }
+
+  @Override
+  protected QueryInfo getInstance() {
+    return ImmutableQueryInfo.builder()
+        .putEntries("user:2023-01-01", JsonNodeFactory.instance.objectNode().put("a", 1))
+        .next("2023-01-01")
+        .build();
+  }
+}
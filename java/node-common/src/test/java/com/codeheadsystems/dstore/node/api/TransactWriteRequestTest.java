@@ -0,0 +1,25 @@
+package com.codeheadsystems.dstore.node.api;
+
+import com.codeheadsystems.test.model.BaseJacksonTest;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+class TransactWriteRequestTest extends BaseJacksonTest<TransactWriteRequest> {
+
+  @Override
+  protected Class<TransactWriteRequest> getBaseClass() {
+    return TransactWriteRequest.class;
+  }
+
+  @Override
+  protected TransactWriteRequest getInstance() {
+    return ImmutableTransactWriteRequest.builder()
+        .addItems(ImmutableTransactWriteItem.builder()
+            .id("id")
+            .put(JsonNodeFactory.instance.objectNode().put("a", 1))
+            .addIfNotExists("a")
+            .build())
+        .addItems(ImmutableTransactWriteItem.builder().id("other").delete(true).addIfEquals("b:2").build())
+        .addItems(ImmutableTransactWriteItem.builder().id("checked").addIfExists("c").build())
+        .build();
+  }
+}
@@ -73,7 +73,7 @@ public class NodeIntegTest {
     assertThat(NODE_SERVICE.listTenants()).contains(tenant);
 
     assertThat(NODE_SERVICE.listTenantTables(tenant)).isEmpty();
-    assertThat(NODE_SERVICE.createTenantTable(tenant, table, "ignored")).hasFieldOrPropertyWithValue("id", table);
+    assertThat(NODE_SERVICE.createTenantTable(tenant, table, "ignored", null)).hasFieldOrPropertyWithValue("id", table);
     assertThat(NODE_SERVICE.listTenantTables(tenant)).containsExactly(table);
 
     NODE_SERVICE.deleteTenantTable(tenant, table);
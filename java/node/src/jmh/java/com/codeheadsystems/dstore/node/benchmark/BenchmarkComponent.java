@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.benchmark;
+
+import com.codeheadsystems.dstore.common.module.JsonModule;
+import com.codeheadsystems.dstore.node.manager.DataSourceManager;
+import com.codeheadsystems.dstore.node.manager.TenantManager;
+import com.codeheadsystems.dstore.node.manager.TenantTableEntryManager;
+import com.codeheadsystems.dstore.node.manager.TenantTableManager;
+import com.codeheadsystems.dstore.node.module.ConfigurationModule;
+import com.codeheadsystems.dstore.node.module.ConnectionPoolModule;
+import com.codeheadsystems.dstore.node.module.TableDefinitionEngineModule;
+import com.codeheadsystems.dstore.node.module.UtilitiesModule;
+import com.codeheadsystems.metrics.dagger.MetricsModule;
+import dagger.Component;
+import javax.inject.Singleton;
+
+/**
+ * The node wiring without dropwizard, so benchmarks run against the real managers and engines.
+ */
+@Singleton
+@Component(modules = {
+    ConfigurationModule.class,
+    ConnectionPoolModule.class,
+    JsonModule.class,
+    MetricsModule.class,
+    TableDefinitionEngineModule.class,
+    UtilitiesModule.class
+})
+public interface BenchmarkComponent {
+
+  /**
+   * The data source manager. Needs to be started before use.
+   *
+   * @return the manager.
+   */
+  DataSourceManager dataSourceManager();
+
+  /**
+   * Tenant manager.
+   *
+   * @return the manager.
+   */
+  TenantManager tenantManager();
+
+  /**
+   * Tenant table manager.
+   *
+   * @return the manager.
+   */
+  TenantTableManager tenantTableManager();
+
+  /**
+   * Tenant table entry manager.
+   *
+   * @return the manager.
+   */
+  TenantTableEntryManager tenantTableEntryManager();
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.benchmark;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.manager.TenantTableEntryManager;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.dstore.node.module.ConfigurationModule;
+import com.codeheadsystems.metrics.dagger.MetricsModule;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the table definition engines for reading and writing entities of different widths.
+ * Run with: gradle :node:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TableDefinitionEngineBenchmark {
+
+  private static final String TENANT = "benchmark";
+  private static final String ENTITY = "entity";
+
+  /**
+   * The table definition engine under test.
+   */
+  @Param({"V1SingleEntryEngine", "V2SingleRowEngine"})
+  public String tableVersion;
+
+  /**
+   * Number of attributes in the entity.
+   */
+  @Param({"1", "10", "100"})
+  public int attributes;
+
+  private Path directory;
+  private TenantTableEntryManager tenantTableEntryManager;
+  private TenantTableIdentifier identifier;
+  private JsonNode document;
+  private long counter;
+
+  /**
+   * Builds a node in a temp directory with one table for the engine under test.
+   *
+   * @throws IOException if the temp directory cannot be created.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    directory = Files.createTempDirectory("TableDefinitionEngineBenchmark-");
+    final NodeConfiguration configuration = new NodeConfiguration();
+    configuration.setDatabaseDirectory(directory.toString());
+    final BenchmarkComponent component = DaggerBenchmarkComponent.builder()
+        .configurationModule(new ConfigurationModule(configuration, new MetricRegistry()))
+        .metricsModule(new MetricsModule(new SimpleMeterRegistry()))
+        .build();
+    component.dataSourceManager().start();
+    component.tenantManager().create(TENANT);
+    component.tenantTableManager().create(TENANT, tableVersion, tableVersion, "id");
+    identifier = TenantTableIdentifier.from(TENANT, tableVersion);
+    tenantTableEntryManager = component.tenantTableEntryManager();
+    document = document(attributes);
+    tenantTableEntryManager.write(identifier, ENTITY, document);
+    counter = 0;
+  }
+
+  /**
+   * Removes the databases.
+   *
+   * @throws IOException if we cannot clean up.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+  }
+
+  /**
+   * Single entity read.
+   *
+   * @return the entity.
+   */
+  @Benchmark
+  public Optional<JsonNode> read() {
+    return tenantTableEntryManager.read(identifier, ENTITY);
+  }
+
+  /**
+   * Single entity write, always to a fresh id.
+   */
+  @Benchmark
+  public void write() {
+    tenantTableEntryManager.write(identifier, ENTITY + "-" + counter++, document);
+  }
+
+  private static JsonNode document(final int attributes) {
+    final ObjectNode node = JsonNodeFactory.instance.objectNode();
+    for (int i = 0; i < attributes; i++) {
+      if (i % 2 == 0) {
+        node.put("attribute" + i, "value of attribute " + i);
+      } else {
+        node.put("attribute" + i, i * 1000);
+      }
+    }
+    return node;
+  }
+
+}
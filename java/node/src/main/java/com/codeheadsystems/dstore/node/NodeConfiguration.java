@@ -17,6 +17,7 @@
 package com.codeheadsystems.dstore.node;
 
 import io.dropwizard.Configuration;
+import java.util.List;
 
 /**
  * Dropwizard configuration object.
@@ -25,6 +26,22 @@ public class NodeConfiguration extends Configuration {
 
   private String databaseDirectory;
   private String controlPlaneUrl;
+  private long expirySweepIntervalSeconds = 10;
+  private int expirySweepBatchSize = 100;
+  private int changeStreamCapacity = 1000;
+  private boolean entityCacheOffHeap = false;
+  private long entityCacheMaxBytes = 256L * 1024 * 1024;
+  private boolean entityFilterEnabled = true;
+  private int statementCacheSize = 100;
+  private String connectionPool = "embedded";
+  private int dataSourceCacheSize = 1000;
+  private long dataSourceIdleEvictionSeconds = 3600;
+  private int warmupTableCount = 100;
+  private int warmupThreads = 4;
+  private long tableAccessFlushSeconds = 60;
+  private boolean sharedStorage = false;
+  private int storageShards = 16;
+  private List<String> sharedTenants = List.of();
 
   /**
    * Getter for database directory.
@@ -61,4 +78,295 @@ public class NodeConfiguration extends Configuration {
   public void setControlPlaneUrl(final String controlPlaneUrl) {
     this.controlPlaneUrl = controlPlaneUrl;
   }
+
+  /**
+   * Getter for the delay between expiry sweeps.
+   *
+   * @return seconds.
+   */
+  public long getExpirySweepIntervalSeconds() {
+    return expirySweepIntervalSeconds;
+  }
+
+  /**
+   * Setter for the delay between expiry sweeps.
+   *
+   * @param expirySweepIntervalSeconds seconds.
+   */
+  public void setExpirySweepIntervalSeconds(final long expirySweepIntervalSeconds) {
+    this.expirySweepIntervalSeconds = expirySweepIntervalSeconds;
+  }
+
+  /**
+   * Getter for how many entities of each table an expiry sweep looks at.
+   *
+   * @return batch size.
+   */
+  public int getExpirySweepBatchSize() {
+    return expirySweepBatchSize;
+  }
+
+  /**
+   * Setter for how many entities of each table an expiry sweep looks at.
+   *
+   * @param expirySweepBatchSize batch size.
+   */
+  public void setExpirySweepBatchSize(final int expirySweepBatchSize) {
+    this.expirySweepBatchSize = expirySweepBatchSize;
+  }
+
+  /**
+   * Getter for how many changes each table's change stream keeps.
+   *
+   * @return capacity.
+   */
+  public int getChangeStreamCapacity() {
+    return changeStreamCapacity;
+  }
+
+  /**
+   * Setter for how many changes each table's change stream keeps.
+   *
+   * @param changeStreamCapacity capacity.
+   */
+  public void setChangeStreamCapacity(final int changeStreamCapacity) {
+    this.changeStreamCapacity = changeStreamCapacity;
+  }
+
+  /**
+   * Getter for if cached entities are kept in direct buffers, outside the heap.
+   *
+   * @return off heap.
+   */
+  public boolean isEntityCacheOffHeap() {
+    return entityCacheOffHeap;
+  }
+
+  /**
+   * Setter for if cached entities are kept in direct buffers, outside the heap.
+   *
+   * @param entityCacheOffHeap off heap.
+   */
+  public void setEntityCacheOffHeap(final boolean entityCacheOffHeap) {
+    this.entityCacheOffHeap = entityCacheOffHeap;
+  }
+
+  /**
+   * Getter for the most bytes the entity caches of all tables on the node hold together.
+   *
+   * @return bytes.
+   */
+  public long getEntityCacheMaxBytes() {
+    return entityCacheMaxBytes;
+  }
+
+  /**
+   * Setter for the most bytes the entity caches of all tables on the node hold together.
+   *
+   * @param entityCacheMaxBytes bytes.
+   */
+  public void setEntityCacheMaxBytes(final long entityCacheMaxBytes) {
+    this.entityCacheMaxBytes = entityCacheMaxBytes;
+  }
+
+  /**
+   * Getter for if reads of missing entities are answered from a bloom filter when possible.
+   *
+   * @return enabled.
+   */
+  public boolean isEntityFilterEnabled() {
+    return entityFilterEnabled;
+  }
+
+  /**
+   * Setter for if reads of missing entities are answered from a bloom filter when possible.
+   *
+   * @param entityFilterEnabled enabled.
+   */
+  public void setEntityFilterEnabled(final boolean entityFilterEnabled) {
+    this.entityFilterEnabled = entityFilterEnabled;
+  }
+
+  /**
+   * Getter for how many prepared statements each database connection keeps. Zero disables the cache.
+   *
+   * @return statements per connection.
+   */
+  public int getStatementCacheSize() {
+    return statementCacheSize;
+  }
+
+  /**
+   * Setter for how many prepared statements each database connection keeps. Zero disables the cache.
+   *
+   * @param statementCacheSize statements per connection.
+   */
+  public void setStatementCacheSize(final int statementCacheSize) {
+    this.statementCacheSize = statementCacheSize;
+  }
+
+  /**
+   * Getter for the connection pool engine, embedded or c3p0.
+   *
+   * @return the name.
+   */
+  public String getConnectionPool() {
+    return connectionPool;
+  }
+
+  /**
+   * Setter for the connection pool engine, embedded or c3p0.
+   *
+   * @param connectionPool the name.
+   */
+  public void setConnectionPool(final String connectionPool) {
+    this.connectionPool = connectionPool;
+  }
+
+  /**
+   * Getter for how many tenant table datasources are kept open.
+   *
+   * @return count.
+   */
+  public int getDataSourceCacheSize() {
+    return dataSourceCacheSize;
+  }
+
+  /**
+   * Setter for how many tenant table datasources are kept open.
+   *
+   * @param dataSourceCacheSize count.
+   */
+  public void setDataSourceCacheSize(final int dataSourceCacheSize) {
+    this.dataSourceCacheSize = dataSourceCacheSize;
+  }
+
+  /**
+   * Getter for how long a tenant table datasource is kept open without being used. Zero keeps them open.
+   *
+   * @return seconds.
+   */
+  public long getDataSourceIdleEvictionSeconds() {
+    return dataSourceIdleEvictionSeconds;
+  }
+
+  /**
+   * Setter for how long a tenant table datasource is kept open without being used. Zero keeps them open.
+   *
+   * @param dataSourceIdleEvictionSeconds seconds.
+   */
+  public void setDataSourceIdleEvictionSeconds(final long dataSourceIdleEvictionSeconds) {
+    this.dataSourceIdleEvictionSeconds = dataSourceIdleEvictionSeconds;
+  }
+
+  /**
+   * Getter for how many of the most recently used tables are opened at startup. Zero turns this off.
+   *
+   * @return count.
+   */
+  public int getWarmupTableCount() {
+    return warmupTableCount;
+  }
+
+  /**
+   * Setter for how many of the most recently used tables are opened at startup. Zero turns this off.
+   *
+   * @param warmupTableCount count.
+   */
+  public void setWarmupTableCount(final int warmupTableCount) {
+    this.warmupTableCount = warmupTableCount;
+  }
+
+  /**
+   * Getter for how many tables are opened at once at startup.
+   *
+   * @return threads.
+   */
+  public int getWarmupThreads() {
+    return warmupThreads;
+  }
+
+  /**
+   * Setter for how many tables are opened at once at startup.
+   *
+   * @param warmupThreads threads.
+   */
+  public void setWarmupThreads(final int warmupThreads) {
+    this.warmupThreads = warmupThreads;
+  }
+
+  /**
+   * Getter for how often table usage is saved, for picking the tables to open at startup.
+   *
+   * @return seconds.
+   */
+  public long getTableAccessFlushSeconds() {
+    return tableAccessFlushSeconds;
+  }
+
+  /**
+   * Setter for how often table usage is saved, for picking the tables to open at startup.
+   *
+   * @param tableAccessFlushSeconds seconds.
+   */
+  public void setTableAccessFlushSeconds(final long tableAccessFlushSeconds) {
+    this.tableAccessFlushSeconds = tableAccessFlushSeconds;
+  }
+
+  /**
+   * Getter for if new tables of the shared tenants are kept in shared storage, rather than each in its own database.
+   *
+   * @return boolean.
+   */
+  public boolean isSharedStorage() {
+    return sharedStorage;
+  }
+
+  /**
+   * Setter for if new tables of the shared tenants are kept in shared storage, rather than each in its own database.
+   *
+   * @param sharedStorage boolean.
+   */
+  public void setSharedStorage(final boolean sharedStorage) {
+    this.sharedStorage = sharedStorage;
+  }
+
+  /**
+   * Getter for how many databases the shared storage is split over. Only affects tables added to it from now on.
+   *
+   * @return count.
+   */
+  public int getStorageShards() {
+    return storageShards;
+  }
+
+  /**
+   * Setter for how many databases the shared storage is split over. Only affects tables added to it from now on.
+   *
+   * @param storageShards count.
+   */
+  public void setStorageShards(final int storageShards) {
+    this.storageShards = storageShards;
+  }
+
+  /**
+   * Getter for the tenants whose tables may be kept in shared storage. All other tenants' tables have their own
+   * database. The shards are encrypted only with the node's key, not the tenant's or the table's, so a tenant listed
+   * here gives up having its data encrypted apart from the other tenants in the same shard.
+   *
+   * @return tenant ids.
+   */
+  public List<String> getSharedTenants() {
+    return sharedTenants;
+  }
+
+  /**
+   * Setter for the tenants whose tables may be kept in shared storage. Tables of a tenant taken off the list stay in
+   * shared storage until they are moved out.
+   *
+   * @param sharedTenants tenant ids.
+   */
+  public void setSharedTenants(final List<String> sharedTenants) {
+    this.sharedTenants = sharedTenants;
+  }
 }
@@ -19,6 +19,7 @@ package com.codeheadsystems.dstore.node.component;
 import com.codahale.metrics.health.HealthCheck;
 import com.codeheadsystems.dstore.common.module.JsonModule;
 import com.codeheadsystems.dstore.node.module.ConfigurationModule;
+import com.codeheadsystems.dstore.node.module.ConnectionPoolModule;
 import com.codeheadsystems.dstore.node.module.HealthCheckModule;
 import com.codeheadsystems.dstore.node.module.ResourceModule;
 import com.codeheadsystems.dstore.node.module.StartupModule;
@@ -37,6 +38,7 @@ import javax.inject.Singleton;
 @Singleton
 @Component(modules = {
     ConfigurationModule.class,
+    ConnectionPoolModule.class,
     HealthCheckModule.class,
     JsonModule.class,
     MetricsModule.class,
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.converter;
+
+import com.codeheadsystems.dstore.node.api.ChangeInfo;
+import com.codeheadsystems.dstore.node.api.ChangeStreamInfo;
+import com.codeheadsystems.dstore.node.api.ImmutableChangeInfo;
+import com.codeheadsystems.dstore.node.api.ImmutableChangeStreamInfo;
+import com.codeheadsystems.dstore.node.model.ChangePage;
+import com.codeheadsystems.dstore.node.model.ChangeRecord;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converter for change stream info objects.
+ */
+@Singleton
+public class ChangeStreamInfoConverter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChangeStreamInfoConverter.class);
+
+  /**
+   * Default constructor.
+   */
+  @Inject
+  public ChangeStreamInfoConverter() {
+    LOGGER.info("ChangeStreamInfoConverter()");
+  }
+
+  /**
+   * Creates a change stream info from a page of changes.
+   *
+   * @param page to read from.
+   * @return result.
+   */
+  public ChangeStreamInfo from(final ChangePage page) {
+    LOGGER.trace("from({})", page.next());
+    return ImmutableChangeStreamInfo.builder()
+        .epoch(page.epoch())
+        .changes(page.records().stream().map(this::from).toList())
+        .next(page.next())
+        .trimmed(page.trimmed())
+        .build();
+  }
+
+  private ChangeInfo from(final ChangeRecord record) {
+    return ImmutableChangeInfo.builder()
+        .sequence(record.sequence())
+        .id(record.entity())
+        .oldImage(record.oldImage())
+        .newImage(record.newImage())
+        .build();
+  }
+
+}
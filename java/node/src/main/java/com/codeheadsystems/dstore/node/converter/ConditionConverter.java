@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.converter;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the condition query parameters of a request into conditions.
+ */
+@Singleton
+public class ConditionConverter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConditionConverter.class);
+
+  private final JsonEngine jsonEngine;
+
+  /**
+   * Default constructor.
+   *
+   * @param jsonEngine to parse values.
+   */
+  @Inject
+  public ConditionConverter(final JsonEngine jsonEngine) {
+    LOGGER.info("ConditionConverter({})", jsonEngine);
+    this.jsonEngine = jsonEngine;
+  }
+
+  /**
+   * Creates the conditions. Equals conditions are in the form attribute:value, where the value is read as a json
+   * scalar if it is one (5, true, "5") and as a plain string otherwise.
+   *
+   * @param ifExists    attributes that must exist.
+   * @param ifNotExists attributes that must not exist.
+   * @param ifEquals    attribute:value pairs that must match.
+   * @return the conditions.
+   * @throws IllegalArgumentException if an equals condition is malformed.
+   */
+  public List<Condition> from(final Collection<String> ifExists,
+                              final Collection<String> ifNotExists,
+                              final Collection<String> ifEquals) {
+    LOGGER.trace("from({},{},{})", ifExists, ifNotExists, ifEquals);
+    final List<Condition> result = new ArrayList<>();
+    ifExists.forEach(attribute -> result.add(Condition.exists(attribute)));
+    ifNotExists.forEach(attribute -> result.add(Condition.notExists(attribute)));
+    for (String pair : ifEquals) {
+      final int separator = pair.indexOf(':');
+      if (separator < 1) {
+        throw new IllegalArgumentException("Expected attribute:value, got " + pair);
+      }
+      result.add(Condition.equalTo(pair.substring(0, separator), value(pair.substring(separator + 1))));
+    }
+    return result;
+  }
+
+  /**
+   * Reads a value from a query parameter, as a json scalar if it is one (5, true, "5") and as a plain string otherwise.
+   *
+   * @param raw the parameter.
+   * @return the value.
+   */
+  public JsonNode value(final String raw) {
+    try {
+      final JsonNode node = jsonEngine.objectMapper().readTree(raw);
+      if (node != null && node.isValueNode() && !node.isNull()) {
+        return node;
+      }
+    } catch (JsonProcessingException e) {
+      LOGGER.trace("value({}): not json, using as string", raw);
+    }
+    return TextNode.valueOf(raw);
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.converter;
+
+import com.codeheadsystems.dstore.node.api.ImmutableQueryInfo;
+import com.codeheadsystems.dstore.node.api.QueryInfo;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converter for query info objects.
+ */
+@Singleton
+public class QueryInfoConverter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QueryInfoConverter.class);
+
+  /**
+   * Default constructor.
+   */
+  @Inject
+  public QueryInfoConverter() {
+    LOGGER.info("QueryInfoConverter()");
+  }
+
+  /**
+   * Creates a query info from a query result.
+   *
+   * @param result to read from.
+   * @return result.
+   */
+  public QueryInfo from(final QueryResult result) {
+    LOGGER.trace("from({})", result);
+    return ImmutableQueryInfo.builder()
+        .entries(result.entities())
+        .next(result.lastSortKey())
+        .build();
+  }
+
+}
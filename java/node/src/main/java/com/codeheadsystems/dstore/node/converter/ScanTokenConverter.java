@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.converter;
+
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts scan positions to and from the opaque continuation token handed to callers.
+ */
+@Singleton
+public class ScanTokenConverter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ScanTokenConverter.class);
+
+  /**
+   * Default constructor.
+   */
+  @Inject
+  public ScanTokenConverter() {
+    LOGGER.info("ScanTokenConverter()");
+  }
+
+  /**
+   * Creates a token from the position.
+   *
+   * @param position to encode.
+   * @return the token.
+   */
+  public String toToken(final ScanPosition position) {
+    LOGGER.trace("toToken({})", position);
+    final String value = position.hash() + ":" + position.id();
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads the position back from a token.
+   *
+   * @param token to decode.
+   * @return the position.
+   * @throws IllegalArgumentException if the token is not one we made.
+   */
+  public ScanPosition fromToken(final String token) {
+    LOGGER.trace("fromToken({})", token);
+    final String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    final int separator = value.indexOf(':');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Invalid token");
+    }
+    try {
+      return ScanPosition.from(Long.parseLong(value.substring(0, separator)), value.substring(separator + 1));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid token", e);
+    }
+  }
+
+}
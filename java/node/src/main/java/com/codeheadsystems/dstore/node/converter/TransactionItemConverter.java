@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.converter;
+
+import com.codeheadsystems.dstore.node.api.TransactWriteItem;
+import com.codeheadsystems.dstore.node.model.ImmutableTransactionItem;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the items of a transact request into transaction items.
+ */
+@Singleton
+public class TransactionItemConverter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TransactionItemConverter.class);
+
+  private final ConditionConverter conditionConverter;
+
+  /**
+   * Default constructor.
+   *
+   * @param conditionConverter for the conditions of each item.
+   */
+  @Inject
+  public TransactionItemConverter(final ConditionConverter conditionConverter) {
+    LOGGER.info("TransactionItemConverter({})", conditionConverter);
+    this.conditionConverter = conditionConverter;
+  }
+
+  /**
+   * Creates the transaction item.
+   *
+   * @param item from the request.
+   * @return the transaction item.
+   * @throws IllegalArgumentException if a condition is malformed or the item both puts and deletes.
+   */
+  public TransactionItem from(final TransactWriteItem item) {
+    LOGGER.trace("from({})", item.id());
+    return ImmutableTransactionItem.builder()
+        .entity(item.id())
+        .put(item.put())
+        .delete(item.delete())
+        .conditions(conditionConverter.from(item.ifExists(), item.ifNotExists(), item.ifEquals()))
+        .build();
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.dao;
+
+import com.codeheadsystems.dstore.node.engine.SqlEngine;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.google.common.collect.ImmutableList;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access pattern to how much the tenant tables are used, for picking the tables to open at startup.
+ */
+@Singleton
+public class TenantTableAccessDao {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TenantTableAccessDao.class);
+
+  private final SqlEngine sqlEngine;
+
+  /**
+   * Constructor.
+   *
+   * @param sqlEngine for database queries.
+   */
+  @Inject
+  public TenantTableAccessDao(final SqlEngine sqlEngine) {
+    LOGGER.info("TenantTableAccessDao({})", sqlEngine);
+    this.sqlEngine = sqlEngine;
+  }
+
+  /**
+   * Adds the counts to the tables, marking them as used now.
+   *
+   * @param counts     how many times each table was used since the last write.
+   * @param lastAccess epoch millis of the use.
+   */
+  public void write(final Map<TenantTableIdentifier, Long> counts, final long lastAccess) {
+    LOGGER.trace("write({})", counts.size());
+    if (counts.isEmpty()) {
+      return;
+    }
+    sqlEngine.executePreparedInternal(
+        "merge into NODE_TENANT_TABLES_ACCESS using (values (cast(? as varchar(256)), cast(? as varchar(256)), cast(? as bigint), cast(? as bigint)))"
+            + " as vals(RID_TENANT, TABLE_NAME, LAST_ACCESS, ACCESS_COUNT)"
+            + " on NODE_TENANT_TABLES_ACCESS.RID_TENANT = vals.RID_TENANT and NODE_TENANT_TABLES_ACCESS.TABLE_NAME = vals.TABLE_NAME"
+            + " when matched then update set NODE_TENANT_TABLES_ACCESS.LAST_ACCESS = vals.LAST_ACCESS,"
+            + " NODE_TENANT_TABLES_ACCESS.ACCESS_COUNT = NODE_TENANT_TABLES_ACCESS.ACCESS_COUNT + vals.ACCESS_COUNT"
+            + " when not matched then insert values (vals.RID_TENANT, vals.TABLE_NAME, vals.LAST_ACCESS, vals.ACCESS_COUNT)",
+        (ps) -> {
+          try {
+            for (Map.Entry<TenantTableIdentifier, Long> entry : counts.entrySet()) {
+              ps.setString(1, entry.getKey().tenantId());
+              ps.setString(2, entry.getKey().tableName());
+              ps.setLong(3, lastAccess);
+              ps.setLong(4, entry.getValue());
+              ps.addBatch();
+            }
+            ps.executeBatch();
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to write table access", e);
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Lists the most recently used tables, most recent first. Ties go to the most used.
+   *
+   * @param limit how many to list.
+   * @return the tables.
+   */
+  public List<TenantTableIdentifier> mostRecent(final int limit) {
+    LOGGER.trace("mostRecent({})", limit);
+    return sqlEngine.executePreparedInternal(
+        "select RID_TENANT, TABLE_NAME from NODE_TENANT_TABLES_ACCESS order by LAST_ACCESS desc, ACCESS_COUNT desc limit ?",
+        (ps) -> {
+          try {
+            ps.setInt(1, limit);
+            try (final ResultSet rs = ps.executeQuery()) {
+              final ImmutableList.Builder<TenantTableIdentifier> builder = ImmutableList.builder();
+              while (rs.next()) {
+                builder.add(TenantTableIdentifier.from(rs.getString("RID_TENANT"), rs.getString("TABLE_NAME")));
+              }
+              return builder.build();
+            }
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to read table access", e);
+          }
+        });
+  }
+
+  /**
+   * Forgets how much the table was used.
+   *
+   * @param identifier to delete.
+   */
+  public void delete(final TenantTableIdentifier identifier) {
+    LOGGER.trace("delete({})", identifier);
+    sqlEngine.executePreparedInternal(
+        "delete from NODE_TENANT_TABLES_ACCESS where RID_TENANT = ? and TABLE_NAME = ?",
+        (ps) -> {
+          try {
+            ps.setString(1, identifier.tenantId());
+            ps.setString(2, identifier.tableName());
+            ps.execute();
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to delete table access", e);
+          }
+          return null;
+        });
+  }
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Encodes a flat json document into a compact binary form, and back again. Layout is:
+ * format version (1 byte), attribute count (varint), then per attribute the name (varint length + UTF-8),
+ * a type tag (1 byte) and the value. Integers are zig-zag varints, so small numbers cost one byte.
+ * Single values, including nested objects and arrays, can also be encoded as the format version followed by one
+ * tagged value. Objects and arrays are a count (varint) followed by their fields or elements.
+ */
+@Singleton
+public class BinaryDocumentEngine {
+
+  /**
+   * Current version of the encoding. First byte of every document.
+   */
+  public static final byte FORMAT_VERSION = 1;
+  private static final Logger LOGGER = LoggerFactory.getLogger(BinaryDocumentEngine.class);
+  private static final byte TYPE_NULL = 0;
+  private static final byte TYPE_FALSE = 1;
+  private static final byte TYPE_TRUE = 2;
+  private static final byte TYPE_LONG = 3;
+  private static final byte TYPE_DOUBLE = 4;
+  private static final byte TYPE_STRING = 5;
+  private static final byte TYPE_OBJECT = 6;
+  private static final byte TYPE_ARRAY = 7;
+  private static final byte TYPE_BINARY = 8;
+
+  private final JsonEngine jsonEngine;
+
+  /**
+   * Default constructor.
+   *
+   * @param jsonEngine for creating nodes.
+   */
+  @Inject
+  public BinaryDocumentEngine(final JsonEngine jsonEngine) {
+    LOGGER.info("BinaryDocumentEngine({})", jsonEngine);
+    this.jsonEngine = jsonEngine;
+  }
+
+  /**
+   * Encodes the json object. Only scalar attributes are supported, use {@link #encodeValue(JsonNode)} for nesting.
+   *
+   * @param data to encode.
+   * @return the bytes.
+   */
+  public byte[] encode(final JsonNode data) {
+    if (!data.isObject()) {
+      throw new IllegalArgumentException("Only objects can be encoded: " + data.getNodeType());
+    }
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+    out.write(FORMAT_VERSION);
+    writeVarLong(out, data.size());
+    final Iterator<Map.Entry<String, JsonNode>> fields = data.fields();
+    while (fields.hasNext()) {
+      final Map.Entry<String, JsonNode> field = fields.next();
+      writeString(out, field.getKey());
+      writeValue(out, field.getValue(), false);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Encodes a single value of any type, including nested objects and arrays.
+   *
+   * @param value to encode.
+   * @return the bytes.
+   */
+  public byte[] encodeValue(final JsonNode value) {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+    out.write(FORMAT_VERSION);
+    writeValue(out, value, true);
+    return out.toByteArray();
+  }
+
+  /**
+   * Decodes the bytes from {@link #encodeValue(JsonNode)} back into the value.
+   *
+   * @param bytes to decode.
+   * @return the value.
+   */
+  public JsonNode decodeValue(final byte[] bytes) {
+    final Reader reader = new Reader(bytes);
+    final byte version = reader.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unknown document format: " + version);
+    }
+    return readValue(reader);
+  }
+
+  private void writeValue(final ByteArrayOutputStream out, final JsonNode element, final boolean nested) {
+    if (element.isNull()) {
+      out.write(TYPE_NULL);
+    } else if (element.isBoolean()) {
+      out.write(element.booleanValue() ? TYPE_TRUE : TYPE_FALSE);
+    } else if (element.isIntegralNumber() && element.canConvertToLong()) {
+      out.write(TYPE_LONG);
+      writeVarLong(out, zigZag(element.longValue()));
+    } else if (element.isNumber()) {
+      out.write(TYPE_DOUBLE);
+      final long bits = Double.doubleToRawLongBits(element.doubleValue());
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        out.write((int) (bits >>> shift));
+      }
+    } else if (element.isTextual()) {
+      out.write(TYPE_STRING);
+      writeString(out, element.textValue());
+    } else if (element.isBinary()) {
+      out.write(TYPE_BINARY);
+      final byte[] bytes = ((BinaryNode) element).binaryValue();
+      writeVarLong(out, bytes.length);
+      out.write(bytes, 0, bytes.length);
+    } else if (nested && element.isObject()) {
+      out.write(TYPE_OBJECT);
+      writeVarLong(out, element.size());
+      final Iterator<Map.Entry<String, JsonNode>> fields = element.fields();
+      while (fields.hasNext()) {
+        final Map.Entry<String, JsonNode> field = fields.next();
+        writeString(out, field.getKey());
+        writeValue(out, field.getValue(), true);
+      }
+    } else if (nested && element.isArray()) {
+      out.write(TYPE_ARRAY);
+      writeVarLong(out, element.size());
+      for (JsonNode child : element) {
+        writeValue(out, child, true);
+      }
+    } else {
+      throw new IllegalArgumentException("Unknown type: " + element.getNodeType());
+    }
+  }
+
+  /**
+   * Decodes the bytes back into a json object.
+   *
+   * @param bytes to decode.
+   * @return the object.
+   */
+  public ObjectNode decode(final byte[] bytes) {
+    final Reader reader = new Reader(bytes);
+    final byte version = reader.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unknown document format: " + version);
+    }
+    return readFields(reader);
+  }
+
+  private ObjectNode readFields(final Reader reader) {
+    final ObjectNode node = jsonEngine.createObjectNode();
+    final long count = reader.readVarLong();
+    for (long i = 0; i < count; i++) {
+      final String name = reader.readString();
+      node.set(name, readValue(reader));
+    }
+    return node;
+  }
+
+  private JsonNode readValue(final Reader reader) {
+    final JsonNodeFactory factory = jsonEngine.objectMapper().getNodeFactory();
+    final byte type = reader.readByte();
+    return switch (type) {
+      case TYPE_NULL -> factory.nullNode();
+      case TYPE_FALSE -> factory.booleanNode(false);
+      case TYPE_TRUE -> factory.booleanNode(true);
+      case TYPE_LONG -> {
+        final long value = unZigZag(reader.readVarLong());
+        yield value == (int) value ? factory.numberNode((int) value) : factory.numberNode(value);
+      }
+      case TYPE_DOUBLE -> {
+        long bits = 0;
+        for (int b = 0; b < 8; b++) {
+          bits = (bits << 8) | (reader.readByte() & 0xFF);
+        }
+        yield factory.numberNode(Double.longBitsToDouble(bits));
+      }
+      case TYPE_STRING -> factory.textNode(reader.readString());
+      case TYPE_BINARY -> factory.binaryNode(reader.readBytes((int) reader.readVarLong()));
+      case TYPE_OBJECT -> readFields(reader);
+      case TYPE_ARRAY -> {
+        final ArrayNode array = factory.arrayNode();
+        final long count = reader.readVarLong();
+        for (long i = 0; i < count; i++) {
+          array.add(readValue(reader));
+        }
+        yield array;
+      }
+      default -> throw new IllegalArgumentException("Unknown type tag: " + type);
+    };
+  }
+
+  private static long zigZag(final long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unZigZag(final long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  private static void writeVarLong(final ByteArrayOutputStream out, final long value) {
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      out.write((int) ((remaining & 0x7F) | 0x80));
+      remaining >>>= 7;
+    }
+    out.write((int) remaining);
+  }
+
+  private static void writeString(final ByteArrayOutputStream out, final String value) {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarLong(out, bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Cursor over the encoded bytes.
+   */
+  private static class Reader {
+
+    private final byte[] bytes;
+    private int position = 0;
+
+    Reader(final byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    byte readByte() {
+      if (position >= bytes.length) {
+        throw new IllegalArgumentException("Truncated document");
+      }
+      return bytes[position++];
+    }
+
+    long readVarLong() {
+      long result = 0;
+      int shift = 0;
+      byte b;
+      do {
+        if (shift > 63) {
+          throw new IllegalArgumentException("Malformed varint");
+        }
+        b = readByte();
+        result |= (long) (b & 0x7F) << shift;
+        shift += 7;
+      } while ((b & 0x80) != 0);
+      return result;
+    }
+
+    String readString() {
+      final int length = (int) readVarLong();
+      if (length < 0 || position + length > bytes.length) {
+        throw new IllegalArgumentException("Truncated document");
+      }
+      final String result = new String(bytes, position, length, StandardCharsets.UTF_8);
+      position += length;
+      return result;
+    }
+
+    byte[] readBytes(final int length) {
+      if (length < 0 || position + length > bytes.length) {
+        throw new IllegalArgumentException("Truncated document");
+      }
+      final byte[] result = Arrays.copyOfRange(bytes, position, position + length);
+      position += length;
+      return result;
+    }
+  }
+}
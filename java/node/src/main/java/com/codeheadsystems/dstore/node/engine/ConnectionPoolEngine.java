@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine;
+
+import java.util.Optional;
+import javax.sql.DataSource;
+
+/**
+ * Creates the connection pools behind the internal and tenant datasources. Which one is used is set by the
+ * connectionPool value of the node configuration.
+ */
+public interface ConnectionPoolEngine {
+
+  /**
+   * Identifier for metrics name. Gauge of the connections in use, tagged with the datasource.
+   */
+  String ACTIVE = "ConnectionPool.active";
+
+  /**
+   * Identifier for metrics name. Timer of the wait for a connection, tagged with the datasource.
+   */
+  String WAIT = "ConnectionPool.wait";
+
+  /**
+   * Identifier for metrics name. Counter of prepared statements taken from a connection's statement cache, tagged with
+   * hit true or false. Only pools that keep their own statement cache report it.
+   */
+  String STATEMENT_CACHE = "ConnectionPool.statementCache";
+
+  /**
+   * Creates a pool of connections to the database.
+   *
+   * @param name        of the datasource, used to tag the pool's metrics.
+   * @param url         of the database.
+   * @param minPoolSize connections to keep open once they are made.
+   * @return the pool.
+   */
+  default DataSource create(String name, String url, int minPoolSize) {
+    return create(name, url, Optional.empty(), minPoolSize);
+  }
+
+  /**
+   * Creates a pool of connections to a schema of the database. Each connection is set to the schema when made, so
+   * statements cached by the connection are always for that schema.
+   *
+   * @param name        of the datasource, used to tag the pool's metrics.
+   * @param url         of the database.
+   * @param schema      the connections use, if not the default one.
+   * @param minPoolSize connections to keep open once they are made.
+   * @return the pool.
+   */
+  DataSource create(String name, String url, Optional<String> schema, int minPoolSize);
+
+  /**
+   * Number of connections of a pool made by this engine that are in use.
+   *
+   * @param dataSource the pool.
+   * @return the count.
+   */
+  int active(DataSource dataSource);
+
+  /**
+   * Closes a pool made by this engine, and the connections it holds that are not in use. Connections in use are
+   * closed as they are returned.
+   *
+   * @param dataSource the pool to close.
+   */
+  void close(DataSource dataSource);
+
+}
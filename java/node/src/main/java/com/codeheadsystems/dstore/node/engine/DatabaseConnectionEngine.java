@@ -24,13 +24,20 @@ import com.codeheadsystems.dstore.node.manager.ControlPlaneManager;
 import com.codeheadsystems.dstore.node.model.NodeInternalConfiguration;
 import com.codeheadsystems.dstore.node.model.TenantTable;
 import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.google.common.hash.Hashing;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.security.Security;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.Stream;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -40,6 +47,13 @@ import org.slf4j.LoggerFactory;
 /**
  * Handles getting the connection URL with security enabled for hsqldb. It can do the
  * actual connection itself, but odds are this will move to a pooler.
+ *
+ * <p>A table either has its own database, encrypted with its own key, or lives in its own schema in one of the shared
+ * storage shards. The shards are encrypted only with the node's key, so only tenants listed as shared in the node
+ * configuration have tables put in them. Every other tenant's tables get their own database.
+ *
+ * <p>Databases stay open until they are shut down explicitly, not when their last connection closes, so a pool that
+ * trims its idle connections does not close the database under a table that is still in use.
  */
 @Singleton
 public class DatabaseConnectionEngine {
@@ -48,6 +62,7 @@ public class DatabaseConnectionEngine {
    * Identifier.
    */
   public static final String INTERNAL_DB_NAME = "nodeInternalDb";
+  private static final String SHARD_DB_NAME = "shard-%03d";
   private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseConnectionEngine.class);
   private static final String CONNECTION_URL =
       "jdbc:hsqldb:file:%s/database;crypt_key=%s;crypt_iv=%s;crypt_type=AES/GCM-SIV/NoPadding;crypt_provider=BC;";
@@ -98,6 +113,21 @@ public class DatabaseConnectionEngine {
     }
   }
 
+  /**
+   * Shuts the database down cleanly, closing its files. Any connections still open to it are closed too.
+   *
+   * @param connectionUrl of the database.
+   */
+  public void shutdown(final String connectionUrl) {
+    LOGGER.trace("shutdown()"); // DO NOT LOG THE CONNECTION URL EVER!
+    try (final Connection connection = connection(connectionUrl);
+         final Statement statement = connection.createStatement()) {
+      statement.execute("SHUTDOWN");
+    } catch (SQLException e) {
+      throw new IllegalArgumentException("Unable to shut down database", e);
+    }
+  }
+
   /**
    * Gets the connection URL for the tenant.
    *
@@ -106,14 +136,87 @@ public class DatabaseConnectionEngine {
    */
   public String getTenantConnectionUrl(final TenantTable tenantTable) {
     LOGGER.trace("getTenantConnectionUrl({})", tenantTable);
-    final TenantTableIdentifier identifier = tenantTable.identifier();
-    final String name = String.format("%s-%s", identifier.tenantId(), identifier.tableName());
-    final String directory = getDatabasePath(name);
+    final Optional<Integer> shard = tenantTable.storageShard();
+    if (shard.isPresent()) {
+      return getShardConnectionUrl(shard.get());
+    }
+    final String directory = getDatabasePath(tenantDatabaseName(tenantTable.identifier()));
     final byte[] key = cryptUtils.xor(tenantTable.key(), controlPlaneManager.keyForTenant(tenantTable.identifier().tenantId()));
     final byte[] nonce = cryptUtils.fromBase64(tenantTable.nonce());
     return getConnectionUrl(directory, key, nonce);
   }
 
+  /**
+   * Deletes the files of the table's own database. The database must be shut down first.
+   *
+   * @param tenantTable whose database to delete, not in shared storage.
+   */
+  public void deleteTenantDatabase(final TenantTable tenantTable) {
+    LOGGER.trace("deleteTenantDatabase({})", tenantTable.identifier());
+    if (tenantTable.storageShard().isPresent()) {
+      throw new IllegalArgumentException("Table is in shared storage: " + tenantTable.identifier());
+    }
+    final Path directory = Path.of(nodeConfiguration.getDatabaseDirectory(),
+        tenantDatabaseName(tenantTable.identifier()));
+    if (!Files.exists(directory)) {
+      return;
+    }
+    try (final Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Unable to delete directory: " + directory, e);
+    }
+  }
+
+  private String tenantDatabaseName(final TenantTableIdentifier identifier) {
+    return String.format("%s-%s", identifier.tenantId(), identifier.tableName());
+  }
+
+  /**
+   * Gets the connection URL for a shard of the shared storage. Each shard has its own nonce.
+   *
+   * @param shard to use.
+   * @return the URL.
+   */
+  public String getShardConnectionUrl(final int shard) {
+    LOGGER.trace("getShardConnectionUrl({})", shard);
+    final String directory = getDatabasePath(String.format(SHARD_DB_NAME, shard));
+    final byte[] key = cryptUtils.xor(nodeInternalConfiguration.key(), controlPlaneManager.keyForNode());
+    final byte[] nonce = cryptUtils.fromBase64(nodeInternalConfiguration.nonce()).clone();
+    for (int i = 0; i < Integer.BYTES && i < nonce.length; i++) {
+      nonce[nonce.length - 1 - i] ^= (byte) (shard >>> (8 * i));
+    }
+    return getConnectionUrl(directory, key, nonce);
+  }
+
+  /**
+   * The schema the table is kept in, if it is in shared storage. Tables with their own database use the default one.
+   * The name comes from the table's key, so a table that is recreated does not see the old one's data.
+   *
+   * @param tenantTable to use.
+   * @return the schema.
+   */
+  public Optional<String> getTenantSchema(final TenantTable tenantTable) {
+    return tenantTable.storageShard().map(shard -> "T" + Hashing.sha256()
+        .hashString(tenantTable.identifier().tenantId() + "/" + tenantTable.identifier().tableName() + "/" + tenantTable.key(),
+            StandardCharsets.UTF_8)
+        .toString().substring(0, 32).toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Picks the shard of the shared storage for the table.
+   *
+   * @param identifier of the table.
+   * @return the shard.
+   */
+  public int shardFor(final TenantTableIdentifier identifier) {
+    return Hashing.consistentHash(
+        Hashing.sha256().hashString(identifier.tenantId() + "/" + identifier.tableName(), StandardCharsets.UTF_8),
+        nodeConfiguration.getStorageShards());
+  }
+
   /**
    * Generates the internal database to use.
    *
@@ -16,7 +16,21 @@
 
 package com.codeheadsystems.dstore.node.engine;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import liquibase.Contexts;
@@ -32,11 +46,20 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Initializes the database using the proper liquibase files. Needed for provisioning a new datastore.
+ *
+ * <p>Once liquibase has run, a fingerprint of the changelog is saved in the database. Opening the database again
+ * with the same changelog skips liquibase, which is most of the cost of opening a table. Each changelog creates the
+ * SCHEMA_FINGERPRINT table the fingerprint is saved in.
  */
 @Singleton
 public class DatabaseInitializationEngine {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseInitializationEngine.class);
+  private static final String CHANGELOG = "/liquibase-setup.xml";
+  private static final Pattern INCLUDE = Pattern.compile("<include\\s+file=\"([^\"]+)\"");
+  private static final String FINGERPRINT_TABLE = "SCHEMA_FINGERPRINT";
+
+  private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
 
   /**
    * Default constructor.
@@ -54,20 +77,90 @@ public class DatabaseInitializationEngine {
    */
   public void initialize(final Connection connection,
                          final String path) {
+    final String fingerprint = fingerprints.computeIfAbsent(path, DatabaseInitializationEngine::fingerprint);
+    if (storedFingerprint(connection, path).filter(fingerprint::equals).isPresent()) {
+      LOGGER.debug("initialize({}): current", path);
+      return;
+    }
     LOGGER.info("initialize({})", path); // INFO because this is rare
     try {
       Database database = DatabaseFactory.getInstance()
           .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+      // Tables in shared storage each have their own schema.
+      database.setDefaultSchemaName(connection.getSchema());
       Liquibase liquibase = new liquibase.Liquibase(
-          path + "/liquibase-setup.xml",
+          path + CHANGELOG,
           new ClassLoaderResourceAccessor(),
           database
       );
       liquibase.update(new Contexts(), new LabelExpression());
+      storeFingerprint(connection, path, fingerprint);
       LOGGER.info("complete");
-    } catch (LiquibaseException e) {
+    } catch (LiquibaseException | SQLException e) {
       throw new IllegalStateException("Database update failure", e);
     }
   }
 
+  /**
+   * Hashes the changelog and the files it includes.
+   *
+   * @param path where the liquibase files are.
+   * @return the fingerprint, as hex.
+   */
+  private static String fingerprint(final String path) {
+    final Hasher hasher = Hashing.sha256().newHasher();
+    final byte[] changelog = resource(path + CHANGELOG);
+    hasher.putBytes(changelog);
+    final Matcher matcher = INCLUDE.matcher(new String(changelog, StandardCharsets.UTF_8));
+    while (matcher.find()) {
+      hasher.putString(matcher.group(1), StandardCharsets.UTF_8);
+      hasher.putBytes(resource(path + "/" + matcher.group(1)));
+    }
+    return hasher.hash().toString();
+  }
+
+  private static byte[] resource(final String name) {
+    try (final InputStream in = DatabaseInitializationEngine.class.getClassLoader().getResourceAsStream(name)) {
+      if (in == null) {
+        throw new IllegalStateException("No such liquibase file: " + name);
+      }
+      return in.readAllBytes();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Optional<String> storedFingerprint(final Connection connection, final String path) {
+    try (final ResultSet tables = connection.getMetaData().getTables(null, connection.getSchema(), FINGERPRINT_TABLE, null)) {
+      if (!tables.next()) {
+        return Optional.empty();
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to read the schema fingerprint", e);
+    }
+    try (final PreparedStatement ps = connection.prepareStatement(
+        "select FINGERPRINT from " + FINGERPRINT_TABLE + " where PATH = ?")) {
+      ps.setString(1, path);
+      try (final ResultSet rs = ps.executeQuery()) {
+        return rs.next() ? Optional.of(rs.getString(1)) : Optional.empty();
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to read the schema fingerprint", e);
+    }
+  }
+
+  private void storeFingerprint(final Connection connection, final String path, final String fingerprint) {
+    try (final PreparedStatement ps = connection.prepareStatement("merge into " + FINGERPRINT_TABLE
+        + " using (values (cast(? as varchar(256)), cast(? as varchar(64)))) as vals(PATH, FINGERPRINT)"
+        + " on " + FINGERPRINT_TABLE + ".PATH = vals.PATH"
+        + " when matched then update set " + FINGERPRINT_TABLE + ".FINGERPRINT = vals.FINGERPRINT"
+        + " when not matched then insert values (vals.PATH, vals.FINGERPRINT)")) {
+      ps.setString(1, path);
+      ps.setString(2, fingerprint);
+      ps.executeUpdate();
+    } catch (SQLException e) {
+      throw new IllegalStateException("Unable to save the schema fingerprint", e);
+    }
+  }
+
 }
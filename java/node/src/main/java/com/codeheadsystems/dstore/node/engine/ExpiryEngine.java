@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.engine;
+
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.time.Clock;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Decides if an entity has expired. A table with a ttl attribute expires each entity once the epoch seconds held in
+ * that attribute have passed. Entities without the attribute, or with a non-integer value, never expire.
+ */
+@Singleton
+public class ExpiryEngine {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExpiryEngine.class);
+
+  private final Clock clock;
+
+  /**
+   * Default constructor.
+   *
+   * @param clock for the current time.
+   */
+  @Inject
+  public ExpiryEngine(final Clock clock) {
+    LOGGER.info("ExpiryEngine({})", clock);
+    this.clock = clock;
+  }
+
+  /**
+   * The current time in epoch seconds, as compared against the ttl attribute.
+   *
+   * @return now.
+   */
+  public long now() {
+    return clock.instant().getEpochSecond();
+  }
+
+  /**
+   * Checks if the entity has expired.
+   *
+   * @param tenantTable the table the entity is in.
+   * @param entity      the entity data.
+   * @return true if it has expired.
+   */
+  public boolean isExpired(final TenantTable tenantTable, final JsonNode entity) {
+    return expiry(tenantTable, entity).filter(expiry -> expiry <= now()).isPresent();
+  }
+
+  /**
+   * The epoch seconds the entity expires at, if it expires.
+   *
+   * @param tenantTable the table the entity is in.
+   * @param entity      the entity data.
+   * @return the expiry.
+   */
+  public Optional<Long> expiry(final TenantTable tenantTable, final JsonNode entity) {
+    return tenantTable.ttlAttribute()
+        .map(entity::get)
+        .filter(value -> value.isIntegralNumber() && value.canConvertToLong())
+        .map(JsonNode::longValue);
+  }
+
+}
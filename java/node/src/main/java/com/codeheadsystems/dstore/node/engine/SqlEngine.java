@@ -18,6 +18,7 @@ package com.codeheadsystems.dstore.node.engine;
 
 import com.codeheadsystems.dstore.node.manager.DataSourceManager;
 import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
 import com.codeheadsystems.metrics.Metrics;
 import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.MeterRegistry;
@@ -28,7 +29,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -55,7 +58,10 @@ public class SqlEngine {
    * Identifier for metrics name.
    */
   public static final String SQLENGINE_EXECUTE_CONNECTION = "SqlEngine.executeConnection";
-
+  /**
+   * Identifier for metrics name.
+   */
+  public static final String SQLENGINE_EXECUTE_TRANSACTION = "SqlEngine.executeTransaction";
   /**
    * Used to identify internal queries.
    */
@@ -64,6 +70,8 @@ public class SqlEngine {
 
   private final Metrics metrics;
   private final MeterRegistry meterRegistry;
+  private final SqlMeters internalMeters;
+  private final Map<TenantTableIdentifier, SqlMeters> tenantMeters = new ConcurrentHashMap<>();
   private final DataSourceManager dataSourceManager;
 
   /**
@@ -78,6 +86,36 @@ public class SqlEngine {
     this.metrics = metrics;
     this.dataSourceManager = dataSourceManager;
     this.meterRegistry = metrics.registry();
+    this.internalMeters = new SqlMeters(meterRegistry, INTERNAL);
+    dataSourceManager.addCloseListener(this::dropMeters);
+  }
+
+  /**
+   * Removes the meters of the tenant table, once its datasource is closed. They are registered again if it is used.
+   *
+   * @param identifier of the table.
+   */
+  public void dropMeters(final TenantTableIdentifier identifier) {
+    LOGGER.trace("dropMeters({})", identifier);
+    final SqlMeters meters = tenantMeters.remove(identifier);
+    if (meters != null) {
+      meters.remove(meterRegistry);
+    }
+  }
+
+  /**
+   * The meters of the tenant table, looked up once so calls do not go to the registry.
+   *
+   * @param tenantTable tenant.
+   * @return the meters.
+   */
+  private SqlMeters meters(final TenantTable tenantTable) {
+    final SqlMeters existing = tenantMeters.get(tenantTable.identifier());
+    if (existing != null) {
+      return existing;
+    }
+    return tenantMeters.computeIfAbsent(tenantTable.identifier(),
+        identifier -> new SqlMeters(meterRegistry, identifier.toString()));
   }
 
   /**
@@ -91,7 +129,7 @@ public class SqlEngine {
   public <R> R executeQueryInternal(final String query,
                                     final Function<ResultSet, R> function) {
     LOGGER.trace("executeQueryInternal({})", query);
-    return executeQuery(INTERNAL,
+    return executeQuery(internalMeters,
         dataSourceManager.getInternalDataSource().orElseThrow(() -> new IllegalStateException("Database not setup")),
         query,
         function);
@@ -108,7 +146,7 @@ public class SqlEngine {
   public <R> R executePreparedInternal(final String query,
                                        final Function<PreparedStatement, R> function) {
     LOGGER.trace("executePreparedInternal({})", query);
-    return executePrepared(INTERNAL,
+    return executePrepared(internalMeters,
         dataSourceManager.getInternalDataSource().orElseThrow(() -> new IllegalStateException("Database not setup")),
         query,
         function);
@@ -123,7 +161,7 @@ public class SqlEngine {
    */
   public <R> R executeConnectionInternal(final Function<Connection, R> function) {
     LOGGER.trace("executeConnectionInternal()");
-    return executeWithConnection(INTERNAL,
+    return executeWithConnection(internalMeters,
         dataSourceManager.getInternalDataSource().orElseThrow(() -> new IllegalStateException("Database not setup")),
         function);
   }
@@ -141,7 +179,7 @@ public class SqlEngine {
                                   final String query,
                                   final Function<ResultSet, R> function) {
     LOGGER.trace("executeQueryTenant({})", query);
-    return executeQuery(tenantTable.identifier().toString(),
+    return executeQuery(meters(tenantTable),
         dataSourceManager.getDataSource(tenantTable),
         query,
         function);
@@ -160,33 +198,62 @@ public class SqlEngine {
                                      final String query,
                                      final Function<PreparedStatement, R> function) {
     LOGGER.trace("executePreparedTenant({})", query);
-    return executePrepared(tenantTable.identifier().toString(),
+    return executePrepared(meters(tenantTable),
         dataSourceManager.getDataSource(tenantTable),
         query,
         function);
   }
 
+  /**
+   * Executes the function with a connection from the tenant dataSource using metrics against the object itself.
+   *
+   * @param tenantTable tenant.
+   * @param function    that will use the connection.
+   * @param <R>         the type.
+   * @return a instance of type-r.
+   */
+  public <R> R executeConnectionTenant(final TenantTable tenantTable,
+                                       final Function<Connection, R> function) {
+    LOGGER.trace("executeConnectionTenant({})", tenantTable);
+    return executeWithConnection(meters(tenantTable),
+        dataSourceManager.getDataSource(tenantTable),
+        function);
+  }
+
+  /**
+   * Executes the function within a single transaction on the tenant dataSource. Commits if the function completes,
+   * rolls back if it throws.
+   *
+   * @param tenantTable tenant.
+   * @param function    that will use the connection. Do not commit or change the auto-commit mode.
+   * @param <R>         the type.
+   * @return a instance of type-r.
+   */
+  public <R> R executeTransactionTenant(final TenantTable tenantTable,
+                                        final Function<Connection, R> function) {
+    LOGGER.trace("executeTransactionTenant({})", tenantTable);
+    return executeTransaction(meters(tenantTable),
+        dataSourceManager.getDataSource(tenantTable),
+        function);
+  }
+
   /**
    * Executes the statement using metrics against the object itself.
    *
-   * @param datasourceLookup to get the datasource to use.
-   * @param dataSource       to execute against.
-   * @param query            to execute.
-   * @param function         that will process the result set.
-   * @param <R>              the type.
+   * @param meters     of the datasource.
+   * @param dataSource to execute against.
+   * @param query      to execute.
+   * @param function   that will process the result set.
+   * @param <R>        the type.
    * @return a instance of type-r.
    */
-  private <R> R executeQuery(final String datasourceLookup,
+  private <R> R executeQuery(final SqlMeters meters,
                              final DataSource dataSource,
                              final String query,
                              final Function<ResultSet, R> function) {
-    LOGGER.trace("executeQuery({},{})", datasourceLookup, query);
-    final Counter success =
-        meterRegistry.counter(SQLENGINE_EXECUTE, "datasource", datasourceLookup, "success", "true");
-    final Counter failure =
-        meterRegistry.counter(SQLENGINE_EXECUTE, "datasource", datasourceLookup, "success", "false");
-    final Timer timer = meterRegistry.timer(SQLENGINE_EXECUTE, "datasource", datasourceLookup);
-    return metrics.time(timer, success, failure, () -> {
+    LOGGER.trace("executeQuery({},{})", meters.datasource(), query);
+    final OperationMeters operation = meters.query();
+    return metrics.time(operation.timer(), operation.success(), operation.failure(), () -> {
       try (final Connection connection = dataSource.getConnection()) {
         try (final Statement statement = connection.createStatement()) {
           try (final ResultSet resultSet = statement.executeQuery(query)) {
@@ -202,24 +269,20 @@ public class SqlEngine {
   /**
    * Executes the prepared using metrics against the object itself. You are required to close the result set.
    *
-   * @param datasourceLookup to get the datasource to use.
-   * @param dataSource       to execute against.
-   * @param query            to execute.
-   * @param function         that will process the result set.
-   * @param <R>              the type.
+   * @param meters     of the datasource.
+   * @param dataSource to execute against.
+   * @param query      to execute.
+   * @param function   that will process the result set.
+   * @param <R>        the type.
    * @return a instance of type-r.
    */
-  private <R> R executePrepared(final String datasourceLookup,
+  private <R> R executePrepared(final SqlMeters meters,
                                 final DataSource dataSource,
                                 final String query,
                                 final Function<PreparedStatement, R> function) {
-    LOGGER.trace("executePrepared({},{})", datasourceLookup, query);
-    final Counter success =
-        meterRegistry.counter(SQLENGINE_EXECUTE_PREPARED, "datasource", datasourceLookup, "success", "true");
-    final Counter failure =
-        meterRegistry.counter(SQLENGINE_EXECUTE_PREPARED, "datasource", datasourceLookup, "success", "false");
-    final Timer timer = meterRegistry.timer(SQLENGINE_EXECUTE_PREPARED, "datasource", datasourceLookup);
-    return metrics.time(timer, success, failure, () -> {
+    LOGGER.trace("executePrepared({},{})", meters.datasource(), query);
+    final OperationMeters operation = meters.prepared();
+    return metrics.time(operation.timer(), operation.success(), operation.failure(), () -> {
       try (final Connection connection = dataSource.getConnection()) {
         try (final PreparedStatement statement = connection.prepareStatement(query)) {
           return function.apply(statement);
@@ -233,22 +296,18 @@ public class SqlEngine {
   /**
    * Executes the prepared using metrics against the object itself. You are required to close the result set.
    *
-   * @param datasourceLookup to get the datasource to use.
-   * @param dataSource       to execute against.
-   * @param function         that will process the result set.
-   * @param <R>              the type.
+   * @param meters     of the datasource.
+   * @param dataSource to execute against.
+   * @param function   that will process the result set.
+   * @param <R>        the type.
    * @return a instance of type-r.
    */
-  private <R> R executeWithConnection(final String datasourceLookup,
+  private <R> R executeWithConnection(final SqlMeters meters,
                                       final DataSource dataSource,
                                       final Function<Connection, R> function) {
-    LOGGER.trace("executeWithConnection({})", datasourceLookup);
-    final Counter success =
-        meterRegistry.counter(SQLENGINE_EXECUTE_CONNECTION, "datasource", datasourceLookup, "success", "true");
-    final Counter failure =
-        meterRegistry.counter(SQLENGINE_EXECUTE_CONNECTION, "datasource", datasourceLookup, "success", "false");
-    final Timer timer = meterRegistry.timer(SQLENGINE_EXECUTE_CONNECTION, "datasource", datasourceLookup);
-    return metrics.time(timer, success, failure, () -> {
+    LOGGER.trace("executeWithConnection({})", meters.datasource());
+    final OperationMeters operation = meters.connection();
+    return metrics.time(operation.timer(), operation.success(), operation.failure(), () -> {
       try (final Connection connection = dataSource.getConnection()) {
         return function.apply(connection);
       } catch (SQLException e) {
@@ -257,6 +316,41 @@ public class SqlEngine {
     });
   }
 
+  /**
+   * Executes the function in a transaction using metrics against the object itself.
+   *
+   * @param meters     of the datasource.
+   * @param dataSource to execute against.
+   * @param function   that will use the connection.
+   * @param <R>        the type.
+   * @return a instance of type-r.
+   */
+  private <R> R executeTransaction(final SqlMeters meters,
+                                   final DataSource dataSource,
+                                   final Function<Connection, R> function) {
+    LOGGER.trace("executeTransaction({})", meters.datasource());
+    final OperationMeters operation = meters.transaction();
+    return metrics.time(operation.timer(), operation.success(), operation.failure(), () -> {
+      try (final Connection connection = dataSource.getConnection()) {
+        final boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+          final R result = function.apply(connection);
+          connection.commit();
+          return result;
+        } catch (RuntimeException | SQLException e) {
+          LOGGER.debug("Rolling back transaction on {}", meters.datasource());
+          connection.rollback();
+          throw e;
+        } finally {
+          connection.setAutoCommit(autoCommit);
+        }
+      } catch (SQLException e) {
+        throw new IllegalArgumentException("Unable to complete sql transaction", e);
+      }
+    });
+  }
+
   /**
    * Helper method to manage nullable fields.
    *
@@ -292,4 +386,44 @@ public class SqlEngine {
       preparedStatement.setNull(colNumber, Types.BIGINT);
     }
   }
+
+  /**
+   * The timer and counters of one kind of call.
+   */
+  private record OperationMeters(Timer timer, Counter success, Counter failure) {
+
+    OperationMeters(final MeterRegistry registry, final String name, final String datasource) {
+      this(registry.timer(name, "datasource", datasource),
+          registry.counter(name, "datasource", datasource, "success", "true"),
+          registry.counter(name, "datasource", datasource, "success", "false"));
+    }
+
+    void remove(final MeterRegistry registry) {
+      registry.remove(timer);
+      registry.remove(success);
+      registry.remove(failure);
+    }
+  }
+
+  /**
+   * The meters of one datasource, tagged with its name.
+   */
+  private record SqlMeters(String datasource, OperationMeters query, OperationMeters prepared,
+                           OperationMeters connection, OperationMeters transaction) {
+
+    SqlMeters(final MeterRegistry registry, final String datasource) {
+      this(datasource,
+          new OperationMeters(registry, SQLENGINE_EXECUTE, datasource),
+          new OperationMeters(registry, SQLENGINE_EXECUTE_PREPARED, datasource),
+          new OperationMeters(registry, SQLENGINE_EXECUTE_CONNECTION, datasource),
+          new OperationMeters(registry, SQLENGINE_EXECUTE_TRANSACTION, datasource));
+    }
+
+    void remove(final MeterRegistry registry) {
+      query.remove(registry);
+      prepared.remove(registry);
+      connection.remove(registry);
+      transaction.remove(registry);
+    }
+  }
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Copies the tables of a tenant table from one storage to another, for moving a table between its own database and
+ * shared storage. Works on whatever tables the table's liquibase files made, so it does not depend on the table
+ * version.
+ */
+@Singleton
+public class StorageCopyEngine {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(StorageCopyEngine.class);
+  private static final Set<String> SKIPPED = Set.of("DATABASECHANGELOG", "DATABASECHANGELOGLOCK", "SCHEMA_FINGERPRINT");
+  private static final int BATCH_SIZE = 1000;
+
+  /**
+   * Default constructor.
+   */
+  @Inject
+  public StorageCopyEngine() {
+    LOGGER.info("StorageCopyEngine()");
+  }
+
+  /**
+   * Copies the rows of every table in the source's schema to the same table in the target's schema, in one
+   * transaction. The target tables must already exist. Rows already in them, say from an earlier move of the table
+   * out of that storage, are replaced.
+   *
+   * @param source to copy from.
+   * @param target to copy to.
+   * @return how many rows were copied.
+   */
+  public long copy(final Connection source, final Connection target) {
+    LOGGER.trace("copy()");
+    try {
+      final boolean autoCommit = target.getAutoCommit();
+      target.setAutoCommit(false);
+      try {
+        long rows = 0;
+        for (String table : tables(source)) {
+          rows += copy(source, target, table);
+        }
+        target.commit();
+        return rows;
+      } catch (SQLException | RuntimeException e) {
+        target.rollback();
+        throw e;
+      } finally {
+        target.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException e) {
+      throw new IllegalArgumentException("Unable to copy the table storage", e);
+    }
+  }
+
+  private List<String> tables(final Connection source) throws SQLException {
+    final List<String> tables = new ArrayList<>();
+    try (final ResultSet rs = source.getMetaData().getTables(null, source.getSchema(), "%", new String[]{"TABLE"})) {
+      while (rs.next()) {
+        final String table = rs.getString("TABLE_NAME");
+        if (!SKIPPED.contains(table)) {
+          tables.add(table);
+        }
+      }
+    }
+    return tables;
+  }
+
+  private long copy(final Connection source, final Connection target, final String table) throws SQLException {
+    long rows = 0;
+    try (final Statement delete = target.createStatement()) {
+      delete.execute("delete from \"" + table + "\"");
+    }
+    try (final Statement select = source.createStatement();
+         final ResultSet rs = select.executeQuery("select * from \"" + table + "\"")) {
+      final ResultSetMetaData metaData = rs.getMetaData();
+      final int columns = metaData.getColumnCount();
+      final List<String> names = new ArrayList<>();
+      for (int i = 1; i <= columns; i++) {
+        names.add('"' + metaData.getColumnName(i) + '"');
+      }
+      final String insert = "insert into \"" + table + "\" (" + String.join(",", names) + ") values ("
+          + names.stream().map(name -> "?").collect(Collectors.joining(",")) + ")";
+      try (final PreparedStatement ps = target.prepareStatement(insert)) {
+        while (rs.next()) {
+          for (int i = 1; i <= columns; i++) {
+            if (metaData.getColumnType(i) == Types.BLOB) {
+              ps.setBytes(i, rs.getBytes(i));
+            } else {
+              ps.setObject(i, rs.getObject(i), metaData.getColumnType(i));
+            }
+          }
+          ps.addBatch();
+          if (++rows % BATCH_SIZE == 0) {
+            ps.executeBatch();
+          }
+        }
+        ps.executeBatch();
+      }
+    }
+    LOGGER.debug("copy({}): {} rows", table, rows);
+    return rows;
+  }
+
+}
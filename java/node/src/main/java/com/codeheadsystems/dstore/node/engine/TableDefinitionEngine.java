@@ -16,10 +16,23 @@
 
 package com.codeheadsystems.dstore.node.engine;
 
+import com.codeheadsystems.dstore.node.exception.UnsupportedTableOperationException;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.IndexLookupRequest;
+import com.codeheadsystems.dstore.node.model.QueryRequest;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import com.codeheadsystems.dstore.node.model.ScanRequest;
 import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.google.common.hash.HashFunction;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
 /**
@@ -60,6 +73,88 @@ public interface TableDefinitionEngine {
    */
   Optional<JsonNode> read(TenantTable tenantTable, String entity);
 
+  /**
+   * Reads only the named attributes of the entity. An empty collection reads every attribute.
+   *
+   * @param tenantTable table to read from.
+   * @param entity      the entity id.
+   * @param attributes  the attributes wanted.
+   * @return a json node if found, holding only the requested attributes it has.
+   */
+  Optional<JsonNode> read(TenantTable tenantTable, String entity, Collection<String> attributes);
+
+  /**
+   * Reads many entities from the table at once. Entities that are not found are not in the result.
+   *
+   * @param tenantTable table to read from.
+   * @param entities    the entity ids.
+   * @return map of entity id to json node, in the order requested.
+   */
+  Map<String, JsonNode> readMany(TenantTable tenantTable, Collection<String> entities);
+
+  /**
+   * Scans one segment of the table in (hash, id) order, handing each entity to the consumer as it is read so
+   * nothing is held in memory.
+   *
+   * @param tenantTable table to scan.
+   * @param request     the segment, page size and where to start.
+   * @param consumer    gets each entity id and its data.
+   * @return the position to continue after if the limit was hit and more remain, else empty.
+   */
+  Optional<ScanPosition> scan(TenantTable tenantTable, ScanRequest request, BiConsumer<String, JsonNode> consumer);
+
+  /**
+   * If the engine has a sort key, so supports {@link #query(TenantTable, QueryRequest)}.
+   *
+   * @return boolean if queries are supported.
+   */
+  default boolean supportsQuery() {
+    return false;
+  }
+
+  /**
+   * If the engine maintains secondary indexes, so supports {@link #lookup(TenantTable, IndexLookupRequest)}.
+   *
+   * @return boolean if lookups are supported.
+   */
+  default boolean supportsLookup() {
+    return false;
+  }
+
+  /**
+   * If the engine supports {@link #transact(TenantTable, List)}.
+   *
+   * @return boolean if transactions are supported.
+   */
+  default boolean supportsTransactions() {
+    return false;
+  }
+
+  /**
+   * Queries one partition of the table by sort key. Only engines that have a sort key support this.
+   *
+   * @param tenantTable table to query.
+   * @param request     the partition, sort key range and page.
+   * @return the page of results.
+   * @throws UnsupportedTableOperationException if the engine does not support it.
+   */
+  default QueryResult query(final TenantTable tenantTable, final QueryRequest request) {
+    throw new UnsupportedTableOperationException("Query is not supported by " + definitionName());
+  }
+
+  /**
+   * Finds the entities whose indexed attribute has the value, and reads them. Only engines that maintain secondary
+   * indexes support this.
+   *
+   * @param tenantTable table to read from.
+   * @param request     the attribute, value and page.
+   * @return the page of results, keyed by entity id.
+   * @throws UnsupportedTableOperationException if the engine does not support it.
+   */
+  default QueryResult lookup(final TenantTable tenantTable, final IndexLookupRequest request) {
+    throw new UnsupportedTableOperationException("Index lookups are not supported by " + definitionName());
+  }
+
   /**
    * Writes the entity to the table.
    *
@@ -69,6 +164,81 @@ public interface TableDefinitionEngine {
    */
   void write(TenantTable tenantTable, String entity, final JsonNode data);
 
+  /**
+   * Writes the entity to the table only if all the conditions hold against the existing entity. The check and the
+   * write are atomic.
+   *
+   * @param tenantTable table to write to.
+   * @param entity      the entity id.
+   * @param data        the data.
+   * @param conditions  that must all hold.
+   * @throws com.codeheadsystems.dstore.node.exception.ConditionFailedException if a condition does not hold.
+   */
+  void write(TenantTable tenantTable, String entity, JsonNode data, Collection<Condition> conditions);
+
+  /**
+   * Writes and deletes many entities in a single transaction. Either all of them are applied or none are. If an
+   * entity is in both, the write wins.
+   *
+   * @param tenantTable table to write to.
+   * @param writes      entities to write, keyed by entity id. Each replaces the existing entity.
+   * @param deletes     entity ids to delete.
+   */
+  void writeMany(TenantTable tenantTable, Map<String, JsonNode> writes, Collection<String> deletes);
+
+  /**
+   * Applies the puts and deletes of the items in a single transaction, if the conditions of every item hold, else
+   * applies none of them. The conditions are checked against the entities as they were before the transaction.
+   *
+   * @param tenantTable table to write to.
+   * @param items       the puts, deletes and condition checks, each for a different entity.
+   * @throws com.codeheadsystems.dstore.node.exception.ConditionFailedException if a condition does not hold.
+   * @throws UnsupportedTableOperationException if the engine does not support it.
+   */
+  default void transact(final TenantTable tenantTable, final List<TransactionItem> items) {
+    throw new UnsupportedTableOperationException("Transactions are not supported by " + definitionName());
+  }
+
+  /**
+   * Updates individual attributes of an existing entity. Attributes with a value are set, attributes with a
+   * json null are removed, and attributes not mentioned are left alone.
+   *
+   * @param tenantTable table to update.
+   * @param entity      the entity id.
+   * @param data        the attributes to set or remove.
+   * @return boolean if the entity existed and was updated.
+   */
+  boolean update(TenantTable tenantTable, String entity, final JsonNode data);
+
+  /**
+   * Atomically adds the delta to a numeric attribute, creating the attribute (and entity) at the delta if it does
+   * not exist yet.
+   *
+   * @param tenantTable table to update.
+   * @param entity      the entity id.
+   * @param attribute   the numeric attribute.
+   * @param delta       the amount to add, may be negative.
+   * @return the new value.
+   * @throws com.codeheadsystems.dstore.node.exception.InvalidAttributeException if the attribute is not a whole number.
+   */
+  default long increment(final TenantTable tenantTable, final String entity, final String attribute, final long delta) {
+    return increment(tenantTable, entity, attribute, delta, JsonNodeFactory.instance.objectNode());
+  }
+
+  /**
+   * Atomically adds the delta to a numeric attribute, as {@link #increment(TenantTable, String, String, long)} does,
+   * and sets the other attributes in the same transaction.
+   *
+   * @param tenantTable table to update.
+   * @param entity      the entity id.
+   * @param attribute   the numeric attribute.
+   * @param delta       the amount to add, may be negative.
+   * @param attributes  other attributes to set along with the increment.
+   * @return the new value.
+   * @throws com.codeheadsystems.dstore.node.exception.InvalidAttributeException if the attribute is not a whole number.
+   */
+  long increment(TenantTable tenantTable, String entity, String attribute, long delta, JsonNode attributes);
+
   /**
    * Delete the entity from the table, returning the JsonNode.
    *
@@ -77,4 +247,16 @@ public interface TableDefinitionEngine {
    * @return boolean if anything was deleted.
    */
   boolean delete(TenantTable tenantTable, String entity);
+
+  /**
+   * Delete the entity from the table only if all the conditions hold against it. The check and the delete are
+   * atomic.
+   *
+   * @param tenantTable table to delete from.
+   * @param entity      the entity id.
+   * @param conditions  that must all hold.
+   * @return boolean if anything was deleted.
+   * @throws com.codeheadsystems.dstore.node.exception.ConditionFailedException if a condition does not hold.
+   */
+  boolean delete(TenantTable tenantTable, String entity, Collection<Condition> conditions);
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.ConnectionPoolEngine;
+import com.codeheadsystems.metrics.Metrics;
+import com.mchange.v2.c3p0.ComboPooledDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pools connections with c3p0. Each pool has its own helper threads. c3p0 does not expose how long callers wait for a
+ * connection or how often its statement cache is hit, so only the active connections are reported.
+ */
+@Singleton
+public class C3p0ConnectionPoolEngine implements ConnectionPoolEngine {
+
+  /**
+   * Name of the engine in the node configuration.
+   */
+  public static final String NAME = "c3p0";
+  private static final Logger LOGGER = LoggerFactory.getLogger(C3p0ConnectionPoolEngine.class);
+  private static final long DRAIN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long DRAIN_POLL_MILLIS = 10;
+
+  private final MeterRegistry meterRegistry;
+  private final int statementCacheSize;
+  private final Map<DataSource, Pool> pools = new ConcurrentHashMap<>();
+  private final Map<String, Pool> meterOwners = new ConcurrentHashMap<>();
+
+  /**
+   * Default constructor.
+   *
+   * @param metrics       for analytics.
+   * @param configuration for the size of the statement cache.
+   */
+  @Inject
+  public C3p0ConnectionPoolEngine(final Metrics metrics,
+                                  final NodeConfiguration configuration) {
+    LOGGER.info("C3p0ConnectionPoolEngine({},{})", metrics, configuration.getStatementCacheSize());
+    this.meterRegistry = metrics.registry();
+    this.statementCacheSize = configuration.getStatementCacheSize();
+  }
+
+  /**
+   * Each connection keeps up to statementCacheSize prepared statements, so the same query on the same connection is
+   * not parsed again. The databases are in process, so connections are tested as they are returned and while idle
+   * rather than on every checkout.
+   */
+  @Override
+  public DataSource create(final String name, final String url, final Optional<String> schema, final int minPoolSize) {
+    LOGGER.trace("create({}) (If you are stuck here, Likely AES failure, your db and keys do not match)", name);
+    final ComboPooledDataSource cpds = new ComboPooledDataSource();
+    cpds.setJdbcUrl(url);
+    cpds.setUser("SA");
+    cpds.setPassword("");
+    cpds.setMinPoolSize(minPoolSize);
+    cpds.setAcquireIncrement(5);
+    cpds.setMaxPoolSize(20);
+    cpds.setMaxIdleTime(300);
+    cpds.setTestConnectionOnCheckin(true);
+    cpds.setIdleConnectionTestPeriod(60);
+    cpds.setMaxStatementsPerConnection(statementCacheSize);
+    schema.ifPresent(value -> {
+      cpds.setExtensions(Map.of(C3p0SchemaConnectionCustomizer.SCHEMA, value));
+      cpds.setConnectionCustomizerClassName(C3p0SchemaConnectionCustomizer.class.getName());
+    });
+    final Pool pool = meterOwners.compute(name, (key, previous) -> {
+      if (previous != null) {
+        meterRegistry.remove(previous.activeGauge());
+      }
+      return new Pool(name, cpds, Gauge.builder(ACTIVE, cpds, C3p0ConnectionPoolEngine::active)
+          .tag("datasource", name)
+          .register(meterRegistry));
+    });
+    pools.put(cpds, pool);
+    return cpds;
+  }
+
+  @Override
+  public int active(final DataSource dataSource) {
+    return (int) active((ComboPooledDataSource) dataSource);
+  }
+
+  /**
+   * c3p0 closes connections that are checked out along with the pool, so this waits for them to be returned first.
+   */
+  @Override
+  public void close(final DataSource dataSource) {
+    final ComboPooledDataSource cpds = (ComboPooledDataSource) dataSource;
+    final long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MILLIS;
+    try {
+      while (active(cpds) > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(DRAIN_POLL_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    final Pool pool = pools.remove(dataSource);
+    if (pool != null) {
+      meterOwners.computeIfPresent(pool.name(), (key, owner) -> {
+        if (owner != pool) {
+          return owner;
+        }
+        meterRegistry.remove(pool.activeGauge());
+        return null;
+      });
+    }
+    cpds.close();
+  }
+
+  private static double active(final ComboPooledDataSource dataSource) {
+    try {
+      return dataSource.getNumBusyConnectionsDefaultUser();
+    } catch (SQLException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * A pool and the gauge registered for it. The gauge is shared by name, so only the latest pool with a name owns it.
+   */
+  private record Pool(String name, ComboPooledDataSource dataSource, Gauge activeGauge) {
+  }
+
+}
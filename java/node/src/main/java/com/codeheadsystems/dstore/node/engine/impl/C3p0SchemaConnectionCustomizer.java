@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import com.mchange.v2.c3p0.AbstractConnectionCustomizer;
+import java.sql.Connection;
+
+/**
+ * Sets each connection c3p0 makes to the schema given in the extensions of its pool. c3p0 creates this itself, by
+ * class name.
+ */
+public class C3p0SchemaConnectionCustomizer extends AbstractConnectionCustomizer {
+
+  /**
+   * Key of the schema in the pool's extensions.
+   */
+  public static final String SCHEMA = "schema";
+
+  @Override
+  public void onAcquire(final Connection connection, final String parentDataSourceIdentityToken) throws Exception {
+    connection.setSchema((String) extensionsForToken(parentDataSourceIdentityToken).get(SCHEMA));
+  }
+
+}
@@ -0,0 +1,633 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * A prepared statement that hands every call to the one {@link #delegate()} returns. Subclasses check their own
+ * state there, and override the calls they handle themselves.
+ */
+abstract class DelegatingPreparedStatement implements PreparedStatement {
+
+  /**
+   * The prepared statement to hand the call to.
+   *
+   * @return the prepared statement.
+   * @throws SQLException if it can no longer be used.
+   */
+  protected abstract PreparedStatement delegate() throws SQLException;
+
+  @Override
+  public ResultSet executeQuery(final String sql) throws SQLException {
+    return delegate().executeQuery(sql);
+  }
+
+  @Override
+  public int executeUpdate(final String sql) throws SQLException {
+    return delegate().executeUpdate(sql);
+  }
+
+  @Override
+  public void close() throws SQLException {
+    delegate().close();
+  }
+
+  @Override
+  public int getMaxFieldSize() throws SQLException {
+    return delegate().getMaxFieldSize();
+  }
+
+  @Override
+  public void setMaxFieldSize(final int max) throws SQLException {
+    delegate().setMaxFieldSize(max);
+  }
+
+  @Override
+  public int getMaxRows() throws SQLException {
+    return delegate().getMaxRows();
+  }
+
+  @Override
+  public void setMaxRows(final int max) throws SQLException {
+    delegate().setMaxRows(max);
+  }
+
+  @Override
+  public void setEscapeProcessing(final boolean enable) throws SQLException {
+    delegate().setEscapeProcessing(enable);
+  }
+
+  @Override
+  public int getQueryTimeout() throws SQLException {
+    return delegate().getQueryTimeout();
+  }
+
+  @Override
+  public void setQueryTimeout(final int seconds) throws SQLException {
+    delegate().setQueryTimeout(seconds);
+  }
+
+  @Override
+  public void cancel() throws SQLException {
+    delegate().cancel();
+  }
+
+  @Override
+  public SQLWarning getWarnings() throws SQLException {
+    return delegate().getWarnings();
+  }
+
+  @Override
+  public void clearWarnings() throws SQLException {
+    delegate().clearWarnings();
+  }
+
+  @Override
+  public void setCursorName(final String name) throws SQLException {
+    delegate().setCursorName(name);
+  }
+
+  @Override
+  public boolean execute(final String sql) throws SQLException {
+    return delegate().execute(sql);
+  }
+
+  @Override
+  public ResultSet getResultSet() throws SQLException {
+    return delegate().getResultSet();
+  }
+
+  @Override
+  public int getUpdateCount() throws SQLException {
+    return delegate().getUpdateCount();
+  }
+
+  @Override
+  public boolean getMoreResults() throws SQLException {
+    return delegate().getMoreResults();
+  }
+
+  @Override
+  public void setFetchDirection(final int direction) throws SQLException {
+    delegate().setFetchDirection(direction);
+  }
+
+  @Override
+  public int getFetchDirection() throws SQLException {
+    return delegate().getFetchDirection();
+  }
+
+  @Override
+  public void setFetchSize(final int rows) throws SQLException {
+    delegate().setFetchSize(rows);
+  }
+
+  @Override
+  public int getFetchSize() throws SQLException {
+    return delegate().getFetchSize();
+  }
+
+  @Override
+  public int getResultSetConcurrency() throws SQLException {
+    return delegate().getResultSetConcurrency();
+  }
+
+  @Override
+  public int getResultSetType() throws SQLException {
+    return delegate().getResultSetType();
+  }
+
+  @Override
+  public void addBatch(final String sql) throws SQLException {
+    delegate().addBatch(sql);
+  }
+
+  @Override
+  public void clearBatch() throws SQLException {
+    delegate().clearBatch();
+  }
+
+  @Override
+  public int[] executeBatch() throws SQLException {
+    return delegate().executeBatch();
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return delegate().getConnection();
+  }
+
+  @Override
+  public boolean getMoreResults(final int current) throws SQLException {
+    return delegate().getMoreResults(current);
+  }
+
+  @Override
+  public ResultSet getGeneratedKeys() throws SQLException {
+    return delegate().getGeneratedKeys();
+  }
+
+  @Override
+  public int executeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
+    return delegate().executeUpdate(sql, autoGeneratedKeys);
+  }
+
+  @Override
+  public int executeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+    return delegate().executeUpdate(sql, columnIndexes);
+  }
+
+  @Override
+  public int executeUpdate(final String sql, final String[] columnNames) throws SQLException {
+    return delegate().executeUpdate(sql, columnNames);
+  }
+
+  @Override
+  public boolean execute(final String sql, final int autoGeneratedKeys) throws SQLException {
+    return delegate().execute(sql, autoGeneratedKeys);
+  }
+
+  @Override
+  public boolean execute(final String sql, final int[] columnIndexes) throws SQLException {
+    return delegate().execute(sql, columnIndexes);
+  }
+
+  @Override
+  public boolean execute(final String sql, final String[] columnNames) throws SQLException {
+    return delegate().execute(sql, columnNames);
+  }
+
+  @Override
+  public int getResultSetHoldability() throws SQLException {
+    return delegate().getResultSetHoldability();
+  }
+
+  @Override
+  public boolean isClosed() throws SQLException {
+    return delegate().isClosed();
+  }
+
+  @Override
+  public void setPoolable(final boolean poolable) throws SQLException {
+    delegate().setPoolable(poolable);
+  }
+
+  @Override
+  public boolean isPoolable() throws SQLException {
+    return delegate().isPoolable();
+  }
+
+  @Override
+  public void closeOnCompletion() throws SQLException {
+    delegate().closeOnCompletion();
+  }
+
+  @Override
+  public boolean isCloseOnCompletion() throws SQLException {
+    return delegate().isCloseOnCompletion();
+  }
+
+  @Override
+  public long getLargeUpdateCount() throws SQLException {
+    return delegate().getLargeUpdateCount();
+  }
+
+  @Override
+  public void setLargeMaxRows(final long max) throws SQLException {
+    delegate().setLargeMaxRows(max);
+  }
+
+  @Override
+  public long getLargeMaxRows() throws SQLException {
+    return delegate().getLargeMaxRows();
+  }
+
+  @Override
+  public long[] executeLargeBatch() throws SQLException {
+    return delegate().executeLargeBatch();
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql) throws SQLException {
+    return delegate().executeLargeUpdate(sql);
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final int autoGeneratedKeys) throws SQLException {
+    return delegate().executeLargeUpdate(sql, autoGeneratedKeys);
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final int[] columnIndexes) throws SQLException {
+    return delegate().executeLargeUpdate(sql, columnIndexes);
+  }
+
+  @Override
+  public long executeLargeUpdate(final String sql, final String[] columnNames) throws SQLException {
+    return delegate().executeLargeUpdate(sql, columnNames);
+  }
+
+  @Override
+  public String enquoteLiteral(final String val) throws SQLException {
+    return delegate().enquoteLiteral(val);
+  }
+
+  @Override
+  public String enquoteIdentifier(final String identifier, final boolean alwaysQuote) throws SQLException {
+    return delegate().enquoteIdentifier(identifier, alwaysQuote);
+  }
+
+  @Override
+  public boolean isSimpleIdentifier(final String identifier) throws SQLException {
+    return delegate().isSimpleIdentifier(identifier);
+  }
+
+  @Override
+  public String enquoteNCharLiteral(final String val) throws SQLException {
+    return delegate().enquoteNCharLiteral(val);
+  }
+
+  @Override
+  public ResultSet executeQuery() throws SQLException {
+    return delegate().executeQuery();
+  }
+
+  @Override
+  public int executeUpdate() throws SQLException {
+    return delegate().executeUpdate();
+  }
+
+  @Override
+  public void setNull(final int parameterIndex, final int sqlType) throws SQLException {
+    delegate().setNull(parameterIndex, sqlType);
+  }
+
+  @Override
+  public void setBoolean(final int parameterIndex, final boolean x) throws SQLException {
+    delegate().setBoolean(parameterIndex, x);
+  }
+
+  @Override
+  public void setByte(final int parameterIndex, final byte x) throws SQLException {
+    delegate().setByte(parameterIndex, x);
+  }
+
+  @Override
+  public void setShort(final int parameterIndex, final short x) throws SQLException {
+    delegate().setShort(parameterIndex, x);
+  }
+
+  @Override
+  public void setInt(final int parameterIndex, final int x) throws SQLException {
+    delegate().setInt(parameterIndex, x);
+  }
+
+  @Override
+  public void setLong(final int parameterIndex, final long x) throws SQLException {
+    delegate().setLong(parameterIndex, x);
+  }
+
+  @Override
+  public void setFloat(final int parameterIndex, final float x) throws SQLException {
+    delegate().setFloat(parameterIndex, x);
+  }
+
+  @Override
+  public void setDouble(final int parameterIndex, final double x) throws SQLException {
+    delegate().setDouble(parameterIndex, x);
+  }
+
+  @Override
+  public void setBigDecimal(final int parameterIndex, final BigDecimal x) throws SQLException {
+    delegate().setBigDecimal(parameterIndex, x);
+  }
+
+  @Override
+  public void setString(final int parameterIndex, final String x) throws SQLException {
+    delegate().setString(parameterIndex, x);
+  }
+
+  @Override
+  public void setBytes(final int parameterIndex, final byte[] x) throws SQLException {
+    delegate().setBytes(parameterIndex, x);
+  }
+
+  @Override
+  public void setDate(final int parameterIndex, final Date x) throws SQLException {
+    delegate().setDate(parameterIndex, x);
+  }
+
+  @Override
+  public void setTime(final int parameterIndex, final Time x) throws SQLException {
+    delegate().setTime(parameterIndex, x);
+  }
+
+  @Override
+  public void setTimestamp(final int parameterIndex, final Timestamp x) throws SQLException {
+    delegate().setTimestamp(parameterIndex, x);
+  }
+
+  @Override
+  public void setAsciiStream(final int parameterIndex, final InputStream x, final int length) throws SQLException {
+    delegate().setAsciiStream(parameterIndex, x, length);
+  }
+
+  @Override
+  @Deprecated
+  public void setUnicodeStream(final int parameterIndex, final InputStream x, final int length) throws SQLException {
+    delegate().setUnicodeStream(parameterIndex, x, length);
+  }
+
+  @Override
+  public void setBinaryStream(final int parameterIndex, final InputStream x, final int length) throws SQLException {
+    delegate().setBinaryStream(parameterIndex, x, length);
+  }
+
+  @Override
+  public void clearParameters() throws SQLException {
+    delegate().clearParameters();
+  }
+
+  @Override
+  public void setObject(final int parameterIndex, final Object x, final int targetSqlType) throws SQLException {
+    delegate().setObject(parameterIndex, x, targetSqlType);
+  }
+
+  @Override
+  public void setObject(final int parameterIndex, final Object x) throws SQLException {
+    delegate().setObject(parameterIndex, x);
+  }
+
+  @Override
+  public boolean execute() throws SQLException {
+    return delegate().execute();
+  }
+
+  @Override
+  public void addBatch() throws SQLException {
+    delegate().addBatch();
+  }
+
+  @Override
+  public void setCharacterStream(final int parameterIndex, final Reader reader, final int length) throws SQLException {
+    delegate().setCharacterStream(parameterIndex, reader, length);
+  }
+
+  @Override
+  public void setRef(final int parameterIndex, final Ref x) throws SQLException {
+    delegate().setRef(parameterIndex, x);
+  }
+
+  @Override
+  public void setBlob(final int parameterIndex, final Blob x) throws SQLException {
+    delegate().setBlob(parameterIndex, x);
+  }
+
+  @Override
+  public void setClob(final int parameterIndex, final Clob x) throws SQLException {
+    delegate().setClob(parameterIndex, x);
+  }
+
+  @Override
+  public void setArray(final int parameterIndex, final Array x) throws SQLException {
+    delegate().setArray(parameterIndex, x);
+  }
+
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException {
+    return delegate().getMetaData();
+  }
+
+  @Override
+  public void setDate(final int parameterIndex, final Date x, final Calendar cal) throws SQLException {
+    delegate().setDate(parameterIndex, x, cal);
+  }
+
+  @Override
+  public void setTime(final int parameterIndex, final Time x, final Calendar cal) throws SQLException {
+    delegate().setTime(parameterIndex, x, cal);
+  }
+
+  @Override
+  public void setTimestamp(final int parameterIndex, final Timestamp x, final Calendar cal) throws SQLException {
+    delegate().setTimestamp(parameterIndex, x, cal);
+  }
+
+  @Override
+  public void setNull(final int parameterIndex, final int sqlType, final String typeName) throws SQLException {
+    delegate().setNull(parameterIndex, sqlType, typeName);
+  }
+
+  @Override
+  public void setURL(final int parameterIndex, final URL x) throws SQLException {
+    delegate().setURL(parameterIndex, x);
+  }
+
+  @Override
+  public ParameterMetaData getParameterMetaData() throws SQLException {
+    return delegate().getParameterMetaData();
+  }
+
+  @Override
+  public void setRowId(final int parameterIndex, final RowId x) throws SQLException {
+    delegate().setRowId(parameterIndex, x);
+  }
+
+  @Override
+  public void setNString(final int parameterIndex, final String value) throws SQLException {
+    delegate().setNString(parameterIndex, value);
+  }
+
+  @Override
+  public void setNCharacterStream(final int parameterIndex, final Reader value, final long length) throws SQLException {
+    delegate().setNCharacterStream(parameterIndex, value, length);
+  }
+
+  @Override
+  public void setNClob(final int parameterIndex, final NClob value) throws SQLException {
+    delegate().setNClob(parameterIndex, value);
+  }
+
+  @Override
+  public void setClob(final int parameterIndex, final Reader reader, final long length) throws SQLException {
+    delegate().setClob(parameterIndex, reader, length);
+  }
+
+  @Override
+  public void setBlob(final int parameterIndex, final InputStream inputStream, final long length) throws SQLException {
+    delegate().setBlob(parameterIndex, inputStream, length);
+  }
+
+  @Override
+  public void setNClob(final int parameterIndex, final Reader reader, final long length) throws SQLException {
+    delegate().setNClob(parameterIndex, reader, length);
+  }
+
+  @Override
+  public void setSQLXML(final int parameterIndex, final SQLXML xmlObject) throws SQLException {
+    delegate().setSQLXML(parameterIndex, xmlObject);
+  }
+
+  @Override
+  public void setObject(final int parameterIndex,
+                        final Object x,
+                        final int targetSqlType,
+                        final int scaleOrLength) throws SQLException {
+    delegate().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+  }
+
+  @Override
+  public void setAsciiStream(final int parameterIndex, final InputStream x, final long length) throws SQLException {
+    delegate().setAsciiStream(parameterIndex, x, length);
+  }
+
+  @Override
+  public void setBinaryStream(final int parameterIndex, final InputStream x, final long length) throws SQLException {
+    delegate().setBinaryStream(parameterIndex, x, length);
+  }
+
+  @Override
+  public void setCharacterStream(final int parameterIndex, final Reader reader, final long length) throws SQLException {
+    delegate().setCharacterStream(parameterIndex, reader, length);
+  }
+
+  @Override
+  public void setAsciiStream(final int parameterIndex, final InputStream x) throws SQLException {
+    delegate().setAsciiStream(parameterIndex, x);
+  }
+
+  @Override
+  public void setBinaryStream(final int parameterIndex, final InputStream x) throws SQLException {
+    delegate().setBinaryStream(parameterIndex, x);
+  }
+
+  @Override
+  public void setCharacterStream(final int parameterIndex, final Reader reader) throws SQLException {
+    delegate().setCharacterStream(parameterIndex, reader);
+  }
+
+  @Override
+  public void setNCharacterStream(final int parameterIndex, final Reader value) throws SQLException {
+    delegate().setNCharacterStream(parameterIndex, value);
+  }
+
+  @Override
+  public void setClob(final int parameterIndex, final Reader reader) throws SQLException {
+    delegate().setClob(parameterIndex, reader);
+  }
+
+  @Override
+  public void setBlob(final int parameterIndex, final InputStream inputStream) throws SQLException {
+    delegate().setBlob(parameterIndex, inputStream);
+  }
+
+  @Override
+  public void setNClob(final int parameterIndex, final Reader reader) throws SQLException {
+    delegate().setNClob(parameterIndex, reader);
+  }
+
+  @Override
+  public void setObject(final int parameterIndex,
+                        final Object x,
+                        final SQLType targetSqlType,
+                        final int scaleOrLength) throws SQLException {
+    delegate().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+  }
+
+  @Override
+  public void setObject(final int parameterIndex, final Object x, final SQLType targetSqlType) throws SQLException {
+    delegate().setObject(parameterIndex, x, targetSqlType);
+  }
+
+  @Override
+  public long executeLargeUpdate() throws SQLException {
+    return delegate().executeLargeUpdate();
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+    return delegate().unwrap(iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) throws SQLException {
+    return delegate().isWrapperFor(iface);
+  }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTimeoutException;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * A small pool of connections to an in process HSQLDB database. Callers are handed a wrapper whose close returns the
+ * connection, and the most recently returned connection is handed out first. Connections are not tested on checkout,
+ * since an in process database does not drop them, only checked to be open when returned. There are no threads of
+ * its own, {@link EmbeddedConnectionPoolEngine} trims idle connections for all pools.
+ *
+ * <p>Each connection keeps its prepared statements, keyed by their sql. Closing one returns it to the connection
+ * with its parameters cleared.
+ */
+class EmbeddedConnectionPool implements DataSource {
+
+  private static final String USER = "SA";
+  private static final String PASSWORD = "";
+
+  private final String name;
+  private final String url;
+  private final Optional<String> schema;
+  private final int minPoolSize;
+  private final int statementCacheSize;
+  private final long checkoutTimeoutMillis;
+  private final Semaphore permits;
+  private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+  private final AtomicInteger active = new AtomicInteger();
+  private final Timer waitTimer;
+  private final Counter statementCacheHit;
+  private final Counter statementCacheMiss;
+  private volatile boolean closed = false;
+  private volatile PrintWriter logWriter;
+  private volatile int loginTimeout;
+
+  /**
+   * Constructor.
+   *
+   * @param name                  of the datasource.
+   * @param url                   of the database.
+   * @param schema                connections are set to, if not the default one.
+   * @param minPoolSize           connections kept when trimming.
+   * @param maxPoolSize           connections that can be in use at once.
+   * @param statementCacheSize    prepared statements kept per connection.
+   * @param checkoutTimeoutMillis how long to wait for a connection.
+   * @param waitTimer             records the wait for a connection.
+   * @param statementCacheHit     counts statements found in a connection's cache.
+   * @param statementCacheMiss    counts statements prepared because none was cached.
+   */
+  EmbeddedConnectionPool(final String name,
+                         final String url,
+                         final Optional<String> schema,
+                         final int minPoolSize,
+                         final int maxPoolSize,
+                         final int statementCacheSize,
+                         final long checkoutTimeoutMillis,
+                         final Timer waitTimer,
+                         final Counter statementCacheHit,
+                         final Counter statementCacheMiss) {
+    this.name = name;
+    this.url = url;
+    this.schema = schema;
+    this.minPoolSize = minPoolSize;
+    this.statementCacheSize = statementCacheSize;
+    this.checkoutTimeoutMillis = checkoutTimeoutMillis;
+    this.permits = new Semaphore(maxPoolSize, true);
+    this.waitTimer = waitTimer;
+    this.statementCacheHit = statementCacheHit;
+    this.statementCacheMiss = statementCacheMiss;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (closed) {
+      throw new SQLException("Connection pool is closed: " + name);
+    }
+    final long start = System.nanoTime();
+    try {
+      if (!permits.tryAcquire(checkoutTimeoutMillis, TimeUnit.MILLISECONDS)) {
+        throw new SQLTimeoutException("Timed out waiting for a connection: " + name);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted waiting for a connection: " + name, e);
+    }
+    waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    try {
+      PooledConnection pooled = idle.pollFirst();
+      if (pooled == null) {
+        pooled = new PooledConnection(connect());
+      }
+      active.incrementAndGet();
+      return pooled.checkout();
+    } catch (SQLException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  private Connection connect() throws SQLException {
+    final Connection connection = DriverManager.getConnection(url, USER, PASSWORD);
+    if (schema.isPresent()) {
+      try {
+        connection.setSchema(schema.get());
+      } catch (SQLException e) {
+        connection.close();
+        throw e;
+      }
+    }
+    return connection;
+  }
+
+  /**
+   * Number of connections in use.
+   *
+   * @return the count.
+   */
+  int active() {
+    return active.get();
+  }
+
+  /**
+   * Number of open connections not in use.
+   *
+   * @return the count.
+   */
+  int idle() {
+    return idle.size();
+  }
+
+  /**
+   * Closes the connections that have not been used for the given time, down to the minimum pool size.
+   *
+   * @param maxIdleNanos how long a connection can go unused.
+   */
+  void trim(final long maxIdleNanos) {
+    final long now = System.nanoTime();
+    while (idle.size() > minPoolSize) {
+      final PooledConnection oldest = idle.peekLast();
+      if (oldest == null || now - oldest.lastUsed < maxIdleNanos) {
+        return;
+      }
+      if (idle.removeLastOccurrence(oldest)) {
+        oldest.closeQuietly();
+      }
+    }
+  }
+
+  /**
+   * Closes the pool. Idle connections are closed now, ones in use when they are returned.
+   */
+  void close() {
+    closed = true;
+    PooledConnection pooled;
+    while ((pooled = idle.pollFirst()) != null) {
+      pooled.closeQuietly();
+    }
+  }
+
+  private void checkin(final PooledConnection pooled) {
+    active.decrementAndGet();
+    try {
+      if (!closed && pooled.reset()) {
+        idle.offerFirst(pooled);
+        if (closed && idle.removeFirstOccurrence(pooled)) {
+          pooled.closeQuietly();
+        }
+      } else {
+        pooled.closeQuietly();
+      }
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public Connection getConnection(final String username, final String password) throws SQLException {
+    throw new SQLFeatureNotSupportedException("The pool connects as its own user");
+  }
+
+  @Override
+  public PrintWriter getLogWriter() {
+    return logWriter;
+  }
+
+  @Override
+  public void setLogWriter(final PrintWriter out) {
+    this.logWriter = out;
+  }
+
+  @Override
+  public int getLoginTimeout() {
+    return loginTimeout;
+  }
+
+  @Override
+  public void setLoginTimeout(final int seconds) {
+    this.loginTimeout = seconds;
+  }
+
+  @Override
+  public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("No parent logger");
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    throw new SQLException("Not a wrapper for " + iface);
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  @Override
+  public String toString() {
+    return "EmbeddedConnectionPool{" + name + "}";
+  }
+
+  /**
+   * A connection to the database and its cached statements. Only the caller it is checked out to uses it.
+   */
+  private class PooledConnection {
+
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements;
+    private volatile long lastUsed = System.nanoTime();
+    private int checkouts = 0;
+    private boolean checkedOut = false;
+
+    PooledConnection(final Connection connection) {
+      this.connection = connection;
+      this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, PreparedStatement> eldest) {
+          if (size() > statementCacheSize) {
+            closeQuietly(eldest.getValue());
+            return true;
+          }
+          return false;
+        }
+      };
+    }
+
+    synchronized Connection checkout() {
+      final int checkout = ++checkouts;
+      checkedOut = true;
+      return new DelegatingConnection() {
+        @Override
+        protected Connection delegate() throws SQLException {
+          if (isReleased(checkout)) {
+            throw new SQLException("Connection is closed");
+          }
+          return connection;
+        }
+
+        @Override
+        public void close() {
+          release(checkout);
+        }
+
+        @Override
+        public boolean isClosed() throws SQLException {
+          return isReleased(checkout) || connection.isClosed();
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(final String sql) throws SQLException {
+          final Connection open = delegate();
+          return statementCacheSize > 0 ? prepare(sql, checkout) : open.prepareStatement(sql);
+        }
+
+        @Override
+        public String toString() {
+          return "PooledConnection{" + name + "}";
+        }
+      };
+    }
+
+    private synchronized boolean isReleased(final int checkout) {
+      return checkout != checkouts || !checkedOut;
+    }
+
+    private void release(final int checkout) {
+      synchronized (this) {
+        if (isReleased(checkout)) {
+          return;
+        }
+        checkedOut = false;
+      }
+      checkin(this);
+    }
+
+    private synchronized PreparedStatement prepare(final String sql, final int checkout) throws SQLException {
+      PreparedStatement found = statements.remove(sql);
+      if (found == null || found.isClosed()) {
+        statementCacheMiss.increment();
+        found = connection.prepareStatement(sql);
+      } else {
+        statementCacheHit.increment();
+      }
+      final PreparedStatement statement = found;
+      return new DelegatingPreparedStatement() {
+        private boolean open = true;
+
+        @Override
+        protected PreparedStatement delegate() throws SQLException {
+          synchronized (PooledConnection.this) {
+            if (!open) {
+              throw new SQLException("Statement is closed");
+            }
+          }
+          return statement;
+        }
+
+        @Override
+        public void close() throws SQLException {
+          synchronized (PooledConnection.this) {
+            if (open) {
+              open = false;
+              cache(sql, statement, checkout);
+            }
+          }
+        }
+
+        @Override
+        public boolean isClosed() throws SQLException {
+          synchronized (PooledConnection.this) {
+            return !open || statement.isClosed();
+          }
+        }
+      };
+    }
+
+    private void cache(final String sql, final PreparedStatement statement, final int checkout) throws SQLException {
+      if (statement.isClosed()) {
+        return;
+      }
+      if (isReleased(checkout) || statements.containsKey(sql)) {
+        statement.close();
+        return;
+      }
+      statement.clearParameters();
+      statement.clearBatch();
+      statements.put(sql, statement);
+    }
+
+    /**
+     * Readies the connection for the next caller.
+     *
+     * @return false if the connection cannot be used again.
+     */
+    synchronized boolean reset() {
+      try {
+        if (connection.isClosed()) {
+          return false;
+        }
+        if (!connection.getAutoCommit()) {
+          connection.rollback();
+          connection.setAutoCommit(true);
+        }
+        connection.clearWarnings();
+        lastUsed = System.nanoTime();
+        return true;
+      } catch (SQLException e) {
+        return false;
+      }
+    }
+
+    void closeQuietly() {
+      try {
+        connection.close();
+      } catch (SQLException e) {
+        // Nothing more can be done with it.
+      }
+    }
+
+    private void closeQuietly(final PreparedStatement statement) {
+      try {
+        statement.close();
+      } catch (SQLException e) {
+        // Closed with its connection anyway.
+      }
+    }
+  }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.ConnectionPoolEngine;
+import com.codeheadsystems.metrics.Metrics;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pools connections to the in process HSQLDB databases without any threads per pool. One shared thread closes
+ * connections that have been idle too long. Reports the wait for a connection and the connections in use per
+ * datasource, and how often the statement caches of all pools had the statement asked for.
+ */
+@Singleton
+public class EmbeddedConnectionPoolEngine implements ConnectionPoolEngine {
+
+  /**
+   * Name of the engine in the node configuration.
+   */
+  public static final String NAME = "embedded";
+  private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedConnectionPoolEngine.class);
+  private static final int MAX_POOL_SIZE = 20;
+  private static final long CHECKOUT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(300);
+  private static final long TRIM_INTERVAL_SECONDS = 60;
+
+  private final MeterRegistry meterRegistry;
+  private final int statementCacheSize;
+  private final Counter statementCacheHit;
+  private final Counter statementCacheMiss;
+  private final Map<DataSource, Pool> pools = new ConcurrentHashMap<>();
+  private final Map<String, Pool> meterOwners = new ConcurrentHashMap<>();
+  private volatile ScheduledExecutorService housekeeping;
+
+  /**
+   * Default constructor.
+   *
+   * @param metrics       for analytics.
+   * @param configuration for the size of the statement cache.
+   */
+  @Inject
+  public EmbeddedConnectionPoolEngine(final Metrics metrics,
+                                      final NodeConfiguration configuration) {
+    LOGGER.info("EmbeddedConnectionPoolEngine({},{})", metrics, configuration.getStatementCacheSize());
+    this.meterRegistry = metrics.registry();
+    this.statementCacheSize = configuration.getStatementCacheSize();
+    this.statementCacheHit = meterRegistry.counter(STATEMENT_CACHE, "hit", "true");
+    this.statementCacheMiss = meterRegistry.counter(STATEMENT_CACHE, "hit", "false");
+  }
+
+  @Override
+  public DataSource create(final String name, final String url, final Optional<String> schema, final int minPoolSize) {
+    LOGGER.trace("create({})", name);
+    final Pool pool = meterOwners.compute(name, (key, previous) -> {
+      if (previous != null) {
+        removeMeters(previous);
+      }
+      final Timer waitTimer = meterRegistry.timer(WAIT, "datasource", name);
+      final EmbeddedConnectionPool dataSource = new EmbeddedConnectionPool(name, url, schema, minPoolSize,
+          MAX_POOL_SIZE, statementCacheSize, CHECKOUT_TIMEOUT_MILLIS, waitTimer, statementCacheHit, statementCacheMiss);
+      final Gauge activeGauge = Gauge.builder(ACTIVE, dataSource, EmbeddedConnectionPool::active)
+          .tag("datasource", name)
+          .register(meterRegistry);
+      return new Pool(name, dataSource, waitTimer, activeGauge);
+    });
+    pools.put(pool.dataSource(), pool);
+    startHousekeeping();
+    return pool.dataSource();
+  }
+
+  @Override
+  public int active(final DataSource dataSource) {
+    return ((EmbeddedConnectionPool) dataSource).active();
+  }
+
+  @Override
+  public void close(final DataSource dataSource) {
+    final Pool pool = pools.remove(dataSource);
+    if (pool != null) {
+      meterOwners.computeIfPresent(pool.name(), (key, owner) -> {
+        if (owner != pool) {
+          return owner;
+        }
+        removeMeters(pool);
+        return null;
+      });
+    }
+    ((EmbeddedConnectionPool) dataSource).close();
+  }
+
+  private void removeMeters(final Pool pool) {
+    meterRegistry.remove(pool.waitTimer());
+    meterRegistry.remove(pool.activeGauge());
+  }
+
+  private void startHousekeeping() {
+    if (housekeeping == null) {
+      synchronized (this) {
+        if (housekeeping == null) {
+          final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "connection-pool");
+            thread.setDaemon(true);
+            return thread;
+          });
+          executor.scheduleWithFixedDelay(this::trim, TRIM_INTERVAL_SECONDS, TRIM_INTERVAL_SECONDS, TimeUnit.SECONDS);
+          housekeeping = executor;
+        }
+      }
+    }
+  }
+
+  /**
+   * Closes connections that have been idle too long in every pool.
+   */
+  void trim() {
+    for (Pool pool : pools.values()) {
+      try {
+        pool.dataSource().trim(MAX_IDLE_NANOS);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Unable to trim {}", pool.dataSource(), e);
+      }
+    }
+  }
+
+  /**
+   * A pool and the meters registered for it. The meters are shared by name, so only the latest pool with a name owns
+   * them.
+   */
+  private record Pool(String name, EmbeddedConnectionPool dataSource, Timer waitTimer, Gauge activeGauge) {
+  }
+
+}
@@ -17,25 +17,55 @@
 package com.codeheadsystems.dstore.node.engine.impl;
 
 import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
 import com.codeheadsystems.dstore.node.engine.SqlEngine;
 import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
+import com.codeheadsystems.dstore.node.exception.ConditionFailedException;
+import com.codeheadsystems.dstore.node.exception.InvalidAttributeException;
+import com.codeheadsystems.dstore.node.exception.UnsupportedTableOperationException;
+import com.codeheadsystems.dstore.node.manager.EntityFilterManager;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ImmutableQueryResult;
+import com.codeheadsystems.dstore.node.model.IndexLookupRequest;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import com.codeheadsystems.dstore.node.model.ScanRequest;
 import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
 import com.codeheadsystems.metrics.Metrics;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.common.collect.Lists;
 import com.google.common.hash.HashFunction;
 import com.google.common.hash.Hashing;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * First implementation of reading/writing the data for a entry.
+ * First implementation of reading/writing the data for a entry. Each top-level attribute is its own row. Nested
+ * objects and arrays are kept binary encoded in their row and only decoded when that attribute is read.
  */
 @Singleton
 public class V1SingleEntryEngine implements TableDefinitionEngine {
@@ -45,24 +75,54 @@ public class V1SingleEntryEngine implements TableDefinitionEngine {
    */
   public static final String DEFINITION_NAME = "V1SingleEntryEngine";
   private static final Logger LOGGER = LoggerFactory.getLogger(V1SingleEntryEngine.class);
-  private static final String INTEGER_TYPE = "INTEGER";
   private static final String STRING_TYPE = "STRING";
+  private static final String LONG_TYPE = "LONG";
+  private static final String DOUBLE_TYPE = "DOUBLE";
+  private static final String BOOLEAN_TYPE = "BOOLEAN";
+  private static final String BINARY_TYPE = "BINARY";
+  private static final String NULL_TYPE = "NULL";
+  private static final String DOCUMENT_TYPE = "DOCUMENT";
+  /**
+   * Strings written before typed values existed that hold json escapes. Stored json quoted, decoded on read.
+   */
+  private static final String QUOTED_TYPE = "QUOTED";
+  private static final String VALUE_COLUMNS = "C_DATA_TYPE, C_DATA, C_LONG, C_DOUBLE, C_BYTES";
+  private static final String UPSERT = "merge into TENANT_DATA using (values(cast(? as varchar(256)), cast(? as varchar(256)), cast(? as bigint),"
+      + " cast(? as varchar(256)), cast(? as varchar(4096)), cast(? as bigint), cast(? as double), cast(? as varbinary(65536))))"
+      + " as vals(ID, C_COL, HASH, C_DATA_TYPE, C_DATA, C_LONG, C_DOUBLE, C_BYTES)"
+      + " on TENANT_DATA.ID = vals.ID and TENANT_DATA.C_COL = vals.C_COL"
+      + " when matched then update set TENANT_DATA.C_DATA_TYPE = vals.C_DATA_TYPE, TENANT_DATA.C_DATA = vals.C_DATA,"
+      + " TENANT_DATA.C_LONG = vals.C_LONG, TENANT_DATA.C_DOUBLE = vals.C_DOUBLE, TENANT_DATA.C_BYTES = vals.C_BYTES"
+      + " when not matched then insert (ID, C_COL, HASH, " + VALUE_COLUMNS + ")"
+      + " values (vals.ID, vals.C_COL, vals.HASH, vals.C_DATA_TYPE, vals.C_DATA, vals.C_LONG, vals.C_DOUBLE, vals.C_BYTES)";
+  private static final int READ_MANY_CHUNK_SIZE = 100;
+  private static final int SCAN_FETCH_SIZE = 500;
+  private static final String INCREMENT = "update TENANT_DATA set C_LONG = C_LONG + ?"
+      + " where ID = ? and C_COL = ? and C_DATA_TYPE = '" + LONG_TYPE + "'";
   private final Metrics metrics;
   private final SqlEngine sqlEngine;
   private final JsonEngine jsonEngine;
+  private final BinaryDocumentEngine binaryDocumentEngine;
+  private final EntityFilterManager entityFilterManager;
 
   /**
    * Default constructor.
    *
-   * @param metrics    for analytics.
-   * @param sqlEngine  to execute sql.
-   * @param jsonEngine for managing json.
+   * @param metrics              for analytics.
+   * @param sqlEngine            to execute sql.
+   * @param jsonEngine           for managing json.
+   * @param binaryDocumentEngine to encode nested attributes.
+   * @param entityFilterManager  to answer reads of missing entities without a query.
    */
   @Inject
   public V1SingleEntryEngine(final Metrics metrics,
                              final SqlEngine sqlEngine,
-                             final JsonEngine jsonEngine) {
+                             final JsonEngine jsonEngine,
+                             final BinaryDocumentEngine binaryDocumentEngine,
+                             final EntityFilterManager entityFilterManager) {
     this.jsonEngine = jsonEngine;
+    this.binaryDocumentEngine = binaryDocumentEngine;
+    this.entityFilterManager = entityFilterManager;
     LOGGER.info("V1SingleEntryEngine({},{})", metrics, sqlEngine);
     this.metrics = metrics;
     this.sqlEngine = sqlEngine;
@@ -89,7 +149,27 @@ public class V1SingleEntryEngine implements TableDefinitionEngine {
   }
 
   /**
-   * Reads the entity from the table, returning the JsonNode.
+   * Lookups seek the attribute and value columns.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean supportsLookup() {
+    return true;
+  }
+
+  /**
+   * Transactions check and write on one connection.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean supportsTransactions() {
+    return true;
+  }
+
+  /**
+   * Reads the entity from the table, returning the JsonNode. Entities the filter knows are missing are not queried.
    *
    * @param tenantTable table to read from.
    * @param entity      the entity id.
@@ -98,8 +178,11 @@ public class V1SingleEntryEngine implements TableDefinitionEngine {
   @Override
   public Optional<JsonNode> read(final TenantTable tenantTable, final String entity) {
     LOGGER.trace("read({},{}", tenantTable, entity);
+    if (!entityFilterManager.mightContain(tenantTable, hash(entity))) {
+      return Optional.empty();
+    }
     return sqlEngine.executePreparedTenant(tenantTable,
-        "select * from TENANT_DATA where ID = ?",
+        "select C_COL, " + VALUE_COLUMNS + " from TENANT_DATA where ID = ?",
         (ps) -> {
           try {
             ps.setString(1, entity);
@@ -110,16 +193,7 @@ public class V1SingleEntryEngine implements TableDefinitionEngine {
                 rows++;
                 final String col = rs.getString("C_COL");
                 LOGGER.trace("setting {}->{}", entity, col);
-                final String type = rs.getString("C_DATA_TYPE");
-                final String data = rs.getString("C_DATA");
-                switch (type) {
-                  case INTEGER_TYPE -> node.put(col, Integer.valueOf(data));
-                  case STRING_TYPE -> node.put(col, data);
-                  default -> {
-                    LOGGER.error("Unknown: {}:{}:{}:{}", tenantTable, entity, col, type);
-                    throw new IllegalArgumentException("Unknown type: " + type + " for " + entity + ":" + tenantTable);
-                  }
-                }
+                setAttribute(node, col, ColumnValue.from(rs, 2));
               }
               if (rows > 0) {
                 return Optional.of(node);
@@ -134,7 +208,238 @@ public class V1SingleEntryEngine implements TableDefinitionEngine {
   }
 
   /**
-   * Writes the entity to the table.
+   * Reads only the named attributes of the entity, filtering with {@code C_COL in (...)} so the other rows are never
+   * read, and nested attributes not named are never decoded. If the entity exists but has none of the attributes, an
+   * empty node is returned.
+   *
+   * @param tenantTable table to read from.
+   * @param entity      the entity id.
+   * @param attributes  the attributes wanted.
+   * @return a json node if found.
+   */
+  @Override
+  public Optional<JsonNode> read(final TenantTable tenantTable, final String entity, final Collection<String> attributes) {
+    LOGGER.trace("read({},{},{})", tenantTable, entity, attributes);
+    final List<String> columns = attributes.stream().distinct().toList();
+    if (columns.isEmpty()) {
+      return read(tenantTable, entity);
+    }
+    if (!entityFilterManager.mightContain(tenantTable, hash(entity))) {
+      return Optional.empty();
+    }
+    final String query = "select C_COL, " + VALUE_COLUMNS + " from TENANT_DATA where ID = ? and C_COL in ("
+        + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+    return sqlEngine.executeConnectionTenant(tenantTable, (connection) -> {
+      try {
+        final ObjectNode node = jsonEngine.createObjectNode();
+        try (final PreparedStatement ps = connection.prepareStatement(query)) {
+          ps.setString(1, entity);
+          for (int i = 0; i < columns.size(); i++) {
+            ps.setString(i + 2, columns.get(i));
+          }
+          try (final ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+              setAttribute(node, rs.getString(1), ColumnValue.from(rs, 2));
+            }
+          }
+        }
+        if (node.isEmpty()) {
+          try (final PreparedStatement ps = connection.prepareStatement("select 1 from TENANT_DATA where ID = ? limit 1")) {
+            ps.setString(1, entity);
+            try (final ResultSet rs = ps.executeQuery()) {
+              if (!rs.next()) {
+                return Optional.empty();
+              }
+            }
+          }
+        }
+        return Optional.of(node);
+      } catch (SQLException e) {
+        throw new IllegalArgumentException("Unable to read data for: " + tenantTable + ":" + entity, e);
+      }
+    });
+  }
+
+  /**
+   * Reads many entities with one {@code ID in (...)} query per chunk of ids, all on one connection. Ids the filter
+   * knows are missing are left out of the queries.
+   *
+   * @param tenantTable table to read from.
+   * @param entities    the entity ids.
+   * @return map of entity id to json node, in the order requested.
+   */
+  @Override
+  public Map<String, JsonNode> readMany(final TenantTable tenantTable, final Collection<String> entities) {
+    LOGGER.trace("readMany({},{})", tenantTable, entities.size());
+    final List<String> ids = entities.stream()
+        .distinct()
+        .filter(id -> entityFilterManager.mightContain(tenantTable, hash(id)))
+        .toList();
+    if (ids.isEmpty()) {
+      return Map.of();
+    }
+    return sqlEngine.executeConnectionTenant(tenantTable, (connection) -> {
+      final Map<String, ObjectNode> nodes = new HashMap<>();
+      try {
+        for (List<String> chunk : Lists.partition(ids, READ_MANY_CHUNK_SIZE)) {
+          final String query = "select ID, C_COL, " + VALUE_COLUMNS + " from TENANT_DATA where ID in ("
+              + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+          try (final PreparedStatement ps = connection.prepareStatement(query)) {
+            for (int i = 0; i < chunk.size(); i++) {
+              ps.setString(i + 1, chunk.get(i));
+            }
+            try (final ResultSet rs = ps.executeQuery()) {
+              while (rs.next()) {
+                final ObjectNode node = nodes.computeIfAbsent(rs.getString(1), (id) -> jsonEngine.createObjectNode());
+                setAttribute(node, rs.getString(2), ColumnValue.from(rs, 3));
+              }
+            }
+          }
+        }
+      } catch (SQLException e) {
+        throw new IllegalArgumentException("Unable to read data for: " + tenantTable, e);
+      }
+      final Map<String, JsonNode> result = new LinkedHashMap<>();
+      ids.stream().filter(nodes::containsKey).forEach(id -> result.put(id, nodes.get(id)));
+      return result;
+    });
+  }
+
+  /**
+   * Scans one segment using the HASH index, streaming rows from the result set and grouping consecutive rows of the
+   * same entity into one document. Like a lookup, a subquery picks the next page of entities first, one past the limit
+   * to know if more remain, so only that page is sorted and read instead of the rest of the segment.
+   *
+   * @param tenantTable table to scan.
+   * @param request     the segment, page size and where to start.
+   * @param consumer    gets each entity id and its data.
+   * @return the position to continue after if the limit was hit and more remain, else empty.
+   */
+  @Override
+  public Optional<ScanPosition> scan(final TenantTable tenantTable,
+                                     final ScanRequest request,
+                                     final BiConsumer<String, JsonNode> consumer) {
+    LOGGER.trace("scan({},{})", tenantTable, request);
+    final ScanPosition start = request.startAfter().orElse(ScanPosition.from(request.hashStart() - 1, ""));
+    return sqlEngine.executePreparedTenant(tenantTable,
+        "select d.ID, d.HASH, d.C_COL, d.C_DATA_TYPE, d.C_DATA, d.C_LONG, d.C_DOUBLE, d.C_BYTES from TENANT_DATA d join"
+            + " (select distinct HASH, ID from TENANT_DATA where HASH >= ? and HASH < ?"
+            + " and (HASH > ? or (HASH = ? and ID > ?)) order by HASH, ID limit ?) k"
+            + " on d.ID = k.ID order by d.HASH, d.ID",
+        (ps) -> {
+          try {
+            ps.setFetchSize(SCAN_FETCH_SIZE);
+            ps.setLong(1, request.hashStart());
+            ps.setLong(2, request.hashEnd());
+            ps.setLong(3, start.hash());
+            ps.setLong(4, start.hash());
+            ps.setString(5, start.id());
+            ps.setInt(6, request.limit() + 1);
+            try (final ResultSet rs = ps.executeQuery()) {
+              int count = 0;
+              String currentId = null;
+              long currentHash = 0;
+              ObjectNode node = null;
+              while (rs.next()) {
+                final String id = rs.getString(1);
+                if (!id.equals(currentId)) {
+                  if (node != null) {
+                    consumer.accept(currentId, node);
+                    if (++count >= request.limit()) {
+                      return Optional.of(ScanPosition.from(currentHash, currentId));
+                    }
+                  }
+                  currentId = id;
+                  currentHash = rs.getLong(2);
+                  node = jsonEngine.createObjectNode();
+                }
+                setAttribute(node, rs.getString(3), ColumnValue.from(rs, 4));
+              }
+              if (node != null) {
+                consumer.accept(currentId, node);
+              }
+              return Optional.empty();
+            }
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to scan: " + tenantTable, e);
+          }
+        });
+  }
+
+  /**
+   * Seeks the attribute name and the column holding values of that type for the entities with the attribute value,
+   * and reads all their rows in the same query. Reads one entity past the limit to know if more remain. Only strings,
+   * longs, booleans and nulls are indexed, so lookups by other values are rejected rather than scanning every value of
+   * the attribute. Strings still stored json quoted from before typed values match too.
+   *
+   * @param tenantTable table to read from.
+   * @param request     the attribute, value and page.
+   * @return the page of results, keyed by entity id.
+   */
+  @Override
+  public QueryResult lookup(final TenantTable tenantTable, final IndexLookupRequest request) {
+    LOGGER.trace("lookup({},{})", tenantTable, request);
+    final ColumnValue value = columnValue(request.value());
+    if (!value.indexed()) {
+      throw new UnsupportedTableOperationException("Lookups by " + value.type() + " values are not supported");
+    }
+    final Optional<String> valueColumn = value.column();
+    final Optional<String> quoted = STRING_TYPE.equals(value.type())
+        ? Optional.of(TextNode.valueOf(value.text()).toString()).filter(text -> text.indexOf('\\') >= 0)
+        : Optional.empty();
+    final String match = quoted.isPresent()
+        ? " and (C_DATA = ? and C_DATA_TYPE = ? or C_DATA = ? and C_DATA_TYPE = '" + QUOTED_TYPE + "')"
+        : valueColumn.map(c -> " and " + c + " = ?").orElse("") + " and C_DATA_TYPE = ?";
+    return sqlEngine.executePreparedTenant(tenantTable,
+        "select d.ID, d.C_COL, d.C_DATA_TYPE, d.C_DATA, d.C_LONG, d.C_DOUBLE, d.C_BYTES from TENANT_DATA d join"
+            + " (select ID from TENANT_DATA where C_COL = ?" + match + " and ID > ? order by ID limit ?) k"
+            + " on d.ID = k.ID order by d.ID",
+        (ps) -> {
+          try {
+            int index = 1;
+            ps.setString(index++, request.attribute());
+            if (valueColumn.isPresent()) {
+              value.bindValue(ps, index++);
+            }
+            ps.setString(index++, value.type());
+            if (quoted.isPresent()) {
+              ps.setString(index++, quoted.get());
+            }
+            ps.setString(index++, request.startAfter().orElse(""));
+            ps.setInt(index, request.limit() + 1);
+            final ImmutableQueryResult.Builder builder = ImmutableQueryResult.builder();
+            try (final ResultSet rs = ps.executeQuery()) {
+              int count = 0;
+              String currentId = null;
+              ObjectNode node = null;
+              while (rs.next()) {
+                final String id = rs.getString(1);
+                if (!id.equals(currentId)) {
+                  if (node != null) {
+                    builder.putEntities(currentId, node);
+                    if (++count >= request.limit()) {
+                      return builder.lastSortKey(currentId).build();
+                    }
+                  }
+                  currentId = id;
+                  node = jsonEngine.createObjectNode();
+                }
+                setAttribute(node, rs.getString(2), ColumnValue.from(rs, 3));
+              }
+              if (node != null) {
+                builder.putEntities(currentId, node);
+              }
+              return builder.build();
+            }
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to lookup: " + tenantTable + ":" + request.attribute(), e);
+          }
+        });
+  }
+
+  /**
+   * Writes the entity to the table. This is an upsert done in one transaction: attributes not in the new data are
+   * removed, and attributes whose type and value did not change are not rewritten.
    *
    * @param tenantTable table to write to.
    * @param entity      the entity id.
@@ -142,39 +447,440 @@ public class V1SingleEntryEngine implements TableDefinitionEngine {
    */
   @Override
   public void write(final TenantTable tenantTable, final String entity, final JsonNode data) {
-    LOGGER.trace("write({},{}", tenantTable, entity);
-    final Integer hash = hashFunctionSupplier().get().hashUnencodedChars(entity).asInt();
-    sqlEngine.executePreparedTenant(tenantTable,
-        "insert into TENANT_DATA (ID,C_COL,HASH,C_DATA_TYPE,C_DATA) values (?,?,?,?,?)",
-        (ps) -> {
+    write(tenantTable, entity, data, List.of());
+  }
+
+  /**
+   * Writes the entity to the table if the conditions hold against the existing columns. The entity is locked before
+   * its columns are read for the upsert, so the diff and the conditions checked on it cannot go stale before the write.
+   *
+   * @param tenantTable table to write to.
+   * @param entity      the entity id.
+   * @param data        the data.
+   * @param conditions  that must all hold.
+   */
+  @Override
+  public void write(final TenantTable tenantTable,
+                    final String entity,
+                    final JsonNode data,
+                    final Collection<Condition> conditions) {
+    LOGGER.trace("write({},{},{}", tenantTable, entity, conditions.size());
+    final Map<String, ColumnValue> desired = columns(data);
+    entityFilterManager.adding(tenantTable, List.of(hash(entity)), () ->
+        sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+          try {
+            lockEntity(connection, entity);
+            final Map<String, ColumnValue> existing = readColumns(connection, entity);
+            checkConditions(existing, conditions);
+            replaceColumns(connection, entity, desired, existing);
+            return null;
+          } catch (SQLException e) {
+            LOGGER.error("Unable to write: {},{}", tenantTable, entity, e);
+            throw new IllegalArgumentException("Unable to write", e);
+          }
+        }));
+  }
+
+  /**
+   * Locks every item's entity first, in entity order so two transactions on the same entities cannot deadlock, then
+   * checks the conditions and applies the puts and deletes. Puts only rewrite the columns that changed, as in a write.
+   *
+   * @param tenantTable table to write to.
+   * @param items       the puts, deletes and condition checks, each for a different entity.
+   */
+  @Override
+  public void transact(final TenantTable tenantTable, final List<TransactionItem> items) {
+    LOGGER.trace("transact({},{})", tenantTable, items.size());
+    final Map<String, Map<String, ColumnValue>> puts = new HashMap<>();
+    items.forEach(item -> item.put().ifPresent(data -> puts.put(item.entity(), columns(data))));
+    final List<Integer> hashes = puts.keySet().stream().map(this::hash).toList();
+    entityFilterManager.adding(tenantTable, hashes, () ->
+        sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+          try {
+            lockEntities(connection, items.stream().map(TransactionItem::entity).toList());
+            for (TransactionItem item : items) {
+              if (!item.conditions().isEmpty()) {
+                checkConditions(readColumns(connection, item.entity()), item.conditions());
+              }
+            }
+            final List<String> deletes = new ArrayList<>();
+            for (TransactionItem item : items) {
+              if (item.delete()) {
+                deletes.add(item.entity());
+              } else if (item.put().isPresent()) {
+                replaceColumns(connection, item.entity(), puts.get(item.entity()), readColumns(connection, item.entity()));
+              }
+            }
+            if (!deletes.isEmpty()) {
+              try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_DATA where ID = ?")) {
+                for (String entity : deletes) {
+                  ps.setString(1, entity);
+                  ps.addBatch();
+                }
+                ps.executeBatch();
+              }
+            }
+            return null;
+          } catch (SQLException e) {
+            LOGGER.error("Unable to transact: {}", tenantTable, e);
+            throw new IllegalArgumentException("Unable to transact", e);
+          }
+        }));
+    entityFilterManager.deleted(tenantTable, items.stream().filter(TransactionItem::delete).count());
+  }
+
+  /**
+   * Writes and deletes many entities in one transaction on one connection. The written entities are locked in entity
+   * order, then their existing columns are read with one {@code ID in (...)} query per chunk, and only the columns
+   * that changed are rewritten, as in a write. The upserts, removed columns and deleted entities each go in one JDBC batch.
+   *
+   * @param tenantTable table to write to.
+   * @param writes      entities to write, keyed by entity id.
+   * @param deletes     entity ids to delete.
+   */
+  @Override
+  public void writeMany(final TenantTable tenantTable, final Map<String, JsonNode> writes, final Collection<String> deletes) {
+    LOGGER.trace("writeMany({},{},{})", tenantTable, writes.size(), deletes.size());
+    final Map<String, Map<String, ColumnValue>> rows = new LinkedHashMap<>();
+    writes.forEach((entity, data) -> rows.put(entity, columns(data)));
+    final List<String> removals = deletes.stream().distinct().filter(entity -> !rows.containsKey(entity)).toList();
+    if (rows.isEmpty() && removals.isEmpty()) {
+      return;
+    }
+    final List<Integer> hashes = rows.keySet().stream().map(this::hash).toList();
+    entityFilterManager.adding(tenantTable, hashes, () ->
+        sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
           try {
-            data.fieldNames().forEachRemaining(col -> {
-              try {
-                ps.setString(1, entity);
-                ps.setString(2, col);
-                ps.setInt(3, hash);
-                final JsonNode element = data.get(col);
-                if (element.isNumber()) {
-                  ps.setString(4, INTEGER_TYPE);
-                } else if (element.isTextual()) {
-                  ps.setString(4, STRING_TYPE);
-                } else {
-                  throw new IllegalArgumentException("Unknown type: " + element.getNodeType());
+            lockEntities(connection, rows.keySet());
+            replaceColumns(connection, rows, readColumns(connection, rows.keySet()));
+            if (!removals.isEmpty()) {
+              try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_DATA where ID = ?")) {
+                for (String entity : removals) {
+                  ps.setString(1, entity);
+                  ps.addBatch();
                 }
-                ps.setString(5, element.toString());
-                ps.addBatch();
-              } catch (SQLException e) {
-                LOGGER.error("Unable to add row: {},{}", tenantTable, entity, e);
-                throw new IllegalArgumentException("Unable to add row", e);
+                ps.executeBatch();
               }
-            });
-            ps.executeBatch();
+            }
             return null;
           } catch (SQLException e) {
-            LOGGER.error("Unable to execute batch: {},{}", tenantTable, entity, e);
-            throw new IllegalArgumentException("Unable to execute batch", e);
+            LOGGER.error("Unable to writeMany: {}", tenantTable, e);
+            throw new IllegalArgumentException("Unable to write", e);
           }
-        });
+        }));
+    entityFilterManager.deleted(tenantTable, deletes.size());
+  }
+
+  /**
+   * Updates individual attributes of an existing entity in one transaction. The entity is locked before its columns
+   * are read, and only the rows for the named attributes are touched, and unchanged values are not rewritten.
+   *
+   * @param tenantTable table to update.
+   * @param entity      the entity id.
+   * @param data        the attributes to set, or remove if json null.
+   * @return boolean if the entity existed and was updated.
+   */
+  @Override
+  public boolean update(final TenantTable tenantTable, final String entity, final JsonNode data) {
+    LOGGER.trace("update({},{}", tenantTable, entity);
+    final Map<String, ColumnValue> desired = new LinkedHashMap<>();
+    final List<String> removals = new ArrayList<>();
+    data.fields().forEachRemaining(field -> {
+      if (field.getValue().isNull()) {
+        removals.add(field.getKey());
+      } else {
+        desired.put(field.getKey(), columnValue(field.getValue()));
+      }
+    });
+    return sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+      try {
+        lockEntity(connection, entity);
+        final Map<String, ColumnValue> existing = readColumns(connection, entity);
+        if (existing.isEmpty()) {
+          LOGGER.trace("update: {}:{} not found", tenantTable, entity);
+          return false;
+        }
+        final List<String> toDelete = removals.stream()
+            .filter(existing::containsKey)
+            .toList();
+        final Map<String, ColumnValue> toUpsert = desired.entrySet().stream()
+            .filter(e -> !e.getValue().equals(existing.get(e.getKey())))
+            .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        LOGGER.trace("update: {}:{} upsert:{} delete:{}", tenantTable, entity, toUpsert.size(), toDelete.size());
+        upsertColumns(connection, entity, toUpsert);
+        deleteColumns(connection, entity, toDelete);
+        return true;
+      } catch (SQLException e) {
+        LOGGER.error("Unable to update: {},{}", tenantTable, entity, e);
+        throw new IllegalArgumentException("Unable to update", e);
+      }
+    });
+  }
+
+  /**
+   * Atomically adds the delta to the LONG column with a single in-database update, inserting the column if it is
+   * missing, then upserts the other attributes. Runs in one transaction so the new value returned is the one this call
+   * produced.
+   *
+   * @param tenantTable table to update.
+   * @param entity      the entity id.
+   * @param attribute   the numeric attribute.
+   * @param delta       the amount to add, may be negative.
+   * @param attributes  other attributes to set along with the increment.
+   * @return the new value.
+   */
+  @Override
+  public long increment(final TenantTable tenantTable,
+                        final String entity,
+                        final String attribute,
+                        final long delta,
+                        final JsonNode attributes) {
+    LOGGER.trace("increment({},{},{})", tenantTable, entity, attribute);
+    final Map<String, ColumnValue> others = columns(attributes);
+    return entityFilterManager.adding(tenantTable, List.of(hash(entity)), () ->
+        sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+          try {
+            final long value = increment(connection, entity, attribute, delta);
+            upsertColumns(connection, entity, others);
+            return value;
+          } catch (SQLException e) {
+            LOGGER.error("Unable to increment: {},{},{}", tenantTable, entity, attribute, e);
+            throw new IllegalArgumentException("Unable to increment", e);
+          }
+        }));
+  }
+
+  private long increment(final Connection connection,
+                         final String entity,
+                         final String attribute,
+                         final long delta) throws SQLException {
+    final int updated;
+    try (final PreparedStatement ps = connection.prepareStatement(INCREMENT)) {
+      ps.setLong(1, delta);
+      ps.setString(2, entity);
+      ps.setString(3, attribute);
+      updated = ps.executeUpdate();
+    }
+    if (updated == 0) {
+      final ColumnValue existing = readColumns(connection, entity).get(attribute);
+      if (existing != null) {
+        throw new InvalidAttributeException("Attribute is not a number: " + attribute + ":" + existing.type());
+      }
+      upsertColumns(connection, entity, Map.of(attribute, new ColumnValue(LONG_TYPE, null, delta, null, null)));
+      return delta;
+    }
+    try (final PreparedStatement ps = connection.prepareStatement(
+        "select C_LONG from TENANT_DATA where ID = ? and C_COL = ?")) {
+      ps.setString(1, entity);
+      ps.setString(2, attribute);
+      try (final ResultSet rs = ps.executeQuery()) {
+        rs.next();
+        return rs.getLong(1);
+      }
+    }
+  }
+
+  private void setAttribute(final ObjectNode node, final String col, final ColumnValue value) {
+    switch (value.type()) {
+      case STRING_TYPE -> node.put(col, value.text());
+      case LONG_TYPE -> {
+        final long number = value.number();
+        if (number == (int) number) {
+          node.put(col, (int) number);
+        } else {
+          node.put(col, number);
+        }
+      }
+      case DOUBLE_TYPE -> node.put(col, value.real());
+      case BOOLEAN_TYPE -> node.put(col, value.number() != 0);
+      case BINARY_TYPE -> node.put(col, value.bytes());
+      case NULL_TYPE -> node.putNull(col);
+      case DOCUMENT_TYPE -> node.set(col, binaryDocumentEngine.decodeValue(value.bytes()));
+      case QUOTED_TYPE -> node.put(col, unquoted(value).text());
+      default -> {
+        LOGGER.error("Unknown: {}:{}", col, value.type());
+        throw new IllegalArgumentException("Unknown type: " + value.type() + " for " + col);
+      }
+    }
+  }
+
+  /**
+   * Converts the json node into the column values we store.
+   *
+   * @param data to convert.
+   * @return map of column to value, in field order.
+   */
+  private Map<String, ColumnValue> columns(final JsonNode data) {
+    final Map<String, ColumnValue> result = new LinkedHashMap<>();
+    data.fields().forEachRemaining(field -> result.put(field.getKey(), columnValue(field.getValue())));
+    return result;
+  }
+
+  private ColumnValue columnValue(final JsonNode element) {
+    if (element.isTextual()) {
+      return new ColumnValue(STRING_TYPE, element.textValue(), null, null, null);
+    } else if (element.isIntegralNumber() && element.canConvertToLong()) {
+      return new ColumnValue(LONG_TYPE, null, element.longValue(), null, null);
+    } else if (element.isNumber()) {
+      return new ColumnValue(DOUBLE_TYPE, null, null, element.doubleValue(), null);
+    } else if (element.isBoolean()) {
+      return new ColumnValue(BOOLEAN_TYPE, null, element.booleanValue() ? 1L : 0L, null, null);
+    } else if (element.isBinary()) {
+      return new ColumnValue(BINARY_TYPE, null, null, null, ((BinaryNode) element).binaryValue());
+    } else if (element.isNull()) {
+      return new ColumnValue(NULL_TYPE, null, null, null, null);
+    } else if (element.isContainerNode()) {
+      return new ColumnValue(DOCUMENT_TYPE, null, null, null, binaryDocumentEngine.encodeValue(element));
+    } else {
+      throw new IllegalArgumentException("Unknown type: " + element.getNodeType());
+    }
+  }
+
+  /**
+   * Documents are compared decoded, so field order does not matter. Only the attribute in the condition is decoded.
+   */
+  private boolean matches(final ColumnValue current, final JsonNode expected) {
+    if (DOCUMENT_TYPE.equals(current.type())) {
+      return expected.isContainerNode() && binaryDocumentEngine.decodeValue(current.bytes()).equals(expected);
+    }
+    return unquoted(current).equals(columnValue(expected));
+  }
+
+  /**
+   * Legacy json quoted strings compare equal to the same string written today.
+   */
+  private ColumnValue unquoted(final ColumnValue value) {
+    if (QUOTED_TYPE.equals(value.type())) {
+      return new ColumnValue(STRING_TYPE, jsonEngine.readValue(value.text(), String.class), null, null, null);
+    }
+    return value;
+  }
+
+  /**
+   * Makes the entity's columns the desired ones, only touching those that changed.
+   */
+  private void replaceColumns(final Connection connection,
+                              final String entity,
+                              final Map<String, ColumnValue> desired,
+                              final Map<String, ColumnValue> existing) throws SQLException {
+    replaceColumns(connection, Map.of(entity, desired), Map.of(entity, existing));
+  }
+
+  /**
+   * Makes each entity's columns the desired ones, only touching those that changed. The upserts for all the entities
+   * go in one JDBC batch, and the removed columns in another.
+   */
+  private void replaceColumns(final Connection connection,
+                              final Map<String, Map<String, ColumnValue>> desired,
+                              final Map<String, Map<String, ColumnValue>> existing) throws SQLException {
+    final Map<String, Map<String, ColumnValue>> toUpsert = new LinkedHashMap<>();
+    final Map<String, List<String>> toDelete = new LinkedHashMap<>();
+    desired.forEach((entity, columns) -> {
+      final Map<String, ColumnValue> current = existing.getOrDefault(entity, Map.of());
+      final List<String> removed = current.keySet().stream()
+          .filter(col -> !columns.containsKey(col))
+          .toList();
+      final Map<String, ColumnValue> changed = columns.entrySet().stream()
+          .filter(e -> !e.getValue().equals(current.get(e.getKey())))
+          .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+      LOGGER.trace("replaceColumns: {} upsert:{} delete:{} unchanged:{}", entity,
+          changed.size(), removed.size(), columns.size() - changed.size());
+      if (!changed.isEmpty()) {
+        toUpsert.put(entity, changed);
+      }
+      if (!removed.isEmpty()) {
+        toDelete.put(entity, removed);
+      }
+    });
+    upsertColumns(connection, toUpsert);
+    deleteColumns(connection, toDelete);
+  }
+
+  private Map<String, ColumnValue> readColumns(final Connection connection,
+                                               final String entity) throws SQLException {
+    final Map<String, ColumnValue> result = new HashMap<>();
+    try (final PreparedStatement ps = connection.prepareStatement(
+        "select C_COL, " + VALUE_COLUMNS + " from TENANT_DATA where ID = ?")) {
+      ps.setString(1, entity);
+      try (final ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          result.put(rs.getString(1), ColumnValue.from(rs, 2));
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Reads the columns of many entities with one {@code ID in (...)} query per chunk. Missing entities are left out.
+   */
+  private Map<String, Map<String, ColumnValue>> readColumns(final Connection connection,
+                                                            final Collection<String> entities) throws SQLException {
+    final Map<String, Map<String, ColumnValue>> result = new HashMap<>();
+    for (List<String> chunk : Lists.partition(List.copyOf(entities), READ_MANY_CHUNK_SIZE)) {
+      final String query = "select ID, C_COL, " + VALUE_COLUMNS + " from TENANT_DATA where ID in ("
+          + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+      try (final PreparedStatement ps = connection.prepareStatement(query)) {
+        for (int i = 0; i < chunk.size(); i++) {
+          ps.setString(i + 1, chunk.get(i));
+        }
+        try (final ResultSet rs = ps.executeQuery()) {
+          while (rs.next()) {
+            result.computeIfAbsent(rs.getString(1), (id) -> new HashMap<>()).put(rs.getString(2), ColumnValue.from(rs, 3));
+          }
+        }
+      }
+    }
+    return result;
+  }
+
+  private void upsertColumns(final Connection connection,
+                             final String entity,
+                             final Map<String, ColumnValue> columns) throws SQLException {
+    upsertColumns(connection, Map.of(entity, columns));
+  }
+
+  private void upsertColumns(final Connection connection,
+                             final Map<String, Map<String, ColumnValue>> columns) throws SQLException {
+    if (columns.values().stream().allMatch(Map::isEmpty)) {
+      return;
+    }
+    try (final PreparedStatement ps = connection.prepareStatement(UPSERT)) {
+      for (Map.Entry<String, Map<String, ColumnValue>> entity : columns.entrySet()) {
+        final int hash = hash(entity.getKey());
+        for (Map.Entry<String, ColumnValue> entry : entity.getValue().entrySet()) {
+          ps.setString(1, entity.getKey());
+          ps.setString(2, entry.getKey());
+          ps.setInt(3, hash);
+          entry.getValue().bind(ps, 4);
+          ps.addBatch();
+        }
+      }
+      ps.executeBatch();
+    }
+  }
+
+  private void deleteColumns(final Connection connection,
+                             final String entity,
+                             final List<String> columns) throws SQLException {
+    deleteColumns(connection, Map.of(entity, columns));
+  }
+
+  private void deleteColumns(final Connection connection,
+                             final Map<String, List<String>> columns) throws SQLException {
+    if (columns.values().stream().allMatch(List::isEmpty)) {
+      return;
+    }
+    try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_DATA where ID = ? and C_COL = ?")) {
+      for (Map.Entry<String, List<String>> entity : columns.entrySet()) {
+        for (String col : entity.getValue()) {
+          ps.setString(1, entity.getKey());
+          ps.setString(2, col);
+          ps.addBatch();
+        }
+      }
+      ps.executeBatch();
+    }
   }
 
   /**
@@ -187,7 +893,7 @@ public class V1SingleEntryEngine implements TableDefinitionEngine {
   @Override
   public boolean delete(final TenantTable tenantTable, final String entity) {
     LOGGER.trace("delete({},{}", tenantTable, entity);
-    return sqlEngine.executePreparedTenant(tenantTable,
+    final boolean deleted = sqlEngine.executePreparedTenant(tenantTable,
         "delete from TENANT_DATA where ID = ?",
         (ps) -> {
           try {
@@ -200,5 +906,177 @@ public class V1SingleEntryEngine implements TableDefinitionEngine {
             throw new IllegalArgumentException("Unable to read data for: " + tenantTable + ":" + entity, e);
           }
         });
+    if (deleted) {
+      entityFilterManager.deleted(tenantTable, 1);
+    }
+    return deleted;
+  }
+
+  /**
+   * Delete the entity from the table if the conditions hold against its current columns.
+   *
+   * @param tenantTable table to delete from.
+   * @param entity      the entity id.
+   * @param conditions  that must all hold.
+   * @return boolean if anything was deleted.
+   */
+  @Override
+  public boolean delete(final TenantTable tenantTable, final String entity, final Collection<Condition> conditions) {
+    if (conditions.isEmpty()) {
+      return delete(tenantTable, entity);
+    }
+    LOGGER.trace("delete({},{},{}", tenantTable, entity, conditions.size());
+    final boolean deleted = sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+      try {
+        lockEntity(connection, entity);
+        checkConditions(readColumns(connection, entity), conditions);
+        try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_DATA where ID = ?")) {
+          ps.setString(1, entity);
+          return ps.executeUpdate() > 0;
+        }
+      } catch (SQLException e) {
+        throw new IllegalArgumentException("Unable to delete data for: " + tenantTable + ":" + entity, e);
+      }
+    });
+    if (deleted) {
+      entityFilterManager.deleted(tenantTable, 1);
+    }
+    return deleted;
+  }
+
+  /**
+   * Takes the write lock on the entity's rows before they are read, so a conditional check and the write that follows
+   * it cannot interleave with another writer.
+   */
+  private void lockEntity(final Connection connection, final String entity) throws SQLException {
+    try (final PreparedStatement ps = connection.prepareStatement("update TENANT_DATA set HASH = HASH where ID = ?")) {
+      ps.setString(1, entity);
+      ps.executeUpdate();
+    }
+  }
+
+  /**
+   * Locks each entity in entity order, in one JDBC batch, so two transactions over the same entities take their locks
+   * in the same order and cannot deadlock.
+   */
+  private void lockEntities(final Connection connection, final Collection<String> entities) throws SQLException {
+    if (entities.isEmpty()) {
+      return;
+    }
+    try (final PreparedStatement ps = connection.prepareStatement("update TENANT_DATA set HASH = HASH where ID = ?")) {
+      for (String entity : entities.stream().distinct().sorted().toList()) {
+        ps.setString(1, entity);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+  }
+
+  private void checkConditions(final Map<String, ColumnValue> existing, final Collection<Condition> conditions) {
+    for (Condition condition : conditions) {
+      final ColumnValue current = existing.get(condition.attribute());
+      final boolean holds = switch (condition.operator()) {
+        case EXISTS -> current != null;
+        case NOT_EXISTS -> current == null;
+        case EQUALS -> current != null && matches(current, condition.value().orElseThrow());
+      };
+      if (!holds) {
+        LOGGER.trace("checkConditions: failed {}", condition);
+        throw new ConditionFailedException("Condition failed: " + condition.operator() + " " + condition.attribute());
+      }
+    }
+  }
+
+  /**
+   * The stored type and value of a single column. Only the value column for the type is set, the others are null.
+   *
+   * @param type   the C_DATA_TYPE.
+   * @param text   the C_DATA, for strings.
+   * @param number the C_LONG, for longs and booleans.
+   * @param real   the C_DOUBLE, for doubles.
+   * @param bytes  the C_BYTES, for binary and encoded documents.
+   */
+  private record ColumnValue(String type, String text, Long number, Double real, byte[] bytes) {
+
+    static ColumnValue from(final ResultSet rs, final int first) throws SQLException {
+      return new ColumnValue(rs.getString(first), rs.getString(first + 1), rs.getObject(first + 2, Long.class),
+          rs.getObject(first + 3, Double.class), rs.getBytes(first + 4));
+    }
+
+    /**
+     * If lookups by this value can seek an index on the attribute name and its value column.
+     */
+    boolean indexed() {
+      return switch (type) {
+        case DOUBLE_TYPE, BINARY_TYPE, DOCUMENT_TYPE -> false;
+        default -> true;
+      };
+    }
+
+    /**
+     * The column compared when looking up by this value, empty for nulls where the type alone matches.
+     */
+    Optional<String> column() {
+      return switch (type) {
+        case LONG_TYPE, BOOLEAN_TYPE -> Optional.of("C_LONG");
+        case DOUBLE_TYPE -> Optional.of("C_DOUBLE");
+        case BINARY_TYPE, DOCUMENT_TYPE -> Optional.of("C_BYTES");
+        case NULL_TYPE -> Optional.empty();
+        default -> Optional.of("C_DATA");
+      };
+    }
+
+    void bindValue(final PreparedStatement ps, final int index) throws SQLException {
+      switch (type) {
+        case LONG_TYPE, BOOLEAN_TYPE -> ps.setLong(index, number);
+        case DOUBLE_TYPE -> ps.setDouble(index, real);
+        case BINARY_TYPE, DOCUMENT_TYPE -> ps.setBytes(index, bytes);
+        default -> ps.setString(index, text);
+      }
+    }
+
+    /**
+     * Sets the C_DATA_TYPE and the four value columns, in that order, from the index given.
+     */
+    void bind(final PreparedStatement ps, final int first) throws SQLException {
+      ps.setString(first, type);
+      if (text == null) {
+        ps.setNull(first + 1, Types.VARCHAR);
+      } else {
+        ps.setString(first + 1, text);
+      }
+      if (number == null) {
+        ps.setNull(first + 2, Types.BIGINT);
+      } else {
+        ps.setLong(first + 2, number);
+      }
+      if (real == null) {
+        ps.setNull(first + 3, Types.DOUBLE);
+      } else {
+        ps.setDouble(first + 3, real);
+      }
+      if (bytes == null) {
+        ps.setNull(first + 4, Types.VARBINARY);
+      } else {
+        ps.setBytes(first + 4, bytes);
+      }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof ColumnValue other)) {
+        return false;
+      }
+      return type.equals(other.type) && Objects.equals(text, other.text) && Objects.equals(number, other.number)
+          && Objects.equals(real, other.real) && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(type, text, number, real, Arrays.hashCode(bytes));
+    }
   }
 }
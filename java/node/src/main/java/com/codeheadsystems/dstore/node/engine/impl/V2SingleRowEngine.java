@@ -0,0 +1,629 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
+import com.codeheadsystems.dstore.node.engine.SqlEngine;
+import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
+import com.codeheadsystems.dstore.node.exception.ConditionFailedException;
+import com.codeheadsystems.dstore.node.exception.InvalidAttributeException;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import com.codeheadsystems.dstore.node.model.ScanRequest;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
+import com.codeheadsystems.metrics.Metrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores the whole entity as a single binary encoded row, so reads and writes are a single primary key operation.
+ */
+@Singleton
+public class V2SingleRowEngine implements TableDefinitionEngine {
+
+  /**
+   * Identifier.
+   */
+  public static final String DEFINITION_NAME = "V2SingleRowEngine";
+  private static final Logger LOGGER = LoggerFactory.getLogger(V2SingleRowEngine.class);
+  private static final int READ_MANY_CHUNK_SIZE = 100;
+  private static final String UPSERT_SQL = "merge into TENANT_DOCUMENT using (values(cast(? as varchar(256)), cast(? as bigint), cast(? as varbinary(65536))))"
+      + " as vals(ID, HASH, C_DOCUMENT) on TENANT_DOCUMENT.ID = vals.ID"
+      + " when matched then update set TENANT_DOCUMENT.HASH = vals.HASH, TENANT_DOCUMENT.C_DOCUMENT = vals.C_DOCUMENT"
+      + " when not matched then insert (ID, HASH, C_DOCUMENT) values (vals.ID, vals.HASH, vals.C_DOCUMENT)";
+  private final Metrics metrics;
+  private final SqlEngine sqlEngine;
+  private final BinaryDocumentEngine binaryDocumentEngine;
+  private final JsonEngine jsonEngine;
+
+  /**
+   * Default constructor.
+   *
+   * @param metrics              for analytics.
+   * @param sqlEngine            to execute sql.
+   * @param binaryDocumentEngine for encoding the document.
+   * @param jsonEngine           for managing json.
+   */
+  @Inject
+  public V2SingleRowEngine(final Metrics metrics,
+                           final SqlEngine sqlEngine,
+                           final BinaryDocumentEngine binaryDocumentEngine,
+                           final JsonEngine jsonEngine) {
+    LOGGER.info("V2SingleRowEngine({},{},{},{})", metrics, sqlEngine, binaryDocumentEngine, jsonEngine);
+    this.metrics = metrics;
+    this.sqlEngine = sqlEngine;
+    this.binaryDocumentEngine = binaryDocumentEngine;
+    this.jsonEngine = jsonEngine;
+  }
+
+  /**
+   * Uses the murmur3/32b hashing function.
+   *
+   * @return supplier.
+   */
+  @Override
+  public Supplier<HashFunction> hashFunctionSupplier() {
+    return Hashing::murmur3_32_fixed;
+  }
+
+  /**
+   * Identifier.
+   *
+   * @return definition name.
+   */
+  @Override
+  public String definitionName() {
+    return DEFINITION_NAME;
+  }
+
+  /**
+   * Transactions check and write on one connection.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean supportsTransactions() {
+    return true;
+  }
+
+  /**
+   * Reads the entity from the table, returning the JsonNode.
+   *
+   * @param tenantTable table to read from.
+   * @param entity      the entity id.
+   * @return a json node if found.
+   */
+  @Override
+  public Optional<JsonNode> read(final TenantTable tenantTable, final String entity) {
+    LOGGER.trace("read({},{}", tenantTable, entity);
+    return sqlEngine.executePreparedTenant(tenantTable,
+        "select C_DOCUMENT from TENANT_DOCUMENT where ID = ?",
+        (ps) -> {
+          try {
+            ps.setString(1, entity);
+            try (final ResultSet rs = ps.executeQuery()) {
+              if (rs.next()) {
+                return Optional.of(binaryDocumentEngine.decode(rs.getBytes(1)));
+              } else {
+                return Optional.empty();
+              }
+            }
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to read data for: " + tenantTable + ":" + entity, e);
+          }
+        });
+  }
+
+  /**
+   * Reads only the named attributes of the entity. The document is one row, so it is decoded and then trimmed.
+   *
+   * @param tenantTable table to read from.
+   * @param entity      the entity id.
+   * @param attributes  the attributes wanted.
+   * @return a json node if found.
+   */
+  @Override
+  public Optional<JsonNode> read(final TenantTable tenantTable, final String entity, final Collection<String> attributes) {
+    LOGGER.trace("read({},{},{})", tenantTable, entity, attributes);
+    if (attributes.isEmpty()) {
+      return read(tenantTable, entity);
+    }
+    return read(tenantTable, entity).map(node -> (JsonNode) ((ObjectNode) node).retain(attributes));
+  }
+
+  /**
+   * Reads many entities with one {@code ID in (...)} query per chunk of ids, all on one connection.
+   *
+   * @param tenantTable table to read from.
+   * @param entities    the entity ids.
+   * @return map of entity id to json node, in the order requested.
+   */
+  @Override
+  public Map<String, JsonNode> readMany(final TenantTable tenantTable, final Collection<String> entities) {
+    LOGGER.trace("readMany({},{})", tenantTable, entities.size());
+    final List<String> ids = entities.stream().distinct().toList();
+    if (ids.isEmpty()) {
+      return Map.of();
+    }
+    return sqlEngine.executeConnectionTenant(tenantTable, (connection) -> {
+      final Map<String, JsonNode> nodes = new HashMap<>();
+      try {
+        for (List<String> chunk : Lists.partition(ids, READ_MANY_CHUNK_SIZE)) {
+          final String query = "select ID, C_DOCUMENT from TENANT_DOCUMENT where ID in ("
+              + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+          try (final PreparedStatement ps = connection.prepareStatement(query)) {
+            for (int i = 0; i < chunk.size(); i++) {
+              ps.setString(i + 1, chunk.get(i));
+            }
+            try (final ResultSet rs = ps.executeQuery()) {
+              while (rs.next()) {
+                nodes.put(rs.getString(1), binaryDocumentEngine.decode(rs.getBytes(2)));
+              }
+            }
+          }
+        }
+      } catch (SQLException e) {
+        throw new IllegalArgumentException("Unable to read data for: " + tenantTable, e);
+      }
+      final Map<String, JsonNode> result = new LinkedHashMap<>();
+      ids.stream().filter(nodes::containsKey).forEach(id -> result.put(id, nodes.get(id)));
+      return result;
+    });
+  }
+
+  /**
+   * Scans one segment using the HASH index, one row per entity, reading one row past the limit to know if more
+   * remain.
+   *
+   * @param tenantTable table to scan.
+   * @param request     the segment, page size and where to start.
+   * @param consumer    gets each entity id and its data.
+   * @return the position to continue after if the limit was hit and more remain, else empty.
+   */
+  @Override
+  public Optional<ScanPosition> scan(final TenantTable tenantTable,
+                                     final ScanRequest request,
+                                     final BiConsumer<String, JsonNode> consumer) {
+    LOGGER.trace("scan({},{})", tenantTable, request);
+    final ScanPosition start = request.startAfter().orElse(ScanPosition.from(request.hashStart() - 1, ""));
+    return sqlEngine.executePreparedTenant(tenantTable,
+        "select ID, HASH, C_DOCUMENT from TENANT_DOCUMENT where HASH >= ? and HASH < ?"
+            + " and (HASH > ? or (HASH = ? and ID > ?)) order by HASH, ID limit ?",
+        (ps) -> {
+          try {
+            ps.setLong(1, request.hashStart());
+            ps.setLong(2, request.hashEnd());
+            ps.setLong(3, start.hash());
+            ps.setLong(4, start.hash());
+            ps.setString(5, start.id());
+            ps.setInt(6, request.limit() + 1);
+            try (final ResultSet rs = ps.executeQuery()) {
+              int count = 0;
+              ScanPosition last = null;
+              while (rs.next()) {
+                if (count++ >= request.limit()) {
+                  return Optional.of(last);
+                }
+                final String id = rs.getString(1);
+                consumer.accept(id, binaryDocumentEngine.decode(rs.getBytes(3)));
+                last = ScanPosition.from(rs.getLong(2), id);
+              }
+              return Optional.empty();
+            }
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to scan: " + tenantTable, e);
+          }
+        });
+  }
+
+  /**
+   * Writes the entity to the table. Replaces the existing entity if there is one.
+   *
+   * @param tenantTable table to write to.
+   * @param entity      the entity id.
+   * @param data        the data.
+   */
+  @Override
+  public void write(final TenantTable tenantTable, final String entity, final JsonNode data) {
+    LOGGER.trace("write({},{}", tenantTable, entity);
+    final byte[] document = binaryDocumentEngine.encode(data);
+    sqlEngine.executePreparedTenant(tenantTable, upsertStatement(),
+        (ps) -> {
+          try {
+            bindUpsert(ps, entity, document);
+            ps.executeUpdate();
+            return null;
+          } catch (SQLException e) {
+            LOGGER.error("Unable to write: {},{}", tenantTable, entity, e);
+            throw new IllegalArgumentException("Unable to write", e);
+          }
+        });
+  }
+
+  /**
+   * Writes the entity if the conditions hold against the current document, checked and written in one transaction.
+   *
+   * @param tenantTable table to write to.
+   * @param entity      the entity id.
+   * @param data        the data.
+   * @param conditions  that must all hold.
+   */
+  @Override
+  public void write(final TenantTable tenantTable,
+                    final String entity,
+                    final JsonNode data,
+                    final Collection<Condition> conditions) {
+    if (conditions.isEmpty()) {
+      write(tenantTable, entity, data);
+      return;
+    }
+    LOGGER.trace("write({},{},{}", tenantTable, entity, conditions.size());
+    final byte[] document = binaryDocumentEngine.encode(data);
+    sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+      try {
+        checkConditions(readLocked(connection, entity), conditions);
+        try (final PreparedStatement ps = connection.prepareStatement(upsertStatement())) {
+          bindUpsert(ps, entity, document);
+          ps.executeUpdate();
+        }
+        return null;
+      } catch (SQLException e) {
+        LOGGER.error("Unable to write: {},{}", tenantTable, entity, e);
+        throw new IllegalArgumentException("Unable to write", e);
+      }
+    });
+  }
+
+  /**
+   * Writes and deletes many entities in one transaction on one connection, each as a single JDBC batch.
+   *
+   * @param tenantTable table to write to.
+   * @param writes      entities to write, keyed by entity id.
+   * @param deletes     entity ids to delete.
+   */
+  @Override
+  public void writeMany(final TenantTable tenantTable, final Map<String, JsonNode> writes, final Collection<String> deletes) {
+    LOGGER.trace("writeMany({},{},{})", tenantTable, writes.size(), deletes.size());
+    final Map<String, byte[]> documents = new LinkedHashMap<>();
+    writes.forEach((entity, data) -> documents.put(entity, binaryDocumentEngine.encode(data)));
+    final List<String> removals = deletes.stream().filter(entity -> !documents.containsKey(entity)).toList();
+    if (documents.isEmpty() && removals.isEmpty()) {
+      return;
+    }
+    sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+      try {
+        if (!removals.isEmpty()) {
+          try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_DOCUMENT where ID = ?")) {
+            for (String entity : removals) {
+              ps.setString(1, entity);
+              ps.addBatch();
+            }
+            ps.executeBatch();
+          }
+        }
+        if (!documents.isEmpty()) {
+          try (final PreparedStatement ps = connection.prepareStatement(upsertStatement())) {
+            for (Map.Entry<String, byte[]> entry : documents.entrySet()) {
+              bindUpsert(ps, entry.getKey(), entry.getValue());
+              ps.addBatch();
+            }
+            ps.executeBatch();
+          }
+        }
+        return null;
+      } catch (SQLException e) {
+        LOGGER.error("Unable to writeMany: {}", tenantTable, e);
+        throw new IllegalArgumentException("Unable to write", e);
+      }
+    });
+  }
+
+  /**
+   * Locks every item's entity first, in entity order so two transactions on the same entities cannot deadlock, then
+   * checks the conditions and applies the deletes and the puts, each as a single JDBC batch.
+   *
+   * @param tenantTable table to write to.
+   * @param items       the puts, deletes and condition checks, each for a different entity.
+   */
+  @Override
+  public void transact(final TenantTable tenantTable, final List<TransactionItem> items) {
+    LOGGER.trace("transact({},{})", tenantTable, items.size());
+    final Map<String, byte[]> documents = new LinkedHashMap<>();
+    items.forEach(item -> item.put().ifPresent(data -> documents.put(item.entity(), binaryDocumentEngine.encode(data))));
+    final List<String> removals = items.stream().filter(TransactionItem::delete).map(TransactionItem::entity).toList();
+    sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+      try {
+        lockEntities(connection, items.stream().map(TransactionItem::entity).toList());
+        for (TransactionItem item : items) {
+          if (!item.conditions().isEmpty()) {
+            checkConditions(readDocument(connection, item.entity()), item.conditions());
+          }
+        }
+        if (!removals.isEmpty()) {
+          try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_DOCUMENT where ID = ?")) {
+            for (String entity : removals) {
+              ps.setString(1, entity);
+              ps.addBatch();
+            }
+            ps.executeBatch();
+          }
+        }
+        if (!documents.isEmpty()) {
+          try (final PreparedStatement ps = connection.prepareStatement(upsertStatement())) {
+            for (Map.Entry<String, byte[]> entry : documents.entrySet()) {
+              bindUpsert(ps, entry.getKey(), entry.getValue());
+              ps.addBatch();
+            }
+            ps.executeBatch();
+          }
+        }
+        return null;
+      } catch (SQLException e) {
+        LOGGER.error("Unable to transact: {}", tenantTable, e);
+        throw new IllegalArgumentException("Unable to transact", e);
+      }
+    });
+  }
+
+  /**
+   * Updates individual attributes of an existing entity. The document is read, patched and written back in one
+   * transaction. Removing every attribute deletes the row, as V1 does.
+   *
+   * @param tenantTable table to update.
+   * @param entity      the entity id.
+   * @param data        the attributes to set, or remove if json null.
+   * @return boolean if the entity existed and was updated.
+   */
+  @Override
+  public boolean update(final TenantTable tenantTable, final String entity, final JsonNode data) {
+    LOGGER.trace("update({},{}", tenantTable, entity);
+    return sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+      try {
+        final Optional<ObjectNode> current = readLocked(connection, entity);
+        if (current.isEmpty()) {
+          LOGGER.trace("update: {}:{} not found", tenantTable, entity);
+          return false;
+        }
+        final ObjectNode document = current.get();
+        data.fields().forEachRemaining(field -> {
+          if (field.getValue().isNull()) {
+            document.remove(field.getKey());
+          } else {
+            document.set(field.getKey(), field.getValue());
+          }
+        });
+        if (document.isEmpty()) {
+          LOGGER.trace("update: {}:{} has no attributes left, deleting", tenantTable, entity);
+          try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_DOCUMENT where ID = ?")) {
+            ps.setString(1, entity);
+            ps.executeUpdate();
+          }
+          return true;
+        }
+        try (final PreparedStatement ps = connection.prepareStatement("update TENANT_DOCUMENT set C_DOCUMENT = ? where ID = ?")) {
+          ps.setBytes(1, binaryDocumentEngine.encode(document));
+          ps.setString(2, entity);
+          ps.executeUpdate();
+        }
+        return true;
+      } catch (SQLException e) {
+        LOGGER.error("Unable to update: {},{}", tenantTable, entity, e);
+        throw new IllegalArgumentException("Unable to update", e);
+      }
+    });
+  }
+
+  /**
+   * Atomically adds the delta to a numeric attribute of the document, creating the attribute (and document) if
+   * missing, and sets the other attributes in the same write. The row is write locked first so concurrent increments
+   * serialize instead of losing updates.
+   *
+   * @param tenantTable table to update.
+   * @param entity      the entity id.
+   * @param attribute   the numeric attribute.
+   * @param delta       the amount to add, may be negative.
+   * @param attributes  other attributes to set along with the increment.
+   * @return the new value.
+   */
+  @Override
+  public long increment(final TenantTable tenantTable,
+                        final String entity,
+                        final String attribute,
+                        final long delta,
+                        final JsonNode attributes) {
+    LOGGER.trace("increment({},{},{})", tenantTable, entity, attribute);
+    return sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+      try {
+        final Optional<ObjectNode> current = readLocked(connection, entity);
+        final ObjectNode document = current.orElseGet(jsonEngine::createObjectNode);
+        final long value;
+        if (current.isEmpty()) {
+          value = delta;
+        } else {
+          final JsonNode existing = document.get(attribute);
+          if (existing == null || existing.isNull()) {
+            value = delta;
+          } else if (existing.isIntegralNumber() && existing.canConvertToLong()) {
+            value = Math.addExact(existing.longValue(), delta);
+          } else {
+            throw new InvalidAttributeException("Attribute is not a number: " + attribute + ":" + existing.getNodeType());
+          }
+        }
+        document.put(attribute, value);
+        attributes.fields().forEachRemaining(field -> document.set(field.getKey(), field.getValue()));
+        try (final PreparedStatement ps = connection.prepareStatement(upsertStatement())) {
+          bindUpsert(ps, entity, binaryDocumentEngine.encode(document));
+          ps.executeUpdate();
+        }
+        return value;
+      } catch (SQLException e) {
+        LOGGER.error("Unable to increment: {},{},{}", tenantTable, entity, attribute, e);
+        throw new IllegalArgumentException("Unable to increment", e);
+      }
+    });
+  }
+
+  /**
+   * Delete the entity from the table.
+   *
+   * @param tenantTable table to delete from.
+   * @param entity      the entity id.
+   * @return boolean if anything was deleted.
+   */
+  @Override
+  public boolean delete(final TenantTable tenantTable, final String entity) {
+    LOGGER.trace("delete({},{}", tenantTable, entity);
+    return sqlEngine.executePreparedTenant(tenantTable,
+        "delete from TENANT_DOCUMENT where ID = ?",
+        (ps) -> {
+          try {
+            ps.setString(1, entity);
+            final boolean result = ps.executeUpdate() > 0;
+            LOGGER.trace("deleted: {}:{}:{}", tenantTable, entity, result);
+            return result;
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to delete data for: " + tenantTable + ":" + entity, e);
+          }
+        });
+  }
+
+  /**
+   * Delete the entity if the conditions hold against the current document, checked and deleted in one transaction.
+   *
+   * @param tenantTable table to delete from.
+   * @param entity      the entity id.
+   * @param conditions  that must all hold.
+   * @return boolean if anything was deleted.
+   */
+  @Override
+  public boolean delete(final TenantTable tenantTable, final String entity, final Collection<Condition> conditions) {
+    if (conditions.isEmpty()) {
+      return delete(tenantTable, entity);
+    }
+    LOGGER.trace("delete({},{},{}", tenantTable, entity, conditions.size());
+    return sqlEngine.executeTransactionTenant(tenantTable, (connection) -> {
+      try {
+        checkConditions(readLocked(connection, entity), conditions);
+        try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_DOCUMENT where ID = ?")) {
+          ps.setString(1, entity);
+          return ps.executeUpdate() > 0;
+        }
+      } catch (SQLException e) {
+        throw new IllegalArgumentException("Unable to delete data for: " + tenantTable + ":" + entity, e);
+      }
+    });
+  }
+
+  /**
+   * The statement used to insert or replace a document. Engines that keep extra key columns override this along with
+   * {@link #bindUpsert(PreparedStatement, String, byte[])}.
+   *
+   * @return the sql.
+   */
+  protected String upsertStatement() {
+    return UPSERT_SQL;
+  }
+
+  /**
+   * Sets the parameters of the upsert statement for one document.
+   *
+   * @param ps       the prepared upsert statement.
+   * @param entity   the entity id.
+   * @param document the encoded document.
+   * @throws SQLException if the parameters cannot be set.
+   */
+  protected void bindUpsert(final PreparedStatement ps, final String entity, final byte[] document) throws SQLException {
+    ps.setString(1, entity);
+    ps.setInt(2, hash(entity));
+    ps.setBytes(3, document);
+  }
+
+  /**
+   * Reads the document after taking the write lock on its row, so a read-modify-write in the same transaction cannot
+   * interleave with another writer.
+   */
+  private Optional<ObjectNode> readLocked(final Connection connection, final String entity) throws SQLException {
+    try (final PreparedStatement ps = connection.prepareStatement("update TENANT_DOCUMENT set HASH = HASH where ID = ?")) {
+      ps.setString(1, entity);
+      ps.executeUpdate();
+    }
+    return readDocument(connection, entity);
+  }
+
+  /**
+   * Locks each entity in entity order, in one JDBC batch, so two transactions over the same entities take their locks
+   * in the same order and cannot deadlock.
+   */
+  private void lockEntities(final Connection connection, final Collection<String> entities) throws SQLException {
+    try (final PreparedStatement ps = connection.prepareStatement("update TENANT_DOCUMENT set HASH = HASH where ID = ?")) {
+      for (String entity : entities.stream().distinct().sorted().toList()) {
+        ps.setString(1, entity);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+  }
+
+  private Optional<ObjectNode> readDocument(final Connection connection, final String entity) throws SQLException {
+    try (final PreparedStatement ps = connection.prepareStatement("select C_DOCUMENT from TENANT_DOCUMENT where ID = ?")) {
+      ps.setString(1, entity);
+      try (final ResultSet rs = ps.executeQuery()) {
+        if (rs.next()) {
+          return Optional.of(binaryDocumentEngine.decode(rs.getBytes(1)));
+        }
+        return Optional.empty();
+      }
+    }
+  }
+
+  private void checkConditions(final Optional<ObjectNode> document, final Collection<Condition> conditions) {
+    for (Condition condition : conditions) {
+      final JsonNode current = document.map(node -> node.get(condition.attribute())).orElse(null);
+      final boolean holds = switch (condition.operator()) {
+        case EXISTS -> current != null;
+        case NOT_EXISTS -> current == null;
+        case EQUALS -> current != null && current.equals(condition.value().orElseThrow());
+      };
+      if (!holds) {
+        LOGGER.trace("checkConditions: failed {}", condition);
+        throw new ConditionFailedException("Condition failed: " + condition.operator() + " " + condition.attribute());
+      }
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
+import com.codeheadsystems.dstore.node.engine.SqlEngine;
+import com.codeheadsystems.dstore.node.model.ImmutableQueryResult;
+import com.codeheadsystems.dstore.node.model.QueryRequest;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.metrics.Metrics;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single row documents keyed by a partition key and a sort key. The entity id is {@code partitionKey:sortKey}, split
+ * on the first separator, so the partition key cannot contain one but the sort key (a timestamp, say) can. Both parts
+ * are also kept in their own columns with a unique index, so a query on one partition is an index range scan.
+ */
+@Singleton
+public class V3SortKeyEngine extends V2SingleRowEngine {
+
+  /**
+   * Identifier.
+   */
+  public static final String DEFINITION_NAME = "V3SortKeyEngine";
+
+  /**
+   * Separates the partition key from the sort key in the entity id.
+   */
+  public static final char SEPARATOR = ':';
+  private static final Logger LOGGER = LoggerFactory.getLogger(V3SortKeyEngine.class);
+  private static final String UPSERT_SQL = "merge into TENANT_DOCUMENT using (values(cast(? as varchar(256)), cast(? as varchar(256)),"
+      + " cast(? as varchar(256)), cast(? as bigint), cast(? as varbinary(65536))))"
+      + " as vals(ID, PARTITION_KEY, SORT_KEY, HASH, C_DOCUMENT) on TENANT_DOCUMENT.ID = vals.ID"
+      + " when matched then update set TENANT_DOCUMENT.HASH = vals.HASH, TENANT_DOCUMENT.C_DOCUMENT = vals.C_DOCUMENT"
+      + " when not matched then insert (ID, PARTITION_KEY, SORT_KEY, HASH, C_DOCUMENT)"
+      + " values (vals.ID, vals.PARTITION_KEY, vals.SORT_KEY, vals.HASH, vals.C_DOCUMENT)";
+  private final SqlEngine sqlEngine;
+  private final BinaryDocumentEngine binaryDocumentEngine;
+
+  /**
+   * Default constructor.
+   *
+   * @param metrics              for analytics.
+   * @param sqlEngine            to execute sql.
+   * @param binaryDocumentEngine for encoding the document.
+   * @param jsonEngine           for managing json.
+   */
+  @Inject
+  public V3SortKeyEngine(final Metrics metrics,
+                         final SqlEngine sqlEngine,
+                         final BinaryDocumentEngine binaryDocumentEngine,
+                         final JsonEngine jsonEngine) {
+    super(metrics, sqlEngine, binaryDocumentEngine, jsonEngine);
+    LOGGER.info("V3SortKeyEngine({},{},{},{})", metrics, sqlEngine, binaryDocumentEngine, jsonEngine);
+    this.sqlEngine = sqlEngine;
+    this.binaryDocumentEngine = binaryDocumentEngine;
+  }
+
+  /**
+   * Builds the entity id from its parts.
+   *
+   * @param partitionKey the partition key.
+   * @param sortKey      the sort key.
+   * @return the entity id.
+   */
+  public static String entity(final String partitionKey, final String sortKey) {
+    return partitionKey + SEPARATOR + sortKey;
+  }
+
+  /**
+   * Identifier.
+   *
+   * @return definition name.
+   */
+  @Override
+  public String definitionName() {
+    return DEFINITION_NAME;
+  }
+
+  /**
+   * The entity id holds the partition and sort keys.
+   *
+   * @return true.
+   */
+  @Override
+  public boolean supportsQuery() {
+    return true;
+  }
+
+  /**
+   * Queries one partition with a single range scan of the (PARTITION_KEY, SORT_KEY) index, reading one row past the
+   * limit to know if more remain.
+   *
+   * @param tenantTable table to query.
+   * @param request     the partition, sort key range and page.
+   * @return the page of results.
+   */
+  @Override
+  public QueryResult query(final TenantTable tenantTable, final QueryRequest request) {
+    LOGGER.trace("query({},{})", tenantTable, request);
+    final StringBuilder sql = new StringBuilder("select ID, SORT_KEY, C_DOCUMENT from TENANT_DOCUMENT where PARTITION_KEY = ?");
+    final List<String> parameters = new ArrayList<>();
+    parameters.add(request.partitionKey());
+    request.operator().ifPresent(operator -> {
+      final String value = request.value().orElseThrow();
+      switch (operator) {
+        case BEGINS_WITH -> {
+          sql.append(" and SORT_KEY >= ?");
+          parameters.add(value);
+          prefixEnd(value).ifPresent(end -> {
+            sql.append(" and SORT_KEY < ?");
+            parameters.add(end);
+          });
+        }
+        case BETWEEN -> {
+          sql.append(" and SORT_KEY >= ? and SORT_KEY <= ?");
+          parameters.add(value);
+          parameters.add(request.upperValue().orElseThrow());
+        }
+        case GREATER_THAN -> {
+          sql.append(" and SORT_KEY > ?");
+          parameters.add(value);
+        }
+        case LESS_THAN -> {
+          sql.append(" and SORT_KEY < ?");
+          parameters.add(value);
+        }
+        default -> throw new IllegalArgumentException("Unknown operator: " + operator);
+      }
+    });
+    request.startAfter().ifPresent(sortKey -> {
+      sql.append(request.forward() ? " and SORT_KEY > ?" : " and SORT_KEY < ?");
+      parameters.add(sortKey);
+    });
+    sql.append(request.forward() ? " order by SORT_KEY asc" : " order by SORT_KEY desc").append(" limit ?");
+    return sqlEngine.executePreparedTenant(tenantTable, sql.toString(),
+        (ps) -> {
+          try {
+            for (int i = 0; i < parameters.size(); i++) {
+              ps.setString(i + 1, parameters.get(i));
+            }
+            ps.setInt(parameters.size() + 1, request.limit() + 1);
+            final ImmutableQueryResult.Builder builder = ImmutableQueryResult.builder();
+            try (final ResultSet rs = ps.executeQuery()) {
+              int count = 0;
+              String last = null;
+              while (rs.next()) {
+                if (count++ >= request.limit()) {
+                  builder.lastSortKey(last);
+                  break;
+                }
+                builder.putEntities(rs.getString(1), binaryDocumentEngine.decode(rs.getBytes(3)));
+                last = rs.getString(2);
+              }
+            }
+            return builder.build();
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to query: " + tenantTable + ":" + request.partitionKey(), e);
+          }
+        });
+  }
+
+  /**
+   * Includes the partition key and sort key columns.
+   *
+   * @return the sql.
+   */
+  @Override
+  protected String upsertStatement() {
+    return UPSERT_SQL;
+  }
+
+  /**
+   * Splits the entity id into its keys for their columns.
+   *
+   * @param ps       the prepared upsert statement.
+   * @param entity   the entity id.
+   * @param document the encoded document.
+   * @throws SQLException if the parameters cannot be set.
+   */
+  @Override
+  protected void bindUpsert(final PreparedStatement ps, final String entity, final byte[] document) throws SQLException {
+    final int separator = entity.indexOf(SEPARATOR);
+    if (separator < 1 || separator == entity.length() - 1) {
+      throw new IllegalArgumentException("Entity id must be partitionKey" + SEPARATOR + "sortKey: " + entity);
+    }
+    ps.setString(1, entity);
+    ps.setString(2, entity.substring(0, separator));
+    ps.setString(3, entity.substring(separator + 1));
+    ps.setInt(4, hash(entity));
+    ps.setBytes(5, document);
+  }
+
+  /**
+   * The smallest string greater than every string starting with the prefix, so begins_with is a plain range.
+   * Empty if there is no such string, when the prefix is all max characters.
+   */
+  private static Optional<String> prefixEnd(final String prefix) {
+    final StringBuilder end = new StringBuilder(prefix);
+    while (end.length() > 0) {
+      final int lastIndex = end.length() - 1;
+      final char last = end.charAt(lastIndex);
+      if (last != Character.MAX_VALUE) {
+        end.setCharAt(lastIndex, (char) (last + 1));
+        return Optional.of(end.toString());
+      }
+      end.setLength(lastIndex);
+    }
+    return Optional.empty();
+  }
+
+}
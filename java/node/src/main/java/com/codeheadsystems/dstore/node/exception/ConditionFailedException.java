@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.exception;
+
+/**
+ * A write precondition did not hold. Maps to a 412.
+ */
+public class ConditionFailedException extends RuntimeException {
+
+  /**
+   * Default constructor.
+   */
+  public ConditionFailedException() {
+    super();
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param message for the exception.
+   */
+  public ConditionFailedException(final String message) {
+    super(message);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param message for the exception.
+   * @param cause   origins.
+   */
+  public ConditionFailedException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param cause origins.
+   */
+  public ConditionFailedException(final Throwable cause) {
+    super(cause);
+  }
+}
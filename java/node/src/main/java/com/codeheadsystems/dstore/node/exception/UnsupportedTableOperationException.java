@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.exception;
+
+/**
+ * The table's engine does not support the operation, like a sort key query on a table without one. Maps to a 400.
+ */
+public class UnsupportedTableOperationException extends RuntimeException {
+
+  /**
+   * Default constructor.
+   */
+  public UnsupportedTableOperationException() {
+    super();
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param message for the exception.
+   */
+  public UnsupportedTableOperationException(final String message) {
+    super(message);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param message for the exception.
+   * @param cause   origins.
+   */
+  public UnsupportedTableOperationException(final String message, final Throwable cause) {
+    super(message, cause);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param cause origins.
+   */
+  public UnsupportedTableOperationException(final Throwable cause) {
+    super(cause);
+  }
+}
@@ -18,6 +18,7 @@ package com.codeheadsystems.dstore.node.healthchecks;
 
 import com.codahale.metrics.health.HealthCheck;
 import com.codeheadsystems.dstore.node.manager.DataSourceManager;
+import com.codeheadsystems.dstore.node.manager.TenantTableWarmupManager;
 import com.codeheadsystems.metrics.Metrics;
 import java.sql.SQLException;
 import javax.inject.Inject;
@@ -26,7 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Verifies the internal datastore is healthy.
+ * Verifies the internal datastore is healthy, and that the tables opened at startup are ready.
  */
 @Singleton
 public class InternalDataSourceHealthCheck extends HealthCheck {
@@ -35,19 +36,23 @@ public class InternalDataSourceHealthCheck extends HealthCheck {
 
   private final DataSourceManager dataSourceManager;
   private final Metrics metrics;
+  private final TenantTableWarmupManager tenantTableWarmupManager;
 
   /**
    * Default health check.
    *
    * @param dataSourceManager to use.
-   * @param metrics           to use.
+   * @param metrics                  to use.
+   * @param tenantTableWarmupManager for the progress opening tables at startup.
    */
   @Inject
   public InternalDataSourceHealthCheck(final DataSourceManager dataSourceManager,
-                                       final Metrics metrics) {
-    LOGGER.info("InternalDataSourceHealthCheck({})", dataSourceManager);
+                                       final Metrics metrics,
+                                       final TenantTableWarmupManager tenantTableWarmupManager) {
+    LOGGER.info("InternalDataSourceHealthCheck({},{})", dataSourceManager, tenantTableWarmupManager);
     this.dataSourceManager = dataSourceManager;
     this.metrics = metrics;
+    this.tenantTableWarmupManager = tenantTableWarmupManager;
   }
 
   /**
@@ -60,10 +65,12 @@ public class InternalDataSourceHealthCheck extends HealthCheck {
   protected Result check() throws Exception {
     LOGGER.trace("check()");
     try {
-      if (dataSourceManager.isHealthy()) {
-        return Result.healthy();
-      } else {
+      if (!dataSourceManager.isHealthy()) {
         return Result.unhealthy("DB Unavailable");
+      } else if (tenantTableWarmupManager.isComplete()) {
+        return Result.healthy(tenantTableWarmupManager.progress());
+      } else {
+        return Result.unhealthy("Warming up: " + tenantTableWarmupManager.progress());
       }
     } catch (SQLException e) {
       LOGGER.error("Database check failure", e);
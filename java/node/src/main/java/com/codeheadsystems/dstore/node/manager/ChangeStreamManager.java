@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.manager;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.model.ChangePage;
+import com.codeheadsystems.dstore.node.model.ChangeRecord;
+import com.codeheadsystems.dstore.node.model.ImmutableChangePage;
+import com.codeheadsystems.dstore.node.model.ImmutableChangeRecord;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.Metrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the recent changes of each table with a change stream, in memory, so consumers can tail them instead of
+ * polling the entities. Each table keeps at most the configured number of changes, dropping the oldest. Sequence
+ * numbers start again from 1 when the node restarts or the stream is dropped, so each stream has a random epoch and a
+ * checkpoint is the epoch and the sequence. Readers with a checkpoint from another epoch are told they were trimmed so
+ * they resync. A table's stream is only kept once it has a change, so reads never create one.
+ */
+@Singleton
+public class ChangeStreamManager {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChangeStreamManager.class);
+
+  private final int capacity;
+  private final Counter appendedCounter;
+  private final Map<TenantTableIdentifier, ChangeLog> logs = new ConcurrentHashMap<>();
+  private final Object created = new Object();
+
+  /**
+   * Default constructor.
+   *
+   * @param metrics       for analytics.
+   * @param configuration for the capacity of each stream.
+   */
+  @Inject
+  public ChangeStreamManager(final Metrics metrics,
+                             final NodeConfiguration configuration) {
+    LOGGER.info("ChangeStreamManager({},{})", metrics, configuration.getChangeStreamCapacity());
+    this.capacity = configuration.getChangeStreamCapacity();
+    this.appendedCounter = metrics.registry().counter("ChangeStreamManager.appended");
+  }
+
+  /**
+   * Adds a change to the table's stream, waking any readers waiting for it.
+   *
+   * @param identifier of the table.
+   * @param entity     that changed.
+   * @param oldImage   the entity before, empty if created.
+   * @param newImage   the entity after, empty if deleted.
+   * @return the change added.
+   */
+  public ChangeRecord append(final TenantTableIdentifier identifier,
+                             final String entity,
+                             final Optional<JsonNode> oldImage,
+                             final Optional<JsonNode> newImage) {
+    LOGGER.trace("append({},{})", identifier, entity);
+    ChangeLog log = logs.get(identifier);
+    if (log == null) {
+      log = logs.computeIfAbsent(identifier, (id) -> new ChangeLog(capacity));
+      synchronized (created) {
+        created.notifyAll();
+      }
+    }
+    final ChangeRecord record = log.append(entity, oldImage, newImage);
+    appendedCounter.increment();
+    return record;
+  }
+
+  /**
+   * Reads the changes after the sequence given, waiting up to the time given for one to arrive if there are none yet.
+   * A checkpoint from another epoch, or without one, reads from the start of the stream and is marked trimmed. A table
+   * with no changes yet gets an empty page without a stream being kept for it.
+   *
+   * @param identifier of the table.
+   * @param epoch      of the stream the sequence is from.
+   * @param after      the sequence already read, zero for the start of the stream.
+   * @param limit      most changes to return.
+   * @param waitMillis how long to wait for a change, zero to not wait.
+   * @return the page of changes.
+   */
+  public ChangePage read(final TenantTableIdentifier identifier,
+                         final Optional<String> epoch,
+                         final long after,
+                         final int limit,
+                         final long waitMillis) {
+    LOGGER.trace("read({},{},{},{},{})", identifier, epoch, after, limit, waitMillis);
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+    final Optional<ChangeLog> log = awaitLog(identifier, deadline);
+    if (log.isEmpty()) {
+      return new ChangeLog(capacity).read(epoch, after, limit, 0);
+    }
+    return log.get().read(epoch, after, limit, Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+  }
+
+  /**
+   * The table's stream, waiting until the deadline for the first change to create it if there is none yet.
+   */
+  private Optional<ChangeLog> awaitLog(final TenantTableIdentifier identifier, final long deadline) {
+    ChangeLog log = logs.get(identifier);
+    if (log != null) {
+      return Optional.of(log);
+    }
+    synchronized (created) {
+      long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      while ((log = logs.get(identifier)) == null && remaining > 0) {
+        try {
+          created.wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      }
+    }
+    return Optional.ofNullable(log);
+  }
+
+  /**
+   * Forgets the table's stream.
+   *
+   * @param identifier of the table.
+   */
+  public void drop(final TenantTableIdentifier identifier) {
+    LOGGER.debug("drop({})", identifier);
+    logs.remove(identifier);
+  }
+
+  /**
+   * Forgets the streams of every table of the tenant.
+   *
+   * @param tenantId whose streams to forget.
+   */
+  public void dropTenant(final String tenantId) {
+    LOGGER.debug("dropTenant({})", tenantId);
+    logs.keySet().removeIf(identifier -> identifier.tenantId().equals(tenantId));
+  }
+
+  /**
+   * The bounded changes of one table. Appends and reads are synchronized on the log, which is also the monitor
+   * readers wait on.
+   */
+  private static class ChangeLog {
+
+    private final int capacity;
+    private final String epoch = UUID.randomUUID().toString();
+    private final ArrayDeque<ChangeRecord> records = new ArrayDeque<>();
+    private long lastSequence = 0;
+
+    ChangeLog(final int capacity) {
+      this.capacity = capacity;
+    }
+
+    synchronized ChangeRecord append(final String entity,
+                                     final Optional<JsonNode> oldImage,
+                                     final Optional<JsonNode> newImage) {
+      final ChangeRecord record = ImmutableChangeRecord.builder()
+          .sequence(++lastSequence)
+          .entity(entity)
+          .oldImage(oldImage)
+          .newImage(newImage)
+          .build();
+      records.addLast(record);
+      while (records.size() > capacity) {
+        records.removeFirst();
+      }
+      notifyAll();
+      return record;
+    }
+
+    synchronized ChangePage read(final Optional<String> readerEpoch,
+                                 final long after,
+                                 final int limit,
+                                 final long waitMillis) {
+      // A checkpoint from another epoch has a sequence from before a restart or a drop, which says nothing about this
+      // stream. Without an epoch there is no telling.
+      final boolean otherEpoch = after > 0 && !readerEpoch.equals(Optional.of(epoch));
+      final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+      long remaining = waitMillis;
+      while (!otherEpoch && after == lastSequence && remaining > 0) {
+        try {
+          wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+        remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+      }
+      final boolean reset = otherEpoch || after > lastSequence;
+      final long start = reset ? 0 : after;
+      final long oldest = records.isEmpty() ? lastSequence + 1 : records.peekFirst().sequence();
+      final List<ChangeRecord> page = new ArrayList<>();
+      for (ChangeRecord record : records) {
+        if (page.size() >= limit) {
+          break;
+        }
+        if (record.sequence() > start) {
+          page.add(record);
+        }
+      }
+      return ImmutableChangePage.builder()
+          .epoch(epoch)
+          .records(page)
+          .next(page.isEmpty() ? start : page.get(page.size() - 1).sequence())
+          .trimmed(reset || oldest > start + 1)
+          .build();
+    }
+  }
+}
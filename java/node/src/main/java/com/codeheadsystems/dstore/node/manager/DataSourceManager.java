@@ -16,19 +16,42 @@
 
 package com.codeheadsystems.dstore.node.manager;
 
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.ConnectionPoolEngine;
 import com.codeheadsystems.dstore.node.engine.DatabaseConnectionEngine;
 import com.codeheadsystems.dstore.node.engine.DatabaseInitializationEngine;
-import com.codeheadsystems.dstore.node.model.Tenant;
+import com.codeheadsystems.dstore.node.engine.SqlEngine;
+import com.codeheadsystems.dstore.node.engine.StorageCopyEngine;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
 import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.google.common.cache.RemovalListeners;
 import com.google.common.cache.RemovalNotification;
-import com.mchange.v2.c3p0.ComboPooledDataSource;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import io.dropwizard.lifecycle.Managed;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.sql.DataSource;
@@ -37,6 +60,20 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Provides datasources either of type tenant or internal. Responsible for generating and maintaining.
+ *
+ * <p>Tenant datasources are kept by table, up to a configured count and optionally only while they are in use. Each
+ * keeps a connection open for as long as it is kept, so its database stays open too. When one is evicted, or its table
+ * or tenant is deleted, its pool is closed in the background. Once the connections in use are returned, a table with
+ * its own database has it shut down cleanly, releasing its memory and files. Opening a pool on a database and shutting
+ * it down hold the same lock, so a table used again while it is being closed either keeps its database open or opens
+ * it again after the shutdown.
+ *
+ * <p>How often each table is used is counted, so the busiest tables can be opened at startup.
+ *
+ * <p>Tables in shared storage each have their own schema in one of the shard databases. Each still gets its own pool,
+ * with its connections set to its schema, but the database behind them is shared. A table can be moved between its
+ * own database and shared storage. New uses of the table wait while it moves. Callers may still hold the table as it
+ * was before it moved, so where each table was last moved is kept, and wins over where the caller thinks it is.
  */
 @Singleton
 public class DataSourceManager implements Managed {
@@ -45,16 +82,35 @@ public class DataSourceManager implements Managed {
    */
   public static final String INTERNAL = "liquibase/internal";
   /**
-   * Identifier for tenant liquibase files.
+   * Identifier for tenant liquibase files. Each table definition engine has its own directory under here.
+   */
+  public static final String TENANT_PREFIX = "liquibase/";
+  /**
+   * Identifier for the V1 tenant liquibase files.
    */
-  public static final String TENANT = "liquibase/V1SingleEntryEngine";
+  public static final String TENANT = TENANT_PREFIX + "V1SingleEntryEngine";
   private static final Logger LOGGER = LoggerFactory.getLogger(DataSourceManager.class);
   private static final int INTERNAL_MIN_POOL_SIZE = 1;
-  private static final int TENANT_MIN_POOL_SIZE = 0;
+  private static final int TENANT_MIN_POOL_SIZE = 1;
+  private static final int SHARD_MIN_POOL_SIZE = 1;
+  private static final long STOP_TIMEOUT_SECONDS = 60;
+  private static final long MIGRATION_TIMEOUT_SECONDS = 60;
+  private static final long DRAIN_POLL_MILLIS = 10;
 
   private final DatabaseConnectionEngine databaseConnectionEngine;
   private final DatabaseInitializationEngine databaseInitializationEngine;
-  private final LoadingCache<TenantTable, DataSource> tenantDataSourceLoadingCache;
+  private final StorageCopyEngine storageCopyEngine;
+  private final Cache<TenantTableIdentifier, TenantDataSource> tenantDataSourceCache;
+  private final ConnectionPoolEngine connectionPoolEngine;
+  private final ScheduledExecutorService housekeeping;
+  private final long idleEvictionSeconds;
+  private final Map<TenantTableIdentifier, LongAdder> accessCounts = new ConcurrentHashMap<>();
+  private final Map<Integer, DataSource> shardDataSources = new ConcurrentHashMap<>();
+  private final Map<TenantTableIdentifier, CountDownLatch> migrations = new ConcurrentHashMap<>();
+  private final Map<TenantTableIdentifier, TenantTable> movedTables = new ConcurrentHashMap<>();
+  private final Map<DataSource, String> ownDatabasePools = new ConcurrentHashMap<>();
+  private final Striped<Lock> databaseLocks = Striped.lock(64);
+  private final List<Consumer<TenantTableIdentifier>> closeListeners = new CopyOnWriteArrayList<>();
 
   private volatile DataSource internalDataSource = null;
 
@@ -63,31 +119,37 @@ public class DataSourceManager implements Managed {
    *
    * @param databaseConnectionEngine     used to create URLs to the database to connect to.
    * @param databaseInitializationEngine Used to initialize the database with default tables.
+   * @param connectionPoolEngine         creates the pools behind the datasources.
+   * @param storageCopyEngine            to move tables between storage layouts.
+   * @param configuration                for how many tenant datasources are kept, and for how long.
    */
   @Inject
   public DataSourceManager(final DatabaseConnectionEngine databaseConnectionEngine,
-                           final DatabaseInitializationEngine databaseInitializationEngine) {
-    LOGGER.info("DataSourceManager({},{})", databaseConnectionEngine, databaseInitializationEngine);
+                           final DatabaseInitializationEngine databaseInitializationEngine,
+                           final ConnectionPoolEngine connectionPoolEngine,
+                           final StorageCopyEngine storageCopyEngine,
+                           final NodeConfiguration configuration) {
+    LOGGER.info("DataSourceManager({},{},{},{},{},{})", databaseConnectionEngine, databaseInitializationEngine,
+        connectionPoolEngine, storageCopyEngine, configuration.getDataSourceCacheSize(),
+        configuration.getDataSourceIdleEvictionSeconds());
     this.databaseConnectionEngine = databaseConnectionEngine;
     this.databaseInitializationEngine = databaseInitializationEngine;
-    this.tenantDataSourceLoadingCache = CacheBuilder.newBuilder()
-        .maximumSize(1000)
-        .removalListener(this::onRemoval)
-        .build(CacheLoader.from(this::loadTenantTable));
-  }
-
-  private static DataSource getComboPooledDataSource(final int minPoolSize, final String url) {
-    LOGGER.trace("getComboPooledDataSource() (If you are stuck here, Likely AES failure, your db and keys do not match)");
-    final ComboPooledDataSource cpds = new ComboPooledDataSource();
-    cpds.setJdbcUrl(url);
-    cpds.setUser("SA");
-    cpds.setPassword("");
-    cpds.setMinPoolSize(minPoolSize);
-    cpds.setAcquireIncrement(5);
-    cpds.setMaxPoolSize(20);
-    cpds.setMaxIdleTime(300);
-    cpds.setTestConnectionOnCheckout(true);
-    return cpds;
+    this.storageCopyEngine = storageCopyEngine;
+    this.connectionPoolEngine = connectionPoolEngine;
+    this.idleEvictionSeconds = configuration.getDataSourceIdleEvictionSeconds();
+    this.housekeeping = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "datasource-manager");
+      thread.setDaemon(true);
+      return thread;
+    });
+    final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+        .maximumSize(configuration.getDataSourceCacheSize());
+    if (idleEvictionSeconds > 0) {
+      builder.expireAfterAccess(idleEvictionSeconds, TimeUnit.SECONDS);
+    }
+    this.tenantDataSourceCache = builder
+        .removalListener(RemovalListeners.asynchronous(this::onRemoval, housekeeping))
+        .build();
   }
 
   /**
@@ -107,17 +169,197 @@ public class DataSourceManager implements Managed {
    */
   public DataSource getDataSource(final TenantTable tenantTable) {
     LOGGER.trace("getDataSource({})", tenantTable);
-    return tenantDataSourceLoadingCache.getUnchecked(tenantTable);
+    accessCounts.computeIfAbsent(tenantTable.identifier(), k -> new LongAdder()).increment();
+    awaitMigration(tenantTable.identifier());
+    return dataSource(tenantTable);
   }
 
   /**
-   * Removes tenant from the cache.
+   * Opens the data source for the tenant, if it is not open already, without counting it as a use of the table.
    *
-   * @param tenant to remove.
+   * @param tenantTable to open the source for.
    */
-  public void evictTenant(Tenant tenant) {
-    LOGGER.trace("evictTenant({})", tenant);
-    tenantDataSourceLoadingCache.invalidate(tenant);
+  public void warm(final TenantTable tenantTable) {
+    LOGGER.trace("warm({})", tenantTable);
+    awaitMigration(tenantTable.identifier());
+    dataSource(tenantTable);
+  }
+
+  private DataSource dataSource(final TenantTable tenantTable) {
+    final TenantTable stored = stored(tenantTable);
+    final TenantTableIdentifier identifier = stored.identifier();
+    final TenantDataSource existing = tenantDataSourceCache.getIfPresent(identifier);
+    if (existing != null) {
+      if (existing.tenantTable().key().equals(stored.key())
+          && existing.tenantTable().storageShard().equals(stored.storageShard())) {
+        return existing.dataSource();
+      }
+      // The table was recreated, so its database is a new one.
+      tenantDataSourceCache.asMap().remove(identifier, existing);
+    }
+    try {
+      return tenantDataSourceCache.get(identifier, () -> loadTenantTable(stored)).dataSource();
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * The table with the storage it was last moved to, if it was moved since the caller read it.
+   */
+  private TenantTable stored(final TenantTable tenantTable) {
+    final TenantTable last = movedTables.get(tenantTable.identifier());
+    if (last == null || !last.key().equals(tenantTable.key())
+        || last.storageShard().equals(tenantTable.storageShard())) {
+      return tenantTable;
+    }
+    final Map<String, String> properties = new HashMap<>(tenantTable.properties());
+    last.storageShard().ifPresentOrElse(
+        shard -> properties.put(TenantTable.SHARD_PROPERTY, Integer.toString(shard)),
+        () -> properties.remove(TenantTable.SHARD_PROPERTY));
+    return ImmutableTenantTable.copyOf(tenantTable).withProperties(properties);
+  }
+
+  /**
+   * Returns how many times each table was used since the last call, resetting the counts.
+   *
+   * @return the counts of the tables used.
+   */
+  public Map<TenantTableIdentifier, Long> drainAccessCounts() {
+    final Map<TenantTableIdentifier, Long> result = new HashMap<>();
+    accessCounts.forEach((identifier, count) -> {
+      final long sum = count.sumThenReset();
+      if (sum > 0) {
+        result.put(identifier, sum);
+      } else {
+        accessCounts.remove(identifier, count);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Closes the datasource of the table, if it is open. In flight calls finish first.
+   *
+   * @param identifier of the table.
+   */
+  public void evict(final TenantTableIdentifier identifier) {
+    LOGGER.trace("evict({})", identifier);
+    tenantDataSourceCache.invalidate(identifier);
+  }
+
+  /**
+   * Adds a listener told, on the housekeeping thread, when a table no longer has a datasource open. A table that is
+   * used again afterwards gets a new datasource.
+   *
+   * @param listener given the identifier of the table.
+   */
+  public void addCloseListener(final Consumer<TenantTableIdentifier> listener) {
+    closeListeners.add(listener);
+  }
+
+  /**
+   * Picks the shard of the shared storage for the table.
+   *
+   * @param identifier of the table.
+   * @return the shard.
+   */
+  public int shardFor(final TenantTableIdentifier identifier) {
+    return databaseConnectionEngine.shardFor(identifier);
+  }
+
+  /**
+   * Closes the datasource of the table, and drops its schema if it is in shared storage. Tables with their own
+   * database keep their files.
+   *
+   * @param tenantTable to drop.
+   */
+  public void dropStorage(final TenantTable tenantTable) {
+    LOGGER.trace("dropStorage({})", tenantTable);
+    final TenantTable stored = stored(tenantTable);
+    evict(stored.identifier());
+    movedTables.remove(stored.identifier());
+    if (stored.storageShard().isPresent()) {
+      // Runs after the pool is closed, as removals are handled in order on the same thread.
+      housekeeping.execute(() -> dropSchema(stored));
+    }
+  }
+
+  /**
+   * Moves the table's data to the storage of the target, the same table kept elsewhere. New uses of the table wait
+   * until the move is done. The table's current pool is closed first, so a use already in flight finishes, or fails,
+   * rather than writing to storage that was already copied. Once the data is copied, commit is called to record the
+   * new storage, and the table uses it from then on. If the table was in shared storage, its old schema is dropped,
+   * else its old database is deleted once shut down.
+   *
+   * @param source the table as it is.
+   * @param target the table in its new storage.
+   * @param commit records the new storage.
+   */
+  public void migrate(final TenantTable source, final TenantTable target, final Runnable commit) {
+    LOGGER.info("migrate({},{})", source.identifier(), target.storageShard()); // INFO because this is rare
+    final TenantTableIdentifier identifier = source.identifier();
+    final CountDownLatch gate = new CountDownLatch(1);
+    if (migrations.putIfAbsent(identifier, gate) != null) {
+      throw new IllegalStateException("Table is already moving: " + identifier);
+    }
+    TenantDataSource moved = null;
+    try {
+      final TenantDataSource existing = tenantDataSourceCache.getIfPresent(identifier);
+      if (existing != null) {
+        connectionPoolEngine.close(existing.dataSource());
+        awaitIdle(existing.dataSource());
+      }
+      final DataSource from = openTenantPool(identifier + "-migrate",
+          databaseConnectionEngine.getTenantConnectionUrl(source), databaseConnectionEngine.getTenantSchema(source));
+      try {
+        moved = loadTenantTable(target);
+        try (final Connection in = from.getConnection();
+             final Connection out = moved.dataSource().getConnection()) {
+          storageCopyEngine.copy(in, out);
+        } catch (SQLException e) {
+          throw new IllegalArgumentException("Unable to move table: " + identifier, e);
+        }
+      } finally {
+        closeTenantPool(from);
+      }
+      commit.run();
+      movedTables.put(identifier, target);
+      tenantDataSourceCache.put(identifier, moved);
+    } catch (RuntimeException e) {
+      // The old pool may be closed already, so the table is reopened on next use.
+      tenantDataSourceCache.invalidate(identifier);
+      if (moved != null) {
+        closeTenantPool(moved.dataSource());
+        if (target.storageShard().isPresent()) {
+          dropSchema(target);
+        }
+      }
+      throw e;
+    } finally {
+      migrations.remove(identifier, gate);
+      gate.countDown();
+    }
+    if (source.storageShard().isPresent()) {
+      housekeeping.execute(() -> dropSchema(source));
+    } else {
+      // Runs after the old pool is closed and its database shut down, as removals are handled in order on this thread.
+      housekeeping.execute(() -> deleteDatabase(source));
+    }
+  }
+
+  /**
+   * Closes the datasources of all the tables of the tenant. In flight calls finish first.
+   *
+   * @param tenantId to remove.
+   */
+  public void evictTenant(final String tenantId) {
+    LOGGER.trace("evictTenant({})", tenantId);
+    movedTables.keySet().removeIf(identifier -> identifier.tenantId().equals(tenantId));
+    tenantDataSourceCache.invalidateAll(tenantDataSourceCache.asMap().keySet().stream()
+        .filter(identifier -> identifier.tenantId().equals(tenantId))
+        .toList());
   }
 
   /**
@@ -129,21 +371,177 @@ public class DataSourceManager implements Managed {
     return Optional.ofNullable(internalDataSource);
   }
 
-  private void onRemoval(RemovalNotification<TenantTable, DataSource> notification) {
+  private void onRemoval(final RemovalNotification<TenantTableIdentifier, TenantDataSource> notification) {
     LOGGER.debug("onRemoval({},{})", notification.getKey(), notification.getCause());
+    final TenantDataSource value = notification.getValue();
+    if (value != null) {
+      try {
+        closeTenantPool(value.dataSource());
+      } catch (RuntimeException e) {
+        LOGGER.warn("Unable to close the datasource of {}", notification.getKey(), e);
+      }
+    }
+    final TenantTableIdentifier identifier = notification.getKey();
+    if (identifier != null && !tenantDataSourceCache.asMap().containsKey(identifier)) {
+      closeListeners.forEach(listener -> listener.accept(identifier));
+    }
   }
 
-  private DataSource loadTenantTable(final TenantTable tenantTable) {
-    LOGGER.debug("loadTenantTable({})", tenantTable);
+  private void awaitMigration(final TenantTableIdentifier identifier) {
+    final CountDownLatch gate = migrations.get(identifier);
+    if (gate != null) {
+      try {
+        if (!gate.await(MIGRATION_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+          throw new IllegalStateException("Timed out waiting for table to move: " + identifier);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted waiting for table to move: " + identifier, e);
+      }
+    }
+  }
+
+  private void awaitIdle(final DataSource dataSource) {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(MIGRATION_TIMEOUT_SECONDS);
+    try {
+      while (connectionPoolEngine.active(dataSource) > 0) {
+        if (System.nanoTime() > deadline) {
+          throw new IllegalStateException("Timed out waiting for table to be idle");
+        }
+        Thread.sleep(DRAIN_POLL_MILLIS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for table to be idle", e);
+    }
+  }
+
+  private DataSource shardDataSource(final int shard) {
+    return shardDataSources.computeIfAbsent(shard, s -> connectionPoolEngine.create("shard-" + s,
+        databaseConnectionEngine.getShardConnectionUrl(s), SHARD_MIN_POOL_SIZE));
+  }
+
+  private void createSchema(final TenantTable tenantTable, final String schema) throws SQLException {
+    try (final Connection connection = shardDataSource(tenantTable.storageShard().orElseThrow()).getConnection()) {
+      try (final ResultSet rs = connection.getMetaData().getSchemas(null, schema)) {
+        if (rs.next()) {
+          return;
+        }
+      }
+      try (final Statement statement = connection.createStatement()) {
+        statement.execute("create schema " + schema + " authorization DBA");
+      }
+    }
+  }
+
+  private void dropSchema(final TenantTable tenantTable) {
+    final String schema = databaseConnectionEngine.getTenantSchema(tenantTable).orElseThrow();
+    try (final Connection connection = shardDataSource(tenantTable.storageShard().orElseThrow()).getConnection();
+         final Statement statement = connection.createStatement()) {
+      statement.execute("drop schema if exists " + schema + " cascade");
+    } catch (SQLException | RuntimeException e) {
+      LOGGER.warn("Unable to drop the schema of {}", tenantTable.identifier(), e);
+    }
+  }
+
+  private void deleteDatabase(final TenantTable tenantTable) {
     final String url = databaseConnectionEngine.getTenantConnectionUrl(tenantTable);
-    final DataSource dataSource = getComboPooledDataSource(TENANT_MIN_POOL_SIZE, url);
+    final Lock lock = databaseLocks.get(url);
+    lock.lock();
     try {
-      LOGGER.trace("Getting connection");
-      final Connection connection = dataSource.getConnection();
-      databaseInitializationEngine.initialize(connection, TENANT);
-      return dataSource;
+      if (ownDatabasePools.containsValue(url)) {
+        LOGGER.warn("Not deleting the database of {}, it was opened again", tenantTable.identifier());
+        return;
+      }
+      databaseConnectionEngine.deleteTenantDatabase(tenantTable);
+    } catch (RuntimeException e) {
+      LOGGER.warn("Unable to delete the database of {}", tenantTable.identifier(), e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private TenantDataSource loadTenantTable(final TenantTable tenantTable) {
+    LOGGER.debug("loadTenantTable({})", tenantTable);
+    final String url = databaseConnectionEngine.getTenantConnectionUrl(tenantTable);
+    final Optional<String> schema = databaseConnectionEngine.getTenantSchema(tenantTable);
+    if (schema.isPresent()) {
+      try {
+        createSchema(tenantTable, schema.get());
+      } catch (SQLException e) {
+        throw new IllegalArgumentException("Unable to create the schema of " + tenantTable.identifier(), e);
+      }
+    }
+    final DataSource dataSource = openTenantPool(tenantTable.identifier().toString(), url, schema);
+    LOGGER.trace("Getting connection (If you are stuck here, Likely AES failure, your db and keys do not match)");
+    try (final Connection connection = dataSource.getConnection()) {
+      databaseInitializationEngine.initialize(connection, TENANT_PREFIX + tenantTable.tableVersion());
+      return new TenantDataSource(tenantTable, dataSource);
     } catch (SQLException e) {
+      closeTenantPool(dataSource);
       throw new IllegalArgumentException("Unable to get tenant initialized connection", e);
+    } catch (RuntimeException e) {
+      closeTenantPool(dataSource);
+      throw e;
+    }
+  }
+
+  private DataSource openTenantPool(final String name, final String url, final Optional<String> schema) {
+    if (schema.isPresent()) {
+      // The shard is shared, so it stays open until the node stops.
+      return connectionPoolEngine.create(name, url, schema, TENANT_MIN_POOL_SIZE);
+    }
+    final Lock lock = databaseLocks.get(url);
+    lock.lock();
+    try {
+      final DataSource dataSource = connectionPoolEngine.create(name, url, schema, TENANT_MIN_POOL_SIZE);
+      ownDatabasePools.put(dataSource, url);
+      return dataSource;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Closes the pool, and once its connections in use are returned shuts its database down if it is a table's own and
+   * no other pool was opened on it meanwhile. Does not wait for the connections, so the housekeeping thread is free to
+   * close other pools meanwhile.
+   */
+  private void closeTenantPool(final DataSource dataSource) {
+    connectionPoolEngine.close(dataSource);
+    final String url = ownDatabasePools.remove(dataSource);
+    if (url == null) {
+      return;
+    }
+    shutdownWhenIdle(dataSource, url, System.nanoTime() + TimeUnit.SECONDS.toNanos(MIGRATION_TIMEOUT_SECONDS));
+  }
+
+  /**
+   * Shuts the table's own database down if the closed pool has no connections in use, else checks again shortly on the
+   * housekeeping thread. Once the node is stopping nothing more can be scheduled, so this waits instead.
+   */
+  private void shutdownWhenIdle(final DataSource dataSource, final String url, final long deadline) {
+    if (connectionPoolEngine.active(dataSource) > 0) {
+      if (System.nanoTime() > deadline) {
+        LOGGER.warn("Timed out waiting for {} to be idle, leaving its database open", dataSource);
+        return;
+      }
+      try {
+        housekeeping.schedule(() -> shutdownWhenIdle(dataSource, url, deadline), DRAIN_POLL_MILLIS,
+            TimeUnit.MILLISECONDS);
+        return;
+      } catch (RejectedExecutionException e) {
+        awaitIdle(dataSource);
+      }
+    }
+    final Lock lock = databaseLocks.get(url);
+    lock.lock();
+    try {
+      if (!ownDatabasePools.containsValue(url)) {
+        databaseConnectionEngine.shutdown(url);
+      }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -157,20 +555,52 @@ public class DataSourceManager implements Managed {
       try {
         LOGGER.info("setupInternalDataSource(): inProgress");
         final String url = databaseConnectionEngine.getInternalConnectionUrl();
-        final DataSource dataSource = getComboPooledDataSource(INTERNAL_MIN_POOL_SIZE, url);
-        final Connection connection = dataSource.getConnection();
-        databaseInitializationEngine.initialize(connection, INTERNAL);
+        final DataSource dataSource = connectionPoolEngine.create(SqlEngine.INTERNAL, url, INTERNAL_MIN_POOL_SIZE);
+        try (final Connection connection = dataSource.getConnection()) {
+          databaseInitializationEngine.initialize(connection, INTERNAL);
+        }
         internalDataSource = dataSource;
         LOGGER.info("setupInternalDataSource(): complete");
       } catch (SQLException e) {
         LOGGER.error("Setup internal datasource failed", e);
         throw new IllegalArgumentException("Unable to init the internal db:", e);
       }
+      if (idleEvictionSeconds > 0) {
+        // Expired entries are otherwise only removed as the cache is used.
+        final long period = Math.min(60, idleEvictionSeconds);
+        housekeeping.scheduleWithFixedDelay(tenantDataSourceCache::cleanUp, period, period, TimeUnit.SECONDS);
+      }
     } else {
       LOGGER.info("setupInternalDataSource(): already setup");
     }
   }
 
+  /**
+   * Closes all the datasources, waiting for in flight calls to finish.
+   *
+   * @throws Exception if interrupted.
+   */
+  @Override
+  public void stop() throws Exception {
+    LOGGER.info("stop()");
+    tenantDataSourceCache.invalidateAll();
+    housekeeping.shutdown();
+    if (!housekeeping.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      LOGGER.warn("Timed out closing the tenant datasources");
+    }
+    shardDataSources.forEach((shard, dataSource) -> {
+      connectionPoolEngine.close(dataSource);
+      databaseConnectionEngine.shutdown(databaseConnectionEngine.getShardConnectionUrl(shard));
+    });
+    shardDataSources.clear();
+    final DataSource dataSource = internalDataSource;
+    if (dataSource != null) {
+      internalDataSource = null;
+      connectionPoolEngine.close(dataSource);
+      databaseConnectionEngine.shutdown(databaseConnectionEngine.getInternalConnectionUrl());
+    }
+  }
+
   /**
    * Lets us know if we're healthy.
    *
@@ -183,7 +613,10 @@ public class DataSourceManager implements Managed {
       LOGGER.debug("isHealthy(): Internal datasource not created yet.");
       return false;
     }
-    final boolean result = ds.get().getConnection().isValid(INTERNAL_MIN_POOL_SIZE);
+    final boolean result;
+    try (final Connection connection = ds.get().getConnection()) {
+      result = connection.isValid(INTERNAL_MIN_POOL_SIZE);
+    }
     if (result) {
       LOGGER.trace("isHealthy(): true");
     } else {
@@ -191,4 +624,10 @@ public class DataSourceManager implements Managed {
     }
     return result;
   }
+
+  /**
+   * The datasource of a table, and the table it was opened for.
+   */
+  private record TenantDataSource(TenantTable tenantTable, DataSource dataSource) {
+  }
 }
@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.manager;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.Metrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the entities of tables that have a cache size set, so hot entities are read without going to the database.
+ * Entities are held encoded, which bounds each table's cache by bytes and keeps callers from changing a cached copy.
+ * The encoded bytes can be kept in direct buffers so large caches do not add to garbage collection. All the tables
+ * together hold at most the node's configured bytes; once that is reached, entities are not cached until others are
+ * evicted or invalidated.
+ *
+ * <p>Every write on this node invalidates the entities it touched once it is done. A read that raced a write could
+ * load the old entity after the write invalidated it, so each table counts its invalidations and a read that saw the
+ * count change while it loaded drops what it just cached.
+ */
+@Singleton
+public class EntityCacheManager {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EntityCacheManager.class);
+  private static final int ENTRY_OVERHEAD = 64;
+
+  private final MeterRegistry meterRegistry;
+  private final BinaryDocumentEngine binaryDocumentEngine;
+  private final boolean offHeap;
+  private final long nodeMaxBytes;
+  private final AtomicLong usedBytes = new AtomicLong();
+  private final Map<TenantTableIdentifier, TableCache> caches = new ConcurrentHashMap<>();
+
+  /**
+   * Default constructor.
+   *
+   * @param metrics              for analytics.
+   * @param configuration        for where the cached bytes live and how many the node holds.
+   * @param binaryDocumentEngine to encode the cached entities.
+   */
+  @Inject
+  public EntityCacheManager(final Metrics metrics,
+                            final NodeConfiguration configuration,
+                            final BinaryDocumentEngine binaryDocumentEngine) {
+    LOGGER.info("EntityCacheManager({},{},{},{})", metrics, configuration.isEntityCacheOffHeap(),
+        configuration.getEntityCacheMaxBytes(), binaryDocumentEngine);
+    this.meterRegistry = metrics.registry();
+    this.binaryDocumentEngine = binaryDocumentEngine;
+    this.offHeap = configuration.isEntityCacheOffHeap();
+    this.nodeMaxBytes = configuration.getEntityCacheMaxBytes();
+    Gauge.builder("EntityCacheManager.bytes", usedBytes, AtomicLong::get).register(meterRegistry);
+  }
+
+  /**
+   * Reads the entity from the cache, or from the loader if it is not cached. Tables without a cache size always use
+   * the loader.
+   *
+   * @param tenantTable the table.
+   * @param entity      to read.
+   * @param loader      reads the entity from the database.
+   * @return the entity, if found.
+   */
+  public Optional<JsonNode> read(final TenantTable tenantTable,
+                                 final String entity,
+                                 final Supplier<Optional<JsonNode>> loader) {
+    final long maxBytes = tenantTable.cacheMaxBytes();
+    if (maxBytes <= 0) {
+      return loader.get();
+    }
+    final TableCache cache = cache(tenantTable, maxBytes);
+    final ByteBuffer cached = cache.entities.getIfPresent(entity);
+    if (cached != null) {
+      cache.hitCounter.increment();
+      return Optional.of(binaryDocumentEngine.decodeValue(bytes(cached)));
+    }
+    cache.missCounter.increment();
+    final long invalidations = cache.invalidations.get();
+    final Optional<JsonNode> result = loader.get();
+    result.ifPresent(node -> {
+      cache.put(entity, binaryDocumentEngine.encodeValue(node));
+      if (cache.invalidations.get() != invalidations) {
+        cache.entities.invalidate(entity);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * The table's cache. A recreated table gets a new key, and a resized cache starts again empty, so only then is the
+   * cache replaced.
+   */
+  private TableCache cache(final TenantTable tenantTable, final long maxBytes) {
+    final TableCache cache = caches.get(tenantTable.identifier());
+    if (cache != null && cache.matches(tenantTable.key(), maxBytes)) {
+      return cache;
+    }
+    return caches.compute(tenantTable.identifier(), (identifier, existing) -> {
+      if (existing != null && existing.matches(tenantTable.key(), maxBytes)) {
+        return existing;
+      }
+      if (existing != null) {
+        existing.entities.invalidateAll();
+      }
+      return new TableCache(identifier, tenantTable.key(), maxBytes);
+    });
+  }
+
+  /**
+   * Drops the entities from the table's cache. Call once a write to them is done.
+   *
+   * @param identifier of the table.
+   * @param entities   that were written.
+   */
+  public void invalidate(final TenantTableIdentifier identifier, final Collection<String> entities) {
+    final TableCache cache = caches.get(identifier);
+    if (cache != null) {
+      cache.invalidations.incrementAndGet();
+      cache.entities.invalidateAll(entities);
+    }
+  }
+
+  /**
+   * Forgets the table's cache.
+   *
+   * @param identifier of the table.
+   */
+  public void drop(final TenantTableIdentifier identifier) {
+    LOGGER.debug("drop({})", identifier);
+    final TableCache cache = caches.remove(identifier);
+    if (cache != null) {
+      cache.entities.invalidateAll();
+      cache.removeMeters();
+    }
+  }
+
+  /**
+   * Forgets the caches of every table of the tenant.
+   *
+   * @param tenantId whose caches to forget.
+   */
+  public void dropTenant(final String tenantId) {
+    LOGGER.debug("dropTenant({})", tenantId);
+    caches.keySet().stream()
+        .filter(identifier -> identifier.tenantId().equals(tenantId))
+        .toList()
+        .forEach(this::drop);
+  }
+
+  private ByteBuffer buffer(final byte[] bytes) {
+    if (!offHeap) {
+      return ByteBuffer.wrap(bytes);
+    }
+    final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+    buffer.put(bytes).flip();
+    return buffer;
+  }
+
+  private static byte[] bytes(final ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      return buffer.array();
+    }
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private static int weight(final String entity, final int bytes) {
+    return ENTRY_OVERHEAD + entity.length() * 2 + bytes;
+  }
+
+  /**
+   * The cache of one table, weighed by the encoded size of each entity, with its meters tagged by the table. Every
+   * entity removed, for any reason, gives its bytes back to the node.
+   */
+  private class TableCache {
+
+    private final String key;
+    private final long maxBytes;
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Cache<String, ByteBuffer> entities;
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+    private final Counter rejectedCounter;
+
+    TableCache(final TenantTableIdentifier identifier, final String key, final long maxBytes) {
+      this.key = key;
+      this.maxBytes = maxBytes;
+      final String table = identifier.toString();
+      this.hitCounter = meterRegistry.counter("EntityCacheManager.hit", "table", table);
+      this.missCounter = meterRegistry.counter("EntityCacheManager.miss", "table", table);
+      this.evictionCounter = meterRegistry.counter("EntityCacheManager.eviction", "table", table);
+      this.rejectedCounter = meterRegistry.counter("EntityCacheManager.rejected", "table", table);
+      this.entities = CacheBuilder.newBuilder()
+          .maximumWeight(maxBytes)
+          .weigher((String entity, ByteBuffer value) -> weight(entity, value.capacity()))
+          .removalListener((RemovalNotification<String, ByteBuffer> notification) -> {
+            usedBytes.addAndGet(-weight(notification.getKey(), notification.getValue().capacity()));
+            if (notification.wasEvicted()) {
+              evictionCounter.increment();
+            }
+          })
+          .build();
+    }
+
+    boolean matches(final String key, final long maxBytes) {
+      return this.maxBytes == maxBytes && this.key.equals(key);
+    }
+
+    /**
+     * Caches the entity if the node has room for it.
+     */
+    void put(final String entity, final byte[] bytes) {
+      final int weight = weight(entity, bytes.length);
+      if (usedBytes.addAndGet(weight) > nodeMaxBytes) {
+        usedBytes.addAndGet(-weight);
+        rejectedCounter.increment();
+        return;
+      }
+      entities.put(entity, buffer(bytes));
+    }
+
+    void removeMeters() {
+      meterRegistry.remove(hitCounter);
+      meterRegistry.remove(missCounter);
+      meterRegistry.remove(evictionCounter);
+      meterRegistry.remove(rejectedCounter);
+    }
+  }
+
+}
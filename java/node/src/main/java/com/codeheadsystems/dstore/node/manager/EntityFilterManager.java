@@ -0,0 +1,426 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.manager;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.SqlEngine;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.Metrics;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.dropwizard.lifecycle.Managed;
+import io.micrometer.core.instrument.Counter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a bloom filter of the entity hashes of each V1 table, so reads of entities that do not exist are answered
+ * without going to the database. The filter is built in the background from the HASH column the first time the table
+ * is used; until then every entity might exist. Writes add their hashes before they run. Deletes cannot be removed
+ * from a bloom filter, so they are counted and the filter is rebuilt once enough are stale or it is over capacity.
+ *
+ * <p>Filters are kept for as many tables as datasources are, least recently used first out. A filter that falls out,
+ * or whose table or tenant is deleted, is dropped without saving and rebuilt if the table is used again.
+ *
+ * <p>On stop the filters are saved in their table's own database, so they are encrypted with it, and loaded instead
+ * of rebuilt on the next start. A saved filter is removed as it is loaded, so a node that stops without saving
+ * rebuilds rather than trusting a filter that missed writes.
+ *
+ * <p>A filter being built must not miss a write whose rows the build did not see. Writes hold the table's read lock
+ * while they add their hashes and run, and a build takes the write lock to start collecting new hashes, so every
+ * write either finished before the build reads the table or adds its hash to the new filter too.
+ */
+@Singleton
+public class EntityFilterManager implements Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EntityFilterManager.class);
+  private static final String FILTER_NAME = "ENTITY";
+  private static final double FALSE_POSITIVE_RATE = 0.01;
+  private static final long MIN_CAPACITY = 10_000;
+
+  private final SqlEngine sqlEngine;
+  private final boolean enabled;
+  private final Counter skippedCounter;
+  private final Counter builtCounter;
+  private final Cache<TenantTableIdentifier, TableFilter> filters;
+  private volatile ExecutorService executor;
+
+  /**
+   * Default constructor.
+   *
+   * @param metrics       for analytics.
+   * @param sqlEngine     to build, load and save the filters.
+   * @param configuration for if the filters are used, and how many are kept.
+   */
+  @Inject
+  public EntityFilterManager(final Metrics metrics,
+                             final SqlEngine sqlEngine,
+                             final NodeConfiguration configuration) {
+    LOGGER.info("EntityFilterManager({},{},{})", metrics, sqlEngine, configuration.isEntityFilterEnabled());
+    this.sqlEngine = sqlEngine;
+    this.enabled = configuration.isEntityFilterEnabled();
+    this.skippedCounter = metrics.registry().counter("EntityFilterManager.skipped");
+    this.builtCounter = metrics.registry().counter("EntityFilterManager.built");
+    this.filters = CacheBuilder.newBuilder()
+        .maximumSize(configuration.getDataSourceCacheSize())
+        .build();
+  }
+
+  /**
+   * Starts the thread filters are built on. Before this they are built on the thread that first needs them.
+   */
+  @Override
+  public void start() {
+    LOGGER.info("start()");
+    executor = Executors.newSingleThreadExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "entity-filter");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Stops building filters and saves the ones that are built.
+   *
+   * @throws Exception if interrupted.
+   */
+  @Override
+  public void stop() throws Exception {
+    LOGGER.info("stop()");
+    if (executor != null) {
+      executor.shutdownNow();
+      executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+    filters.asMap().values().forEach(this::save);
+  }
+
+  /**
+   * Drops the filter of the table, without saving it. Used when the table is deleted.
+   *
+   * @param identifier of the table.
+   */
+  public void drop(final TenantTableIdentifier identifier) {
+    LOGGER.trace("drop({})", identifier);
+    filters.invalidate(identifier);
+  }
+
+  /**
+   * Drops the filters of all the tables of the tenant, without saving them. Used when the tenant is deleted.
+   *
+   * @param tenantId of the tenant.
+   */
+  public void dropTenant(final String tenantId) {
+    LOGGER.trace("dropTenant({})", tenantId);
+    filters.asMap().keySet().removeIf(identifier -> identifier.tenantId().equals(tenantId));
+  }
+
+  /**
+   * Checks the filter for the entity.
+   *
+   * @param tenantTable the table.
+   * @param hash        of the entity.
+   * @return false only if the entity is certainly not in the table.
+   */
+  public boolean mightContain(final TenantTable tenantTable, final int hash) {
+    if (!enabled) {
+      return true;
+    }
+    final BloomFilter<Integer> current = filter(tenantTable).current;
+    if (current == null || current.mightContain(hash)) {
+      return true;
+    }
+    skippedCounter.increment();
+    return false;
+  }
+
+  /**
+   * Adds the hashes of the entities a write may create, then runs the write.
+   *
+   * @param tenantTable the table.
+   * @param hashes      of the entities written.
+   * @param write       the write.
+   * @param <T>         the result type.
+   * @return the result of the write.
+   */
+  public <T> T adding(final TenantTable tenantTable, final Collection<Integer> hashes, final Supplier<T> write) {
+    if (!enabled || hashes.isEmpty()) {
+      return write.get();
+    }
+    final TableFilter filter = filter(tenantTable);
+    filter.lock.readLock().lock();
+    try {
+      hashes.forEach(filter::put);
+      return write.get();
+    } finally {
+      filter.lock.readLock().unlock();
+      rebuildIfStale(filter);
+    }
+  }
+
+  /**
+   * Notes entities were deleted, which leaves their hashes stale in the filter.
+   *
+   * @param tenantTable the table.
+   * @param count       how many were deleted.
+   */
+  public void deleted(final TenantTable tenantTable, final long count) {
+    if (enabled && count > 0) {
+      final TableFilter filter = filter(tenantTable);
+      filter.deletes.addAndGet(count);
+      rebuildIfStale(filter);
+    }
+  }
+
+  private TableFilter filter(final TenantTable tenantTable) {
+    final TableFilter existing = filters.getIfPresent(tenantTable.identifier());
+    if (existing != null && existing.tenantTable.key().equals(tenantTable.key())) {
+      return existing;
+    }
+    // A recreated table gets a new key, and starts again.
+    final TableFilter created = new TableFilter(tenantTable);
+    final TableFilter result = filters.asMap().merge(tenantTable.identifier(), created,
+        (old, fresh) -> old.tenantTable.key().equals(tenantTable.key()) ? old : fresh);
+    if (result == created) {
+      submit(created, () -> {
+        if (!load(created)) {
+          build(created);
+        }
+      });
+    }
+    return result;
+  }
+
+  private void rebuildIfStale(final TableFilter filter) {
+    final BloomFilter<Integer> current = filter.current;
+    if (current != null
+        && (current.approximateElementCount() > filter.capacity || filter.deletes.get() > filter.capacity / 2)) {
+      submit(filter, () -> build(filter));
+    }
+  }
+
+  private void submit(final TableFilter filter, final Runnable task) {
+    if (!filter.building.compareAndSet(false, true)) {
+      return;
+    }
+    final Runnable guarded = () -> {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        LOGGER.error("Unable to build the entity filter for {}", filter.tenantTable.identifier(), e);
+      } finally {
+        filter.building.set(false);
+      }
+    };
+    final ExecutorService current = executor;
+    if (current == null || current.isShutdown()) {
+      guarded.run();
+    } else {
+      current.execute(guarded);
+    }
+  }
+
+  private boolean load(final TableFilter filter) {
+    filter.lock.writeLock().lock();
+    try {
+      final Optional<LoadedFilter> loaded = sqlEngine.executeTransactionTenant(filter.tenantTable, (connection) -> {
+        try (final PreparedStatement ps = connection.prepareStatement(
+            "select C_FILTER, C_CAPACITY, C_DELETES from TENANT_FILTER where NAME = ?")) {
+          ps.setString(1, FILTER_NAME);
+          try (final ResultSet rs = ps.executeQuery()) {
+            if (!rs.next()) {
+              return Optional.<LoadedFilter>empty();
+            }
+            final BloomFilter<Integer> bloomFilter =
+                BloomFilter.readFrom(new ByteArrayInputStream(rs.getBytes(1)), Funnels.integerFunnel());
+            return Optional.of(new LoadedFilter(bloomFilter, rs.getLong(2), rs.getLong(3)));
+          }
+        } catch (SQLException e) {
+          throw new IllegalArgumentException("Unable to load the entity filter", e);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } finally {
+          removeSaved(connection);
+        }
+      });
+      loaded.ifPresent(value -> {
+        filter.pending.forEach(value.filter()::put);
+        filter.capacity = value.capacity();
+        filter.deletes.set(value.deletes());
+        filter.current = value.filter();
+        filter.pending.clear();
+      });
+      LOGGER.debug("load({}): {}", filter.tenantTable.identifier(), loaded.isPresent());
+      return loaded.isPresent();
+    } finally {
+      filter.lock.writeLock().unlock();
+    }
+  }
+
+  private void build(final TableFilter filter) {
+    LOGGER.debug("build({})", filter.tenantTable.identifier());
+    final long count = sqlEngine.executePreparedTenant(filter.tenantTable, "select count(distinct HASH) from TENANT_DATA",
+        (ps) -> {
+          try (final ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getLong(1);
+          } catch (SQLException e) {
+            throw new IllegalArgumentException("Unable to count the entities", e);
+          }
+        });
+    final long capacity = Math.max(MIN_CAPACITY, count * 2);
+    final BloomFilter<Integer> fresh = BloomFilter.create(Funnels.integerFunnel(), capacity, FALSE_POSITIVE_RATE);
+    filter.lock.writeLock().lock();
+    try {
+      filter.next = fresh;
+      // Writes made before the first filter are in the table, so the build sees them.
+      filter.pending.clear();
+    } finally {
+      filter.lock.writeLock().unlock();
+    }
+    try {
+      sqlEngine.executePreparedTenant(filter.tenantTable, "select distinct HASH from TENANT_DATA", (ps) -> {
+        try (final ResultSet rs = ps.executeQuery()) {
+          while (rs.next()) {
+            fresh.put(rs.getInt(1));
+          }
+          return null;
+        } catch (SQLException e) {
+          throw new IllegalArgumentException("Unable to read the entity hashes", e);
+        }
+      });
+      filter.lock.writeLock().lock();
+      try {
+        filter.capacity = capacity;
+        filter.deletes.set(0);
+        filter.current = fresh;
+        filter.pending.clear();
+      } finally {
+        filter.lock.writeLock().unlock();
+      }
+      builtCounter.increment();
+    } finally {
+      filter.lock.writeLock().lock();
+      try {
+        filter.next = null;
+      } finally {
+        filter.lock.writeLock().unlock();
+      }
+    }
+  }
+
+  private void save(final TableFilter filter) {
+    final BloomFilter<Integer> current = filter.current;
+    if (current == null) {
+      return;
+    }
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      current.writeTo(out);
+      sqlEngine.executeTransactionTenant(filter.tenantTable, (connection) -> {
+        removeSaved(connection);
+        try (final PreparedStatement ps = connection.prepareStatement(
+            "insert into TENANT_FILTER (NAME, C_FILTER, C_CAPACITY, C_DELETES) values (?, ?, ?, ?)")) {
+          ps.setString(1, FILTER_NAME);
+          ps.setBytes(2, out.toByteArray());
+          ps.setLong(3, filter.capacity);
+          ps.setLong(4, filter.deletes.get());
+          ps.executeUpdate();
+          return null;
+        } catch (SQLException e) {
+          throw new IllegalArgumentException("Unable to save the entity filter", e);
+        }
+      });
+      LOGGER.debug("save({})", filter.tenantTable.identifier());
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Unable to save the entity filter for {}, it will be rebuilt", filter.tenantTable.identifier(), e);
+    }
+  }
+
+  private static void removeSaved(final Connection connection) {
+    try (final PreparedStatement ps = connection.prepareStatement("delete from TENANT_FILTER where NAME = ?")) {
+      ps.setString(1, FILTER_NAME);
+      ps.executeUpdate();
+    } catch (SQLException e) {
+      throw new IllegalArgumentException("Unable to remove the saved entity filter", e);
+    }
+  }
+
+  /**
+   * A filter read back from the table.
+   */
+  private record LoadedFilter(BloomFilter<Integer> filter, long capacity, long deletes) {
+  }
+
+  /**
+   * The filter of one table. The current filter is null until it is first built or loaded, and the hashes written
+   * until then are kept as pending so a loaded filter can be given them.
+   */
+  private static class TableFilter {
+
+    private final TenantTable tenantTable;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong deletes = new AtomicLong();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+    private volatile BloomFilter<Integer> current;
+    private volatile BloomFilter<Integer> next;
+    private volatile long capacity = MIN_CAPACITY;
+
+    TableFilter(final TenantTable tenantTable) {
+      this.tenantTable = tenantTable;
+    }
+
+    void put(final int hash) {
+      final BloomFilter<Integer> currentFilter = current;
+      if (currentFilter != null) {
+        currentFilter.put(hash);
+      } else {
+        pending.add(hash);
+      }
+      final BloomFilter<Integer> nextFilter = next;
+      if (nextFilter != null) {
+        nextFilter.put(hash);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.manager;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.ExpiryEngine;
+import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
+import com.codeheadsystems.dstore.node.exception.ConditionFailedException;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ImmutableScanRequest;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.Metrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.dropwizard.lifecycle.Managed;
+import io.micrometer.core.instrument.Counter;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Physically removes expired entities in the background. Each sweep looks at one page of each table with a ttl
+ * attribute, picking up where the last sweep of that table stopped, and deletes what has expired. Sweeps run one at a
+ * time with a fixed delay between them, so at most one connection per table is used and only briefly. Reads already
+ * hide expired entities, so this only has to keep up, not be exact.
+ */
+@Singleton
+public class ExpiryManager implements Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExpiryManager.class);
+
+  private final TenantManager tenantManager;
+  private final TenantTableManager tenantTableManager;
+  private final Map<String, TableDefinitionEngine> tableDefinitionEngineMap;
+  private final ExpiryEngine expiryEngine;
+  private final TenantTableEntryManager tenantTableEntryManager;
+  private final Metrics metrics;
+  private final long intervalSeconds;
+  private final int batchSize;
+  private final Counter deletedCounter;
+  private final Map<TenantTableIdentifier, ScanPosition> positions = new ConcurrentHashMap<>();
+  private ScheduledExecutorService executor;
+
+  /**
+   * Default constructor.
+   *
+   * @param tenantManager            to find the tenants.
+   * @param tenantTableManager       to find their tables.
+   * @param tableDefinitionEngineMap the engines that do the work.
+   * @param expiryEngine             to know what expired.
+   * @param tenantTableEntryManager  to delete from tables with a change stream, so the deletes are recorded.
+   * @param metrics                  for analytics.
+   * @param configuration            for the sweep interval and batch size.
+   */
+  @Inject
+  public ExpiryManager(final TenantManager tenantManager,
+                       final TenantTableManager tenantTableManager,
+                       final Map<String, TableDefinitionEngine> tableDefinitionEngineMap,
+                       final ExpiryEngine expiryEngine,
+                       final TenantTableEntryManager tenantTableEntryManager,
+                       final Metrics metrics,
+                       final NodeConfiguration configuration) {
+    LOGGER.info("ExpiryManager({},{},{},{},{})", tenantManager, tenantTableManager, tableDefinitionEngineMap, expiryEngine, metrics);
+    this.tenantManager = tenantManager;
+    this.tenantTableManager = tenantTableManager;
+    this.tableDefinitionEngineMap = tableDefinitionEngineMap;
+    this.expiryEngine = expiryEngine;
+    this.tenantTableEntryManager = tenantTableEntryManager;
+    this.metrics = metrics;
+    this.intervalSeconds = configuration.getExpirySweepIntervalSeconds();
+    this.batchSize = configuration.getExpirySweepBatchSize();
+    this.deletedCounter = metrics.registry().counter("ExpiryManager.deleted");
+  }
+
+  /**
+   * Starts sweeping.
+   */
+  @Override
+  public void start() {
+    LOGGER.info("start(): every {}s, batches of {}", intervalSeconds, batchSize);
+    executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "expiry-sweeper");
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.scheduleWithFixedDelay(this::sweepSafely, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stops sweeping, waiting briefly for a running sweep to finish.
+   *
+   * @throws Exception if interrupted.
+   */
+  @Override
+  public void stop() throws Exception {
+    LOGGER.info("stop()");
+    if (executor != null) {
+      executor.shutdown();
+      if (!executor.awaitTermination(intervalSeconds, TimeUnit.SECONDS)) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Runs one sweep over every table that has a ttl attribute.
+   *
+   * @return how many entities were deleted.
+   */
+  public int sweep() {
+    LOGGER.trace("sweep()");
+    return metrics.time("ExpiryManager.sweep", () -> {
+      int deleted = 0;
+      for (String tenantId : tenantManager.tenants()) {
+        for (String tableName : tenantTableManager.tables(tenantId)) {
+          final Optional<TenantTable> tenantTable = tenantTableManager.get(tenantId, tableName)
+              .filter(table -> table.ttlAttribute().isPresent());
+          if (tenantTable.isPresent()) {
+            try {
+              deleted += sweep(tenantTable.get());
+            } catch (RuntimeException e) {
+              LOGGER.warn("Unable to sweep {}", tenantTable.get().identifier(), e);
+            }
+          }
+        }
+      }
+      return deleted;
+    });
+  }
+
+  private void sweepSafely() {
+    try {
+      final int deleted = sweep();
+      if (deleted > 0) {
+        LOGGER.debug("Deleted {} expired entities", deleted);
+      }
+    } catch (RuntimeException e) {
+      LOGGER.error("Expiry sweep failed", e);
+    }
+  }
+
+  /**
+   * Sweeps the next page of the table. Each expired entity is deleted only if its ttl value is unchanged, so an entity
+   * rewritten with a new expiry since the page was read is left alone.
+   */
+  private int sweep(final TenantTable tenantTable) {
+    final TableDefinitionEngine engine = tableDefinitionEngineMap.get(tenantTable.tableVersion());
+    if (engine == null) {
+      return 0;
+    }
+    final TenantTableIdentifier identifier = tenantTable.identifier();
+    final String attribute = tenantTable.ttlAttribute().orElseThrow();
+    final long now = expiryEngine.now();
+    final Map<String, JsonNode> expired = new LinkedHashMap<>();
+    final Optional<ScanPosition> next = engine.scan(tenantTable,
+        ImmutableScanRequest.builder().limit(batchSize).startAfter(Optional.ofNullable(positions.get(identifier))).build(),
+        (entity, node) -> expiryEngine.expiry(tenantTable, node)
+            .filter(expiry -> expiry <= now)
+            .ifPresent(expiry -> expired.put(entity, node.get(attribute))));
+    next.ifPresentOrElse(position -> positions.put(identifier, position), () -> positions.remove(identifier));
+    int deleted = 0;
+    for (Map.Entry<String, JsonNode> entry : expired.entrySet()) {
+      final List<Condition> conditions = List.of(Condition.equalTo(attribute, entry.getValue()));
+      try {
+        final boolean removed = tenantTable.streamEnabled()
+            ? tenantTableEntryManager.delete(identifier, entry.getKey(), conditions)
+            : engine.delete(tenantTable, entry.getKey(), conditions);
+        if (removed) {
+          deleted++;
+        }
+      } catch (ConditionFailedException e) {
+        LOGGER.trace("Entity changed since read, skipping: {}:{}", identifier, entry.getKey());
+      }
+    }
+    deletedCounter.increment(deleted);
+    return deleted;
+  }
+
+}
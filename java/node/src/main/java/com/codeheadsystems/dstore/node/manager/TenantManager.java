@@ -46,22 +46,38 @@ public class TenantManager {
   private final TenantDao dao;
   private final AesGcmSivManager aesGcmSivManager;
   private final ExceptionUtils exceptionUtils;
+  private final DataSourceManager dataSourceManager;
+  private final EntityFilterManager entityFilterManager;
+  private final ChangeStreamManager changeStreamManager;
+  private final EntityCacheManager entityCacheManager;
   private final LoadingCache<String, Tenant> tenantLoadingCache;
 
   /**
    * Default constructor.
    *
-   * @param metrics          to use.
-   * @param dao              to use.
-   * @param aesGcmSivManager to key generation.
-   * @param exceptionUtils   for exception processing.
+   * @param metrics             to use.
+   * @param dao                 to use.
+   * @param aesGcmSivManager    to key generation.
+   * @param exceptionUtils      for exception processing.
+   * @param dataSourceManager   to close the datasources of deleted tenants.
+   * @param entityFilterManager to drop the entity filters of deleted tenants.
+   * @param changeStreamManager to drop the change streams of deleted tenants.
+   * @param entityCacheManager  to drop the entity caches of deleted tenants.
    */
   @Inject
   public TenantManager(final Metrics metrics,
                        final TenantDao dao,
                        final AesGcmSivManager aesGcmSivManager,
-                       final ExceptionUtils exceptionUtils) {
+                       final ExceptionUtils exceptionUtils,
+                       final DataSourceManager dataSourceManager,
+                       final EntityFilterManager entityFilterManager,
+                       final ChangeStreamManager changeStreamManager,
+                       final EntityCacheManager entityCacheManager) {
     this.exceptionUtils = exceptionUtils;
+    this.dataSourceManager = dataSourceManager;
+    this.entityFilterManager = entityFilterManager;
+    this.changeStreamManager = changeStreamManager;
+    this.entityCacheManager = entityCacheManager;
     LOGGER.info("TenantManager({},{},{})", metrics, dao, aesGcmSivManager);
     this.metrics = metrics;
     this.dao = dao;
@@ -131,6 +147,10 @@ public class TenantManager {
     LOGGER.trace("delete({})", tenantId);
     final boolean result = metrics.time("TenantManager.tenants", () -> dao.delete(tenantId));
     tenantLoadingCache.invalidate(tenantId);
+    entityFilterManager.dropTenant(tenantId);
+    changeStreamManager.dropTenant(tenantId);
+    entityCacheManager.dropTenant(tenantId);
+    dataSourceManager.evictTenant(tenantId);
     return result;
   }
 
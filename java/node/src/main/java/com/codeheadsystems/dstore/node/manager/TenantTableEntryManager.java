@@ -16,41 +16,88 @@
 
 package com.codeheadsystems.dstore.node.manager;
 
+import com.codeheadsystems.dstore.node.engine.ExpiryEngine;
 import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
+import com.codeheadsystems.dstore.node.exception.InvalidAttributeException;
 import com.codeheadsystems.dstore.node.exception.NotFoundException;
+import com.codeheadsystems.dstore.node.exception.UnsupportedTableOperationException;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ImmutableIndexLookupRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableQueryResult;
+import com.codeheadsystems.dstore.node.model.ImmutableTransactionItem;
+import com.codeheadsystems.dstore.node.model.IndexLookupRequest;
+import com.codeheadsystems.dstore.node.model.QueryRequest;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import com.codeheadsystems.dstore.node.model.ScanRequest;
 import com.codeheadsystems.dstore.node.model.TenantTable;
 import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Handles reading/writing into the tenant table we are executing. Wrapper to the engine.
+ * Handles reading/writing into the tenant table we are executing. Wrapper to the engine. For tables with a change
+ * stream or versioned entities, each write holds the locks of the entities it touches and reads them first. That read
+ * gives the current version, so the write can set the next one, and with a stream the entities are read again after
+ * so every change is added to the stream with its old and new image, in the order the changes happened. Whole entity
+ * reads go through the entity cache for tables that have one, and every write invalidates the entities it touched.
  */
 @Singleton
 public class TenantTableEntryManager {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(TenantTableEntryManager.class);
+  private static final int LOCK_STRIPES = 256;
 
   private final Map<String, TableDefinitionEngine> tableDefinitionEngineMap;
   private final TenantTableManager tenantTableManager;
+  private final ExpiryEngine expiryEngine;
+  private final ChangeStreamManager changeStreamManager;
+  private final EntityCacheManager entityCacheManager;
+  private final Striped<Lock> entityLocks = Striped.lock(LOCK_STRIPES);
 
   /**
    * Constructor.
    *
    * @param tableDefinitionEngineMap the map of who does the hard work.
    * @param tenantTableManager       to get the tenant table.
+   * @param expiryEngine             to hide expired entries.
+   * @param changeStreamManager      to record changes for tables with a stream.
+   * @param entityCacheManager       to cache entities for tables with a cache.
    */
   @Inject
   public TenantTableEntryManager(final Map<String, TableDefinitionEngine> tableDefinitionEngineMap,
-                                 final TenantTableManager tenantTableManager) {
-    LOGGER.info("TenantTableEntryManager({},{})", tableDefinitionEngineMap, tenantTableManager);
+                                 final TenantTableManager tenantTableManager,
+                                 final ExpiryEngine expiryEngine,
+                                 final ChangeStreamManager changeStreamManager,
+                                 final EntityCacheManager entityCacheManager) {
+    LOGGER.info("TenantTableEntryManager({},{},{},{},{})",
+        tableDefinitionEngineMap, tenantTableManager, expiryEngine, changeStreamManager, entityCacheManager);
     this.tableDefinitionEngineMap = tableDefinitionEngineMap;
     this.tenantTableManager = tenantTableManager;
+    this.expiryEngine = expiryEngine;
+    this.changeStreamManager = changeStreamManager;
+    this.entityCacheManager = entityCacheManager;
   }
 
   /**
@@ -65,7 +112,125 @@ public class TenantTableEntryManager {
     LOGGER.trace("read({},{})", identifier, entity);
     final TenantTable tenantTable = tenantTableManager.get(identifier)
         .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
-    return engine(tenantTable).read(tenantTable, entity);
+    return entityCacheManager.read(tenantTable, entity, () -> engine(tenantTable).read(tenantTable, entity))
+        .filter(node -> !expiryEngine.isExpired(tenantTable, node));
+  }
+
+  /**
+   * Reads only the named attributes of the entry.
+   *
+   * @param identifier of the table.
+   * @param entity     to read.
+   * @param attributes wanted, or empty for all of them.
+   * @return the data, if found.
+   */
+  public Optional<JsonNode> read(final TenantTableIdentifier identifier,
+                                 final String entity,
+                                 final Collection<String> attributes) {
+    LOGGER.trace("read({},{},{})", identifier, entity, attributes);
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final Optional<String> ttlAttribute = tenantTable.ttlAttribute();
+    if (attributes.isEmpty() || ttlAttribute.isEmpty() || attributes.contains(ttlAttribute.get())) {
+      return engine(tenantTable).read(tenantTable, entity, attributes)
+          .filter(node -> !expiryEngine.isExpired(tenantTable, node));
+    }
+    // The ttl attribute is needed to know if the entry expired, but the caller did not ask for it.
+    final List<String> withTtl = new ArrayList<>(attributes);
+    withTtl.add(ttlAttribute.get());
+    return engine(tenantTable).read(tenantTable, entity, withTtl)
+        .filter(node -> !expiryEngine.isExpired(tenantTable, node))
+        .map(node -> {
+          ((ObjectNode) node).remove(ttlAttribute.get());
+          return node;
+        });
+  }
+
+  /**
+   * Reads many entries from one table in a single pass.
+   *
+   * @param identifier of the table.
+   * @param entities   to read.
+   * @return the entries found, keyed by entity.
+   */
+  public Map<String, JsonNode> readMany(final TenantTableIdentifier identifier,
+                                        final Collection<String> entities) {
+    LOGGER.trace("readMany({},{})", identifier, entities.size());
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    return live(tenantTable, engine(tenantTable).readMany(tenantTable, entities));
+  }
+
+  /**
+   * Prepares a scan of one segment of the table. The table is looked up now, so a missing table fails here, but
+   * nothing is read until the returned function is called with the consumer for the entities.
+   *
+   * @param identifier of the table.
+   * @param request    the segment, page size and where to start.
+   * @return function that runs the scan, returning the position to continue after if more remain.
+   */
+  public Function<BiConsumer<String, JsonNode>, Optional<ScanPosition>> scan(final TenantTableIdentifier identifier,
+                                                                             final ScanRequest request) {
+    LOGGER.trace("scan({},{})", identifier, request);
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final TableDefinitionEngine engine = engine(tenantTable);
+    return (consumer) -> engine.scan(tenantTable, request, (entity, node) -> {
+      if (!expiryEngine.isExpired(tenantTable, node)) {
+        consumer.accept(entity, node);
+      }
+    });
+  }
+
+  /**
+   * Queries one partition of a sort key table.
+   *
+   * @param identifier of the table.
+   * @param request    the partition, sort key range and page.
+   * @return the page of results.
+   */
+  public QueryResult query(final TenantTableIdentifier identifier, final QueryRequest request) {
+    LOGGER.trace("query({},{})", identifier, request);
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final TableDefinitionEngine engine = engine(tenantTable);
+    if (!engine.supportsQuery()) {
+      throw new UnsupportedTableOperationException("Table has no sort key: " + identifier);
+    }
+    return withoutExpired(tenantTable, engine.query(tenantTable, request));
+  }
+
+  /**
+   * Looks up entries by the value of a secondary index.
+   *
+   * @param identifier of the table.
+   * @param indexName  the index.
+   * @param value      the value the indexed attribute must have.
+   * @param limit      most entries to return.
+   * @param startAfter entity id to continue after, if any.
+   * @return the page of results.
+   */
+  public QueryResult lookup(final TenantTableIdentifier identifier,
+                            final String indexName,
+                            final JsonNode value,
+                            final int limit,
+                            final Optional<String> startAfter) {
+    LOGGER.trace("lookup({},{})", identifier, indexName);
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final String attribute = tenantTable.indexAttribute(indexName)
+        .orElseThrow(() -> new NotFoundException("No such index:" + indexName));
+    final IndexLookupRequest request = ImmutableIndexLookupRequest.builder()
+        .attribute(attribute)
+        .value(value)
+        .limit(limit)
+        .startAfter(startAfter)
+        .build();
+    final TableDefinitionEngine engine = engine(tenantTable);
+    if (!engine.supportsLookup()) {
+      throw new UnsupportedTableOperationException("Table has no index support: " + identifier);
+    }
+    return withoutExpired(tenantTable, engine.lookup(tenantTable, request));
   }
 
   /**
@@ -81,7 +246,127 @@ public class TenantTableEntryManager {
     LOGGER.trace("write({},{})", identifier, entity);
     final TenantTable tenantTable = tenantTableManager.get(identifier)
         .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
-    engine(tenantTable).write(tenantTable, entity, jsonNode);
+    streamed(identifier, tenantTable, List.of(entity), (before) -> {
+      engine(tenantTable).write(tenantTable, entity, versioned(tenantTable, before.get(entity), jsonNode));
+      return null;
+    });
+  }
+
+  /**
+   * Writes the entry if the conditions hold.
+   *
+   * @param identifier of the table.
+   * @param entity     to write.
+   * @param jsonNode   the data.
+   * @param conditions that must all hold against the existing entry.
+   */
+  public void write(final TenantTableIdentifier identifier,
+                    final String entity,
+                    final JsonNode jsonNode,
+                    final Collection<Condition> conditions) {
+    LOGGER.trace("write({},{},{})", identifier, entity, conditions.size());
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    streamed(identifier, tenantTable, List.of(entity), (before) -> {
+      engine(tenantTable).write(tenantTable, entity, versioned(tenantTable, before.get(entity), jsonNode), conditions);
+      return null;
+    });
+  }
+
+  /**
+   * Writes and deletes many entries of one table in a single transaction.
+   *
+   * @param identifier of the table.
+   * @param writes     entries to write, keyed by entity.
+   * @param deletes    entities to delete.
+   */
+  public void writeMany(final TenantTableIdentifier identifier,
+                        final Map<String, JsonNode> writes,
+                        final Collection<String> deletes) {
+    LOGGER.trace("writeMany({},{},{})", identifier, writes.size(), deletes.size());
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final Set<String> entities = new LinkedHashSet<>(writes.keySet());
+    entities.addAll(deletes);
+    streamed(identifier, tenantTable, entities, (before) -> {
+      final Map<String, JsonNode> versioned = new LinkedHashMap<>();
+      writes.forEach((entity, data) -> versioned.put(entity, versioned(tenantTable, before.get(entity), data)));
+      engine(tenantTable).writeMany(tenantTable, versioned, deletes);
+      return null;
+    });
+  }
+
+  /**
+   * Applies the puts, deletes and condition checks on one table all or nothing.
+   *
+   * @param identifier of the table.
+   * @param items      to apply, each for a different entity.
+   */
+  public void transact(final TenantTableIdentifier identifier,
+                       final List<TransactionItem> items) {
+    LOGGER.trace("transact({},{})", identifier, items.size());
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final Set<String> entities = new LinkedHashSet<>();
+    items.forEach(item -> {
+      if (!entities.add(item.entity())) {
+        throw new IllegalArgumentException("Entity appears more than once: " + item.entity());
+      }
+    });
+    final TableDefinitionEngine engine = engine(tenantTable);
+    if (!engine.supportsTransactions()) {
+      throw new UnsupportedTableOperationException("Table has no transaction support: " + identifier);
+    }
+    streamed(identifier, tenantTable, entities, (before) -> {
+      engine.transact(tenantTable, items.stream()
+          .map(item -> item.put()
+              .map(data -> (TransactionItem) ImmutableTransactionItem.copyOf(item)
+                  .withPut(versioned(tenantTable, before.get(item.entity()), data)))
+              .orElse(item))
+          .toList());
+      return null;
+    });
+  }
+
+  /**
+   * Updates individual attributes of the entry.
+   *
+   * @param identifier of the table.
+   * @param entity     to update.
+   * @param jsonNode   the attributes to set, or remove if json null.
+   * @return if the entry existed and was updated.
+   */
+  public boolean update(final TenantTableIdentifier identifier,
+                        final String entity,
+                        final JsonNode jsonNode) {
+    LOGGER.trace("update({},{})", identifier, entity);
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    return streamed(identifier, tenantTable, List.of(entity),
+        (before) -> engine(tenantTable).update(tenantTable, entity, versioned(tenantTable, before.get(entity), jsonNode)));
+  }
+
+  /**
+   * Atomically adds to a numeric attribute of the entry.
+   *
+   * @param identifier of the table.
+   * @param entity     to update.
+   * @param attribute  the numeric attribute.
+   * @param delta      the amount to add.
+   * @return the new value.
+   */
+  public long increment(final TenantTableIdentifier identifier,
+                        final String entity,
+                        final String attribute,
+                        final long delta) {
+    LOGGER.trace("increment({},{},{})", identifier, entity, attribute);
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    if (tenantTable.versionAttribute().filter(attribute::equals).isPresent()) {
+      throw new InvalidAttributeException("The version is set by the node: " + attribute);
+    }
+    return streamed(identifier, tenantTable, List.of(entity), (before) -> engine(tenantTable).increment(
+        tenantTable, entity, attribute, delta, versioned(tenantTable, before.get(entity), JsonNodeFactory.instance.objectNode())));
   }
 
   /**
@@ -96,7 +381,128 @@ public class TenantTableEntryManager {
     LOGGER.trace("delete({},{})", identifier, entity);
     final TenantTable tenantTable = tenantTableManager.get(identifier)
         .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
-    return engine(tenantTable).delete(tenantTable, entity);
+    return streamed(identifier, tenantTable, List.of(entity),
+        (before) -> engine(tenantTable).delete(tenantTable, entity));
+  }
+
+  /**
+   * Deletes the entry if the conditions hold.
+   *
+   * @param identifier of the table.
+   * @param entity     the entity.
+   * @param conditions that must all hold against the entry.
+   * @return if it was deleted or not.
+   */
+  public boolean delete(final TenantTableIdentifier identifier,
+                        final String entity,
+                        final Collection<Condition> conditions) {
+    LOGGER.trace("delete({},{},{})", identifier, entity, conditions.size());
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    return streamed(identifier, tenantTable, List.of(entity),
+        (before) -> engine(tenantTable).delete(tenantTable, entity, conditions));
+  }
+
+  /**
+   * The condition that the entry has the version, for tables with versioned entries. Version zero means the entry
+   * does not exist yet.
+   *
+   * @param identifier of the table.
+   * @param version    the entry must have.
+   * @return the condition.
+   */
+  public Condition versionCondition(final TenantTableIdentifier identifier, final long version) {
+    LOGGER.trace("versionCondition({},{})", identifier, version);
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final String attribute = tenantTable.versionAttribute()
+        .orElseThrow(() -> new UnsupportedTableOperationException("Table has no versions: " + identifier));
+    if (version == 0) {
+      return Condition.notExists(attribute);
+    }
+    // Stored numbers read back as the smallest node that holds them, like condition values parsed from a request.
+    return Condition.equalTo(attribute, version == (int) version ? IntNode.valueOf((int) version) : LongNode.valueOf(version));
+  }
+
+  /**
+   * Runs the write with the entities as they were before it, and for tables with a stream records what it changed.
+   * Tables without a stream or versions skip the locks and the reads, and the write gets an empty map. The entity
+   * locks are taken in the stable order Striped gives, so writes touching the same entities cannot deadlock. A write
+   * that throws records nothing. The entities are dropped from the cache once the write is done, even if it threw.
+   */
+  private <T> T streamed(final TenantTableIdentifier identifier,
+                         final TenantTable tenantTable,
+                         final Collection<String> entities,
+                         final Function<Map<String, JsonNode>, T> write) {
+    try {
+      if (tenantTable.streamEnabled() || tenantTable.versionAttribute().isPresent()) {
+        return locked(identifier, tenantTable, entities, write);
+      }
+      return write.apply(Map.of());
+    } finally {
+      entityCacheManager.invalidate(identifier, entities);
+    }
+  }
+
+  private <T> T locked(final TenantTableIdentifier identifier,
+                       final TenantTable tenantTable,
+                       final Collection<String> entities,
+                       final Function<Map<String, JsonNode>, T> write) {
+    final TableDefinitionEngine engine = engine(tenantTable);
+    final List<Lock> locks = new ArrayList<>();
+    entityLocks.bulkGet(entities.stream().map(entity -> List.of(identifier, entity)).toList()).forEach(locks::add);
+    locks.forEach(Lock::lock);
+    try {
+      final Map<String, JsonNode> before = engine.readMany(tenantTable, entities);
+      final T result = write.apply(before);
+      if (tenantTable.streamEnabled()) {
+        final Map<String, JsonNode> after = engine.readMany(tenantTable, entities);
+        for (String entity : entities) {
+          final Optional<JsonNode> oldImage = Optional.ofNullable(before.get(entity));
+          final Optional<JsonNode> newImage = Optional.ofNullable(after.get(entity));
+          if (!oldImage.equals(newImage)) {
+            changeStreamManager.append(identifier, entity, oldImage, newImage);
+          }
+        }
+      }
+      return result;
+    } finally {
+      Lists.reverse(locks).forEach(Lock::unlock);
+    }
+  }
+
+  /**
+   * The data with the version attribute set one past the entity's current version, for tables with versioned
+   * entities. An entity without a numeric version is at version zero.
+   */
+  private JsonNode versioned(final TenantTable tenantTable, final JsonNode current, final JsonNode data) {
+    final Optional<String> attribute = tenantTable.versionAttribute();
+    if (attribute.isEmpty() || !data.isObject()) {
+      return data;
+    }
+    final JsonNode version = current == null ? null : current.get(attribute.get());
+    final long next = (version != null && version.isIntegralNumber() ? version.longValue() : 0L) + 1;
+    return ((ObjectNode) data).deepCopy().put(attribute.get(), next);
+  }
+
+  private QueryResult withoutExpired(final TenantTable tenantTable, final QueryResult result) {
+    if (tenantTable.ttlAttribute().isEmpty()) {
+      return result;
+    }
+    return ImmutableQueryResult.copyOf(result).withEntities(live(tenantTable, result.entities()));
+  }
+
+  private Map<String, JsonNode> live(final TenantTable tenantTable, final Map<String, JsonNode> entries) {
+    if (tenantTable.ttlAttribute().isEmpty()) {
+      return entries;
+    }
+    final Map<String, JsonNode> result = new LinkedHashMap<>();
+    entries.forEach((entity, node) -> {
+      if (!expiryEngine.isExpired(tenantTable, node)) {
+        result.put(entity, node);
+      }
+    });
+    return result;
   }
 
   private TableDefinitionEngine engine(final TenantTable tenantTable) {
@@ -17,10 +17,13 @@
 package com.codeheadsystems.dstore.node.manager;
 
 import com.codeheadsystems.dstore.common.crypt.AesGcmSivManager;
+import com.codeheadsystems.dstore.node.NodeConfiguration;
 import com.codeheadsystems.dstore.node.dao.TenantTableDao;
+import com.codeheadsystems.dstore.node.dao.TenantTablePropertiesDao;
 import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
 import com.codeheadsystems.dstore.node.exception.ExceptionUtils;
 import com.codeheadsystems.dstore.node.exception.NotFoundException;
+import com.codeheadsystems.dstore.node.exception.UnsupportedTableOperationException;
 import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
 import com.codeheadsystems.dstore.node.model.ImmutableTenantTableIdentifier;
 import com.codeheadsystems.dstore.node.model.TenantTable;
@@ -29,9 +32,11 @@ import com.codeheadsystems.metrics.Metrics;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import org.slf4j.Logger;
@@ -47,34 +52,56 @@ public class TenantTableManager {
 
   private final Metrics metrics;
   private final TenantTableDao dao;
+  private final TenantTablePropertiesDao propertiesDao;
   private final AesGcmSivManager aesGcmSivManager;
   private final Map<String, TableDefinitionEngine> tableDefinitionEngineMap;
   private final LoadingCache<TenantTableIdentifier, TenantTable> tenantTableCacheLoader;
   private final DataSourceManager dataSourceManager;
+  private final EntityFilterManager entityFilterManager;
+  private final ChangeStreamManager changeStreamManager;
+  private final EntityCacheManager entityCacheManager;
   private final ExceptionUtils exceptionUtils;
+  private final boolean sharedStorage;
+  private final Set<String> sharedTenants;
 
   /**
    * Default constructor.
    *
    * @param metrics                  to use.
    * @param dao                      to use.
+   * @param propertiesDao            for the table properties.
    * @param aesGcmSivManager         to crypt controls.
    * @param tableDefinitionEngineMap map of available engines.
    * @param dataSourceManager        to ensure the data source exists.
+   * @param entityFilterManager      to drop the entity filters of deleted tables.
+   * @param changeStreamManager      to drop the change streams of deleted tables.
+   * @param entityCacheManager       to drop the entity caches of deleted tables.
    * @param exceptionUtils           for exception processing.
+   * @param configuration            for where new tables are stored.
    */
   @Inject
   public TenantTableManager(final Metrics metrics,
                             final TenantTableDao dao,
+                            final TenantTablePropertiesDao propertiesDao,
                             final AesGcmSivManager aesGcmSivManager,
                             final Map<String, TableDefinitionEngine> tableDefinitionEngineMap,
                             final DataSourceManager dataSourceManager,
-                            final ExceptionUtils exceptionUtils) {
+                            final EntityFilterManager entityFilterManager,
+                            final ChangeStreamManager changeStreamManager,
+                            final EntityCacheManager entityCacheManager,
+                            final ExceptionUtils exceptionUtils,
+                            final NodeConfiguration configuration) {
     LOGGER.info("TenantManager({},{},{},{})", metrics, dao, aesGcmSivManager, tableDefinitionEngineMap);
     this.exceptionUtils = exceptionUtils;
+    this.sharedStorage = configuration.isSharedStorage();
+    this.sharedTenants = Set.copyOf(configuration.getSharedTenants());
     this.dataSourceManager = dataSourceManager;
+    this.entityFilterManager = entityFilterManager;
+    this.changeStreamManager = changeStreamManager;
+    this.entityCacheManager = entityCacheManager;
     this.metrics = metrics;
     this.dao = dao;
+    this.propertiesDao = propertiesDao;
     this.aesGcmSivManager = aesGcmSivManager;
     this.tableDefinitionEngineMap = tableDefinitionEngineMap;
     tenantTableCacheLoader = CacheBuilder.newBuilder()
@@ -108,8 +135,171 @@ public class TenantTableManager {
   }
 
   private TenantTable load(final TenantTableIdentifier identifier) {
-    return metrics.time("TenantTableManager.load", () -> dao.read(identifier.tenantId(), identifier.tableName()))
+    final TenantTable tenantTable = metrics.time("TenantTableManager.load", () -> dao.read(identifier.tenantId(), identifier.tableName()))
         .orElseThrow(() -> new NotFoundException("No such tenant table: " + identifier));
+    final Map<String, String> properties = propertiesDao.read(identifier);
+    if (properties.isEmpty()) {
+      return tenantTable;
+    }
+    return ImmutableTenantTable.copyOf(tenantTable).withProperties(properties);
+  }
+
+  /**
+   * Defines a secondary index on the table. Replaces the index if it already exists.
+   *
+   * @param identifier of the table.
+   * @param indexName  name of the index.
+   * @param attribute  the attribute to index.
+   * @return the updated table.
+   */
+  public TenantTable createIndex(final TenantTableIdentifier identifier, final String indexName, final String attribute) {
+    LOGGER.debug("createIndex({},{},{})", identifier, indexName, attribute);
+    final TenantTable tenantTable = get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final Map<String, String> properties = new HashMap<>(tenantTable.properties());
+    properties.put(TenantTable.INDEX_PROPERTY_PREFIX + indexName, attribute);
+    return writeProperties(identifier, properties);
+  }
+
+  /**
+   * Removes a secondary index from the table.
+   *
+   * @param identifier of the table.
+   * @param indexName  name of the index.
+   * @return boolean if the index existed.
+   */
+  public boolean deleteIndex(final TenantTableIdentifier identifier, final String indexName) {
+    LOGGER.debug("deleteIndex({},{})", identifier, indexName);
+    final TenantTable tenantTable = get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    if (tenantTable.indexAttribute(indexName).isEmpty()) {
+      return false;
+    }
+    final Map<String, String> properties = new HashMap<>(tenantTable.properties());
+    properties.remove(TenantTable.INDEX_PROPERTY_PREFIX + indexName);
+    writeProperties(identifier, properties);
+    return true;
+  }
+
+  /**
+   * Sets the attribute holding each entity's expiry time, in epoch seconds. Empty turns expiry off.
+   *
+   * @param identifier of the table.
+   * @param attribute  the ttl attribute, if any.
+   * @return the updated table.
+   */
+  public TenantTable ttlAttribute(final TenantTableIdentifier identifier, final Optional<String> attribute) {
+    LOGGER.debug("ttlAttribute({},{})", identifier, attribute);
+    final TenantTable tenantTable = get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final Map<String, String> properties = new HashMap<>(tenantTable.properties());
+    attribute.ifPresentOrElse(
+        value -> properties.put(TenantTable.TTL_PROPERTY, value),
+        () -> properties.remove(TenantTable.TTL_PROPERTY));
+    return writeProperties(identifier, properties);
+  }
+
+  /**
+   * Sets the attribute holding each entity's version. Empty turns versioning off, leaving the attribute on the
+   * entities as it is.
+   *
+   * @param identifier of the table.
+   * @param attribute  the version attribute, if any.
+   * @return the updated table.
+   */
+  public TenantTable versionAttribute(final TenantTableIdentifier identifier, final Optional<String> attribute) {
+    LOGGER.debug("versionAttribute({},{})", identifier, attribute);
+    final TenantTable tenantTable = get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final Map<String, String> properties = new HashMap<>(tenantTable.properties());
+    attribute.ifPresentOrElse(
+        value -> properties.put(TenantTable.VERSION_PROPERTY, value),
+        () -> properties.remove(TenantTable.VERSION_PROPERTY));
+    return writeProperties(identifier, properties);
+  }
+
+  /**
+   * Turns the table's change stream on or off.
+   *
+   * @param identifier of the table.
+   * @param enabled    if changes should be recorded.
+   * @return the updated table.
+   */
+  public TenantTable stream(final TenantTableIdentifier identifier, final boolean enabled) {
+    LOGGER.debug("stream({},{})", identifier, enabled);
+    final TenantTable tenantTable = get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final Map<String, String> properties = new HashMap<>(tenantTable.properties());
+    if (enabled) {
+      properties.put(TenantTable.STREAM_PROPERTY, Boolean.TRUE.toString());
+    } else {
+      properties.remove(TenantTable.STREAM_PROPERTY);
+    }
+    return writeProperties(identifier, properties);
+  }
+
+  /**
+   * Sets how many bytes of the table's entities the node caches. Empty turns the cache off and drops what it held.
+   *
+   * @param identifier of the table.
+   * @param maxBytes   the cache size, if any.
+   * @return the updated table.
+   */
+  public TenantTable cacheMaxBytes(final TenantTableIdentifier identifier, final Optional<Long> maxBytes) {
+    LOGGER.debug("cacheMaxBytes({},{})", identifier, maxBytes);
+    final TenantTable tenantTable = get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    final Map<String, String> properties = new HashMap<>(tenantTable.properties());
+    maxBytes.ifPresentOrElse(
+        value -> properties.put(TenantTable.CACHE_PROPERTY, Long.toString(value)),
+        () -> properties.remove(TenantTable.CACHE_PROPERTY));
+    final TenantTable result = writeProperties(identifier, properties);
+    if (maxBytes.isEmpty()) {
+      entityCacheManager.drop(identifier);
+    }
+    return result;
+  }
+
+  /**
+   * Moves the table into shared storage, or out to its own database. Uses of the table wait while its data is copied.
+   * Only tables of the shared tenants can be moved into shared storage, as it is encrypted only with the node's key.
+   *
+   * @param identifier of the table.
+   * @param shared     if the table should be in shared storage.
+   * @return the updated table.
+   */
+  public TenantTable storage(final TenantTableIdentifier identifier, final boolean shared) {
+    LOGGER.debug("storage({},{})", identifier, shared);
+    final TenantTable tenantTable = get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    if (tenantTable.storageShard().isPresent() == shared) {
+      return tenantTable;
+    }
+    if (shared && !sharedTenants.contains(identifier.tenantId())) {
+      throw new UnsupportedTableOperationException("Tenant is not allowed shared storage: " + identifier.tenantId());
+    }
+    final Map<String, String> properties = new HashMap<>(tenantTable.properties());
+    if (shared) {
+      properties.put(TenantTable.SHARD_PROPERTY, Integer.toString(dataSourceManager.shardFor(identifier)));
+    } else {
+      properties.remove(TenantTable.SHARD_PROPERTY);
+    }
+    final TenantTable target = ImmutableTenantTable.copyOf(tenantTable).withProperties(properties);
+    metrics.time("TenantTableManager.storage", () -> {
+      dataSourceManager.migrate(tenantTable, target, () -> propertiesDao.write(identifier, properties));
+      return null;
+    });
+    tenantTableCacheLoader.invalidate(identifier);
+    return get(identifier).orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+  }
+
+  private TenantTable writeProperties(final TenantTableIdentifier identifier, final Map<String, String> properties) {
+    metrics.time("TenantTableManager.writeProperties", () -> {
+      propertiesDao.write(identifier, properties);
+      return null;
+    });
+    tenantTableCacheLoader.invalidate(identifier);
+    return get(identifier).orElseThrow(() -> new NotFoundException("No such table:" + identifier));
   }
 
   /**
@@ -121,6 +311,7 @@ public class TenantTableManager {
    * @param tableVersion the version of the table we are creating.
    * @param primaryKey   primary key of a row.
    * @return a tenant.
+   * @throws UnsupportedTableOperationException if no table definition engine has the version.
    */
   public TenantTable create(final String tenantId,
                             final String tableName,
@@ -138,27 +329,34 @@ public class TenantTableManager {
                                        final String primaryKey) {
     LOGGER.debug("buildTenantTable({}, {}, {})", tenantId, tableName, tableVersion);
     if (!tableDefinitionEngineMap.containsKey(tableVersion)) {
-      throw new IllegalArgumentException("Unknown table version: " + tableVersion);
+      throw new UnsupportedTableOperationException("Unknown table version: " + tableVersion);
     }
     final TenantTableIdentifier identifier = ImmutableTenantTableIdentifier.builder()
         .tenantId(tenantId)
         .tableName(tableName)
         .build();
-    final TenantTable tenantTable = ImmutableTenantTable.builder()
+    final ImmutableTenantTable.Builder builder = ImmutableTenantTable.builder()
         .identifier(identifier)
         .enabled(true)
         .estimatedQuantity(0)
         .tableVersion(tableVersion)
         .key(aesGcmSivManager.randomKeyBase64Encoded())
         .nonce(aesGcmSivManager.randomNonceBase64Encoded())
-        .primaryKey(primaryKey)
-        .build();
+        .primaryKey(primaryKey);
+    if (sharedStorage && sharedTenants.contains(tenantId)) {
+      builder.putProperties(TenantTable.SHARD_PROPERTY, Integer.toString(dataSourceManager.shardFor(identifier)));
+    }
+    final TenantTable tenantTable = builder.build();
     try {
       final TenantTable result = dao.create(tenantTable);
+      if (!tenantTable.properties().isEmpty()) {
+        propertiesDao.write(identifier, tenantTable.properties());
+      }
       dataSourceManager.getDataSource(tenantTable);
       return result;
     } catch (RuntimeException re) {
       LOGGER.error("Unable to create data source for {}, destroying", tenantTable);
+      propertiesDao.delete(identifier);
       dao.delete(tenantId, tableName);
       throw re;
     }
@@ -185,7 +383,17 @@ public class TenantTableManager {
    */
   public boolean delete(final String tenantId, final String tableName) {
     LOGGER.trace("delete({}, {})", tenantId, tableName);
-    return metrics.time("TenantTableManager.delete", () -> dao.delete(tenantId, tableName));
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from(tenantId, tableName);
+    final Optional<TenantTable> tenantTable = get(identifier);
+    return metrics.time("TenantTableManager.delete", () -> {
+      propertiesDao.delete(identifier);
+      tenantTableCacheLoader.invalidate(identifier);
+      entityFilterManager.drop(identifier);
+      changeStreamManager.drop(identifier);
+      entityCacheManager.drop(identifier);
+      tenantTable.ifPresentOrElse(dataSourceManager::dropStorage, () -> dataSourceManager.evict(identifier));
+      return dao.delete(tenantId, tableName);
+    });
   }
 
 }
@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.manager;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.dao.TenantTableAccessDao;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.Metrics;
+import io.dropwizard.lifecycle.Managed;
+import io.micrometer.core.instrument.Gauge;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opens the most recently used tables at startup, so the first calls after a restart do not pay for opening them.
+ * Tables are opened a few at a time in the background. Until they are all open, or failed to, the node is not ready.
+ * How often each table is used is saved periodically and on stop, which picks the tables for the next startup.
+ */
+@Singleton
+public class TenantTableWarmupManager implements Managed {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TenantTableWarmupManager.class);
+  private static final long STOP_TIMEOUT_SECONDS = 10;
+
+  private final DataSourceManager dataSourceManager;
+  private final TenantTableManager tenantTableManager;
+  private final TenantTableAccessDao tenantTableAccessDao;
+  private final Clock clock;
+  private final int tableCount;
+  private final int threads;
+  private final long flushSeconds;
+  private final AtomicInteger total = new AtomicInteger();
+  private final AtomicInteger opened = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  private volatile boolean stopped = false;
+  private ExecutorService warmupExecutor;
+  private ScheduledExecutorService flushExecutor;
+
+  /**
+   * Default constructor.
+   *
+   * @param dataSourceManager    to open the tables, and for how much they were used.
+   * @param tenantTableManager   to read the tables.
+   * @param tenantTableAccessDao to save how much the tables were used.
+   * @param clock                for when the tables were used.
+   * @param metrics              for the progress.
+   * @param configuration        for how many tables to open, and how often to save their use.
+   */
+  @Inject
+  public TenantTableWarmupManager(final DataSourceManager dataSourceManager,
+                                  final TenantTableManager tenantTableManager,
+                                  final TenantTableAccessDao tenantTableAccessDao,
+                                  final Clock clock,
+                                  final Metrics metrics,
+                                  final NodeConfiguration configuration) {
+    LOGGER.info("TenantTableWarmupManager({},{},{})", dataSourceManager, tenantTableManager, tenantTableAccessDao);
+    this.dataSourceManager = dataSourceManager;
+    this.tenantTableManager = tenantTableManager;
+    this.tenantTableAccessDao = tenantTableAccessDao;
+    this.clock = clock;
+    this.tableCount = configuration.getWarmupTableCount();
+    this.threads = Math.max(1, configuration.getWarmupThreads());
+    this.flushSeconds = configuration.getTableAccessFlushSeconds();
+    Gauge.builder("TenantTableWarmupManager.total", total, AtomicInteger::get).register(metrics.registry());
+    Gauge.builder("TenantTableWarmupManager.opened", opened, AtomicInteger::get).register(metrics.registry());
+    Gauge.builder("TenantTableWarmupManager.failed", failed, AtomicInteger::get).register(metrics.registry());
+  }
+
+  /**
+   * Starts opening the tables, and saving how much they are used.
+   */
+  @Override
+  public void start() {
+    LOGGER.info("start(): {} tables, {} at a time", tableCount, threads);
+    flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      final Thread thread = new Thread(runnable, "table-access");
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (flushSeconds > 0) {
+      flushExecutor.scheduleWithFixedDelay(this::flushSafely, flushSeconds, flushSeconds, TimeUnit.SECONDS);
+    }
+    if (tableCount <= 0) {
+      return;
+    }
+    final List<TenantTableIdentifier> identifiers = tenantTableAccessDao.mostRecent(tableCount);
+    total.set(identifiers.size());
+    final AtomicInteger threadCount = new AtomicInteger();
+    warmupExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread = new Thread(runnable, "table-warmup-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    identifiers.forEach(identifier -> warmupExecutor.execute(() -> open(identifier)));
+    warmupExecutor.shutdown();
+  }
+
+  /**
+   * Stops opening tables and saves how much they were used.
+   *
+   * @throws Exception if interrupted.
+   */
+  @Override
+  public void stop() throws Exception {
+    LOGGER.info("stop()");
+    stopped = true;
+    if (warmupExecutor != null) {
+      // Not interrupted, as an interrupt closes the database files of a table being opened.
+      warmupExecutor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    if (flushExecutor != null) {
+      flushExecutor.shutdown();
+      flushExecutor.awaitTermination(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+    flushSafely();
+  }
+
+  /**
+   * Lets us know if all the tables picked at startup were opened, or failed to.
+   *
+   * @return if the warmup is complete.
+   */
+  public boolean isComplete() {
+    return opened.get() + failed.get() >= total.get();
+  }
+
+  /**
+   * Describes the progress of the warmup.
+   *
+   * @return the progress.
+   */
+  public String progress() {
+    return String.format("%d/%d tables opened, %d failed", opened.get(), total.get(), failed.get());
+  }
+
+  /**
+   * Saves how much each table was used since the last flush.
+   */
+  public void flush() {
+    final Map<TenantTableIdentifier, Long> counts = dataSourceManager.drainAccessCounts();
+    LOGGER.trace("flush(): {}", counts.size());
+    tenantTableAccessDao.write(counts, clock.millis());
+  }
+
+  private void flushSafely() {
+    try {
+      flush();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Unable to save table access", e);
+    }
+  }
+
+  private void open(final TenantTableIdentifier identifier) {
+    if (stopped) {
+      return;
+    }
+    try {
+      final Optional<TenantTable> tenantTable = tenantTableManager.get(identifier);
+      if (tenantTable.isPresent()) {
+        dataSourceManager.warm(tenantTable.get());
+        LOGGER.debug("open({}): opened", identifier);
+      } else {
+        LOGGER.debug("open({}): deleted", identifier);
+        tenantTableAccessDao.delete(identifier);
+      }
+      opened.incrementAndGet();
+    } catch (RuntimeException e) {
+      LOGGER.warn("Unable to open {}", identifier, e);
+      failed.incrementAndGet();
+    }
+    if (isComplete()) {
+      LOGGER.info("Warmup complete: {}", progress());
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.model;
+
+import java.util.List;
+import org.immutables.value.Value;
+
+/**
+ * One page of a table's change stream.
+ */
+@Value.Immutable
+public interface ChangePage {
+
+  /**
+   * The epoch of the stream. Sequences are only comparable within one epoch.
+   *
+   * @return value.
+   */
+  String epoch();
+
+  /**
+   * The changes, in sequence order.
+   *
+   * @return value.
+   */
+  List<ChangeRecord> records();
+
+  /**
+   * The sequence to read after for the next page. Unchanged from the request if there were no changes.
+   *
+   * @return value.
+   */
+  long next();
+
+  /**
+   * True if changes after the requested sequence were already dropped from the stream, so the reader missed some and
+   * should resync from the table.
+   *
+   * @return value.
+   */
+  boolean trimmed();
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * One change to an entity of a table, as kept in the table's change stream.
+ */
+@Value.Immutable
+public interface ChangeRecord {
+
+  /**
+   * Position of the change in the table's stream. Increases by one with each change.
+   *
+   * @return value.
+   */
+  long sequence();
+
+  /**
+   * The entity that changed.
+   *
+   * @return value.
+   */
+  String entity();
+
+  /**
+   * The entity before the change, empty if it was created.
+   *
+   * @return value.
+   */
+  Optional<JsonNode> oldImage();
+
+  /**
+   * The entity after the change, empty if it was deleted.
+   *
+   * @return value.
+   */
+  Optional<JsonNode> newImage();
+
+}
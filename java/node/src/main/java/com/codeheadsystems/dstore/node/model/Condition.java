@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * A precondition on an attribute of the existing entity, checked in the same transaction as the write.
+ */
+@Value.Immutable
+public interface Condition {
+
+  /**
+   * Attribute must exist.
+   *
+   * @param attribute to check.
+   * @return the condition.
+   */
+  static Condition exists(final String attribute) {
+    return ImmutableCondition.builder().attribute(attribute).operator(Operator.EXISTS).build();
+  }
+
+  /**
+   * Attribute must not exist. Also true if the entity does not exist.
+   *
+   * @param attribute to check.
+   * @return the condition.
+   */
+  static Condition notExists(final String attribute) {
+    return ImmutableCondition.builder().attribute(attribute).operator(Operator.NOT_EXISTS).build();
+  }
+
+  /**
+   * Attribute must exist and equal the value.
+   *
+   * @param attribute to check.
+   * @param value     it must have.
+   * @return the condition.
+   */
+  static Condition equalTo(final String attribute, final JsonNode value) {
+    return ImmutableCondition.builder().attribute(attribute).operator(Operator.EQUALS).value(value).build();
+  }
+
+  /**
+   * The attribute to check.
+   *
+   * @return value.
+   */
+  String attribute();
+
+  /**
+   * The check to make.
+   *
+   * @return value.
+   */
+  Operator operator();
+
+  /**
+   * The value to compare with, for EQUALS.
+   *
+   * @return value.
+   */
+  Optional<JsonNode> value();
+
+  /**
+   * Make sure we have a value when we need one.
+   */
+  @Value.Check
+  default void check() {
+    Preconditions.checkArgument(operator() != Operator.EQUALS || value().isPresent(), "EQUALS needs a value");
+  }
+
+  /**
+   * The checks supported.
+   */
+  enum Operator {
+    /**
+     * Attribute exists.
+     */
+    EXISTS,
+    /**
+     * Attribute does not exist.
+     */
+    NOT_EXISTS,
+    /**
+     * Attribute exists with the value.
+     */
+    EQUALS
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * A single page of entities whose indexed attribute has the value. Matches are returned in entity id order.
+ */
+@Value.Immutable
+public interface IndexLookupRequest {
+
+  /**
+   * The indexed attribute.
+   *
+   * @return value.
+   */
+  String attribute();
+
+  /**
+   * The value the attribute must have.
+   *
+   * @return value.
+   */
+  JsonNode value();
+
+  /**
+   * Most entities to return in this page.
+   *
+   * @return value.
+   */
+  int limit();
+
+  /**
+   * Continue after this entity id, if set.
+   *
+   * @return value.
+   */
+  Optional<String> startAfter();
+
+  /**
+   * Make sure the page is one we can return.
+   */
+  @Value.Check
+  default void check() {
+    Preconditions.checkArgument(limit() > 0, "limit must be positive");
+  }
+
+}
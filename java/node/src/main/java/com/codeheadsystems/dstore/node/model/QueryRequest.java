@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.model;
+
+import com.google.common.base.Preconditions;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * A single page of a query over one partition of a sort key table. Sort keys compare as strings, so numeric sort keys
+ * need to be zero padded to order correctly.
+ */
+@Value.Immutable
+public interface QueryRequest {
+
+  /**
+   * The partition to query.
+   *
+   * @return value.
+   */
+  String partitionKey();
+
+  /**
+   * How to restrict the sort key. If empty, the whole partition is returned.
+   *
+   * @return value.
+   */
+  Optional<Operator> operator();
+
+  /**
+   * The value the operator compares with. For BETWEEN this is the lower bound, inclusive.
+   *
+   * @return value.
+   */
+  Optional<String> value();
+
+  /**
+   * The upper bound for BETWEEN, inclusive.
+   *
+   * @return value.
+   */
+  Optional<String> upperValue();
+
+  /**
+   * Most entities to return in this page.
+   *
+   * @return value.
+   */
+  int limit();
+
+  /**
+   * Return in ascending sort key order if true, descending if false.
+   *
+   * @return value.
+   */
+  @Value.Default
+  default boolean forward() {
+    return true;
+  }
+
+  /**
+   * Continue after this sort key, in the direction of the query, if set.
+   *
+   * @return value.
+   */
+  Optional<String> startAfter();
+
+  /**
+   * Make sure the operator has what it needs.
+   */
+  @Value.Check
+  default void check() {
+    Preconditions.checkArgument(limit() > 0, "limit must be positive");
+    Preconditions.checkArgument(operator().isEmpty() || value().isPresent(), "operator needs a value");
+    Preconditions.checkArgument(operator().filter(Operator.BETWEEN::equals).isEmpty() || upperValue().isPresent(),
+        "BETWEEN needs an upper value");
+  }
+
+  /**
+   * The sort key restrictions supported. Each compiles to a range on the sort key index.
+   */
+  enum Operator {
+    /**
+     * Sort key starts with the value.
+     */
+    BEGINS_WITH,
+    /**
+     * Sort key is between the value and the upper value, inclusive.
+     */
+    BETWEEN,
+    /**
+     * Sort key is greater than the value.
+     */
+    GREATER_THAN,
+    /**
+     * Sort key is less than the value.
+     */
+    LESS_THAN
+  }
+
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.Map;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * One page of query or index lookup results.
+ */
+@Value.Immutable
+public interface QueryResult {
+
+  /**
+   * The entities found, keyed by entity id, in sort key order.
+   *
+   * @return value.
+   */
+  Map<String, JsonNode> entities();
+
+  /**
+   * The sort key to continue after if the limit was hit and more remain. Index lookups are ordered by entity id, so
+   * for them this is the last entity id.
+   *
+   * @return value.
+   */
+  Optional<String> lastSortKey();
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.model;
+
+import org.immutables.value.Value;
+
+/**
+ * Where a scan stopped. Entities are scanned in (hash, id) order, so the next page starts right after this.
+ */
+@Value.Immutable
+public interface ScanPosition {
+
+  /**
+   * Helper method to create a position.
+   *
+   * @param hash of the last entity returned.
+   * @param id   of the last entity returned.
+   * @return the position.
+   */
+  static ScanPosition from(final long hash, final String id) {
+    return ImmutableScanPosition.builder().hash(hash).id(id).build();
+  }
+
+  /**
+   * Hash of the last entity returned.
+   *
+   * @return value.
+   */
+  long hash();
+
+  /**
+   * Id of the last entity returned.
+   *
+   * @return value.
+   */
+  String id();
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.model;
+
+import com.google.common.base.Preconditions;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * A single page of a scan over one segment of a table. The 32-bit hash space is split into totalSegments equal
+ * ranges, so scanners of different segments never see the same entity.
+ */
+@Value.Immutable
+public interface ScanRequest {
+
+  /**
+   * Size of the hash space that gets split into segments.
+   */
+  long HASH_SPACE = 1L << 32;
+
+  /**
+   * The segment to scan, zero based.
+   *
+   * @return value.
+   */
+  @Value.Default
+  default int segment() {
+    return 0;
+  }
+
+  /**
+   * How many segments the table is split into.
+   *
+   * @return value.
+   */
+  @Value.Default
+  default int totalSegments() {
+    return 1;
+  }
+
+  /**
+   * Most entities to return in this page.
+   *
+   * @return value.
+   */
+  int limit();
+
+  /**
+   * Continue after this position, if set.
+   *
+   * @return value.
+   */
+  Optional<ScanPosition> startAfter();
+
+  /**
+   * First hash in the segment, inclusive.
+   *
+   * @return value.
+   */
+  default long hashStart() {
+    return Integer.MIN_VALUE + (HASH_SPACE * segment()) / totalSegments();
+  }
+
+  /**
+   * Last hash in the segment, exclusive.
+   *
+   * @return value.
+   */
+  default long hashEnd() {
+    return Integer.MIN_VALUE + (HASH_SPACE * (segment() + 1)) / totalSegments();
+  }
+
+  /**
+   * Make sure the segment is one we can scan.
+   */
+  @Value.Check
+  default void check() {
+    Preconditions.checkArgument(totalSegments() > 0, "totalSegments must be positive");
+    Preconditions.checkArgument(segment() >= 0 && segment() < totalSegments(), "segment must be in [0,totalSegments)");
+    Preconditions.checkArgument(limit() > 0, "limit must be positive");
+  }
+
+}
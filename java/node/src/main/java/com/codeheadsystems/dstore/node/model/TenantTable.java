@@ -18,6 +18,7 @@ package com.codeheadsystems.dstore.node.model;
 
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 import org.immutables.value.Value;
 
 /**
@@ -26,6 +27,37 @@ import org.immutables.value.Value;
 @Value.Immutable
 public interface TenantTable {
 
+  /**
+   * Properties with this prefix define a secondary index. The rest of the key is the index name, the value is the
+   * attribute indexed.
+   */
+  String INDEX_PROPERTY_PREFIX = "index.";
+
+  /**
+   * Property holding the attribute that has the expiry time of each entity, in epoch seconds.
+   */
+  String TTL_PROPERTY = "ttl.attribute";
+
+  /**
+   * Property holding the attribute that has each entity's version. The node sets it on every write.
+   */
+  String VERSION_PROPERTY = "version.attribute";
+
+  /**
+   * Property set to true when changes to the table's entities are kept in a change stream.
+   */
+  String STREAM_PROPERTY = "stream.enabled";
+
+  /**
+   * Property holding the most bytes of entities the node keeps cached for the table.
+   */
+  String CACHE_PROPERTY = "cache.maxBytes";
+
+  /**
+   * Property holding the shard of shared storage the table is kept in. Tables without it have their own database.
+   */
+  String SHARD_PROPERTY = "storage.shard";
+
   /**
    * The identifier for this tenant table.
    *
@@ -104,4 +136,71 @@ public interface TenantTable {
    */
   @Value.Auxiliary
   Map<String, String> properties();
+
+  /**
+   * The attribute the named secondary index is on, if the table has that index.
+   *
+   * @param indexName the index.
+   * @return the attribute.
+   */
+  default Optional<String> indexAttribute(final String indexName) {
+    return Optional.ofNullable(properties().get(INDEX_PROPERTY_PREFIX + indexName));
+  }
+
+  /**
+   * The secondary indexes on the table.
+   *
+   * @return map of index name to attribute.
+   */
+  default Map<String, String> indexes() {
+    return properties().entrySet().stream()
+        .filter(entry -> entry.getKey().startsWith(INDEX_PROPERTY_PREFIX))
+        .collect(Collectors.toMap(entry -> entry.getKey().substring(INDEX_PROPERTY_PREFIX.length()), Map.Entry::getValue));
+  }
+
+  /**
+   * The attribute that has the expiry time of each entity, in epoch seconds, if entities in the table expire.
+   *
+   * @return the attribute.
+   */
+  default Optional<String> ttlAttribute() {
+    return Optional.ofNullable(properties().get(TTL_PROPERTY));
+  }
+
+  /**
+   * The attribute that has each entity's version, if the table's entities are versioned. The version starts at 1 and
+   * goes up by one with every write of the entity.
+   *
+   * @return the attribute.
+   */
+  default Optional<String> versionAttribute() {
+    return Optional.ofNullable(properties().get(VERSION_PROPERTY));
+  }
+
+  /**
+   * If changes to the table's entities are kept in a change stream.
+   *
+   * @return boolean.
+   */
+  default boolean streamEnabled() {
+    return Boolean.parseBoolean(properties().get(STREAM_PROPERTY));
+  }
+
+  /**
+   * The most bytes of entities to keep cached, zero if the table is not cached.
+   *
+   * @return the size.
+   */
+  default long cacheMaxBytes() {
+    return Optional.ofNullable(properties().get(CACHE_PROPERTY)).map(Long::parseLong).orElse(0L);
+  }
+
+  /**
+   * The shard of shared storage the table is kept in, if it does not have its own database.
+   *
+   * @return the shard.
+   */
+  default Optional<Integer> storageShard() {
+    return Optional.ofNullable(properties().get(SHARD_PROPERTY)).map(Integer::parseInt);
+  }
 }
@@ -22,8 +22,9 @@ import org.immutables.value.Value;
  * RID_ID: Indexed, first part of the primary composite key. This is the unique identifier
  * C_COL: Indexed, second part of the primary composite key.
  * HASH: The hash value of the RID_ID for mgmt.
- * C_DATA_TYPE: Enum, either String or Integer.
- * C_DATA: Nullable String.
+ * C_DATA_TYPE: Enum, one of STRING, LONG, DOUBLE, BOOLEAN, BINARY, DOCUMENT or NULL.
+ * C_DATA: Nullable String, for strings.
+ * C_LONG, C_DOUBLE, C_BYTES: Nullable, for longs and booleans, doubles, and binary or encoded nested values.
  */
 @Value.Immutable
 public interface TenantTableEntry {
@@ -51,7 +52,7 @@ public interface TenantTableEntry {
   String hash();
 
   /**
-   * The type of data. Only Integer and String supported.
+   * The type of data, which says which of the value columns is set.
    *
    * @return String.
    */
@@ -59,7 +60,7 @@ public interface TenantTableEntry {
   String dataType();
 
   /**
-   * The data itself.
+   * The data itself, for strings.
    *
    * @return String.
    */
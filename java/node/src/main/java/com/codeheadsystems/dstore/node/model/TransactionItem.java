@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import java.util.List;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * One item of a transaction: a put, a delete, or with neither just a check of its conditions.
+ */
+@Value.Immutable
+public interface TransactionItem {
+
+  /**
+   * The entity the item is for.
+   *
+   * @return value.
+   */
+  String entity();
+
+  /**
+   * The data to replace the entity with, for a put.
+   *
+   * @return value.
+   */
+  Optional<JsonNode> put();
+
+  /**
+   * If the entity is deleted.
+   *
+   * @return value.
+   */
+  @Value.Default
+  default boolean delete() {
+    return false;
+  }
+
+  /**
+   * Conditions that must all hold against the existing entity for the transaction to apply.
+   *
+   * @return value.
+   */
+  List<Condition> conditions();
+
+  /**
+   * Make sure the item does one thing.
+   */
+  @Value.Check
+  default void check() {
+    Preconditions.checkArgument(!(put().isPresent() && delete()), "An item cannot both put and delete");
+    Preconditions.checkArgument(put().isPresent() || delete() || !conditions().isEmpty(), "A condition check needs conditions");
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.module;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.ConnectionPoolEngine;
+import com.codeheadsystems.dstore.node.engine.impl.C3p0ConnectionPoolEngine;
+import com.codeheadsystems.dstore.node.engine.impl.EmbeddedConnectionPoolEngine;
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+/**
+ * Picks the connection pool engine from the configuration.
+ */
+@Module
+public class ConnectionPoolModule {
+
+  /**
+   * The connection pool engine named in the configuration.
+   *
+   * @param configuration to read the name from.
+   * @param embedded      the embedded engine.
+   * @param c3p0          the c3p0 engine.
+   * @return the engine.
+   */
+  @Provides
+  @Singleton
+  public ConnectionPoolEngine connectionPoolEngine(final NodeConfiguration configuration,
+                                                   final Provider<EmbeddedConnectionPoolEngine> embedded,
+                                                   final Provider<C3p0ConnectionPoolEngine> c3p0) {
+    return switch (configuration.getConnectionPool()) {
+      case EmbeddedConnectionPoolEngine.NAME -> embedded.get();
+      case C3p0ConnectionPoolEngine.NAME -> c3p0.get();
+      default -> throw new IllegalArgumentException("Unknown connection pool: " + configuration.getConnectionPool());
+    };
+  }
+
+}
@@ -16,12 +16,19 @@
 
 package com.codeheadsystems.dstore.node.module;
 
+import com.codeheadsystems.dstore.node.resource.ConditionFailedExceptionMapper;
+import com.codeheadsystems.dstore.node.resource.InvalidAttributeExceptionMapper;
 import com.codeheadsystems.dstore.node.resource.JerseyResource;
 import com.codeheadsystems.dstore.node.resource.NotFoundExceptionMapper;
 import com.codeheadsystems.dstore.node.resource.TenantResource;
 import com.codeheadsystems.dstore.node.resource.TenantTableEntryResource;
+import com.codeheadsystems.dstore.node.resource.TenantTableIndexResource;
+import com.codeheadsystems.dstore.node.resource.TenantTableQueryResource;
 import com.codeheadsystems.dstore.node.resource.TenantTableResource;
+import com.codeheadsystems.dstore.node.resource.TenantTableStorageResource;
+import com.codeheadsystems.dstore.node.resource.TenantTableStreamResource;
 import com.codeheadsystems.dstore.node.resource.TraceUuid;
+import com.codeheadsystems.dstore.node.resource.UnsupportedTableOperationExceptionMapper;
 import dagger.Binds;
 import dagger.Module;
 import dagger.multibindings.IntoSet;
@@ -62,6 +69,46 @@ public interface ResourceModule {
   @IntoSet
   JerseyResource tenantTableEntryResource(TenantTableEntryResource resource);
 
+  /**
+   * Tenant table query resource.
+   *
+   * @param resource resource
+   * @return JerseyResource.
+   */
+  @Binds
+  @IntoSet
+  JerseyResource tenantTableQueryResource(TenantTableQueryResource resource);
+
+  /**
+   * Tenant table index resource.
+   *
+   * @param resource resource
+   * @return JerseyResource.
+   */
+  @Binds
+  @IntoSet
+  JerseyResource tenantTableIndexResource(TenantTableIndexResource resource);
+
+  /**
+   * Tenant table stream resource.
+   *
+   * @param resource resource
+   * @return JerseyResource.
+   */
+  @Binds
+  @IntoSet
+  JerseyResource tenantTableStreamResource(TenantTableStreamResource resource);
+
+  /**
+   * Tenant table storage resource.
+   *
+   * @param resource resource
+   * @return JerseyResource.
+   */
+  @Binds
+  @IntoSet
+  JerseyResource tenantTableStorageResource(TenantTableStorageResource resource);
+
   /**
    * TraceUuid resource.
    *
@@ -82,4 +129,34 @@ public interface ResourceModule {
   @IntoSet
   JerseyResource notFoundExceptionMapper(NotFoundExceptionMapper resource);
 
+  /**
+   * Condition failed exception mapper.
+   *
+   * @param resource resource.
+   * @return JerseyResource.
+   */
+  @Binds
+  @IntoSet
+  JerseyResource conditionFailedExceptionMapper(ConditionFailedExceptionMapper resource);
+
+  /**
+   * Invalid attribute exception mapper.
+   *
+   * @param resource resource.
+   * @return JerseyResource.
+   */
+  @Binds
+  @IntoSet
+  JerseyResource invalidAttributeExceptionMapper(InvalidAttributeExceptionMapper resource);
+
+  /**
+   * Unsupported table operation exception mapper.
+   *
+   * @param resource resource.
+   * @return JerseyResource.
+   */
+  @Binds
+  @IntoSet
+  JerseyResource unsupportedTableOperationExceptionMapper(UnsupportedTableOperationExceptionMapper resource);
+
 }
@@ -17,6 +17,9 @@
 package com.codeheadsystems.dstore.node.module;
 
 import com.codeheadsystems.dstore.node.manager.DataSourceManager;
+import com.codeheadsystems.dstore.node.manager.EntityFilterManager;
+import com.codeheadsystems.dstore.node.manager.ExpiryManager;
+import com.codeheadsystems.dstore.node.manager.TenantTableWarmupManager;
 import dagger.Binds;
 import dagger.Module;
 import dagger.multibindings.IntoSet;
@@ -38,4 +41,34 @@ public interface StartupModule {
   @IntoSet
   Managed dataSourceManager(final DataSourceManager manager);
 
+  /**
+   * Removes expired entities in the background.
+   *
+   * @param manager to start.
+   * @return startup method.
+   */
+  @Binds
+  @IntoSet
+  Managed expiryManager(final ExpiryManager manager);
+
+  /**
+   * Builds the entity filters in the background, and saves them on stop.
+   *
+   * @param manager to start.
+   * @return startup method.
+   */
+  @Binds
+  @IntoSet
+  Managed entityFilterManager(final EntityFilterManager manager);
+
+  /**
+   * Opens the busiest tables in the background, and saves how much they are used on stop.
+   *
+   * @param manager to start.
+   * @return startup method.
+   */
+  @Binds
+  @IntoSet
+  Managed tenantTableWarmupManager(final TenantTableWarmupManager manager);
+
 }
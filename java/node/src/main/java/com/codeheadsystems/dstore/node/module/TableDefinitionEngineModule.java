@@ -16,10 +16,10 @@
 
 package com.codeheadsystems.dstore.node.module;
 
-import static com.codeheadsystems.dstore.node.engine.impl.V1SingleEntryEngine.DEFINITION_NAME;
-
 import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
 import com.codeheadsystems.dstore.node.engine.impl.V1SingleEntryEngine;
+import com.codeheadsystems.dstore.node.engine.impl.V2SingleRowEngine;
+import com.codeheadsystems.dstore.node.engine.impl.V3SortKeyEngine;
 import dagger.Binds;
 import dagger.Module;
 import dagger.multibindings.IntoMap;
@@ -39,7 +39,29 @@ public interface TableDefinitionEngineModule {
    */
   @Binds
   @IntoMap
-  @StringKey(DEFINITION_NAME)
+  @StringKey(V1SingleEntryEngine.DEFINITION_NAME)
   TableDefinitionEngine v1SingleEntry(V1SingleEntryEngine engine);
 
+  /**
+   * Second engine that stores the whole entity in one binary encoded row.
+   *
+   * @param engine instance that was built.
+   * @return as a TableDefinitionEngine.
+   */
+  @Binds
+  @IntoMap
+  @StringKey(V2SingleRowEngine.DEFINITION_NAME)
+  TableDefinitionEngine v2SingleRow(V2SingleRowEngine engine);
+
+  /**
+   * Third engine that keys single row entities by partition and sort key, so they can be queried by range.
+   *
+   * @param engine instance that was built.
+   * @return as a TableDefinitionEngine.
+   */
+  @Binds
+  @IntoMap
+  @StringKey(V3SortKeyEngine.DEFINITION_NAME)
+  TableDefinitionEngine v3SortKey(V3SortKeyEngine engine);
+
 }
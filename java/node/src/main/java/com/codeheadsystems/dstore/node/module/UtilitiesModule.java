@@ -21,6 +21,7 @@ import com.codeheadsystems.dstore.node.manager.FakeControlPlaneManager;
 import dagger.Module;
 import dagger.Provides;
 import java.security.SecureRandom;
+import java.time.Clock;
 import java.util.random.RandomGenerator;
 import javax.inject.Singleton;
 
@@ -41,6 +42,17 @@ public class UtilitiesModule {
     return new SecureRandom();
   }
 
+  /**
+   * Clock for our app.
+   *
+   * @return the system clock in UTC.
+   */
+  @Provides
+  @Singleton
+  public Clock clock() {
+    return Clock.systemUTC();
+  }
+
   /**
    * This will be removed once we have the real control plane.
    *
@@ -19,23 +19,51 @@ package com.codeheadsystems.dstore.node.resource;
 import com.codahale.metrics.annotation.ExceptionMetered;
 import com.codahale.metrics.annotation.ResponseMetered;
 import com.codahale.metrics.annotation.Timed;
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.node.api.BatchWriteRequest;
+import com.codeheadsystems.dstore.node.api.TransactWriteItem;
+import com.codeheadsystems.dstore.node.api.TransactWriteRequest;
+import com.codeheadsystems.dstore.node.converter.ConditionConverter;
+import com.codeheadsystems.dstore.node.converter.ScanTokenConverter;
+import com.codeheadsystems.dstore.node.converter.TransactionItemConverter;
 import com.codeheadsystems.dstore.node.manager.TenantTableEntryManager;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ImmutableScanRequest;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
 import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Splitter;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.PATCH;
+import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -46,27 +74,126 @@ import org.slf4j.LoggerFactory;
 @Path("/v1/tenant/{tenant}/table/{table}/entry")
 public class TenantTableEntryResource implements JerseyResource {
 
+  /**
+   * Most entries allowed in a single batch request.
+   */
+  public static final int MAX_BATCH_SIZE = 1000;
+  /**
+   * Most items allowed in a single transaction.
+   */
+  public static final int MAX_TRANSACT_ITEMS = 100;
+  /**
+   * Most entries allowed in a single scan page.
+   */
+  public static final int MAX_SCAN_LIMIT = 10000;
+  /**
+   * Newline delimited json.
+   */
+  public static final String NDJSON = "application/x-ndjson";
   private static final Logger LOGGER = LoggerFactory.getLogger(TenantTableEntryResource.class);
+  private static final Splitter ATTRIBUTE_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
 
   private final TenantTableEntryManager tenantTableEntryManager;
+  private final ScanTokenConverter scanTokenConverter;
+  private final ConditionConverter conditionConverter;
+  private final TransactionItemConverter transactionItemConverter;
+  private final JsonEngine jsonEngine;
 
   /**
    * Default constructor.
    *
    * @param tenantTableEntryManager to manage the tenant table.
+   * @param scanTokenConverter      for scan continuation tokens.
+   * @param conditionConverter      for write conditions.
+   * @param transactionItemConverter for transaction items.
+   * @param jsonEngine              for writing streamed entries.
    */
   @Inject
-  public TenantTableEntryResource(final TenantTableEntryManager tenantTableEntryManager) {
-    LOGGER.info("TenantTableEntryResource({})", tenantTableEntryManager);
+  public TenantTableEntryResource(final TenantTableEntryManager tenantTableEntryManager,
+                                  final ScanTokenConverter scanTokenConverter,
+                                  final ConditionConverter conditionConverter,
+                                  final TransactionItemConverter transactionItemConverter,
+                                  final JsonEngine jsonEngine) {
+    LOGGER.info("TenantTableEntryResource({},{},{},{},{})",
+        tenantTableEntryManager, scanTokenConverter, conditionConverter, transactionItemConverter, jsonEngine);
     this.tenantTableEntryManager = tenantTableEntryManager;
+    this.scanTokenConverter = scanTokenConverter;
+    this.conditionConverter = conditionConverter;
+    this.transactionItemConverter = transactionItemConverter;
+    this.jsonEngine = jsonEngine;
+  }
+
+  /**
+   * Scans one segment of the table, streaming the entries back as newline delimited json. Each line is
+   * {"id":...,"item":{...}}. If the limit was hit and more remain, the last line is {"token":...} to pass back in
+   * to continue. Concurrent scanners should each take a different segment of the same totalSegments.
+   *
+   * @param tenantId      that owns the table.
+   * @param table         the table.
+   * @param segment       the segment to scan, zero based.
+   * @param totalSegments how many segments the table is split into.
+   * @param limit         most entries to return, at most {@value #MAX_SCAN_LIMIT}.
+   * @param token         continuation token from the previous page, if any.
+   * @return response.
+   */
+  @GET
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Produces(NDJSON)
+  public Response scan(@PathParam("tenant") final String tenantId,
+                       @PathParam("table") final String table,
+                       @QueryParam("segment") @DefaultValue("0") final int segment,
+                       @QueryParam("totalSegments") @DefaultValue("1") final int totalSegments,
+                       @QueryParam("limit") @DefaultValue("1000") final int limit,
+                       @QueryParam("token") final String token) {
+    LOGGER.debug("scan({},{},{},{})", tenantId, table, segment, totalSegments);
+    if (totalSegments < 1 || segment < 0 || segment >= totalSegments || limit < 1 || limit > MAX_SCAN_LIMIT) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final ImmutableScanRequest.Builder builder = ImmutableScanRequest.builder()
+        .segment(segment)
+        .totalSegments(totalSegments)
+        .limit(limit);
+    if (token != null) {
+      try {
+        builder.startAfter(scanTokenConverter.fromToken(token));
+      } catch (IllegalArgumentException e) {
+        LOGGER.debug("Bad token: {}", token);
+        return Response.status(Response.Status.BAD_REQUEST).build();
+      }
+    }
+    final Function<BiConsumer<String, JsonNode>, Optional<ScanPosition>> scanner =
+        tenantTableEntryManager.scan(TenantTableIdentifier.from(tenantId, table), builder.build());
+    final StreamingOutput output = (outputStream) -> {
+      final ObjectMapper mapper = jsonEngine.objectMapper();
+      final Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+      final Optional<ScanPosition> next = scanner.apply((id, item) ->
+          writeLine(writer, mapper, mapper.createObjectNode().put("id", id).set("item", item)));
+      if (next.isPresent()) {
+        writeLine(writer, mapper, mapper.createObjectNode().put("token", scanTokenConverter.toToken(next.get())));
+      }
+      writer.flush();
+    };
+    return Response.ok(output).build();
+  }
+
+  private void writeLine(final Writer writer, final ObjectMapper mapper, final JsonNode line) {
+    try {
+      writer.write(mapper.writeValueAsString(line));
+      writer.write('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
   /**
    * Gets the entry.
    *
-   * @param tenantId that owns the table.
-   * @param table    the table.
-   * @param entry    the entry.
+   * @param tenantId   that owns the table.
+   * @param table      the table.
+   * @param entry      the entry.
+   * @param attributes optional comma separated list of the attributes wanted. All attributes if not set.
    * @return response.
    */
   @GET
@@ -77,18 +204,53 @@ public class TenantTableEntryResource implements JerseyResource {
   @Produces(MediaType.APPLICATION_JSON)
   public Optional<JsonNode> read(@PathParam("tenant") final String tenantId,
                                  @PathParam("table") final String table,
-                                 @PathParam("entry") final String entry) {
-    LOGGER.debug("read({},{},{})", tenantId, table, entry);
-    return tenantTableEntryManager.read(TenantTableIdentifier.from(tenantId, table), entry);
+                                 @PathParam("entry") final String entry,
+                                 @QueryParam("attributes") final String attributes) {
+    LOGGER.debug("read({},{},{},{})", tenantId, table, entry, attributes);
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from(tenantId, table);
+    if (attributes == null || attributes.isBlank()) {
+      return tenantTableEntryManager.read(identifier, entry);
+    }
+    return tenantTableEntryManager.read(identifier, entry, ATTRIBUTE_SPLITTER.splitToList(attributes));
   }
 
   /**
-   * Create the tenant table entry.
+   * Gets many entries at once. Entries not found are left out of the result.
    *
    * @param tenantId that owns the table.
    * @param table    the table.
-   * @param entry    for the table.
-   * @param data     the data we care about in JSON form.
+   * @param entries  the entries, at most {@value #MAX_BATCH_SIZE}.
+   * @return response with the entries found, keyed by entry.
+   */
+  @POST
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/batch/get")
+  @Consumes(MediaType.APPLICATION_JSON)
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response readMany(@PathParam("tenant") final String tenantId,
+                           @PathParam("table") final String table,
+                           @NotNull @Valid final List<String> entries) {
+    LOGGER.debug("readMany({},{},{})", tenantId, table, entries.size());
+    if (entries.size() > MAX_BATCH_SIZE) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    return Response.ok(tenantTableEntryManager.readMany(TenantTableIdentifier.from(tenantId, table), entries)).build();
+  }
+
+  /**
+   * Create the tenant table entry. Optional conditions on the existing entry must all hold or nothing is written and
+   * a 412 is returned. ifVersion needs a table with versioned entries.
+   *
+   * @param tenantId    that owns the table.
+   * @param table       the table.
+   * @param entry       for the table.
+   * @param ifExists    attributes that must exist.
+   * @param ifNotExists attributes that must not exist.
+   * @param ifEquals    attribute:value pairs that must match.
+   * @param ifVersion   the version the entry must have, zero if it must not exist.
+   * @param data        the data we care about in JSON form.
    * @return response.
    */
   @PUT
@@ -101,18 +263,150 @@ public class TenantTableEntryResource implements JerseyResource {
   public Response write(@PathParam("tenant") final String tenantId,
                         @PathParam("table") final String table,
                         @PathParam("entry") final String entry,
+                        @QueryParam("ifExists") final List<String> ifExists,
+                        @QueryParam("ifNotExists") final List<String> ifNotExists,
+                        @QueryParam("ifEquals") final List<String> ifEquals,
+                        @QueryParam("ifVersion") final Long ifVersion,
                         @NotNull @Valid final JsonNode data) { // Do NOT log this data!
     LOGGER.debug("write({},{},{})", tenantId, table, entry);
-    tenantTableEntryManager.write(TenantTableIdentifier.from(tenantId, table), entry, data);
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from(tenantId, table);
+    final List<Condition> conditions;
+    try {
+      conditions = conditions(identifier, ifExists, ifNotExists, ifEquals, ifVersion);
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("Bad condition: {}", e.getMessage());
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    tenantTableEntryManager.write(identifier, entry, data, conditions);
+    return Response.noContent().build();
+  }
+
+  /**
+   * Writes and deletes many entries in a single transaction.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param request  the puts and deletes, at most {@value #MAX_BATCH_SIZE} combined.
+   * @return response.
+   */
+  @POST
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/batch/write")
+  @Consumes(MediaType.APPLICATION_JSON)
+  public Response writeMany(@PathParam("tenant") final String tenantId,
+                            @PathParam("table") final String table,
+                            @NotNull @Valid final BatchWriteRequest request) { // Do NOT log this data!
+    LOGGER.debug("writeMany({},{},{},{})", tenantId, table, request.put().size(), request.delete().size());
+    if (request.put().size() + request.delete().size() > MAX_BATCH_SIZE) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    tenantTableEntryManager.writeMany(TenantTableIdentifier.from(tenantId, table), request.put(), request.delete());
+    return Response.noContent().build();
+  }
+
+  /**
+   * Applies puts, deletes and condition checks on different entries all or nothing. If any condition fails nothing is
+   * written and a 412 is returned.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param request  the items, at most {@value #MAX_TRANSACT_ITEMS}.
+   * @return response.
+   */
+  @POST
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/batch/transact")
+  @Consumes(MediaType.APPLICATION_JSON)
+  public Response transact(@PathParam("tenant") final String tenantId,
+                           @PathParam("table") final String table,
+                           @NotNull @Valid final TransactWriteRequest request) { // Do NOT log this data!
+    LOGGER.debug("transact({},{},{})", tenantId, table, request.items().size());
+    if (request.items().isEmpty() || request.items().size() > MAX_TRANSACT_ITEMS
+        || request.items().stream().map(TransactWriteItem::id).distinct().count() != request.items().size()) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final List<TransactionItem> items;
+    try {
+      items = request.items().stream().map(transactionItemConverter::from).toList();
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("Bad item: {}", e.getMessage());
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    tenantTableEntryManager.transact(TenantTableIdentifier.from(tenantId, table), items);
     return Response.noContent().build();
   }
 
   /**
-   * Delete the tenant table entry.
+   * Update individual attributes of the tenant table entry. Attributes set to null are removed.
    *
    * @param tenantId that owns the table.
    * @param table    the table.
-   * @param entry    to delete.
+   * @param entry    for the table.
+   * @param data     the attributes to change in JSON form.
+   * @return response.
+   */
+  @PATCH
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{entry}")
+  @Consumes(MediaType.APPLICATION_JSON)
+  public Response update(@PathParam("tenant") final String tenantId,
+                         @PathParam("table") final String table,
+                         @PathParam("entry") final String entry,
+                         @NotNull @Valid final JsonNode data) { // Do NOT log this data!
+    LOGGER.debug("update({},{},{})", tenantId, table, entry);
+    if (!data.isObject()) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    if (tenantTableEntryManager.update(TenantTableIdentifier.from(tenantId, table), entry, data)) {
+      return Response.noContent().build();
+    } else {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+  }
+
+  /**
+   * Atomically add to a numeric attribute of the tenant table entry, creating it if missing. An attribute that holds
+   * something other than a whole number is a 400.
+   *
+   * @param tenantId  that owns the table.
+   * @param table     the table.
+   * @param entry     for the table.
+   * @param attribute the numeric attribute.
+   * @param delta     the amount to add, defaults to 1.
+   * @return the new value.
+   */
+  @POST
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{entry}/increment/{attribute}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public long increment(@PathParam("tenant") final String tenantId,
+                        @PathParam("table") final String table,
+                        @PathParam("entry") final String entry,
+                        @PathParam("attribute") final String attribute,
+                        @QueryParam("delta") @DefaultValue("1") final long delta) {
+    LOGGER.debug("increment({},{},{},{})", tenantId, table, entry, attribute);
+    return tenantTableEntryManager.increment(TenantTableIdentifier.from(tenantId, table), entry, attribute, delta);
+  }
+
+  /**
+   * Delete the tenant table entry. Optional conditions on the entry must all hold or nothing is deleted and a 412 is
+   * returned. ifVersion needs a table with versioned entries.
+   *
+   * @param tenantId    that owns the table.
+   * @param table       the table.
+   * @param entry       to delete.
+   * @param ifExists    attributes that must exist.
+   * @param ifNotExists attributes that must not exist.
+   * @param ifEquals    attribute:value pairs that must match.
+   * @param ifVersion   the version the entry must have.
    * @return response.
    */
   @DELETE
@@ -122,13 +416,42 @@ public class TenantTableEntryResource implements JerseyResource {
   @Path("/{entry}")
   public Response delete(@PathParam("tenant") final String tenantId,
                          @PathParam("table") final String table,
-                         @PathParam("entry") final String entry) {
+                         @PathParam("entry") final String entry,
+                         @QueryParam("ifExists") final List<String> ifExists,
+                         @QueryParam("ifNotExists") final List<String> ifNotExists,
+                         @QueryParam("ifEquals") final List<String> ifEquals,
+                         @QueryParam("ifVersion") final Long ifVersion) {
     LOGGER.debug("delete({},{},{})", tenantId, table, entry);
-    if (tenantTableEntryManager.delete(TenantTableIdentifier.from(tenantId, table), entry)) {
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from(tenantId, table);
+    final List<Condition> conditions;
+    try {
+      conditions = conditions(identifier, ifExists, ifNotExists, ifEquals, ifVersion);
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("Bad condition: {}", e.getMessage());
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    if (tenantTableEntryManager.delete(identifier, entry, conditions)) {
       return Response.noContent().build();
     } else {
       return Response.status(Response.Status.NOT_FOUND).build();
     }
   }
 
+  private List<Condition> conditions(final TenantTableIdentifier identifier,
+                                     final List<String> ifExists,
+                                     final List<String> ifNotExists,
+                                     final List<String> ifEquals,
+                                     final Long ifVersion) {
+    final List<Condition> conditions = conditionConverter.from(ifExists, ifNotExists, ifEquals);
+    if (ifVersion == null) {
+      return conditions;
+    }
+    if (ifVersion < 0) {
+      throw new IllegalArgumentException("Negative version: " + ifVersion);
+    }
+    final List<Condition> result = new ArrayList<>(conditions);
+    result.add(tenantTableEntryManager.versionCondition(identifier, ifVersion));
+    return result;
+  }
+
 }
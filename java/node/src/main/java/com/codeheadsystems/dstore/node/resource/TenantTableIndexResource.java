@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.resource;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.ResponseMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.codeheadsystems.dstore.node.converter.ConditionConverter;
+import com.codeheadsystems.dstore.node.converter.QueryInfoConverter;
+import com.codeheadsystems.dstore.node.manager.TenantTableEntryManager;
+import com.codeheadsystems.dstore.node.manager.TenantTableManager;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import java.util.Map;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resource for the secondary indexes of a tenant table, and lookups through them.
+ */
+@Singleton
+@Path("/v1/tenant/{tenant}/table/{table}/index")
+public class TenantTableIndexResource implements JerseyResource {
+
+  /**
+   * Most entries allowed in a single lookup page.
+   */
+  public static final int MAX_LOOKUP_LIMIT = 1000;
+  private static final Logger LOGGER = LoggerFactory.getLogger(TenantTableIndexResource.class);
+
+  private final TenantTableManager tenantTableManager;
+  private final TenantTableEntryManager tenantTableEntryManager;
+  private final ConditionConverter conditionConverter;
+  private final QueryInfoConverter queryInfoConverter;
+
+  /**
+   * Default constructor.
+   *
+   * @param tenantTableManager      to manage the index definitions.
+   * @param tenantTableEntryManager to look up entries.
+   * @param conditionConverter      to read lookup values.
+   * @param queryInfoConverter      converter.
+   */
+  @Inject
+  public TenantTableIndexResource(final TenantTableManager tenantTableManager,
+                                  final TenantTableEntryManager tenantTableEntryManager,
+                                  final ConditionConverter conditionConverter,
+                                  final QueryInfoConverter queryInfoConverter) {
+    LOGGER.info("TenantTableIndexResource({},{},{},{})",
+        tenantTableManager, tenantTableEntryManager, conditionConverter, queryInfoConverter);
+    this.tenantTableManager = tenantTableManager;
+    this.tenantTableEntryManager = tenantTableEntryManager;
+    this.conditionConverter = conditionConverter;
+    this.queryInfoConverter = queryInfoConverter;
+  }
+
+  /**
+   * Lists the indexes of the table.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @return map of index name to attribute, if the table exists.
+   */
+  @GET
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Optional<Map<String, String>> list(@PathParam("tenant") final String tenantId,
+                                            @PathParam("table") final String table) {
+    LOGGER.debug("list({},{})", tenantId, table);
+    return tenantTableManager.get(tenantId, table).map(TenantTable::indexes);
+  }
+
+  /**
+   * Defines an index on the attribute. Entries written before and after are all found through it.
+   *
+   * @param tenantId  that owns the table.
+   * @param table     the table.
+   * @param index     name of the index.
+   * @param attribute the attribute to index.
+   * @return response with the indexes of the table.
+   */
+  @PUT
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{index}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response create(@PathParam("tenant") final String tenantId,
+                         @PathParam("table") final String table,
+                         @PathParam("index") final String index,
+                         @QueryParam("attribute") final String attribute) {
+    LOGGER.debug("create({},{},{},{})", tenantId, table, index, attribute);
+    if (attribute == null || attribute.isBlank()) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final TenantTable tenantTable = tenantTableManager.createIndex(TenantTableIdentifier.from(tenantId, table), index, attribute);
+    return Response.ok(tenantTable.indexes()).build();
+  }
+
+  /**
+   * Finds the entries whose indexed attribute has the value, and returns them. The value is read as a json scalar if
+   * it is one (5, true, "5") and as a plain string otherwise.
+   *
+   * @param tenantId   that owns the table.
+   * @param table      the table.
+   * @param index      name of the index.
+   * @param value      the value to find.
+   * @param limit      most entries to return, at most {@value #MAX_LOOKUP_LIMIT}.
+   * @param startAfter the next value from the previous page, if any.
+   * @return response.
+   */
+  @GET
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{index}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response lookup(@PathParam("tenant") final String tenantId,
+                         @PathParam("table") final String table,
+                         @PathParam("index") final String index,
+                         @QueryParam("value") final String value,
+                         @QueryParam("limit") @DefaultValue("100") final int limit,
+                         @QueryParam("startAfter") final String startAfter) {
+    LOGGER.debug("lookup({},{},{})", tenantId, table, index);
+    if (value == null || limit < 1 || limit > MAX_LOOKUP_LIMIT) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final QueryResult result = tenantTableEntryManager.lookup(TenantTableIdentifier.from(tenantId, table),
+        index, conditionConverter.value(value), limit, Optional.ofNullable(startAfter));
+    return Response.ok(queryInfoConverter.from(result)).build();
+  }
+
+  /**
+   * Removes the index.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param index    name of the index.
+   * @return response.
+   */
+  @DELETE
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{index}")
+  public Response delete(@PathParam("tenant") final String tenantId,
+                         @PathParam("table") final String table,
+                         @PathParam("index") final String index) {
+    LOGGER.debug("delete({},{},{})", tenantId, table, index);
+    if (tenantTableManager.deleteIndex(TenantTableIdentifier.from(tenantId, table), index)) {
+      return Response.noContent().build();
+    } else {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.resource;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.ResponseMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.codeheadsystems.dstore.node.converter.QueryInfoConverter;
+import com.codeheadsystems.dstore.node.manager.TenantTableEntryManager;
+import com.codeheadsystems.dstore.node.model.ImmutableQueryRequest;
+import com.codeheadsystems.dstore.node.model.QueryRequest;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import java.util.Map;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resource for range queries on tables with a sort key.
+ */
+@Singleton
+@Path("/v1/tenant/{tenant}/table/{table}/query")
+public class TenantTableQueryResource implements JerseyResource {
+
+  /**
+   * Most entries allowed in a single query page.
+   */
+  public static final int MAX_QUERY_LIMIT = 1000;
+  private static final Logger LOGGER = LoggerFactory.getLogger(TenantTableQueryResource.class);
+  private static final Map<String, QueryRequest.Operator> OPERATORS = Map.of(
+      "begins_with", QueryRequest.Operator.BEGINS_WITH,
+      "between", QueryRequest.Operator.BETWEEN,
+      "gt", QueryRequest.Operator.GREATER_THAN,
+      "lt", QueryRequest.Operator.LESS_THAN);
+
+  private final TenantTableEntryManager tenantTableEntryManager;
+  private final QueryInfoConverter converter;
+
+  /**
+   * Default constructor.
+   *
+   * @param tenantTableEntryManager to manage the tenant table.
+   * @param converter               converter.
+   */
+  @Inject
+  public TenantTableQueryResource(final TenantTableEntryManager tenantTableEntryManager,
+                                  final QueryInfoConverter converter) {
+    LOGGER.info("TenantTableQueryResource({},{})", tenantTableEntryManager, converter);
+    this.tenantTableEntryManager = tenantTableEntryManager;
+    this.converter = converter;
+  }
+
+  /**
+   * Queries one partition of the table by sort key. Without an op the whole partition is returned, a page at a time.
+   *
+   * @param tenantId   that owns the table.
+   * @param table      the table.
+   * @param partition  the partition key.
+   * @param op         one of begins_with, between, gt, lt.
+   * @param value      what the op compares with, the lower bound for between.
+   * @param to         upper bound for between, inclusive.
+   * @param limit      most entries to return, at most {@value #MAX_QUERY_LIMIT}.
+   * @param reverse    return in descending sort key order.
+   * @param startAfter the next value from the previous page, if any.
+   * @return response.
+   */
+  @GET
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{partition}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response query(@PathParam("tenant") final String tenantId,
+                        @PathParam("table") final String table,
+                        @PathParam("partition") final String partition,
+                        @QueryParam("op") final String op,
+                        @QueryParam("value") final String value,
+                        @QueryParam("to") final String to,
+                        @QueryParam("limit") @DefaultValue("100") final int limit,
+                        @QueryParam("reverse") @DefaultValue("false") final boolean reverse,
+                        @QueryParam("startAfter") final String startAfter) {
+    LOGGER.debug("query({},{},{},{})", tenantId, table, partition, op);
+    if (limit > MAX_QUERY_LIMIT || (op != null && !OPERATORS.containsKey(op))) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final QueryRequest request;
+    try {
+      request = ImmutableQueryRequest.builder()
+          .partitionKey(partition)
+          .operator(Optional.ofNullable(op).map(OPERATORS::get))
+          .value(Optional.ofNullable(value))
+          .upperValue(Optional.ofNullable(to))
+          .limit(limit)
+          .forward(!reverse)
+          .startAfter(Optional.ofNullable(startAfter))
+          .build();
+    } catch (IllegalArgumentException e) {
+      LOGGER.debug("Bad query: {}", e.getMessage());
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final QueryResult result = tenantTableEntryManager.query(TenantTableIdentifier.from(tenantId, table), request);
+    return Response.ok(converter.from(result)).build();
+  }
+
+}
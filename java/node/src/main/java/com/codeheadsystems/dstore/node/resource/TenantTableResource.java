@@ -24,6 +24,7 @@ import com.codeheadsystems.dstore.node.converter.TenantTableInfoConverter;
 import com.codeheadsystems.dstore.node.engine.impl.V1SingleEntryEngine;
 import com.codeheadsystems.dstore.node.manager.TenantTableManager;
 import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
 import java.util.List;
 import java.util.Optional;
 import javax.inject.Inject;
@@ -109,9 +110,10 @@ public class TenantTableResource implements JerseyResource {
   /**
    * Create the tenant.
    *
-   * @param tenantId   that owns the table.
-   * @param table      the table.
-   * @param primaryKey for the table.
+   * @param tenantId     that owns the table.
+   * @param table        the table.
+   * @param primaryKey   for the table.
+   * @param tableVersion the table definition engine to use. Defaults to the V1 engine.
    * @return response.
    */
   @PUT
@@ -122,16 +124,147 @@ public class TenantTableResource implements JerseyResource {
   @Produces(MediaType.APPLICATION_JSON)
   public TenantTableInfo create(@PathParam("tenant") final String tenantId,
                                 @PathParam("table") final String table,
-                                @NotNull @QueryParam("primaryKey") final String primaryKey) {
-    LOGGER.debug("create({},{},{})", tenantId, table, primaryKey);
+                                @NotNull @QueryParam("primaryKey") final String primaryKey,
+                                @QueryParam("tableVersion") final String tableVersion) {
+    LOGGER.debug("create({},{},{},{})", tenantId, table, primaryKey, tableVersion);
     if (primaryKey == null) {
       throw new WebApplicationException("Missing primary key", Response.Status.BAD_REQUEST);
     }
-    final TenantTable tenantTable = tenantTableManager
-        .create(tenantId, table, V1SingleEntryEngine.DEFINITION_NAME, primaryKey);
+    final String version = tableVersion == null ? V1SingleEntryEngine.DEFINITION_NAME : tableVersion;
+    final TenantTable tenantTable = tenantTableManager.create(tenantId, table, version, primaryKey);
     return converter.from(tenantTable.identifier());
   }
 
+  /**
+   * Sets the attribute that holds each entry's expiry time, in epoch seconds. Expired entries are hidden from reads
+   * right away and removed in the background.
+   *
+   * @param tenantId  that owns the table.
+   * @param table     the table.
+   * @param attribute the ttl attribute.
+   * @return response.
+   */
+  @PUT
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{table}/ttl")
+  public Response setTtl(@PathParam("tenant") final String tenantId,
+                         @PathParam("table") final String table,
+                         @QueryParam("attribute") final String attribute) {
+    LOGGER.debug("setTtl({},{},{})", tenantId, table, attribute);
+    if (attribute == null || attribute.isBlank()) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    tenantTableManager.ttlAttribute(TenantTableIdentifier.from(tenantId, table), Optional.of(attribute));
+    return Response.noContent().build();
+  }
+
+  /**
+   * Turns off expiry for the table.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @return response.
+   */
+  @DELETE
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{table}/ttl")
+  public Response deleteTtl(@PathParam("tenant") final String tenantId,
+                            @PathParam("table") final String table) {
+    LOGGER.debug("deleteTtl({},{})", tenantId, table);
+    tenantTableManager.ttlAttribute(TenantTableIdentifier.from(tenantId, table), Optional.empty());
+    return Response.noContent().build();
+  }
+
+  /**
+   * Sets the attribute that holds each entry's version. Every write of an entry sets it one higher, and writes and
+   * deletes can require a version with ifVersion.
+   *
+   * @param tenantId  that owns the table.
+   * @param table     the table.
+   * @param attribute the version attribute.
+   * @return response.
+   */
+  @PUT
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{table}/version")
+  public Response setVersion(@PathParam("tenant") final String tenantId,
+                             @PathParam("table") final String table,
+                             @QueryParam("attribute") final String attribute) {
+    LOGGER.debug("setVersion({},{},{})", tenantId, table, attribute);
+    if (attribute == null || attribute.isBlank()) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    tenantTableManager.versionAttribute(TenantTableIdentifier.from(tenantId, table), Optional.of(attribute));
+    return Response.noContent().build();
+  }
+
+  /**
+   * Turns off versioning for the table.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @return response.
+   */
+  @DELETE
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{table}/version")
+  public Response deleteVersion(@PathParam("tenant") final String tenantId,
+                                @PathParam("table") final String table) {
+    LOGGER.debug("deleteVersion({},{})", tenantId, table);
+    tenantTableManager.versionAttribute(TenantTableIdentifier.from(tenantId, table), Optional.empty());
+    return Response.noContent().build();
+  }
+
+  /**
+   * Sets how many bytes of the table's entries this node caches. Changing the size empties the cache.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param maxBytes the cache size.
+   * @return response.
+   */
+  @PUT
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{table}/cache")
+  public Response setCache(@PathParam("tenant") final String tenantId,
+                           @PathParam("table") final String table,
+                           @QueryParam("maxBytes") final Long maxBytes) {
+    LOGGER.debug("setCache({},{},{})", tenantId, table, maxBytes);
+    if (maxBytes == null || maxBytes < 1) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    tenantTableManager.cacheMaxBytes(TenantTableIdentifier.from(tenantId, table), Optional.of(maxBytes));
+    return Response.noContent().build();
+  }
+
+  /**
+   * Turns off the entry cache for the table, dropping what it held.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @return response.
+   */
+  @DELETE
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{table}/cache")
+  public Response deleteCache(@PathParam("tenant") final String tenantId,
+                              @PathParam("table") final String table) {
+    LOGGER.debug("deleteCache({},{})", tenantId, table);
+    tenantTableManager.cacheMaxBytes(TenantTableIdentifier.from(tenantId, table), Optional.empty());
+    return Response.noContent().build();
+  }
 
   /**
    * Delete the tenant table.
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.resource;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.ResponseMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.codeheadsystems.dstore.node.manager.TenantTableManager;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import java.util.Map;
+import java.util.Optional;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resource for where a tenant table is stored: in its own database, or in shared storage with other tables. Moving a
+ * table copies its data, and uses of the table wait until it is done.
+ */
+@Singleton
+@Path("/v1/tenant/{tenant}/table/{table}/storage")
+public class TenantTableStorageResource implements JerseyResource {
+
+  /**
+   * Layout of a table with its own database.
+   */
+  public static final String DEDICATED = "dedicated";
+  /**
+   * Layout of a table in shared storage.
+   */
+  public static final String SHARED = "shared";
+  private static final Logger LOGGER = LoggerFactory.getLogger(TenantTableStorageResource.class);
+
+  private final TenantTableManager tenantTableManager;
+
+  /**
+   * Default constructor.
+   *
+   * @param tenantTableManager to move the tables.
+   */
+  @Inject
+  public TenantTableStorageResource(final TenantTableManager tenantTableManager) {
+    LOGGER.info("TenantTableStorageResource({})", tenantTableManager);
+    this.tenantTableManager = tenantTableManager;
+  }
+
+  private static Map<String, String> layout(final TenantTable tenantTable) {
+    return tenantTable.storageShard()
+        .map(shard -> Map.of("layout", SHARED, "shard", Integer.toString(shard)))
+        .orElseGet(() -> Map.of("layout", DEDICATED));
+  }
+
+  /**
+   * Reads where the table is stored.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @return the layout, and the shard if shared, if the table exists.
+   */
+  @GET
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Produces(MediaType.APPLICATION_JSON)
+  public Optional<Map<String, String>> read(@PathParam("tenant") final String tenantId,
+                                            @PathParam("table") final String table) {
+    LOGGER.debug("read({},{})", tenantId, table);
+    return tenantTableManager.get(tenantId, table).map(TenantTableStorageResource::layout);
+  }
+
+  /**
+   * Moves the table to the layout, either {@value #DEDICATED} or {@value #SHARED}. Does nothing if it is already there.
+   * Only tables of the shared tenants can be moved to {@value #SHARED}, else a 400.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @param layout   to move to.
+   * @return response with the new layout.
+   */
+  @PUT
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Path("/{layout}")
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response move(@PathParam("tenant") final String tenantId,
+                       @PathParam("table") final String table,
+                       @PathParam("layout") final String layout) {
+    LOGGER.debug("move({},{},{})", tenantId, table, layout);
+    if (!DEDICATED.equals(layout) && !SHARED.equals(layout)) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final TenantTable tenantTable =
+        tenantTableManager.storage(TenantTableIdentifier.from(tenantId, table), SHARED.equals(layout));
+    return Response.ok(layout(tenantTable)).build();
+  }
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.resource;
+
+import com.codahale.metrics.annotation.ExceptionMetered;
+import com.codahale.metrics.annotation.ResponseMetered;
+import com.codahale.metrics.annotation.Timed;
+import com.codeheadsystems.dstore.node.converter.ChangeStreamInfoConverter;
+import com.codeheadsystems.dstore.node.exception.NotFoundException;
+import com.codeheadsystems.dstore.node.manager.ChangeStreamManager;
+import com.codeheadsystems.dstore.node.manager.TenantTableManager;
+import com.codeheadsystems.dstore.node.model.ChangePage;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resource for the change stream of a tenant table. Readers long-poll from the last sequence they processed.
+ */
+@Singleton
+@Path("/v1/tenant/{tenant}/table/{table}/stream")
+public class TenantTableStreamResource implements JerseyResource {
+
+  /**
+   * Most changes allowed in a single page.
+   */
+  public static final int MAX_STREAM_LIMIT = 1000;
+  /**
+   * Longest a read waits for a change.
+   */
+  public static final int MAX_WAIT_SECONDS = 20;
+  private static final Logger LOGGER = LoggerFactory.getLogger(TenantTableStreamResource.class);
+
+  private final TenantTableManager tenantTableManager;
+  private final ChangeStreamManager changeStreamManager;
+  private final ChangeStreamInfoConverter converter;
+
+  /**
+   * Default constructor.
+   *
+   * @param tenantTableManager  to turn the stream on and off.
+   * @param changeStreamManager to read the stream.
+   * @param converter           converter.
+   */
+  @Inject
+  public TenantTableStreamResource(final TenantTableManager tenantTableManager,
+                                   final ChangeStreamManager changeStreamManager,
+                                   final ChangeStreamInfoConverter converter) {
+    LOGGER.info("TenantTableStreamResource({},{},{})", tenantTableManager, changeStreamManager, converter);
+    this.tenantTableManager = tenantTableManager;
+    this.changeStreamManager = changeStreamManager;
+    this.converter = converter;
+  }
+
+  /**
+   * Turns on the change stream. Changes are recorded from now on.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @return response.
+   */
+  @PUT
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  public Response enable(@PathParam("tenant") final String tenantId,
+                         @PathParam("table") final String table) {
+    LOGGER.debug("enable({},{})", tenantId, table);
+    tenantTableManager.stream(TenantTableIdentifier.from(tenantId, table), true);
+    return Response.noContent().build();
+  }
+
+  /**
+   * Turns off the change stream, dropping the changes it held.
+   *
+   * @param tenantId that owns the table.
+   * @param table    the table.
+   * @return response.
+   */
+  @DELETE
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  public Response disable(@PathParam("tenant") final String tenantId,
+                          @PathParam("table") final String table) {
+    LOGGER.debug("disable({},{})", tenantId, table);
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from(tenantId, table);
+    tenantTableManager.stream(identifier, false);
+    changeStreamManager.drop(identifier);
+    return Response.noContent().build();
+  }
+
+  /**
+   * Reads the changes after a sequence, waiting for one if there are none yet. The checkpoint is the epoch and the
+   * sequence from the last page. If the stream has a different epoch now, the page starts from the oldest change held
+   * and is marked trimmed.
+   *
+   * @param tenantId    that owns the table.
+   * @param table       the table.
+   * @param epoch       the epoch of the last sequence processed.
+   * @param after       the last sequence processed, zero for the oldest change held.
+   * @param limit       most changes to return, at most {@value #MAX_STREAM_LIMIT}.
+   * @param waitSeconds how long to wait for a change, at most {@value #MAX_WAIT_SECONDS}.
+   * @return response.
+   */
+  @GET
+  @Timed
+  @ExceptionMetered
+  @ResponseMetered
+  @Produces(MediaType.APPLICATION_JSON)
+  public Response read(@PathParam("tenant") final String tenantId,
+                       @PathParam("table") final String table,
+                       @QueryParam("epoch") final String epoch,
+                       @QueryParam("after") @DefaultValue("0") final long after,
+                       @QueryParam("limit") @DefaultValue("100") final int limit,
+                       @QueryParam("waitSeconds") @DefaultValue("0") final int waitSeconds) {
+    LOGGER.debug("read({},{},{})", tenantId, table, after);
+    if (after < 0 || limit < 1 || limit > MAX_STREAM_LIMIT || waitSeconds < 0 || waitSeconds > MAX_WAIT_SECONDS) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from(tenantId, table);
+    final TenantTable tenantTable = tenantTableManager.get(identifier)
+        .orElseThrow(() -> new NotFoundException("No such table:" + identifier));
+    if (!tenantTable.streamEnabled()) {
+      LOGGER.debug("Table has no stream: {}", identifier);
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    final ChangePage page = changeStreamManager.read(identifier, Optional.ofNullable(epoch), after, limit,
+        TimeUnit.SECONDS.toMillis(waitSeconds));
+    return Response.ok(converter.from(page)).build();
+  }
+
+}
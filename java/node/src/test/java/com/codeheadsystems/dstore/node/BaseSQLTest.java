@@ -16,11 +16,14 @@
 
 package com.codeheadsystems.dstore.node;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.lenient;
 
 import com.codeheadsystems.dstore.node.engine.DatabaseConnectionEngine;
 import com.codeheadsystems.dstore.node.engine.DatabaseInitializationEngine;
 import com.codeheadsystems.dstore.node.engine.SqlEngine;
+import com.codeheadsystems.dstore.node.engine.StorageCopyEngine;
+import com.codeheadsystems.dstore.node.engine.impl.EmbeddedConnectionPoolEngine;
 import com.codeheadsystems.dstore.node.manager.DataSourceManager;
 import com.codeheadsystems.metrics.test.BaseMetricTest;
 import java.sql.SQLException;
@@ -49,7 +52,10 @@ public abstract class BaseSQLTest extends BaseMetricTest {
     final String url = "jdbc:hsqldb:mem:" + getClass().getSimpleName() + ":" + UUID.randomUUID();
     log.info("Init {}", url);
     lenient().when(databaseConnectionEngine.getInternalConnectionUrl()).thenReturn(url);
-    dataSourceManager = new DataSourceManager(databaseConnectionEngine, databaseInitializationEngine);
+    lenient().when(databaseConnectionEngine.getTenantConnectionUrl(any()))
+        .thenAnswer(invocation -> "jdbc:hsqldb:mem:" + getClass().getSimpleName() + ":tenant:" + UUID.randomUUID());
+    dataSourceManager = new DataSourceManager(databaseConnectionEngine, databaseInitializationEngine,
+        new EmbeddedConnectionPoolEngine(metrics, new NodeConfiguration()), new StorageCopyEngine(), new NodeConfiguration());
     dataSourceManager.start();
     sqlEngine = new SqlEngine(metrics, dataSourceManager);
   }
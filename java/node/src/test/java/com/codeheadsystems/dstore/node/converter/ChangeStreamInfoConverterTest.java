@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.converter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codeheadsystems.dstore.node.model.ImmutableChangePage;
+import com.codeheadsystems.dstore.node.model.ImmutableChangeRecord;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+class ChangeStreamInfoConverterTest {
+
+  private final ChangeStreamInfoConverter converter = new ChangeStreamInfoConverter();
+
+  @Test
+  void from() {
+    final ImmutableChangePage page = ImmutableChangePage.builder()
+        .epoch("epoch")
+        .addRecords(ImmutableChangeRecord.builder()
+            .sequence(3)
+            .entity("0001")
+            .newImage(JsonNodeFactory.instance.objectNode().put("a", 1))
+            .build())
+        .next(3)
+        .trimmed(true)
+        .build();
+    assertThat(converter.from(page))
+        .satisfies(info -> {
+          assertThat(info.changes()).hasSize(1);
+          assertThat(info.changes().get(0).sequence()).isEqualTo(3);
+          assertThat(info.changes().get(0).id()).isEqualTo("0001");
+          assertThat(info.changes().get(0).oldImage()).isEmpty();
+          assertThat(info.changes().get(0).newImage()).contains(JsonNodeFactory.instance.objectNode().put("a", 1));
+          assertThat(info.next()).isEqualTo(3);
+          assertThat(info.trimmed()).isTrue();
+          assertThat(info.epoch()).isEqualTo("epoch");
+        });
+  }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.converter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.common.factory.ObjectMapperFactory;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConditionConverterTest {
+
+  private ConditionConverter converter;
+
+  @BeforeEach
+  void setup() {
+    converter = new ConditionConverter(new JsonEngine(new ObjectMapperFactory().generate()));
+  }
+
+  @Test
+  void from() {
+    assertThat(converter.from(List.of("a"), List.of("b"), List.of("c:5", "d:\"5\"", "e:fred", "f:a:b")))
+        .containsExactly(
+            Condition.exists("a"),
+            Condition.notExists("b"),
+            Condition.equalTo("c", IntNode.valueOf(5)),
+            Condition.equalTo("d", TextNode.valueOf("5")),
+            Condition.equalTo("e", TextNode.valueOf("fred")),
+            Condition.equalTo("f", TextNode.valueOf("a:b")));
+  }
+
+  @Test
+  void from_empty() {
+    assertThat(converter.from(List.of(), List.of(), List.of())).isEmpty();
+  }
+
+  @Test
+  void from_noSeparator() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> converter.from(List.of(), List.of(), List.of("novalue")));
+  }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.converter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codeheadsystems.dstore.node.model.ImmutableQueryResult;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.Test;
+
+class QueryInfoConverterTest {
+
+  private final QueryInfoConverter converter = new QueryInfoConverter();
+
+  @Test
+  void from() {
+    final ImmutableQueryResult result = ImmutableQueryResult.builder()
+        .putEntities("user:2", JsonNodeFactory.instance.objectNode().put("a", 2))
+        .putEntities("user:1", JsonNodeFactory.instance.objectNode().put("a", 1))
+        .lastSortKey("1")
+        .build();
+    assertThat(converter.from(result))
+        .satisfies(info -> {
+          assertThat(info.entries().keySet()).containsExactly("user:2", "user:1");
+          assertThat(info.next()).contains("1");
+        });
+  }
+
+  @Test
+  void from_lastPage() {
+    assertThat(converter.from(ImmutableQueryResult.builder().build()))
+        .satisfies(info -> {
+          assertThat(info.entries()).isEmpty();
+          assertThat(info.next()).isEmpty();
+        });
+  }
+
+}
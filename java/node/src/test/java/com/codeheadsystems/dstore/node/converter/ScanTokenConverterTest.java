@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.converter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ScanTokenConverterTest {
+
+  private ScanTokenConverter converter;
+
+  @BeforeEach
+  void setup() {
+    converter = new ScanTokenConverter();
+  }
+
+  @Test
+  void roundTrip() {
+    final ScanPosition position = ScanPosition.from(Integer.MIN_VALUE, "an:id/with?odd=chars");
+
+    assertThat(converter.fromToken(converter.toToken(position))).isEqualTo(position);
+  }
+
+  @Test
+  void fromToken_notBase64() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> converter.fromToken("not base64!"));
+  }
+
+  @Test
+  void fromToken_noSeparator() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> converter.fromToken("YWJj"));
+  }
+
+  @Test
+  void fromToken_badHash() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> converter.fromToken("eDpp"));
+  }
+
+}
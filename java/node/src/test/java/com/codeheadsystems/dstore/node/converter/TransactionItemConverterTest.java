@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.converter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.common.factory.ObjectMapperFactory;
+import com.codeheadsystems.dstore.node.api.ImmutableTransactWriteItem;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TransactionItemConverterTest {
+
+  private TransactionItemConverter converter;
+
+  @BeforeEach
+  void setup() {
+    converter = new TransactionItemConverter(new ConditionConverter(new JsonEngine(new ObjectMapperFactory().generate())));
+  }
+
+  @Test
+  void from_put() {
+    final TransactionItem item = converter.from(ImmutableTransactWriteItem.builder()
+        .id("id")
+        .put(JsonNodeFactory.instance.objectNode().put("a", 1))
+        .addIfNotExists("a")
+        .addIfEquals("b:5")
+        .build());
+    assertThat(item.entity()).isEqualTo("id");
+    assertThat(item.put()).contains(JsonNodeFactory.instance.objectNode().put("a", 1));
+    assertThat(item.delete()).isFalse();
+    assertThat(item.conditions()).containsExactly(Condition.notExists("a"), Condition.equalTo("b", IntNode.valueOf(5)));
+  }
+
+  @Test
+  void from_delete() {
+    final TransactionItem item = converter.from(ImmutableTransactWriteItem.builder().id("id").delete(true).build());
+    assertThat(item.put()).isEmpty();
+    assertThat(item.delete()).isTrue();
+    assertThat(item.conditions()).isEmpty();
+  }
+
+  @Test
+  void from_putAndDelete() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> converter.from(ImmutableTransactWriteItem.builder()
+            .id("id")
+            .put(JsonNodeFactory.instance.objectNode())
+            .delete(true)
+            .build()));
+  }
+
+  @Test
+  void from_checkWithoutConditions() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> converter.from(ImmutableTransactWriteItem.builder().id("id").build()));
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codeheadsystems.dstore.node.BaseSQLTest;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TenantTableAccessDaoTest extends BaseSQLTest {
+
+  private static final TenantTableIdentifier FIRST = TenantTableIdentifier.from("tenant", "first");
+  private static final TenantTableIdentifier SECOND = TenantTableIdentifier.from("tenant", "second");
+  private static final TenantTableIdentifier THIRD = TenantTableIdentifier.from("other", "third");
+
+  private TenantTableAccessDao dao;
+
+  @BeforeEach
+  void setup() {
+    dao = new TenantTableAccessDao(sqlEngine);
+  }
+
+  @Test
+  void mostRecent_empty() {
+    assertThat(dao.mostRecent(10)).isEmpty();
+  }
+
+  @Test
+  void mostRecent_orderedByLastAccessThenCount() {
+    dao.write(Map.of(FIRST, 1L, SECOND, 5L), 100);
+    dao.write(Map.of(THIRD, 1L), 200);
+
+    assertThat(dao.mostRecent(10)).containsExactly(THIRD, SECOND, FIRST);
+    assertThat(dao.mostRecent(2)).containsExactly(THIRD, SECOND);
+  }
+
+  @Test
+  void write_addsCounts() {
+    dao.write(Map.of(FIRST, 3L, SECOND, 2L), 100);
+    dao.write(Map.of(SECOND, 2L), 100);
+
+    assertThat(dao.mostRecent(10)).containsExactly(SECOND, FIRST);
+  }
+
+  @Test
+  void delete() {
+    dao.write(Map.of(FIRST, 1L, SECOND, 1L), 100);
+
+    dao.delete(FIRST);
+
+    assertThat(dao.mostRecent(10)).containsExactly(SECOND);
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.common.factory.ObjectMapperFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BinaryDocumentEngineTest {
+
+  private JsonEngine jsonEngine;
+  private BinaryDocumentEngine engine;
+
+  @BeforeEach
+  void setup() {
+    jsonEngine = new JsonEngine(new ObjectMapperFactory().generate());
+    engine = new BinaryDocumentEngine(jsonEngine);
+  }
+
+  @Test
+  void roundTrip() {
+    final ObjectNode node = jsonEngine.createObjectNode()
+        .put("string", "a test field")
+        .put("int", 55443)
+        .put("negative", -12)
+        .put("long", Long.MAX_VALUE)
+        .put("double", 3.25)
+        .put("true", true)
+        .put("false", false)
+        .put("unicode", "\u00e9t\u00e9");
+    node.putNull("null");
+
+    final byte[] bytes = engine.encode(node);
+
+    assertThat(bytes[0]).isEqualTo(BinaryDocumentEngine.FORMAT_VERSION);
+    assertThat(engine.decode(bytes)).isEqualTo(node);
+  }
+
+  @Test
+  void roundTrip_empty() {
+    final ObjectNode node = jsonEngine.createObjectNode();
+    assertThat(engine.decode(engine.encode(node))).isEqualTo(node);
+  }
+
+  @Test
+  void encode_smallerThanJson() {
+    final ObjectNode node = jsonEngine.createObjectNode()
+        .put("name", "a test field")
+        .put("something", 55443);
+    assertThat(engine.encode(node).length).isLessThan(jsonEngine.writeValue(node).length());
+  }
+
+  @Test
+  void encode_nested() {
+    final ObjectNode node = jsonEngine.createObjectNode();
+    node.putObject("nested").put("a", 1);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.encode(node));
+  }
+
+  @Test
+  void roundTripValue_nested() {
+    final ObjectNode node = jsonEngine.createObjectNode().put("a", 1).put("binary", new byte[]{1, 2, 3});
+    node.putObject("nested").put("b", "c").putArray("list").add(1).add(2.5).add(false).addNull();
+    node.putArray("empty");
+
+    final byte[] bytes = engine.encodeValue(node);
+
+    assertThat(bytes[0]).isEqualTo(BinaryDocumentEngine.FORMAT_VERSION);
+    assertThat(engine.decodeValue(bytes)).isEqualTo(node);
+  }
+
+  @Test
+  void roundTripValue_scalar() {
+    assertThat(engine.decodeValue(engine.encodeValue(TextNode.valueOf("value")))).isEqualTo(TextNode.valueOf("value"));
+  }
+
+  @Test
+  void encode_notAnObject() {
+    final JsonNode node = jsonEngine.createObjectNode().arrayNode();
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.encode(node));
+  }
+
+  @Test
+  void decode_truncated() {
+    final byte[] bytes = engine.encode(jsonEngine.createObjectNode().put("string", "value"));
+    final byte[] truncated = new byte[bytes.length - 2];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.decode(truncated));
+  }
+
+  @Test
+  void decode_badVersion() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.decode(new byte[]{99, 0}));
+  }
+}
@@ -17,11 +17,13 @@
 package com.codeheadsystems.dstore.node.engine;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.mockito.Mockito.when;
 
 import com.codeheadsystems.dstore.common.crypt.CryptUtils;
 import com.codeheadsystems.dstore.node.NodeConfiguration;
 import com.codeheadsystems.dstore.node.manager.ControlPlaneManager;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
 import com.codeheadsystems.dstore.node.model.NodeInternalConfiguration;
 import com.codeheadsystems.dstore.node.model.TenantTable;
 import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
@@ -31,6 +33,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.sql.Connection;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Random;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -112,6 +115,75 @@ class DatabaseConnectionEngineTest {
             "/database;crypt_key=0101;crypt_iv=0202;crypt_type=AES/GCM-SIV/NoPadding;crypt_provider=BC;");
   }
 
+  @Test
+  void getShardConnectionUrl() {
+    final byte[] key = new byte[2];
+    final byte[] nonce = new byte[2];
+    Arrays.fill(key, (byte) 1);
+    Arrays.fill(nonce, (byte) 2);
+    when(nodeConfiguration.getDatabaseDirectory()).thenReturn(TEMP_DIR.toString());
+    when(nodeInternalConfiguration.key()).thenReturn(KEY);
+    when(controlPlaneManager.keyForNode()).thenReturn(NODE);
+    when(cryptUtils.xor(KEY, NODE)).thenReturn(key);
+    when(nodeInternalConfiguration.nonce()).thenReturn(NONCE);
+    when(cryptUtils.fromBase64(NONCE)).thenReturn(nonce);
+    assertThat(manager.getShardConnectionUrl(1))
+        .isEqualTo("jdbc:hsqldb:file:" + TEMP_DIR.toString() + "/shard-001" +
+            "/database;crypt_key=0101;crypt_iv=0203;crypt_type=AES/GCM-SIV/NoPadding;crypt_provider=BC;");
+    assertThat(nonce).containsExactly(2, 2);
+  }
+
+  @Test
+  void getTenantSchema() {
+    final TenantTable dedicated = ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from(TENANT, TABLE_NAME))
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion("version")
+        .key(KEY)
+        .nonce(NONCE)
+        .primaryKey("id")
+        .build();
+    final TenantTable shared = ImmutableTenantTable.copyOf(dedicated).withProperties(Map.of(TenantTable.SHARD_PROPERTY, "1"));
+    assertThat(manager.getTenantSchema(dedicated)).isEmpty();
+    assertThat(manager.getTenantSchema(shared)).get().asString()
+        .hasSize(33)
+        .matches("T[0-9A-F]+")
+        .isNotEqualTo(manager.getTenantSchema(shared.withKey("other")).orElseThrow());
+  }
+
+  @Test
+  void deleteTenantDatabase() throws IOException {
+    when(nodeConfiguration.getDatabaseDirectory()).thenReturn(TEMP_DIR.toString());
+    final TenantTable dedicated = ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from(TENANT, "deleted"))
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion("version")
+        .key(KEY)
+        .nonce(NONCE)
+        .primaryKey("id")
+        .build();
+    final Path directory = TEMP_DIR.resolve(TENANT + "-deleted");
+    Files.createDirectories(directory.resolve("database.tmp"));
+    Files.writeString(directory.resolve("database.script"), "data");
+
+    manager.deleteTenantDatabase(dedicated);
+
+    assertThat(directory).doesNotExist();
+    manager.deleteTenantDatabase(dedicated);
+    assertThatExceptionOfType(IllegalArgumentException.class).isThrownBy(() -> manager.deleteTenantDatabase(
+        ImmutableTenantTable.copyOf(dedicated).withProperties(Map.of(TenantTable.SHARD_PROPERTY, "1"))));
+  }
+
+  @Test
+  void shardFor() {
+    when(nodeConfiguration.getStorageShards()).thenReturn(16);
+    assertThat(manager.shardFor(TenantTableIdentifier.from(TENANT, TABLE_NAME)))
+        .isBetween(0, 15)
+        .isEqualTo(manager.shardFor(TenantTableIdentifier.from(TENANT, TABLE_NAME)));
+  }
+
   @Test
   void doesItWork() {
     final byte[] key = new byte[32];
@@ -18,8 +18,11 @@ package com.codeheadsystems.dstore.node.engine;
 
 import static com.codeheadsystems.dstore.node.manager.DataSourceManager.INTERNAL;
 import static com.codeheadsystems.dstore.node.manager.DataSourceManager.TENANT;
+import static com.codeheadsystems.dstore.node.manager.DataSourceManager.TENANT_PREFIX;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.codeheadsystems.dstore.node.engine.impl.V2SingleRowEngine;
+import com.codeheadsystems.dstore.node.engine.impl.V3SortKeyEngine;
 import java.security.Security;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -31,6 +34,7 @@ import java.util.stream.Stream;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.util.encoders.Hex;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -41,9 +45,11 @@ class DatabaseInitializationEngineTest {
 
   public static Stream<Arguments> pathToTableNames() {
     return Stream.of(
-        Arguments.of("liquibasetest", new String[]{"DATABASECHANGELOGLOCK", "DATABASECHANGELOG", "PERSON", "OTHERTABLE"}),
-        Arguments.of(INTERNAL, new String[]{"DATABASECHANGELOGLOCK", "DATABASECHANGELOG", "NODE_TENANT", "NODE_TENANT_TABLES", "NODE_TENANT_TABLES_CONFIGURATION"}),
-        Arguments.of(TENANT, new String[]{"DATABASECHANGELOGLOCK", "DATABASECHANGELOG", "TENANT_DATA"})
+        Arguments.of("liquibasetest", new String[]{"DATABASECHANGELOGLOCK", "DATABASECHANGELOG", "SCHEMA_FINGERPRINT", "PERSON", "OTHERTABLE"}),
+        Arguments.of(INTERNAL, new String[]{"DATABASECHANGELOGLOCK", "DATABASECHANGELOG", "SCHEMA_FINGERPRINT", "NODE_TENANT", "NODE_TENANT_TABLES", "NODE_TENANT_TABLES_CONFIGURATION", "NODE_TENANT_TABLES_ACCESS"}),
+        Arguments.of(TENANT, new String[]{"DATABASECHANGELOGLOCK", "DATABASECHANGELOG", "SCHEMA_FINGERPRINT", "TENANT_DATA", "TENANT_FILTER"}),
+        Arguments.of(TENANT_PREFIX + V2SingleRowEngine.DEFINITION_NAME, new String[]{"DATABASECHANGELOGLOCK", "DATABASECHANGELOG", "SCHEMA_FINGERPRINT", "TENANT_DOCUMENT"}),
+        Arguments.of(TENANT_PREFIX + V3SortKeyEngine.DEFINITION_NAME, new String[]{"DATABASECHANGELOGLOCK", "DATABASECHANGELOG", "SCHEMA_FINGERPRINT", "TENANT_DOCUMENT"})
     );
   }
 
@@ -66,13 +72,13 @@ class DatabaseInitializationEngineTest {
     }
   }
 
-  @ParameterizedTest
-  @MethodSource("pathToTableNames")
-  void liquibaseTesting(final String path, final String... expectedTableNames) throws SQLException {
-    final Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:DatabaseInitializationEngineTest-" +
-            path + ";crypt_key=" + bytes(32) + ";crypt_iv=" + bytes(12) + ";crypt_type=AES/GCM-SIV/NoPadding;crypt_provider=BC;",
+  private static Connection connection(final String name) throws SQLException {
+    return DriverManager.getConnection("jdbc:hsqldb:mem:DatabaseInitializationEngineTest-" +
+            name + ";crypt_key=" + bytes(32) + ";crypt_iv=" + bytes(12) + ";crypt_type=AES/GCM-SIV/NoPadding;crypt_provider=BC;",
         "SA", "");
-    new DatabaseInitializationEngine().initialize(connection, path);
+  }
+
+  private static HashSet<String> tableNames(final Connection connection) throws SQLException {
     final HashSet<String> tableNames = new HashSet<>();
     try (ResultSet result = connection.createStatement().
         executeQuery("SELECT TABLE_NAME  FROM INFORMATION_SCHEMA.SYSTEM_TABLES where TABLE_SCHEM = 'PUBLIC'")) {
@@ -80,8 +86,59 @@ class DatabaseInitializationEngineTest {
         tableNames.add(result.getString("TABLE_NAME"));
       }
     }
-    assertThat(tableNames)
+    return tableNames;
+  }
+
+  @ParameterizedTest
+  @MethodSource("pathToTableNames")
+  void liquibaseTesting(final String path, final String... expectedTableNames) throws SQLException {
+    final Connection connection = connection(path);
+    new DatabaseInitializationEngine().initialize(connection, path);
+    assertThat(tableNames(connection))
         .containsExactlyInAnyOrder(expectedTableNames);
   }
 
+  @Test
+  void initialize_fingerprintMatches_skipsLiquibase() throws SQLException {
+    final Connection connection = connection("fingerprintMatches");
+    final DatabaseInitializationEngine engine = new DatabaseInitializationEngine();
+    engine.initialize(connection, "liquibasetest");
+    connection.createStatement().execute("drop table DATABASECHANGELOG");
+
+    engine.initialize(connection, "liquibasetest");
+
+    assertThat(tableNames(connection))
+        .doesNotContain("DATABASECHANGELOG")
+        .contains("PERSON", "OTHERTABLE", "SCHEMA_FINGERPRINT");
+  }
+
+  @Test
+  void initialize_fingerprintTableAlreadyMade() throws SQLException {
+    final Connection connection = connection("fingerprintTableAlreadyMade");
+    connection.createStatement().execute(
+        "create table SCHEMA_FINGERPRINT (PATH varchar(256) not null primary key, FINGERPRINT varchar(64) not null)");
+
+    new DatabaseInitializationEngine().initialize(connection, TENANT);
+
+    assertThat(tableNames(connection)).contains("SCHEMA_FINGERPRINT", "TENANT_DATA", "TENANT_FILTER");
+    try (ResultSet result = connection.createStatement().executeQuery("select FINGERPRINT from SCHEMA_FINGERPRINT")) {
+      assertThat(result.next()).isTrue();
+    }
+  }
+
+  @Test
+  void initialize_fingerprintStale_runsLiquibase() throws SQLException {
+    final Connection connection = connection("fingerprintStale");
+    final DatabaseInitializationEngine engine = new DatabaseInitializationEngine();
+    engine.initialize(connection, "liquibasetest");
+    connection.createStatement().execute("update SCHEMA_FINGERPRINT set FINGERPRINT = 'stale'");
+
+    new DatabaseInitializationEngine().initialize(connection, "liquibasetest");
+
+    try (ResultSet result = connection.createStatement().executeQuery("select FINGERPRINT from SCHEMA_FINGERPRINT")) {
+      assertThat(result.next()).isTrue();
+      assertThat(result.getString(1)).hasSize(64).isNotEqualTo("stale");
+    }
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.engine;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class ExpiryEngineTest {
+
+  private static final long NOW = 1_700_000_000L;
+
+  private final ExpiryEngine engine = new ExpiryEngine(Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC));
+
+  @Test
+  void isExpired() {
+    final TenantTable table = table(Map.of(TenantTable.TTL_PROPERTY, "expires"));
+
+    assertThat(engine.isExpired(table, JsonNodeFactory.instance.objectNode().put("expires", NOW - 1))).isTrue();
+    assertThat(engine.isExpired(table, JsonNodeFactory.instance.objectNode().put("expires", NOW))).isTrue();
+    assertThat(engine.isExpired(table, JsonNodeFactory.instance.objectNode().put("expires", NOW + 1))).isFalse();
+    assertThat(engine.isExpired(table, JsonNodeFactory.instance.objectNode().put("expires", "yesterday"))).isFalse();
+    assertThat(engine.isExpired(table, JsonNodeFactory.instance.objectNode().put("other", 1))).isFalse();
+  }
+
+  @Test
+  void isExpired_noTtl() {
+    assertThat(engine.isExpired(table(Map.of()), JsonNodeFactory.instance.objectNode().put("expires", 1))).isFalse();
+  }
+
+  @Test
+  void expiry() {
+    final TenantTable table = table(Map.of(TenantTable.TTL_PROPERTY, "expires"));
+
+    assertThat(engine.expiry(table, JsonNodeFactory.instance.objectNode().put("expires", 5))).contains(5L);
+    assertThat(engine.expiry(table, JsonNodeFactory.instance.objectNode())).isEmpty();
+  }
+
+  private TenantTable table(final Map<String, String> properties) {
+    return ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from("tenant", "table"))
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion("version")
+        .key("key")
+        .nonce("nonce")
+        .primaryKey("id")
+        .properties(properties)
+        .build();
+  }
+
+}
@@ -17,9 +17,15 @@
 package com.codeheadsystems.dstore.node.engine;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.codeheadsystems.dstore.node.manager.DataSourceManager;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
 import com.codeheadsystems.metrics.test.BaseMetricTest;
 import java.sql.Connection;
 import java.sql.ResultSet;
@@ -27,11 +33,15 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import javax.sql.DataSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -45,6 +55,8 @@ class SqlEngineTest extends BaseMetricTest {
   @Mock private Connection connection;
   @Mock private Statement statement;
   @Mock private ResultSet resultSet;
+  @Mock private TenantTable tenantTable;
+  @Captor private ArgumentCaptor<Consumer<TenantTableIdentifier>> closeListenerCaptor;
 
   private AtomicInteger atomicInteger;
   private final Function<ResultSet, Integer> function =
@@ -72,4 +84,71 @@ class SqlEngineTest extends BaseMetricTest {
         .isEqualTo(2);
   }
 
-}
\ No newline at end of file
+  @Test
+  void testExecuteConnectionTenant_meters() throws SQLException {
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from("tenant", "table");
+    when(tenantTable.identifier()).thenReturn(identifier);
+    when(dataSourceManager.getDataSource(tenantTable)).thenReturn(dataSource);
+    when(dataSource.getConnection()).thenReturn(connection);
+
+    sqlEngine.executeConnectionTenant(tenantTable, (c) -> c);
+    sqlEngine.executeConnectionTenant(tenantTable, (c) -> c);
+
+    assertThat(metrics.registry().timer(SqlEngine.SQLENGINE_EXECUTE_CONNECTION, "datasource", identifier.toString())
+        .count()).isEqualTo(2);
+    assertThat(metrics.registry().counter(SqlEngine.SQLENGINE_EXECUTE_CONNECTION, "datasource", identifier.toString(),
+        "success", "true").count()).isEqualTo(2);
+  }
+
+  @Test
+  void dropMeters_onClose() throws SQLException {
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from("tenant", "table");
+    when(tenantTable.identifier()).thenReturn(identifier);
+    when(dataSourceManager.getDataSource(tenantTable)).thenReturn(dataSource);
+    when(dataSource.getConnection()).thenReturn(connection);
+    sqlEngine.executeConnectionTenant(tenantTable, (c) -> c);
+    verify(dataSourceManager).addCloseListener(closeListenerCaptor.capture());
+
+    closeListenerCaptor.getValue().accept(identifier);
+
+    assertThat(metrics.registry().find(SqlEngine.SQLENGINE_EXECUTE_CONNECTION).meters()).isEmpty();
+    sqlEngine.executeConnectionTenant(tenantTable, (c) -> c);
+    assertThat(metrics.registry().timer(SqlEngine.SQLENGINE_EXECUTE_CONNECTION, "datasource", identifier.toString())
+        .count()).isEqualTo(1);
+  }
+
+  @Test
+  void testExecuteTransactionTenant_commit() throws SQLException {
+    when(tenantTable.identifier()).thenReturn(TenantTableIdentifier.from("tenant", "table"));
+    when(dataSourceManager.getDataSource(tenantTable)).thenReturn(dataSource);
+    when(dataSource.getConnection()).thenReturn(connection);
+    when(connection.getAutoCommit()).thenReturn(true);
+
+    final Integer result = sqlEngine.executeTransactionTenant(tenantTable, (c) -> c == connection ? 2 : 1);
+
+    assertThat(result).isEqualTo(2);
+    final InOrder inOrder = inOrder(connection);
+    inOrder.verify(connection).setAutoCommit(false);
+    inOrder.verify(connection).commit();
+    inOrder.verify(connection).setAutoCommit(true);
+    verify(connection, never()).rollback();
+  }
+
+  @Test
+  void testExecuteTransactionTenant_rollback() throws SQLException {
+    when(tenantTable.identifier()).thenReturn(TenantTableIdentifier.from("tenant", "table"));
+    when(dataSourceManager.getDataSource(tenantTable)).thenReturn(dataSource);
+    when(dataSource.getConnection()).thenReturn(connection);
+    when(connection.getAutoCommit()).thenReturn(true);
+
+    assertThatExceptionOfType(IllegalStateException.class)
+        .isThrownBy(() -> sqlEngine.executeTransactionTenant(tenantTable, (c) -> {
+          throw new IllegalStateException("boom");
+        }));
+
+    verify(connection).rollback();
+    verify(connection, never()).commit();
+    verify(connection).setAutoCommit(true);
+  }
+
+}
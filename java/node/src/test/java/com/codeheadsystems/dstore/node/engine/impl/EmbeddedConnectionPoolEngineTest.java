@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.ConnectionPoolEngine;
+import com.codeheadsystems.metrics.test.BaseMetricTest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EmbeddedConnectionPoolEngineTest extends BaseMetricTest {
+
+  private static final String NAME = "tenant:table";
+  private static final String QUERY = "select count(*) from INFORMATION_SCHEMA.SYSTEM_USERS";
+
+  private EmbeddedConnectionPoolEngine engine;
+  private DataSource dataSource;
+
+  @BeforeEach
+  void setup() {
+    engine = new EmbeddedConnectionPoolEngine(metrics, new NodeConfiguration());
+    dataSource = engine.create(NAME, "jdbc:hsqldb:mem:EmbeddedConnectionPoolEngineTest:" + UUID.randomUUID(), 0);
+  }
+
+  @Test
+  void getConnection_reused() throws SQLException {
+    final Connection first;
+    try (final Connection connection = dataSource.getConnection()) {
+      first = connection.unwrap(Connection.class);
+    }
+    try (final Connection connection = dataSource.getConnection()) {
+      assertThat(connection.unwrap(Connection.class)).isSameAs(first);
+    }
+  }
+
+  @Test
+  void prepareStatement_cached() throws SQLException {
+    final PreparedStatement first;
+    try (final Connection connection = dataSource.getConnection();
+         final PreparedStatement statement = connection.prepareStatement(QUERY)) {
+      first = statement.unwrap(PreparedStatement.class);
+    }
+    try (final Connection connection = dataSource.getConnection();
+         final PreparedStatement statement = connection.prepareStatement(QUERY);
+         final ResultSet resultSet = statement.executeQuery()) {
+      assertThat(statement.unwrap(PreparedStatement.class)).isSameAs(first);
+      assertThat(resultSet.next()).isTrue();
+    }
+    assertThat(metrics.registry().counter(ConnectionPoolEngine.STATEMENT_CACHE, "hit", "false").count()).isEqualTo(1);
+    assertThat(metrics.registry().counter(ConnectionPoolEngine.STATEMENT_CACHE, "hit", "true").count()).isEqualTo(1);
+  }
+
+  @Test
+  void close_rollsBackOpenTransaction() throws SQLException {
+    try (final Connection connection = dataSource.getConnection()) {
+      connection.createStatement().execute("create table T (ID int)");
+      connection.setAutoCommit(false);
+      connection.createStatement().execute("insert into T values (1)");
+    }
+    try (final Connection connection = dataSource.getConnection();
+         final ResultSet resultSet = connection.createStatement().executeQuery("select count(*) from T")) {
+      assertThat(connection.getAutoCommit()).isTrue();
+      assertThat(resultSet.next()).isTrue();
+      assertThat(resultSet.getInt(1)).isZero();
+    }
+  }
+
+  @Test
+  void meters() throws SQLException {
+    try (final Connection connection = dataSource.getConnection()) {
+      assertThat(metrics.registry().get(ConnectionPoolEngine.ACTIVE).tag("datasource", NAME).gauge().value())
+          .isEqualTo(1);
+    }
+    assertThat(metrics.registry().get(ConnectionPoolEngine.ACTIVE).tag("datasource", NAME).gauge().value())
+        .isZero();
+    assertThat(metrics.registry().get(ConnectionPoolEngine.WAIT).tag("datasource", NAME).timer().count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void close() throws SQLException {
+    final Connection connection = dataSource.getConnection();
+
+    engine.close(dataSource);
+
+    assertThat(metrics.registry().find(ConnectionPoolEngine.ACTIVE).gauge()).isNull();
+    assertThatExceptionOfType(SQLException.class).isThrownBy(dataSource::getConnection);
+    final Connection physical = connection.unwrap(Connection.class);
+    connection.close();
+    assertThat(physical.isClosed()).isTrue();
+    assertThat(connection.isClosed()).isTrue();
+  }
+
+  @Test
+  void close_reopened_keepsNewMeters() throws SQLException {
+    final DataSource reopened = engine.create(NAME,
+        "jdbc:hsqldb:mem:EmbeddedConnectionPoolEngineTest:" + UUID.randomUUID(), 0);
+
+    engine.close(dataSource);
+
+    try (final Connection connection = reopened.getConnection()) {
+      assertThat(metrics.registry().get(ConnectionPoolEngine.ACTIVE).tag("datasource", NAME).gauge().value())
+          .isEqualTo(1);
+    }
+    assertThat(metrics.registry().get(ConnectionPoolEngine.WAIT).tag("datasource", NAME).timer().count())
+        .isEqualTo(1);
+
+    engine.close(reopened);
+
+    assertThat(metrics.registry().find(ConnectionPoolEngine.ACTIVE).gauge()).isNull();
+    assertThat(metrics.registry().find(ConnectionPoolEngine.WAIT).timer()).isNull();
+  }
+
+}
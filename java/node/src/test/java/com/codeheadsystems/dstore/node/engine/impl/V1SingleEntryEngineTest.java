@@ -0,0 +1,675 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.common.factory.ObjectMapperFactory;
+import com.codeheadsystems.dstore.node.BaseSQLTest;
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
+import com.codeheadsystems.dstore.node.exception.ConditionFailedException;
+import com.codeheadsystems.dstore.node.exception.InvalidAttributeException;
+import com.codeheadsystems.dstore.node.exception.UnsupportedTableOperationException;
+import com.codeheadsystems.dstore.node.manager.EntityFilterManager;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ImmutableIndexLookupRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableScanRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
+import com.codeheadsystems.dstore.node.model.ImmutableTransactionItem;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import com.codeheadsystems.dstore.node.model.ScanRequest;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.BinaryNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class V1SingleEntryEngineTest extends BaseSQLTest {
+
+  private static final String ENTITY = "entity";
+
+  private JsonEngine jsonEngine;
+  private TenantTable tenantTable;
+  private V1SingleEntryEngine engine;
+
+  @BeforeEach
+  void setup() {
+    jsonEngine = new JsonEngine(new ObjectMapperFactory().generate());
+    tenantTable = ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from("tenant", "table"))
+        .hashStart(UUID.randomUUID().toString())
+        .hashEnd(UUID.randomUUID().toString())
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion(V1SingleEntryEngine.DEFINITION_NAME)
+        .key(UUID.randomUUID().toString())
+        .nonce(UUID.randomUUID().toString())
+        .primaryKey("id")
+        .build();
+    engine = new V1SingleEntryEngine(metrics, sqlEngine, jsonEngine, new BinaryDocumentEngine(jsonEngine),
+        new EntityFilterManager(metrics, sqlEngine, new NodeConfiguration()));
+  }
+
+  @Test
+  void write_read() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1).put("b", 2);
+
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void write_read_types() {
+    final ObjectNode data = jsonEngine.createObjectNode()
+        .put("string", "fred \"quoted\"")
+        .put("int", 1)
+        .put("long", Long.MAX_VALUE)
+        .put("double", 1.5)
+        .put("true", true)
+        .put("false", false)
+        .put("binary", new byte[]{0, 1, 2, (byte) 255})
+        .putNull("null");
+
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+    assertThat(engine.scan(tenantTable, ImmutableScanRequest.builder().limit(5).build(),
+        (id, node) -> assertThat(node).isEqualTo(data))).isEmpty();
+  }
+
+  @Test
+  void write_storesRawValues() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode()
+        .put("name", "fred")
+        .put("binary", new byte[]{0, 1, 2, 3, 4, 5, 6, 7}));
+
+    assertThat(storedValue("name", "C_DATA")).isEqualTo("fred");
+    assertThat((byte[]) storedValue("binary", "C_BYTES")).hasSize(8);
+  }
+
+  @Test
+  void write_typeChange() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1));
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", "1");
+
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+    assertThat(storedValue("a", "C_LONG")).isNull();
+  }
+
+  @Test
+  void write_read_nested() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1);
+    data.putObject("address").put("city", "Seattle").putArray("lines").add("1 Main St").add(2);
+    data.putArray("tags").add("x").add(jsonEngine.createObjectNode().put("y", true)).addNull();
+
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+    assertThat(engine.read(tenantTable, ENTITY, List.of("a"))).contains(jsonEngine.createObjectNode().put("a", 1));
+    assertThat(engine.read(tenantTable, ENTITY, List.of("tags"))).contains(jsonEngine.createObjectNode().set("tags", data.get("tags")));
+    assertThat(rowCount()).isEqualTo(3);
+  }
+
+  @Test
+  void update_nested() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1);
+    data.putArray("list").add(1);
+    engine.write(tenantTable, ENTITY, data);
+    final ObjectNode patch = jsonEngine.createObjectNode();
+    patch.putArray("list").add(1).add(2);
+
+    assertThat(engine.update(tenantTable, ENTITY, patch)).isTrue();
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data.put("a", 1).set("list", patch.get("list")));
+  }
+
+  @Test
+  void write_conditions_nested() {
+    final ObjectNode data = jsonEngine.createObjectNode();
+    data.putObject("map").put("a", 1).put("b", 2);
+    engine.write(tenantTable, ENTITY, data);
+    final ObjectNode reordered = jsonEngine.createObjectNode().put("b", 2).put("a", 1);
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.delete(tenantTable, ENTITY, List.of(Condition.equalTo("map", jsonEngine.createObjectNode().put("a", 1)))));
+    assertThat(engine.delete(tenantTable, ENTITY, List.of(Condition.equalTo("map", reordered)))).isTrue();
+  }
+
+  @Test
+  void read_legacyQuotedString() {
+    sqlEngine.executePreparedTenant(tenantTable,
+        "insert into TENANT_DATA (ID, C_COL, HASH, C_DATA_TYPE, C_DATA) values (?, 'name', ?, 'QUOTED', ?)", (ps) -> {
+          try {
+            ps.setString(1, ENTITY);
+            ps.setInt(2, engine.hash(ENTITY));
+            ps.setString(3, "\"fred \\\"quoted\\\"\"");
+            return ps.executeUpdate();
+          } catch (SQLException e) {
+            throw new IllegalArgumentException(e);
+          }
+        });
+    final ObjectNode data = jsonEngine.createObjectNode().put("name", "fred \"quoted\"");
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+    assertThat(engine.delete(tenantTable, ENTITY, List.of(Condition.equalTo("name", TextNode.valueOf("fred \"quoted\""))))).isTrue();
+  }
+
+  @Test
+  void write_overwrite_removesMissingAttributes() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("b", 2));
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 3).put("c", 4);
+
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+    assertThat(rowCount()).isEqualTo(2);
+  }
+
+  @Test
+  void write_unchanged() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1).put("b", 2);
+    engine.write(tenantTable, ENTITY, data);
+
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+    assertThat(rowCount()).isEqualTo(2);
+  }
+
+  @Test
+  void write_unknownType_leavesExisting() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1);
+    engine.write(tenantTable, ENTITY, data);
+    final ObjectNode bad = jsonEngine.createObjectNode().put("a", 2);
+    bad.putPOJO("b", new Object());
+
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ENTITY, bad));
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void read_missing_skipsQuery() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1));
+
+    assertThat(engine.read(tenantTable, "missing")).isEmpty();
+    assertThat(engine.read(tenantTable, "missing", List.of("a"))).isEmpty();
+    assertThat(engine.readMany(tenantTable, List.of(ENTITY, "missing"))).containsOnlyKeys(ENTITY);
+    assertThat(metrics.registry().counter("EntityFilterManager.skipped").count()).isEqualTo(3);
+    assertThat(engine.read(tenantTable, ENTITY)).isPresent();
+  }
+
+  @Test
+  void read_attributes() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("b", 2).put("c", 3));
+
+    assertThat(engine.read(tenantTable, ENTITY, List.of("a", "c", "missing")))
+        .contains(jsonEngine.createObjectNode().put("a", 1).put("c", 3));
+    assertThat(engine.read(tenantTable, ENTITY, List.of("missing")))
+        .contains(jsonEngine.createObjectNode());
+    assertThat(engine.read(tenantTable, ENTITY, List.of()))
+        .contains(jsonEngine.createObjectNode().put("a", 1).put("b", 2).put("c", 3));
+  }
+
+  @Test
+  void read_attributes_notFound() {
+    assertThat(engine.read(tenantTable, ENTITY, List.of("a"))).isEmpty();
+  }
+
+  @Test
+  void readMany() {
+    final List<String> ids = IntStream.range(0, 150).mapToObj(i -> "id-" + i).toList();
+    ids.forEach(id -> engine.write(tenantTable, id, jsonEngine.createObjectNode().put("a", id.length())));
+    final List<String> request = new ArrayList<>();
+    request.add("missing");
+    for (int i = ids.size() - 1; i >= 0; i -= 2) {
+      request.add(ids.get(i));
+    }
+    request.add(ids.get(ids.size() - 1));
+
+    final Map<String, JsonNode> result = engine.readMany(tenantTable, request);
+
+    assertThat(result.keySet()).containsExactlyElementsOf(request.stream().skip(1).distinct().toList());
+    assertThat(result.get("id-149")).isEqualTo(jsonEngine.createObjectNode().put("a", 6));
+  }
+
+  @Test
+  void readMany_empty() {
+    assertThat(engine.readMany(tenantTable, List.of())).isEmpty();
+  }
+
+  @Test
+  void writeMany() {
+    engine.write(tenantTable, "keep", jsonEngine.createObjectNode().put("a", 1));
+    engine.write(tenantTable, "gone", jsonEngine.createObjectNode().put("a", 2));
+    engine.write(tenantTable, "replace", jsonEngine.createObjectNode().put("a", 3).put("b", 4));
+    final Map<String, JsonNode> writes = Map.of(
+        "replace", jsonEngine.createObjectNode().put("c", 5),
+        "new", jsonEngine.createObjectNode().put("d", 6));
+
+    engine.writeMany(tenantTable, writes, List.of("gone", "missing"));
+
+    assertThat(engine.readMany(tenantTable, List.of("keep", "gone", "replace", "new")))
+        .containsExactly(
+            Map.entry("keep", jsonEngine.createObjectNode().put("a", 1)),
+            Map.entry("replace", jsonEngine.createObjectNode().put("c", 5)),
+            Map.entry("new", jsonEngine.createObjectNode().put("d", 6)));
+  }
+
+  @Test
+  void writeMany_onlyChangedColumns() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("b", 2).put("c", 3));
+    sqlEngine.executePreparedTenant(tenantTable, "update TENANT_DATA set HASH = -1 where ID = ?", (ps) -> {
+      try {
+        ps.setString(1, ENTITY);
+        return ps.executeUpdate();
+      } catch (SQLException e) {
+        throw new IllegalArgumentException(e);
+      }
+    });
+
+    engine.writeMany(tenantTable, Map.of(ENTITY, jsonEngine.createObjectNode().put("a", 1).put("b", 20)), List.of());
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(jsonEngine.createObjectNode().put("a", 1).put("b", 20));
+    assertThat(storedValue("a", "HASH")).isEqualTo(-1L);
+    assertThat(storedValue("b", "HASH")).isNotEqualTo(-1L);
+    assertThat(rowCount()).isEqualTo(2);
+  }
+
+  @Test
+  void writeMany_badType_noChanges() {
+    engine.write(tenantTable, "keep", jsonEngine.createObjectNode().put("a", 1));
+    final ObjectNode bad = jsonEngine.createObjectNode();
+    bad.putPOJO("b", new Object());
+
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.writeMany(tenantTable, Map.of("new", bad), List.of("keep")));
+
+    assertThat(engine.read(tenantTable, "keep")).contains(jsonEngine.createObjectNode().put("a", 1));
+  }
+
+  @Test
+  void transact() {
+    engine.write(tenantTable, "checked", jsonEngine.createObjectNode().put("a", 1));
+    engine.write(tenantTable, "replace", jsonEngine.createObjectNode().put("a", 2).put("b", 3));
+    engine.write(tenantTable, "gone", jsonEngine.createObjectNode().put("a", 4));
+
+    engine.transact(tenantTable, List.of(
+        ImmutableTransactionItem.builder().entity("checked").addConditions(Condition.equalTo("a", IntNode.valueOf(1))).build(),
+        ImmutableTransactionItem.builder().entity("replace").put(jsonEngine.createObjectNode().put("c", 5))
+            .addConditions(Condition.exists("b")).build(),
+        ImmutableTransactionItem.builder().entity("new").put(jsonEngine.createObjectNode().put("d", 6))
+            .addConditions(Condition.notExists("d")).build(),
+        ImmutableTransactionItem.builder().entity("gone").delete(true).build()));
+
+    assertThat(engine.readMany(tenantTable, List.of("checked", "replace", "new", "gone")))
+        .containsExactly(
+            Map.entry("checked", jsonEngine.createObjectNode().put("a", 1)),
+            Map.entry("replace", jsonEngine.createObjectNode().put("c", 5)),
+            Map.entry("new", jsonEngine.createObjectNode().put("d", 6)));
+  }
+
+  @Test
+  void transact_conditionFails_noChanges() {
+    engine.write(tenantTable, "checked", jsonEngine.createObjectNode().put("a", 1));
+    engine.write(tenantTable, "gone", jsonEngine.createObjectNode().put("a", 2));
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.transact(tenantTable, List.of(
+            ImmutableTransactionItem.builder().entity("new").put(jsonEngine.createObjectNode().put("b", 3)).build(),
+            ImmutableTransactionItem.builder().entity("gone").delete(true).build(),
+            ImmutableTransactionItem.builder().entity("checked").addConditions(Condition.notExists("a")).build())));
+
+    assertThat(engine.readMany(tenantTable, List.of("checked", "gone", "new")))
+        .containsExactly(
+            Map.entry("checked", jsonEngine.createObjectNode().put("a", 1)),
+            Map.entry("gone", jsonEngine.createObjectNode().put("a", 2)));
+  }
+
+  @Test
+  void scan_segmentsAndPages() {
+    final Set<String> ids = IntStream.range(0, 60).mapToObj(i -> "id-" + i).collect(Collectors.toSet());
+    ids.forEach(id -> engine.write(tenantTable, id, jsonEngine.createObjectNode().put("a", 1).put("b", 2)));
+    final List<String> scanned = new ArrayList<>();
+    final int totalSegments = 3;
+    for (int segment = 0; segment < totalSegments; segment++) {
+      Optional<ScanPosition> position = Optional.empty();
+      do {
+        final ScanRequest request = ImmutableScanRequest.builder()
+            .segment(segment).totalSegments(totalSegments).limit(7).startAfter(position).build();
+        final List<String> page = new ArrayList<>();
+        position = engine.scan(tenantTable, request, (id, node) -> {
+          assertThat(node).isEqualTo(jsonEngine.createObjectNode().put("a", 1).put("b", 2));
+          page.add(id);
+        });
+        assertThat(page).hasSizeLessThanOrEqualTo(7);
+        position.ifPresent(p -> assertThat(page).hasSize(7));
+        scanned.addAll(page);
+      } while (position.isPresent());
+    }
+
+    assertThat(scanned).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(ids);
+  }
+
+  @Test
+  void scan_exactlyLimit() {
+    IntStream.range(0, 5).forEach(i -> engine.write(tenantTable, "id-" + i, jsonEngine.createObjectNode().put("a", i)));
+    final List<String> scanned = new ArrayList<>();
+
+    assertThat(engine.scan(tenantTable, ImmutableScanRequest.builder().limit(5).build(), (id, node) -> scanned.add(id)))
+        .isEmpty();
+    assertThat(scanned).hasSize(5);
+  }
+
+  @Test
+  void scan_empty() {
+    final List<String> scanned = new ArrayList<>();
+
+    assertThat(engine.scan(tenantTable, ImmutableScanRequest.builder().limit(5).build(), (id, node) -> scanned.add(id)))
+        .isEmpty();
+    assertThat(scanned).isEmpty();
+  }
+
+  @Test
+  void update_setsAndRemoves() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("b", 2).put("c", 3));
+    final ObjectNode patch = jsonEngine.createObjectNode().put("a", 10).put("d", 4);
+    patch.putNull("b");
+
+    assertThat(engine.update(tenantTable, ENTITY, patch)).isTrue();
+
+    assertThat(engine.read(tenantTable, ENTITY))
+        .contains(jsonEngine.createObjectNode().put("a", 10).put("c", 3).put("d", 4));
+  }
+
+  @Test
+  void update_notFound() {
+    assertThat(engine.update(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1))).isFalse();
+    assertThat(engine.read(tenantTable, ENTITY)).isEmpty();
+  }
+
+  @Test
+  void increment_existing() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("count", 5));
+
+    assertThat(engine.increment(tenantTable, ENTITY, "count", 3)).isEqualTo(8);
+    assertThat(engine.increment(tenantTable, ENTITY, "count", -10)).isEqualTo(-2);
+    assertThat(engine.read(tenantTable, ENTITY))
+        .contains(jsonEngine.createObjectNode().put("a", 1).put("count", -2));
+  }
+
+  @Test
+  void increment_missing() {
+    assertThat(engine.increment(tenantTable, ENTITY, "count", 3)).isEqualTo(3);
+    assertThat(engine.read(tenantTable, ENTITY)).contains(jsonEngine.createObjectNode().put("count", 3));
+  }
+
+  @Test
+  void increment_withAttributes() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("count", 5).put("v", 1));
+
+    assertThat(engine.increment(tenantTable, ENTITY, "count", 3, jsonEngine.createObjectNode().put("v", 2)))
+        .isEqualTo(8);
+    assertThat(engine.read(tenantTable, ENTITY))
+        .contains(jsonEngine.createObjectNode().put("count", 8).put("v", 2));
+  }
+
+  @Test
+  void increment_withAttributes_notANumber_noChanges() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("name", "fred").put("v", 1);
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThatExceptionOfType(InvalidAttributeException.class)
+        .isThrownBy(() -> engine.increment(tenantTable, ENTITY, "name", 1, jsonEngine.createObjectNode().put("v", 2)));
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void increment_pastInteger() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("count", Integer.MAX_VALUE));
+
+    assertThat(engine.increment(tenantTable, ENTITY, "count", 1)).isEqualTo(Integer.MAX_VALUE + 1L);
+    assertThat(engine.read(tenantTable, ENTITY))
+        .contains(jsonEngine.createObjectNode().put("count", Integer.MAX_VALUE + 1L));
+  }
+
+  @Test
+  void increment_notANumber() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("name", "fred"));
+
+    assertThatExceptionOfType(InvalidAttributeException.class)
+        .isThrownBy(() -> engine.increment(tenantTable, ENTITY, "name", 1));
+  }
+
+  @Test
+  void increment_double() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("count", 1.5));
+
+    assertThatExceptionOfType(InvalidAttributeException.class)
+        .isThrownBy(() -> engine.increment(tenantTable, ENTITY, "count", 1));
+  }
+
+  @Test
+  void write_conditions_hold() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("name", "fred"));
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 2);
+
+    engine.write(tenantTable, ENTITY, data, List.of(
+        Condition.exists("a"),
+        Condition.notExists("b"),
+        Condition.equalTo("a", IntNode.valueOf(1)),
+        Condition.equalTo("name", TextNode.valueOf("fred"))));
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void write_conditions_fail() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1);
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 2),
+            List.of(Condition.exists("a"), Condition.equalTo("a", IntNode.valueOf(5)))));
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 2),
+            List.of(Condition.notExists("a"))));
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void write_conditions_newEntity() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1);
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ENTITY, data, List.of(Condition.exists("a"))));
+    engine.write(tenantTable, ENTITY, data, List.of(Condition.notExists("a")));
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void delete_conditions() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1));
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.delete(tenantTable, ENTITY, List.of(Condition.equalTo("a", IntNode.valueOf(2)))));
+    assertThat(engine.read(tenantTable, ENTITY)).isPresent();
+    assertThat(engine.delete(tenantTable, ENTITY, List.of(Condition.equalTo("a", IntNode.valueOf(1))))).isTrue();
+    assertThat(engine.read(tenantTable, ENTITY)).isEmpty();
+  }
+
+  @Test
+  void delete() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1));
+
+    assertThat(engine.delete(tenantTable, ENTITY)).isTrue();
+    assertThat(engine.read(tenantTable, ENTITY)).isEmpty();
+    assertThat(engine.delete(tenantTable, ENTITY)).isFalse();
+  }
+
+  @Test
+  void lookup() {
+    engine.write(tenantTable, "b", jsonEngine.createObjectNode().put("email", "x@y.com").put("a", 1));
+    engine.write(tenantTable, "a", jsonEngine.createObjectNode().put("email", "x@y.com").put("a", 2));
+    engine.write(tenantTable, "c", jsonEngine.createObjectNode().put("email", "other@y.com").put("a", 1));
+
+    final QueryResult result = engine.lookup(tenantTable, lookupRequest("email", TextNode.valueOf("x@y.com")).build());
+
+    assertThat(result.entities()).containsExactly(
+        Map.entry("a", jsonEngine.createObjectNode().put("email", "x@y.com").put("a", 2)),
+        Map.entry("b", jsonEngine.createObjectNode().put("email", "x@y.com").put("a", 1)));
+    assertThat(result.lastSortKey()).isEmpty();
+    assertThat(engine.lookup(tenantTable, lookupRequest("a", IntNode.valueOf(1)).build()).entities())
+        .containsOnlyKeys("b", "c");
+    assertThat(engine.lookup(tenantTable, lookupRequest("a", TextNode.valueOf("1")).build()).entities())
+        .isEmpty();
+  }
+
+  @Test
+  void lookup_types() {
+    engine.write(tenantTable, "a", jsonEngine.createObjectNode().put("flag", true).put("score", 1.5).put("bytes", new byte[]{1, 2}));
+    engine.write(tenantTable, "b", jsonEngine.createObjectNode().put("flag", false).put("score", 2.5).putNull("bytes"));
+    engine.write(tenantTable, "c", jsonEngine.createObjectNode().put("flag", 1).put("score", 1));
+
+    assertThat(engine.lookup(tenantTable, lookupRequest("flag", BooleanNode.TRUE).build()).entities()).containsOnlyKeys("a");
+    assertThat(engine.lookup(tenantTable, lookupRequest("flag", IntNode.valueOf(1)).build()).entities()).containsOnlyKeys("c");
+    assertThat(engine.lookup(tenantTable, lookupRequest("bytes", NullNode.getInstance()).build()).entities()).containsOnlyKeys("b");
+  }
+
+  @Test
+  void lookup_unindexedTypes() {
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> engine.lookup(tenantTable, lookupRequest("score", DoubleNode.valueOf(2.5)).build()));
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> engine.lookup(tenantTable, lookupRequest("bytes", BinaryNode.valueOf(new byte[]{1, 2})).build()));
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> engine.lookup(tenantTable, lookupRequest("doc", jsonEngine.createObjectNode().put("a", 1)).build()));
+  }
+
+  @Test
+  void lookup_legacyQuotedString() {
+    sqlEngine.executePreparedTenant(tenantTable,
+        "insert into TENANT_DATA (ID, C_COL, HASH, C_DATA_TYPE, C_DATA) values (?, 'name', ?, 'QUOTED', ?)", (ps) -> {
+          try {
+            ps.setString(1, "legacy");
+            ps.setInt(2, engine.hash("legacy"));
+            ps.setString(3, "\"fred \\\"quoted\\\"\"");
+            return ps.executeUpdate();
+          } catch (SQLException e) {
+            throw new IllegalArgumentException(e);
+          }
+        });
+    engine.write(tenantTable, "current", jsonEngine.createObjectNode().put("name", "fred \"quoted\""));
+
+    assertThat(engine.lookup(tenantTable, lookupRequest("name", TextNode.valueOf("fred \"quoted\"")).build()).entities())
+        .containsOnlyKeys("legacy", "current");
+  }
+
+  @Test
+  void lookup_followsWritesAndDeletes() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("email", "x@y.com"));
+    engine.update(tenantTable, ENTITY, jsonEngine.createObjectNode().put("email", "new@y.com"));
+
+    assertThat(engine.lookup(tenantTable, lookupRequest("email", TextNode.valueOf("x@y.com")).build()).entities())
+        .isEmpty();
+    assertThat(engine.lookup(tenantTable, lookupRequest("email", TextNode.valueOf("new@y.com")).build()).entities())
+        .containsOnlyKeys(ENTITY);
+
+    engine.delete(tenantTable, ENTITY);
+
+    assertThat(engine.lookup(tenantTable, lookupRequest("email", TextNode.valueOf("new@y.com")).build()).entities())
+        .isEmpty();
+  }
+
+  @Test
+  void lookup_pages() {
+    final List<String> expected = IntStream.range(0, 25).mapToObj(i -> String.format("id%02d", i)).toList();
+    expected.forEach(id -> engine.write(tenantTable, id, jsonEngine.createObjectNode().put("group", 7).put("id", id)));
+    final List<String> found = new ArrayList<>();
+
+    QueryResult result = engine.lookup(tenantTable, lookupRequest("group", IntNode.valueOf(7)).limit(10).build());
+    found.addAll(result.entities().keySet());
+    while (result.lastSortKey().isPresent()) {
+      result = engine.lookup(tenantTable, lookupRequest("group", IntNode.valueOf(7)).limit(10).startAfter(result.lastSortKey()).build());
+      found.addAll(result.entities().keySet());
+    }
+
+    assertThat(found).containsExactlyElementsOf(expected);
+  }
+
+  private ImmutableIndexLookupRequest.Builder lookupRequest(final String attribute, final JsonNode value) {
+    return ImmutableIndexLookupRequest.builder().attribute(attribute).value(value).limit(100);
+  }
+
+  private Object storedValue(final String column, final String valueColumn) {
+    return sqlEngine.executePreparedTenant(tenantTable,
+        "select " + valueColumn + " from TENANT_DATA where ID = ? and C_COL = ?", (ps) -> {
+          try {
+            ps.setString(1, ENTITY);
+            ps.setString(2, column);
+            try (final ResultSet rs = ps.executeQuery()) {
+              rs.next();
+              return rs.getObject(1);
+            }
+          } catch (SQLException e) {
+            throw new IllegalArgumentException(e);
+          }
+        });
+  }
+
+  private int rowCount() {
+    return sqlEngine.executePreparedTenant(tenantTable, "select count(*) from TENANT_DATA where ID = ?", (ps) -> {
+      try {
+        ps.setString(1, ENTITY);
+        try (final ResultSet rs = ps.executeQuery()) {
+          rs.next();
+          return rs.getInt(1);
+        }
+      } catch (SQLException e) {
+        throw new IllegalArgumentException(e);
+      }
+    });
+  }
+
+}
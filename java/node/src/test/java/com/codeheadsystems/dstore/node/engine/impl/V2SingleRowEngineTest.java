@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.common.factory.ObjectMapperFactory;
+import com.codeheadsystems.dstore.node.BaseSQLTest;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
+import com.codeheadsystems.dstore.node.exception.ConditionFailedException;
+import com.codeheadsystems.dstore.node.exception.InvalidAttributeException;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ImmutableScanRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
+import com.codeheadsystems.dstore.node.model.ImmutableTransactionItem;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import com.codeheadsystems.dstore.node.model.ScanRequest;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class V2SingleRowEngineTest extends BaseSQLTest {
+
+  private static final String ENTITY = "entity";
+
+  private JsonEngine jsonEngine;
+  private TenantTable tenantTable;
+  private V2SingleRowEngine engine;
+
+  @BeforeEach
+  void setup() {
+    jsonEngine = new JsonEngine(new ObjectMapperFactory().generate());
+    tenantTable = ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from("tenant", "table"))
+        .hashStart(UUID.randomUUID().toString())
+        .hashEnd(UUID.randomUUID().toString())
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion(V2SingleRowEngine.DEFINITION_NAME)
+        .key(UUID.randomUUID().toString())
+        .nonce(UUID.randomUUID().toString())
+        .primaryKey("id")
+        .build();
+    engine = new V2SingleRowEngine(metrics, sqlEngine, new BinaryDocumentEngine(jsonEngine), jsonEngine);
+  }
+
+  @Test
+  void write_read() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1).put("b", 2);
+
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void write_overwrite_removesMissingAttributes() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("b", 2));
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 3).put("c", 4);
+
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+    assertThat(rowCount()).isEqualTo(1);
+  }
+
+  @Test
+  void write_unknownType_leavesExisting() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1);
+    engine.write(tenantTable, ENTITY, data);
+    final ObjectNode bad = jsonEngine.createObjectNode().put("a", 2);
+    bad.putArray("b");
+
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ENTITY, bad));
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void read_attributes() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("b", 2).put("c", 3));
+
+    assertThat(engine.read(tenantTable, ENTITY, List.of("a", "c", "missing")))
+        .contains(jsonEngine.createObjectNode().put("a", 1).put("c", 3));
+    assertThat(engine.read(tenantTable, ENTITY, List.of("missing")))
+        .contains(jsonEngine.createObjectNode());
+    assertThat(engine.read(tenantTable, ENTITY, List.of()))
+        .contains(jsonEngine.createObjectNode().put("a", 1).put("b", 2).put("c", 3));
+  }
+
+  @Test
+  void read_attributes_notFound() {
+    assertThat(engine.read(tenantTable, ENTITY, List.of("a"))).isEmpty();
+  }
+
+  @Test
+  void readMany() {
+    final List<String> ids = IntStream.range(0, 150).mapToObj(i -> "id-" + i).toList();
+    ids.forEach(id -> engine.write(tenantTable, id, jsonEngine.createObjectNode().put("a", id.length())));
+    final List<String> request = new ArrayList<>();
+    request.add("missing");
+    for (int i = ids.size() - 1; i >= 0; i -= 2) {
+      request.add(ids.get(i));
+    }
+    request.add(ids.get(ids.size() - 1));
+
+    final Map<String, JsonNode> result = engine.readMany(tenantTable, request);
+
+    assertThat(result.keySet()).containsExactlyElementsOf(request.stream().skip(1).distinct().toList());
+    assertThat(result.get("id-149")).isEqualTo(jsonEngine.createObjectNode().put("a", 6));
+  }
+
+  @Test
+  void readMany_empty() {
+    assertThat(engine.readMany(tenantTable, List.of())).isEmpty();
+  }
+
+  @Test
+  void writeMany() {
+    engine.write(tenantTable, "keep", jsonEngine.createObjectNode().put("a", 1));
+    engine.write(tenantTable, "gone", jsonEngine.createObjectNode().put("a", 2));
+    engine.write(tenantTable, "replace", jsonEngine.createObjectNode().put("a", 3).put("b", 4));
+    final Map<String, JsonNode> writes = Map.of(
+        "replace", jsonEngine.createObjectNode().put("c", 5),
+        "new", jsonEngine.createObjectNode().put("d", 6));
+
+    engine.writeMany(tenantTable, writes, List.of("gone", "missing"));
+
+    assertThat(engine.readMany(tenantTable, List.of("keep", "gone", "replace", "new")))
+        .containsExactly(
+            Map.entry("keep", jsonEngine.createObjectNode().put("a", 1)),
+            Map.entry("replace", jsonEngine.createObjectNode().put("c", 5)),
+            Map.entry("new", jsonEngine.createObjectNode().put("d", 6)));
+  }
+
+  @Test
+  void writeMany_badType_noChanges() {
+    engine.write(tenantTable, "keep", jsonEngine.createObjectNode().put("a", 1));
+    final ObjectNode bad = jsonEngine.createObjectNode();
+    bad.putArray("b");
+
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.writeMany(tenantTable, Map.of("new", bad), List.of("keep")));
+
+    assertThat(engine.read(tenantTable, "keep")).contains(jsonEngine.createObjectNode().put("a", 1));
+  }
+
+  @Test
+  void transact() {
+    engine.write(tenantTable, "checked", jsonEngine.createObjectNode().put("a", 1));
+    engine.write(tenantTable, "replace", jsonEngine.createObjectNode().put("a", 2).put("b", 3));
+    engine.write(tenantTable, "gone", jsonEngine.createObjectNode().put("a", 4));
+
+    engine.transact(tenantTable, List.of(
+        ImmutableTransactionItem.builder().entity("checked").addConditions(Condition.equalTo("a", IntNode.valueOf(1))).build(),
+        ImmutableTransactionItem.builder().entity("replace").put(jsonEngine.createObjectNode().put("c", 5))
+            .addConditions(Condition.exists("b")).build(),
+        ImmutableTransactionItem.builder().entity("new").put(jsonEngine.createObjectNode().put("d", 6))
+            .addConditions(Condition.notExists("d")).build(),
+        ImmutableTransactionItem.builder().entity("gone").delete(true).build()));
+
+    assertThat(engine.readMany(tenantTable, List.of("checked", "replace", "new", "gone")))
+        .containsExactly(
+            Map.entry("checked", jsonEngine.createObjectNode().put("a", 1)),
+            Map.entry("replace", jsonEngine.createObjectNode().put("c", 5)),
+            Map.entry("new", jsonEngine.createObjectNode().put("d", 6)));
+  }
+
+  @Test
+  void transact_conditionFails_noChanges() {
+    engine.write(tenantTable, "checked", jsonEngine.createObjectNode().put("a", 1));
+    engine.write(tenantTable, "gone", jsonEngine.createObjectNode().put("a", 2));
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.transact(tenantTable, List.of(
+            ImmutableTransactionItem.builder().entity("new").put(jsonEngine.createObjectNode().put("b", 3)).build(),
+            ImmutableTransactionItem.builder().entity("gone").delete(true).build(),
+            ImmutableTransactionItem.builder().entity("checked").addConditions(Condition.notExists("a")).build())));
+
+    assertThat(engine.readMany(tenantTable, List.of("checked", "gone", "new")))
+        .containsExactly(
+            Map.entry("checked", jsonEngine.createObjectNode().put("a", 1)),
+            Map.entry("gone", jsonEngine.createObjectNode().put("a", 2)));
+  }
+
+  @Test
+  void scan_segmentsAndPages() {
+    final Set<String> ids = IntStream.range(0, 60).mapToObj(i -> "id-" + i).collect(Collectors.toSet());
+    ids.forEach(id -> engine.write(tenantTable, id, jsonEngine.createObjectNode().put("a", 1).put("b", 2)));
+    final List<String> scanned = new ArrayList<>();
+    final int totalSegments = 3;
+    for (int segment = 0; segment < totalSegments; segment++) {
+      Optional<ScanPosition> position = Optional.empty();
+      do {
+        final ScanRequest request = ImmutableScanRequest.builder()
+            .segment(segment).totalSegments(totalSegments).limit(7).startAfter(position).build();
+        final List<String> page = new ArrayList<>();
+        position = engine.scan(tenantTable, request, (id, node) -> {
+          assertThat(node).isEqualTo(jsonEngine.createObjectNode().put("a", 1).put("b", 2));
+          page.add(id);
+        });
+        assertThat(page).hasSizeLessThanOrEqualTo(7);
+        position.ifPresent(p -> assertThat(page).hasSize(7));
+        scanned.addAll(page);
+      } while (position.isPresent());
+    }
+
+    assertThat(scanned).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(ids);
+  }
+
+  @Test
+  void scan_empty() {
+    final List<String> scanned = new ArrayList<>();
+
+    assertThat(engine.scan(tenantTable, ImmutableScanRequest.builder().limit(5).build(), (id, node) -> scanned.add(id)))
+        .isEmpty();
+    assertThat(scanned).isEmpty();
+  }
+
+  @Test
+  void update_setsAndRemoves() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("b", 2).put("c", 3));
+    final ObjectNode patch = jsonEngine.createObjectNode().put("a", 10).put("d", 4);
+    patch.putNull("b");
+
+    assertThat(engine.update(tenantTable, ENTITY, patch)).isTrue();
+
+    assertThat(engine.read(tenantTable, ENTITY))
+        .contains(jsonEngine.createObjectNode().put("a", 10).put("c", 3).put("d", 4));
+  }
+
+  @Test
+  void update_removesLastAttribute() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1));
+    final ObjectNode patch = jsonEngine.createObjectNode();
+    patch.putNull("a");
+
+    assertThat(engine.update(tenantTable, ENTITY, patch)).isTrue();
+
+    assertThat(engine.read(tenantTable, ENTITY)).isEmpty();
+  }
+
+  @Test
+  void update_notFound() {
+    assertThat(engine.update(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1))).isFalse();
+    assertThat(engine.read(tenantTable, ENTITY)).isEmpty();
+  }
+
+  @Test
+  void increment_existing() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("count", 5));
+
+    assertThat(engine.increment(tenantTable, ENTITY, "count", 3)).isEqualTo(8);
+    assertThat(engine.increment(tenantTable, ENTITY, "count", -10)).isEqualTo(-2);
+    assertThat(engine.read(tenantTable, ENTITY))
+        .contains(jsonEngine.createObjectNode().put("a", 1).put("count", -2));
+  }
+
+  @Test
+  void increment_missing() {
+    assertThat(engine.increment(tenantTable, ENTITY, "count", 3)).isEqualTo(3);
+    assertThat(engine.read(tenantTable, ENTITY)).contains(jsonEngine.createObjectNode().put("count", 3));
+  }
+
+  @Test
+  void increment_withAttributes() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("count", 5).put("v", 1));
+
+    assertThat(engine.increment(tenantTable, ENTITY, "count", 3, jsonEngine.createObjectNode().put("v", 2)))
+        .isEqualTo(8);
+    assertThat(engine.read(tenantTable, ENTITY))
+        .contains(jsonEngine.createObjectNode().put("count", 8).put("v", 2));
+  }
+
+  @Test
+  void increment_withAttributes_notANumber_noChanges() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("name", "fred").put("v", 1);
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThatExceptionOfType(InvalidAttributeException.class)
+        .isThrownBy(() -> engine.increment(tenantTable, ENTITY, "name", 1, jsonEngine.createObjectNode().put("v", 2)));
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void increment_pastInteger() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("count", Integer.MAX_VALUE));
+
+    assertThat(engine.increment(tenantTable, ENTITY, "count", 1)).isEqualTo(Integer.MAX_VALUE + 1L);
+    assertThat(engine.read(tenantTable, ENTITY))
+        .contains(jsonEngine.createObjectNode().put("count", Integer.MAX_VALUE + 1L));
+  }
+
+  @Test
+  void increment_notANumber() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("name", "fred"));
+
+    assertThatExceptionOfType(InvalidAttributeException.class)
+        .isThrownBy(() -> engine.increment(tenantTable, ENTITY, "name", 1));
+  }
+
+  @Test
+  void write_conditions_hold() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1).put("name", "fred"));
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 2);
+
+    engine.write(tenantTable, ENTITY, data, List.of(
+        Condition.exists("a"),
+        Condition.notExists("b"),
+        Condition.equalTo("a", IntNode.valueOf(1)),
+        Condition.equalTo("name", TextNode.valueOf("fred"))));
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void write_conditions_fail() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1);
+    engine.write(tenantTable, ENTITY, data);
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 2),
+            List.of(Condition.exists("a"), Condition.equalTo("a", IntNode.valueOf(5)))));
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 2),
+            List.of(Condition.notExists("a"))));
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void write_conditions_newEntity() {
+    final ObjectNode data = jsonEngine.createObjectNode().put("a", 1);
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ENTITY, data, List.of(Condition.exists("a"))));
+    engine.write(tenantTable, ENTITY, data, List.of(Condition.notExists("a")));
+
+    assertThat(engine.read(tenantTable, ENTITY)).contains(data);
+  }
+
+  @Test
+  void delete_conditions() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1));
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> engine.delete(tenantTable, ENTITY, List.of(Condition.equalTo("a", IntNode.valueOf(2)))));
+    assertThat(engine.read(tenantTable, ENTITY)).isPresent();
+    assertThat(engine.delete(tenantTable, ENTITY, List.of(Condition.equalTo("a", IntNode.valueOf(1))))).isTrue();
+    assertThat(engine.read(tenantTable, ENTITY)).isEmpty();
+  }
+
+  @Test
+  void delete() {
+    engine.write(tenantTable, ENTITY, jsonEngine.createObjectNode().put("a", 1));
+
+    assertThat(engine.delete(tenantTable, ENTITY)).isTrue();
+    assertThat(engine.read(tenantTable, ENTITY)).isEmpty();
+    assertThat(engine.delete(tenantTable, ENTITY)).isFalse();
+  }
+
+  private int rowCount() {
+    return sqlEngine.executePreparedTenant(tenantTable, "select count(*) from TENANT_DOCUMENT where ID = ?", (ps) -> {
+      try {
+        ps.setString(1, ENTITY);
+        try (final ResultSet rs = ps.executeQuery()) {
+          rs.next();
+          return rs.getInt(1);
+        }
+      } catch (SQLException e) {
+        throw new IllegalArgumentException(e);
+      }
+    });
+  }
+
+}
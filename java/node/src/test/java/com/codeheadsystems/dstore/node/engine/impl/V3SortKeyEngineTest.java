@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.engine.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.common.factory.ObjectMapperFactory;
+import com.codeheadsystems.dstore.node.BaseSQLTest;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
+import com.codeheadsystems.dstore.node.model.ImmutableQueryRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableScanRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
+import com.codeheadsystems.dstore.node.model.QueryRequest;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class V3SortKeyEngineTest extends BaseSQLTest {
+
+  private static final String PARTITION = "user01";
+  private static final List<String> SORT_KEYS = List.of(
+      "2023-01-15", "2023-02-01", "2023-02-11T10:00:00Z", "2023-02-28", "2023-03-01");
+
+  private JsonEngine jsonEngine;
+  private TenantTable tenantTable;
+  private V3SortKeyEngine engine;
+
+  @BeforeEach
+  void setup() {
+    jsonEngine = new JsonEngine(new ObjectMapperFactory().generate());
+    tenantTable = ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from("tenant", "table"))
+        .hashStart(UUID.randomUUID().toString())
+        .hashEnd(UUID.randomUUID().toString())
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion(V3SortKeyEngine.DEFINITION_NAME)
+        .key(UUID.randomUUID().toString())
+        .nonce(UUID.randomUUID().toString())
+        .primaryKey("id")
+        .build();
+    engine = new V3SortKeyEngine(metrics, sqlEngine, new BinaryDocumentEngine(jsonEngine), jsonEngine);
+    SORT_KEYS.forEach(sortKey -> engine.write(tenantTable, V3SortKeyEngine.entity(PARTITION, sortKey), data(sortKey)));
+    engine.write(tenantTable, V3SortKeyEngine.entity("user02", "2023-02-05"), data("2023-02-05"));
+  }
+
+  @Test
+  void write_read_update_delete() {
+    final String entity = V3SortKeyEngine.entity(PARTITION, "2023-02-01");
+
+    assertThat(engine.read(tenantTable, entity)).contains(data("2023-02-01"));
+    assertThat(engine.update(tenantTable, entity, jsonEngine.createObjectNode().put("b", 2))).isTrue();
+    assertThat(engine.read(tenantTable, entity)).contains(data("2023-02-01").put("b", 2));
+    assertThat(engine.delete(tenantTable, entity)).isTrue();
+    assertThat(engine.read(tenantTable, entity)).isEmpty();
+  }
+
+  @Test
+  void write_withoutSortKey() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.write(tenantTable, "nosortkey", data("x")));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.write(tenantTable, ":nopartition", data("x")));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> engine.write(tenantTable, "nosortkey:", data("x")));
+  }
+
+  @Test
+  void query_partition() {
+    final QueryResult result = engine.query(tenantTable, request().build());
+
+    assertThat(sortKeys(result)).containsExactlyElementsOf(SORT_KEYS);
+    assertThat(result.entities().get(V3SortKeyEngine.entity(PARTITION, "2023-03-01"))).isEqualTo(data("2023-03-01"));
+    assertThat(result.lastSortKey()).isEmpty();
+  }
+
+  @Test
+  void query_reverse() {
+    final QueryResult result = engine.query(tenantTable, request().forward(false).build());
+
+    assertThat(sortKeys(result)).containsExactly("2023-03-01", "2023-02-28", "2023-02-11T10:00:00Z", "2023-02-01", "2023-01-15");
+  }
+
+  @Test
+  void query_beginsWith() {
+    final QueryResult result = engine.query(tenantTable, request()
+        .operator(QueryRequest.Operator.BEGINS_WITH).value("2023-02").build());
+
+    assertThat(sortKeys(result)).containsExactly("2023-02-01", "2023-02-11T10:00:00Z", "2023-02-28");
+  }
+
+  @Test
+  void query_between() {
+    final QueryResult result = engine.query(tenantTable, request()
+        .operator(QueryRequest.Operator.BETWEEN).value("2023-02-01").upperValue("2023-02-28").build());
+
+    assertThat(sortKeys(result)).containsExactly("2023-02-01", "2023-02-11T10:00:00Z", "2023-02-28");
+  }
+
+  @Test
+  void query_greaterThan() {
+    final QueryResult result = engine.query(tenantTable, request()
+        .operator(QueryRequest.Operator.GREATER_THAN).value("2023-02-28").build());
+
+    assertThat(sortKeys(result)).containsExactly("2023-03-01");
+  }
+
+  @Test
+  void query_lessThan() {
+    final QueryResult result = engine.query(tenantTable, request()
+        .operator(QueryRequest.Operator.LESS_THAN).value("2023-02-01").build());
+
+    assertThat(sortKeys(result)).containsExactly("2023-01-15");
+  }
+
+  @Test
+  void query_pages() {
+    for (boolean forward : List.of(true, false)) {
+      final List<String> found = new ArrayList<>();
+      QueryResult result = engine.query(tenantTable, request().limit(2).forward(forward).build());
+      found.addAll(sortKeys(result));
+      while (result.lastSortKey().isPresent()) {
+        result = engine.query(tenantTable, request().limit(2).forward(forward).startAfter(result.lastSortKey()).build());
+        found.addAll(sortKeys(result));
+      }
+      assertThat(found).hasSameElementsAs(SORT_KEYS).hasSize(SORT_KEYS.size());
+    }
+  }
+
+  @Test
+  void query_unknownPartition() {
+    assertThat(engine.query(tenantTable, request().partitionKey("nobody").build()).entities()).isEmpty();
+  }
+
+  @Test
+  void scan_seesEveryPartition() {
+    final Map<String, JsonNode> found = new HashMap<>();
+
+    engine.scan(tenantTable, ImmutableScanRequest.builder().limit(100).build(), found::put);
+
+    assertThat(found).hasSize(SORT_KEYS.size() + 1);
+  }
+
+  private ImmutableQueryRequest.Builder request() {
+    return ImmutableQueryRequest.builder().partitionKey(PARTITION).limit(100);
+  }
+
+  private List<String> sortKeys(final QueryResult result) {
+    return result.entities().keySet().stream()
+        .map(entity -> entity.substring(entity.indexOf(V3SortKeyEngine.SEPARATOR) + 1))
+        .toList();
+  }
+
+  private ObjectNode data(final String sortKey) {
+    return jsonEngine.createObjectNode().put("when", sortKey).put("a", 1);
+  }
+
+}
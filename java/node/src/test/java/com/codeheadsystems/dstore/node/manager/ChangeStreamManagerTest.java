@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.manager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.model.ChangePage;
+import com.codeheadsystems.dstore.node.model.ChangeRecord;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.test.BaseMetricTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ChangeStreamManagerTest extends BaseMetricTest {
+
+  private static final TenantTableIdentifier IDENTIFIER = TenantTableIdentifier.from("tenant", "table");
+
+  private ChangeStreamManager manager;
+
+  @BeforeEach
+  void setup() {
+    final NodeConfiguration configuration = new NodeConfiguration();
+    configuration.setChangeStreamCapacity(3);
+    manager = new ChangeStreamManager(metrics, configuration);
+  }
+
+  @Test
+  void append_read() {
+    final JsonNode node = JsonNodeFactory.instance.objectNode().put("a", 1);
+    manager.append(IDENTIFIER, "a", Optional.empty(), Optional.of(node));
+    manager.append(IDENTIFIER, "a", Optional.of(node), Optional.empty());
+
+    final ChangePage page = manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0);
+
+    assertThat(page.records()).extracting(ChangeRecord::sequence).containsExactly(1L, 2L);
+    assertThat(page.records().get(0).newImage()).contains(node);
+    assertThat(page.records().get(1).oldImage()).contains(node);
+    assertThat(page.next()).isEqualTo(2);
+    assertThat(page.trimmed()).isFalse();
+    assertThat(manager.read(IDENTIFIER, Optional.of(page.epoch()), 1, 10, 0).records())
+        .extracting(ChangeRecord::sequence).containsExactly(2L);
+    assertThat(manager.read(IDENTIFIER, Optional.empty(), 0, 1, 0).next()).isEqualTo(1);
+  }
+
+  @Test
+  void read_empty() {
+    final ChangePage page = manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0);
+
+    assertThat(page.records()).isEmpty();
+    assertThat(page.next()).isZero();
+    assertThat(page.trimmed()).isFalse();
+  }
+
+  @Test
+  void read_noChanges_keepsNoStream() {
+    final String epoch = manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0).epoch();
+
+    assertThat(manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0).epoch()).isNotEqualTo(epoch);
+  }
+
+  @Test
+  void read_noChanges_checkpointTrimmed() {
+    assertThat(manager.read(IDENTIFIER, Optional.of("epoch"), 5, 10, 0).trimmed()).isTrue();
+  }
+
+  @Test
+  void read_trimmed() {
+    for (int i = 0; i < 5; i++) {
+      manager.append(IDENTIFIER, "e" + i, Optional.empty(), Optional.empty());
+    }
+
+    final Optional<String> epoch = Optional.of(manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0).epoch());
+
+    final ChangePage page = manager.read(IDENTIFIER, epoch, 1, 10, 0);
+
+    assertThat(page.records()).extracting(ChangeRecord::sequence).containsExactly(3L, 4L, 5L);
+    assertThat(page.trimmed()).isTrue();
+    assertThat(manager.read(IDENTIFIER, epoch, 2, 10, 0).trimmed()).isFalse();
+  }
+
+  @Test
+  void read_aheadOfStream() {
+    manager.append(IDENTIFIER, "a", Optional.empty(), Optional.empty());
+    final Optional<String> epoch = Optional.of(manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0).epoch());
+
+    final ChangePage page = manager.read(IDENTIFIER, epoch, 10, 10, 0);
+
+    assertThat(page.records()).extracting(ChangeRecord::sequence).containsExactly(1L);
+    assertThat(page.trimmed()).isTrue();
+  }
+
+  @Test
+  void read_otherEpoch() {
+    manager.append(IDENTIFIER, "a", Optional.empty(), Optional.empty());
+    final String epoch = manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0).epoch();
+    manager.drop(IDENTIFIER);
+    for (int i = 0; i < 3; i++) {
+      manager.append(IDENTIFIER, "e" + i, Optional.empty(), Optional.empty());
+    }
+
+    final ChangePage page = manager.read(IDENTIFIER, Optional.of(epoch), 1, 10, 10_000);
+
+    assertThat(page.epoch()).isNotEqualTo(epoch);
+    assertThat(page.records()).extracting(ChangeRecord::sequence).containsExactly(1L, 2L, 3L);
+    assertThat(page.trimmed()).isTrue();
+    assertThat(manager.read(IDENTIFIER, Optional.empty(), 1, 10, 0).trimmed()).isTrue();
+    assertThat(manager.read(IDENTIFIER, Optional.of(page.epoch()), 1, 10, 0).trimmed()).isFalse();
+  }
+
+  @Test
+  void read_waitsForChange() throws Exception {
+    final CompletableFuture<ChangePage> future = CompletableFuture.supplyAsync(() -> manager.read(IDENTIFIER, Optional.empty(), 0, 10, 10_000));
+    Thread.sleep(100);
+    manager.append(IDENTIFIER, "a", Optional.empty(), Optional.empty());
+
+    assertThat(future.get(5, TimeUnit.SECONDS).records()).hasSize(1);
+  }
+
+  @Test
+  void read_waitTimesOut() {
+    assertThat(manager.read(IDENTIFIER, Optional.empty(), 0, 10, 50).records()).isEmpty();
+  }
+
+  @Test
+  void dropTenant() {
+    final TenantTableIdentifier other = TenantTableIdentifier.from("other", "table");
+    manager.append(IDENTIFIER, "a", Optional.empty(), Optional.empty());
+    manager.append(other, "a", Optional.empty(), Optional.empty());
+
+    manager.dropTenant("tenant");
+
+    assertThat(manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0).records()).isEmpty();
+    assertThat(manager.read(other, Optional.empty(), 0, 10, 0).records()).hasSize(1);
+  }
+
+  @Test
+  void drop() {
+    manager.append(IDENTIFIER, "a", Optional.empty(), Optional.empty());
+
+    manager.drop(IDENTIFIER);
+
+    assertThat(manager.read(IDENTIFIER, Optional.empty(), 0, 10, 0).records()).isEmpty();
+  }
+
+}
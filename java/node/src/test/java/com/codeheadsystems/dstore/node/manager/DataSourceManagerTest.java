@@ -18,21 +18,46 @@ package com.codeheadsystems.dstore.node.manager;
 
 import static com.codeheadsystems.dstore.node.manager.DataSourceManager.INTERNAL;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.codeheadsystems.dstore.node.NodeConfiguration;
 import com.codeheadsystems.dstore.node.engine.DatabaseConnectionEngine;
 import com.codeheadsystems.dstore.node.engine.DatabaseInitializationEngine;
+import com.codeheadsystems.dstore.node.engine.StorageCopyEngine;
+import com.codeheadsystems.dstore.node.engine.impl.EmbeddedConnectionPoolEngine;
+import com.codeheadsystems.dstore.node.engine.impl.V1SingleEntryEngine;
+import com.codeheadsystems.dstore.node.engine.impl.V2SingleRowEngine;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
 import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.test.BaseMetricTest;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
 import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -43,19 +68,29 @@ import org.mockito.junit.jupiter.MockitoExtension;
  * Then, we can make this a proper unit test.
  */
 @ExtendWith(MockitoExtension.class)
-class DataSourceManagerTest {
+class DataSourceManagerTest extends BaseMetricTest {
 
   private static final String CONNECTION_URL = "jdbc:hsqldb:mem:DataSourceManagerTest";
 
   @Mock private DatabaseInitializationEngine databaseInitializationEngine;
   @Mock private DatabaseConnectionEngine databaseConnectionEngine;
   @Mock private TenantTable tenantTable;
+  @Mock private Consumer<TenantTableIdentifier> closeListener;
   @Captor private ArgumentCaptor<Connection> connectionArgumentCaptor;
 
-  @InjectMocks private DataSourceManager dataSourceManager;
+  private EmbeddedConnectionPoolEngine connectionPoolEngine;
+  private DataSourceManager dataSourceManager;
+
+  @BeforeEach
+  void setup() {
+    connectionPoolEngine = spy(new EmbeddedConnectionPoolEngine(metrics, new NodeConfiguration()));
+    dataSourceManager = new DataSourceManager(databaseConnectionEngine, databaseInitializationEngine,
+        connectionPoolEngine, new StorageCopyEngine(), new NodeConfiguration());
+  }
 
   @Test
   void loadTenant_realInitialization() {
+    when(tenantTable.identifier()).thenReturn(TenantTableIdentifier.from("tenant", "table"));
     when(databaseConnectionEngine.getTenantConnectionUrl(tenantTable)).thenReturn(CONNECTION_URL);
     final DataSource dataSource = dataSourceManager.getDataSource(tenantTable);
     assertThat(dataSource).isNotNull();
@@ -73,4 +108,213 @@ class DataSourceManagerTest {
     verify(databaseInitializationEngine).initialize(connectionArgumentCaptor.capture(), eq(INTERNAL));
   }
 
+  @Test
+  void evict() {
+    whenTenantConnectionUrl();
+    final TenantTable table = table("tenant", "table", "key");
+    final DataSource dataSource = dataSourceManager.getDataSource(table);
+    assertThat(dataSourceManager.getDataSource(table)).isSameAs(dataSource);
+
+    dataSourceManager.evict(table.identifier());
+
+    verify(connectionPoolEngine, timeout(1000)).close(dataSource);
+    verify(databaseConnectionEngine, timeout(1000)).shutdown(anyString());
+    assertThat(dataSourceManager.getDataSource(table)).isNotSameAs(dataSource);
+  }
+
+  @Test
+  void evict_inUse_othersClosed() throws SQLException {
+    final String url = CONNECTION_URL + ":" + UUID.randomUUID() + ":";
+    when(databaseConnectionEngine.getTenantConnectionUrl(any()))
+        .thenAnswer(invocation -> url + ((TenantTable) invocation.getArgument(0)).identifier().tableName());
+    final TenantTable busy = table("tenant", "busy", "key");
+    final TenantTable idle = table("tenant", "idle", "key");
+    final Connection connection = dataSourceManager.getDataSource(busy).getConnection();
+    dataSourceManager.getDataSource(idle);
+
+    dataSourceManager.evict(busy.identifier());
+    dataSourceManager.evict(idle.identifier());
+
+    // The busy table's database waits for its connection, without holding up the other table.
+    verify(databaseConnectionEngine, timeout(1000)).shutdown(url + "idle");
+    verify(databaseConnectionEngine, never()).shutdown(url + "busy");
+    connection.close();
+    verify(databaseConnectionEngine, timeout(1000)).shutdown(url + "busy");
+  }
+
+  @Test
+  void evict_closeListener() {
+    whenTenantConnectionUrl();
+    final TenantTable table = table("tenant", "table", "key");
+    dataSourceManager.addCloseListener(closeListener);
+    dataSourceManager.getDataSource(table);
+
+    dataSourceManager.evict(table.identifier());
+
+    verify(closeListener, timeout(1000)).accept(table.identifier());
+  }
+
+  @Test
+  void getDataSource_recreatedTable() {
+    whenTenantConnectionUrl();
+    final DataSource dataSource = dataSourceManager.getDataSource(table("tenant", "table", "key"));
+
+    assertThat(dataSourceManager.getDataSource(table("tenant", "table", "newKey"))).isNotSameAs(dataSource);
+    verify(connectionPoolEngine, timeout(1000)).close(dataSource);
+  }
+
+  @Test
+  void evictTenant() {
+    whenTenantConnectionUrl();
+    final DataSource first = dataSourceManager.getDataSource(table("tenant", "first", "key"));
+    final DataSource second = dataSourceManager.getDataSource(table("tenant", "second", "key"));
+    final DataSource other = dataSourceManager.getDataSource(table("other", "first", "key"));
+
+    dataSourceManager.evictTenant("tenant");
+
+    verify(connectionPoolEngine, timeout(1000)).close(first);
+    verify(connectionPoolEngine, timeout(1000)).close(second);
+    verify(connectionPoolEngine, never()).close(other);
+  }
+
+  @Test
+  void drainAccessCounts() {
+    whenTenantConnectionUrl();
+    final TenantTable first = table("tenant", "first", "key");
+    dataSourceManager.getDataSource(first);
+    dataSourceManager.getDataSource(first);
+    dataSourceManager.warm(table("tenant", "second", "key"));
+
+    assertThat(dataSourceManager.drainAccessCounts()).containsExactly(entry(first.identifier(), 2L));
+    assertThat(dataSourceManager.drainAccessCounts()).isEmpty();
+  }
+
+  @Test
+  void stop() throws Exception {
+    whenTenantConnectionUrl();
+    when(databaseConnectionEngine.getInternalConnectionUrl()).thenReturn(CONNECTION_URL);
+    dataSourceManager.start();
+    final DataSource internal = dataSourceManager.getInternalDataSource().orElseThrow();
+    final DataSource tenant = dataSourceManager.getDataSource(table("tenant", "table", "key"));
+
+    dataSourceManager.stop();
+
+    verify(connectionPoolEngine).close(tenant);
+    verify(connectionPoolEngine).close(internal);
+    assertThat(dataSourceManager.isReady()).isFalse();
+  }
+
+  @Test
+  void migrate() throws Exception {
+    final DataSourceManager manager = storageManager();
+    final TenantTable dedicated = documentTable(Map.of());
+    final TenantTable shared = documentTable(Map.of(TenantTable.SHARD_PROPERTY, "3"));
+    insert(manager.getDataSource(dedicated), "first");
+    final Runnable commit = mock(Runnable.class);
+    final String dedicatedUrl = databaseConnectionEngine.getTenantConnectionUrl(dedicated);
+    final String shardUrl = databaseConnectionEngine.getShardConnectionUrl(3);
+
+    manager.migrate(dedicated, shared, commit);
+
+    verify(commit).run();
+    // The table's own database is shut down once copied, the shard is left open.
+    verify(databaseConnectionEngine, timeout(1000)).shutdown(dedicatedUrl);
+    verify(databaseConnectionEngine, never()).shutdown(shardUrl);
+    verify(databaseConnectionEngine, timeout(1000)).deleteTenantDatabase(dedicated);
+    // Callers still holding the table as it was get the moved storage.
+    final DataSource moved = manager.getDataSource(dedicated);
+    assertThat(ids(moved)).containsExactly("first");
+    try (final Connection connection = moved.getConnection()) {
+      assertThat(connection.getSchema()).isEqualTo("TABLE_SCHEMA");
+    }
+
+    insert(moved, "second");
+    // Reopened with the table as it was, it still finds the moved storage.
+    manager.evict(dedicated.identifier());
+    verify(connectionPoolEngine, timeout(1000)).close(moved);
+    assertThat(ids(manager.getDataSource(dedicated))).containsExactlyInAnyOrder("first", "second");
+
+    manager.migrate(shared, dedicated, () -> {
+    });
+
+    assertThat(ids(manager.getDataSource(dedicated))).containsExactlyInAnyOrder("first", "second");
+    manager.stop();
+  }
+
+  @Test
+  void migrate_commitFails() throws Exception {
+    final DataSourceManager manager = storageManager();
+    final TenantTable dedicated = documentTable(Map.of());
+    final TenantTable shared = documentTable(Map.of(TenantTable.SHARD_PROPERTY, "3"));
+    insert(manager.getDataSource(dedicated), "first");
+
+    assertThatExceptionOfType(IllegalStateException.class)
+        .isThrownBy(() -> manager.migrate(dedicated, shared, () -> {
+          throw new IllegalStateException("failed");
+        }));
+
+    assertThat(ids(manager.getDataSource(dedicated))).containsExactly("first");
+    manager.stop();
+  }
+
+  /**
+   * A manager with real liquibase, where tables in shared storage are all in one schema of their shard.
+   */
+  private DataSourceManager storageManager() {
+    final String url = CONNECTION_URL + ":" + UUID.randomUUID();
+    when(databaseConnectionEngine.getTenantConnectionUrl(any())).thenAnswer(invocation ->
+        url + ((TenantTable) invocation.getArgument(0)).storageShard().map(shard -> ":shard-" + shard).orElse(""));
+    when(databaseConnectionEngine.getShardConnectionUrl(anyInt()))
+        .thenAnswer(invocation -> url + ":shard-" + invocation.getArgument(0));
+    when(databaseConnectionEngine.getTenantSchema(any())).thenAnswer(invocation ->
+        ((TenantTable) invocation.getArgument(0)).storageShard().map(shard -> "TABLE_SCHEMA"));
+    return new DataSourceManager(databaseConnectionEngine, new DatabaseInitializationEngine(),
+        connectionPoolEngine, new StorageCopyEngine(), new NodeConfiguration());
+  }
+
+  private TenantTable documentTable(final Map<String, String> properties) {
+    return ImmutableTenantTable.copyOf(table("tenant", "table", "key"))
+        .withTableVersion(V2SingleRowEngine.DEFINITION_NAME)
+        .withProperties(properties);
+  }
+
+  private void insert(final DataSource dataSource, final String id) throws SQLException {
+    try (final Connection connection = dataSource.getConnection();
+         final PreparedStatement ps = connection.prepareStatement(
+             "insert into TENANT_DOCUMENT (ID, HASH, C_DOCUMENT) values (?, ?, ?)")) {
+      ps.setString(1, id);
+      ps.setLong(2, id.hashCode());
+      ps.setBytes(3, id.getBytes());
+      ps.execute();
+    }
+  }
+
+  private List<String> ids(final DataSource dataSource) throws SQLException {
+    final List<String> ids = new ArrayList<>();
+    try (final Connection connection = dataSource.getConnection();
+         final ResultSet rs = connection.createStatement().executeQuery("select ID from TENANT_DOCUMENT")) {
+      while (rs.next()) {
+        ids.add(rs.getString(1));
+      }
+    }
+    return ids;
+  }
+
+  private void whenTenantConnectionUrl() {
+    when(databaseConnectionEngine.getTenantConnectionUrl(any()))
+        .thenAnswer(invocation -> CONNECTION_URL + ":" + UUID.randomUUID());
+  }
+
+  private TenantTable table(final String tenantId, final String tableName, final String key) {
+    return ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from(tenantId, tableName))
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion(V1SingleEntryEngine.DEFINITION_NAME)
+        .key(key)
+        .nonce("nonce")
+        .primaryKey("id")
+        .build();
+  }
+
 }
\ No newline at end of file
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.manager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.common.factory.ObjectMapperFactory;
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.test.BaseMetricTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EntityCacheManagerTest extends BaseMetricTest {
+
+  private static final TenantTableIdentifier IDENTIFIER = TenantTableIdentifier.from("tenant", "table");
+  private static final String ENTITY = "entity";
+
+  private NodeConfiguration configuration;
+  private EntityCacheManager manager;
+  private AtomicInteger loads;
+  private JsonNode data;
+
+  @BeforeEach
+  void setup() {
+    configuration = new NodeConfiguration();
+    manager = manager();
+    loads = new AtomicInteger();
+    data = JsonNodeFactory.instance.objectNode().put("a", 1).put("b", "two");
+  }
+
+  @Test
+  void read_notCached() {
+    final TenantTable tenantTable = tenantTable(Optional.empty());
+
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.of(data)))).contains(data);
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.of(data)))).contains(data);
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void read_cached() {
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.of(data)))).contains(data);
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.of(data)))).contains(data);
+
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  void read_cached_offHeap() {
+    configuration.setEntityCacheOffHeap(true);
+    manager = manager();
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.of(data)))).contains(data);
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.of(data)))).contains(data);
+
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  void read_cached_copies() {
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data.deepCopy())));
+
+    final JsonNode first = manager.read(tenantTable, ENTITY, loader(Optional.empty())).orElseThrow();
+    ((ObjectNode) first).put("a", 5);
+
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.empty()))).contains(data);
+  }
+
+  @Test
+  void read_missingNotCached() {
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.empty()))).isEmpty();
+    assertThat(manager.read(tenantTable, ENTITY, loader(Optional.of(data)))).contains(data);
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void read_resized() {
+    manager.read(tenantTable(Optional.of(10000L)), ENTITY, loader(Optional.of(data)));
+    manager.read(tenantTable(Optional.of(20000L)), ENTITY, loader(Optional.of(data)));
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void read_evicted() {
+    final TenantTable tenantTable = tenantTable(Optional.of(100L));
+
+    manager.read(tenantTable, "first", loader(Optional.of(data)));
+    manager.read(tenantTable, "second", loader(Optional.of(data)));
+    manager.read(tenantTable, "first", loader(Optional.of(data)));
+
+    assertThat(loads).hasValue(3);
+    assertThat(metrics.registry().counter("EntityCacheManager.eviction", "table", IDENTIFIER.toString()).count())
+        .isPositive();
+  }
+
+  @Test
+  void read_countedPerTable() {
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+
+    assertThat(metrics.registry().counter("EntityCacheManager.miss", "table", IDENTIFIER.toString()).count())
+        .isEqualTo(1);
+    assertThat(metrics.registry().counter("EntityCacheManager.hit", "table", IDENTIFIER.toString()).count())
+        .isEqualTo(1);
+  }
+
+  @Test
+  void read_nodeFull_notCached() {
+    configuration.setEntityCacheMaxBytes(150L);
+    manager = manager();
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+
+    manager.read(tenantTable, "first", loader(Optional.of(data)));
+    manager.read(tenantTable, "second", loader(Optional.of(data)));
+    manager.read(tenantTable, "first", loader(Optional.of(data)));
+    manager.read(tenantTable, "second", loader(Optional.of(data)));
+
+    assertThat(loads).hasValue(3);
+    assertThat(metrics.registry().counter("EntityCacheManager.rejected", "table", IDENTIFIER.toString()).count())
+        .isEqualTo(2);
+  }
+
+  @Test
+  void read_nodeFull_roomAfterInvalidate() {
+    configuration.setEntityCacheMaxBytes(150L);
+    manager = manager();
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+    manager.read(tenantTable, "first", loader(Optional.of(data)));
+
+    manager.invalidate(IDENTIFIER, List.of("first"));
+    manager.read(tenantTable, "second", loader(Optional.of(data)));
+    manager.read(tenantTable, "second", loader(Optional.of(data)));
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void read_invalidatedWhileLoading() {
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+
+    manager.read(tenantTable, ENTITY, () -> {
+      manager.invalidate(IDENTIFIER, List.of(ENTITY));
+      return loader(Optional.of(data)).get();
+    });
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void invalidate() {
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+    manager.read(tenantTable, "other", loader(Optional.of(data)));
+
+    manager.invalidate(IDENTIFIER, List.of(ENTITY));
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+    manager.read(tenantTable, "other", loader(Optional.of(data)));
+
+    assertThat(loads).hasValue(3);
+  }
+
+  @Test
+  void drop() {
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+
+    manager.drop(IDENTIFIER);
+    assertThat(metrics.registry().find("EntityCacheManager.hit").tag("table", IDENTIFIER.toString()).counter())
+        .isNull();
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  void dropTenant() {
+    final TenantTable tenantTable = tenantTable(Optional.of(10000L));
+    final TenantTable other = ImmutableTenantTable.copyOf(tenantTable)
+        .withIdentifier(TenantTableIdentifier.from("other", "table"));
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+    manager.read(other, ENTITY, loader(Optional.of(data)));
+
+    manager.dropTenant("tenant");
+    manager.read(tenantTable, ENTITY, loader(Optional.of(data)));
+    manager.read(other, ENTITY, loader(Optional.of(data)));
+
+    assertThat(loads).hasValue(3);
+  }
+
+  private EntityCacheManager manager() {
+    return new EntityCacheManager(metrics, configuration,
+        new BinaryDocumentEngine(new JsonEngine(new ObjectMapperFactory().generate())));
+  }
+
+  private Supplier<Optional<JsonNode>> loader(final Optional<JsonNode> result) {
+    return () -> {
+      loads.incrementAndGet();
+      return result;
+    };
+  }
+
+  private TenantTable tenantTable(final Optional<Long> maxBytes) {
+    final ImmutableTenantTable.Builder builder = ImmutableTenantTable.builder()
+        .identifier(IDENTIFIER)
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion("ENGINE")
+        .key("key")
+        .nonce("nonce")
+        .primaryKey("id");
+    maxBytes.ifPresent(value -> builder.putProperties(TenantTable.CACHE_PROPERTY, Long.toString(value)));
+    return builder.build();
+  }
+
+}
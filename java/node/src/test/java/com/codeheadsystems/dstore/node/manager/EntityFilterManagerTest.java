@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.manager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.codeheadsystems.dstore.node.BaseSQLTest;
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.impl.V1SingleEntryEngine;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EntityFilterManagerTest extends BaseSQLTest {
+
+  private NodeConfiguration configuration;
+  private TenantTable tenantTable;
+  private EntityFilterManager manager;
+
+  @BeforeEach
+  void setup() {
+    configuration = new NodeConfiguration();
+    tenantTable = ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from("tenant", "table"))
+        .hashStart(UUID.randomUUID().toString())
+        .hashEnd(UUID.randomUUID().toString())
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion(V1SingleEntryEngine.DEFINITION_NAME)
+        .key(UUID.randomUUID().toString())
+        .nonce(UUID.randomUUID().toString())
+        .primaryKey("id")
+        .build();
+    manager = new EntityFilterManager(metrics, sqlEngine, configuration);
+  }
+
+  @Test
+  void mightContain_builtFromTable() {
+    insert("one", 1);
+    insert("two", 2);
+
+    assertThat(manager.mightContain(tenantTable, 1)).isTrue();
+    assertThat(manager.mightContain(tenantTable, 2)).isTrue();
+    assertThat(manager.mightContain(tenantTable, 3)).isFalse();
+    assertThat(metrics.registry().counter("EntityFilterManager.built").count()).isEqualTo(1);
+    assertThat(metrics.registry().counter("EntityFilterManager.skipped").count()).isEqualTo(1);
+  }
+
+  @Test
+  void adding() {
+    assertThat(manager.mightContain(tenantTable, 3)).isFalse();
+
+    final String result = manager.adding(tenantTable, List.of(3), () -> {
+      insert("three", 3);
+      return "written";
+    });
+
+    assertThat(result).isEqualTo("written");
+    assertThat(manager.mightContain(tenantTable, 3)).isTrue();
+  }
+
+  @Test
+  void stop_saves_and_loads() throws Exception {
+    insert("one", 1);
+    assertThat(manager.mightContain(tenantTable, 1)).isTrue();
+
+    manager.stop();
+    assertThat(savedFilters()).isEqualTo(1);
+    // Not added through the manager, so only a rebuild would see it.
+    insert("two", 2);
+
+    final EntityFilterManager restarted = new EntityFilterManager(metrics, sqlEngine, configuration);
+    assertThat(restarted.mightContain(tenantTable, 1)).isTrue();
+    assertThat(restarted.mightContain(tenantTable, 2)).isFalse();
+    assertThat(savedFilters()).isZero();
+    assertThat(metrics.registry().counter("EntityFilterManager.built").count()).isEqualTo(1);
+  }
+
+  @Test
+  void drop() throws Exception {
+    assertThat(manager.mightContain(tenantTable, 1)).isFalse();
+    // Not added through the manager, so only a rebuild would see it.
+    insert("one", 1);
+
+    manager.drop(tenantTable.identifier());
+    assertThat(manager.mightContain(tenantTable, 1)).isTrue();
+    assertThat(metrics.registry().counter("EntityFilterManager.built").count()).isEqualTo(2);
+
+    manager.dropTenant("tenant");
+    manager.stop();
+    assertThat(savedFilters()).isZero();
+  }
+
+  @Test
+  void mightContain_disabled() {
+    configuration.setEntityFilterEnabled(false);
+    manager = new EntityFilterManager(metrics, sqlEngine, configuration);
+
+    assertThat(manager.mightContain(tenantTable, 3)).isTrue();
+    assertThat(savedFilters()).isZero();
+  }
+
+  private void insert(final String entity, final int hash) {
+    sqlEngine.executePreparedTenant(tenantTable,
+        "insert into TENANT_DATA (ID, C_COL, HASH, C_DATA_TYPE, C_DATA) values (?, 'a', ?, 'STRING', 'value')", (ps) -> {
+          try {
+            ps.setString(1, entity);
+            ps.setInt(2, hash);
+            return ps.executeUpdate();
+          } catch (SQLException e) {
+            throw new IllegalArgumentException(e);
+          }
+        });
+  }
+
+  private long savedFilters() {
+    return sqlEngine.executePreparedTenant(tenantTable, "select count(*) from TENANT_FILTER", (ps) -> {
+      try (final ResultSet rs = ps.executeQuery()) {
+        rs.next();
+        return rs.getLong(1);
+      } catch (SQLException e) {
+        throw new IllegalArgumentException(e);
+      }
+    });
+  }
+
+}
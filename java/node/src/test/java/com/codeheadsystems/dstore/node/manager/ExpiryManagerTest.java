@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.codeheadsystems.dstore.node.manager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.ExpiryEngine;
+import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
+import com.codeheadsystems.dstore.node.exception.ConditionFailedException;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
+import com.codeheadsystems.dstore.node.model.ScanPosition;
+import com.codeheadsystems.dstore.node.model.ScanRequest;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.test.BaseMetricTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.LongNode;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ExpiryManagerTest extends BaseMetricTest {
+
+  private static final String TABLE_VERSION = "ENGINE";
+  private static final String TENANT = "tenant";
+  private static final String TABLE = "table";
+  private static final long NOW = 1000;
+
+  @Mock private TenantManager tenantManager;
+  @Mock private TenantTableManager tenantTableManager;
+  @Mock private TableDefinitionEngine engine;
+  @Mock private TenantTableEntryManager tenantTableEntryManager;
+
+  private ExpiryManager manager;
+  private TenantTable tenantTable;
+  private List<ScanRequest> requests;
+
+  @BeforeEach
+  void setup() {
+    final NodeConfiguration configuration = new NodeConfiguration();
+    configuration.setExpirySweepBatchSize(2);
+    manager = new ExpiryManager(tenantManager, tenantTableManager, Map.of(TABLE_VERSION, engine),
+        new ExpiryEngine(Clock.fixed(Instant.ofEpochSecond(NOW), ZoneOffset.UTC)), tenantTableEntryManager, metrics, configuration);
+    tenantTable = ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from(TENANT, TABLE))
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion(TABLE_VERSION)
+        .key("key")
+        .nonce("nonce")
+        .primaryKey("id")
+        .putProperties(TenantTable.TTL_PROPERTY, "expires")
+        .build();
+    requests = new ArrayList<>();
+    when(tenantManager.tenants()).thenReturn(List.of(TENANT));
+    when(tenantTableManager.tables(TENANT)).thenReturn(List.of(TABLE));
+  }
+
+  @Test
+  void sweep_deletesExpired() {
+    when(tenantTableManager.get(TENANT, TABLE)).thenReturn(Optional.of(tenantTable));
+    scanReturns(Optional.of(ScanPosition.from(5, "c")), Map.of("a", entity(NOW - 1), "b", entity(NOW + 1)));
+    when(engine.delete(tenantTable, "a", List.of(Condition.equalTo("expires", LongNode.valueOf(NOW - 1)))))
+        .thenReturn(true);
+
+    assertThat(manager.sweep()).isEqualTo(1);
+    verify(engine, never()).delete(eq(tenantTable), eq("b"), any());
+  }
+
+  @Test
+  void sweep_streamEnabled_deletesThroughManager() {
+    tenantTable = ImmutableTenantTable.copyOf(tenantTable)
+        .withProperties(Map.of(TenantTable.TTL_PROPERTY, "expires", TenantTable.STREAM_PROPERTY, "true"));
+    when(tenantTableManager.get(TENANT, TABLE)).thenReturn(Optional.of(tenantTable));
+    scanReturns(Optional.empty(), Map.of("a", entity(NOW - 1)));
+    when(tenantTableEntryManager.delete(tenantTable.identifier(), "a", List.of(Condition.equalTo("expires", LongNode.valueOf(NOW - 1)))))
+        .thenReturn(true);
+
+    assertThat(manager.sweep()).isEqualTo(1);
+    verify(engine, never()).delete(any(), any(), any());
+  }
+
+  @Test
+  void sweep_continuesFromLastPosition() {
+    when(tenantTableManager.get(TENANT, TABLE)).thenReturn(Optional.of(tenantTable));
+    scanReturns(Optional.of(ScanPosition.from(5, "c")), Map.of());
+
+    manager.sweep();
+    manager.sweep();
+
+    assertThat(requests).hasSize(2);
+    assertThat(requests.get(0).startAfter()).isEmpty();
+    assertThat(requests.get(0).limit()).isEqualTo(2);
+    assertThat(requests.get(1).startAfter()).contains(ScanPosition.from(5, "c"));
+  }
+
+  @Test
+  void sweep_skipsRewrittenEntities() {
+    when(tenantTableManager.get(TENANT, TABLE)).thenReturn(Optional.of(tenantTable));
+    scanReturns(Optional.empty(), Map.of("a", entity(NOW - 1)));
+    when(engine.delete(eq(tenantTable), eq("a"), any())).thenThrow(new ConditionFailedException("changed"));
+
+    assertThat(manager.sweep()).isZero();
+  }
+
+  @Test
+  void sweep_ignoresTablesWithoutTtl() {
+    when(tenantTableManager.get(TENANT, TABLE))
+        .thenReturn(Optional.of(ImmutableTenantTable.copyOf(tenantTable).withProperties(Map.of())));
+
+    assertThat(manager.sweep()).isZero();
+    verify(engine, never()).scan(any(), any(), any());
+  }
+
+  private void scanReturns(final Optional<ScanPosition> next, final Map<String, JsonNode> entities) {
+    doAnswer(invocation -> {
+      requests.add(invocation.getArgument(1));
+      final BiConsumer<String, JsonNode> consumer = invocation.getArgument(2);
+      entities.forEach(consumer);
+      return next;
+    }).when(engine).scan(eq(tenantTable), any(), any());
+  }
+
+  private JsonNode entity(final long expires) {
+    return JsonNodeFactory.instance.objectNode().put("expires", expires);
+  }
+
+}
@@ -17,6 +17,7 @@
 package com.codeheadsystems.dstore.node.manager;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.codeheadsystems.dstore.common.crypt.AesGcmSivManager;
@@ -44,6 +45,10 @@ class TenantManagerTest extends BaseMetricTest {
   @Mock private AesGcmSivManager aesManager;
   @Mock private Tenant tenant;
   @Mock private List<String> list;
+  @Mock private DataSourceManager dataSourceManager;
+  @Mock private EntityFilterManager entityFilterManager;
+  @Mock private ChangeStreamManager changeStreamManager;
+  @Mock private EntityCacheManager entityCacheManager;
   @Captor private ArgumentCaptor<Tenant> tenantArgumentCaptor;
   @Captor private ArgumentCaptor<String> stringArgumentCaptor;
 
@@ -51,7 +56,8 @@ class TenantManagerTest extends BaseMetricTest {
 
   @BeforeEach
   void setup() {
-    manager = new TenantManager(metrics, dao, aesManager, new ExceptionUtils());
+    manager = new TenantManager(metrics, dao, aesManager, new ExceptionUtils(), dataSourceManager, entityFilterManager,
+        changeStreamManager, entityCacheManager);
   }
 
   @Test
@@ -83,5 +89,9 @@ class TenantManagerTest extends BaseMetricTest {
     when(dao.delete(stringArgumentCaptor.capture())).thenReturn(true);
     manager.delete(TENANT_ID);
     assertThat(stringArgumentCaptor.getValue()).isEqualTo(TENANT_ID);
+    verify(dataSourceManager).evictTenant(TENANT_ID);
+    verify(entityFilterManager).dropTenant(TENANT_ID);
+    verify(changeStreamManager).dropTenant(TENANT_ID);
+    verify(entityCacheManager).dropTenant(TENANT_ID);
   }
 }
\ No newline at end of file
@@ -18,17 +18,46 @@ package com.codeheadsystems.dstore.node.manager;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.common.factory.ObjectMapperFactory;
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.engine.BinaryDocumentEngine;
+import com.codeheadsystems.dstore.node.engine.ExpiryEngine;
 import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
+import com.codeheadsystems.dstore.node.exception.InvalidAttributeException;
 import com.codeheadsystems.dstore.node.exception.NotFoundException;
+import com.codeheadsystems.dstore.node.exception.UnsupportedTableOperationException;
+import com.codeheadsystems.dstore.node.model.Condition;
+import com.codeheadsystems.dstore.node.model.ImmutableIndexLookupRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableQueryRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableQueryResult;
+import com.codeheadsystems.dstore.node.model.ImmutableScanRequest;
+import com.codeheadsystems.dstore.node.model.ImmutableTransactionItem;
+import com.codeheadsystems.dstore.node.model.QueryRequest;
+import com.codeheadsystems.dstore.node.model.QueryResult;
+import com.codeheadsystems.dstore.node.model.ScanRequest;
 import com.codeheadsystems.dstore.node.model.TenantTable;
 import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
+import com.codeheadsystems.metrics.test.BaseMetricTest;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -38,7 +67,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 @ExtendWith(MockitoExtension.class)
-class TenantTableEntryManagerTest {
+class TenantTableEntryManagerTest extends BaseMetricTest {
 
   private static final String TABLE_VERSION = "ENGINE";
   private static final String ENTITY = "entity";
@@ -47,6 +76,8 @@ class TenantTableEntryManagerTest {
   @Mock private JsonNode jsonNode;
   @Mock private TenantTableIdentifier identifier;
   @Mock private TenantTable tenantTable;
+  @Mock private ExpiryEngine expiryEngine;
+  @Mock private ChangeStreamManager changeStreamManager;
 
   @Captor private ArgumentCaptor<TenantTable> tableArgumentCaptor;
   @Captor private ArgumentCaptor<String> stringArgumentCaptor;
@@ -57,7 +88,10 @@ class TenantTableEntryManagerTest {
   @BeforeEach
   void setup() {
     final Map<String, TableDefinitionEngine> map = ImmutableMap.of(TABLE_VERSION, tableDefinitionEngine);
-    manager = new TenantTableEntryManager(map, tenantTableManager);
+    final JsonEngine jsonEngine = new JsonEngine(new ObjectMapperFactory().generate());
+    final EntityCacheManager entityCacheManager =
+        new EntityCacheManager(metrics, new NodeConfiguration(), new BinaryDocumentEngine(jsonEngine));
+    manager = new TenantTableEntryManager(map, tenantTableManager, expiryEngine, changeStreamManager, entityCacheManager);
   }
 
   @Test
@@ -71,6 +105,74 @@ class TenantTableEntryManagerTest {
         .contains(jsonNode);
   }
 
+  @Test
+  void read_cached_invalidatedByWrite() {
+    final JsonNode data = JsonNodeFactory.instance.objectNode().put("a", 1);
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.identifier()).thenReturn(identifier);
+    when(tenantTable.key()).thenReturn("key");
+    when(tenantTable.cacheMaxBytes()).thenReturn(1000L);
+    when(tableDefinitionEngine.read(tenantTable, ENTITY)).thenReturn(Optional.of(data));
+
+    assertThat(manager.read(identifier, ENTITY)).contains(data);
+    assertThat(manager.read(identifier, ENTITY)).contains(data);
+    verify(tableDefinitionEngine, times(1)).read(tenantTable, ENTITY);
+
+    manager.write(identifier, ENTITY, data);
+
+    assertThat(manager.read(identifier, ENTITY)).contains(data);
+    verify(tableDefinitionEngine, times(2)).read(tenantTable, ENTITY);
+  }
+
+  @Test
+  void read_attributes_tableFound() {
+    final List<String> attributes = List.of("a", "b");
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.read(tenantTable, ENTITY, attributes)).thenReturn(Optional.of(jsonNode));
+
+    assertThat(manager.read(identifier, ENTITY, attributes))
+        .isPresent()
+        .contains(jsonNode);
+  }
+
+  @Test
+  void read_expired() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.read(tenantTable, ENTITY)).thenReturn(Optional.of(jsonNode));
+    when(expiryEngine.isExpired(tenantTable, jsonNode)).thenReturn(true);
+
+    assertThat(manager.read(identifier, ENTITY)).isEmpty();
+  }
+
+  @Test
+  void read_attributes_readsTtlAttribute() {
+    final ObjectNode node = JsonNodeFactory.instance.objectNode().put("a", 1).put("ttl", 100);
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.ttlAttribute()).thenReturn(Optional.of("ttl"));
+    when(tableDefinitionEngine.read(tenantTable, ENTITY, List.of("a", "ttl"))).thenReturn(Optional.of(node));
+
+    assertThat(manager.read(identifier, ENTITY, List.of("a")))
+        .contains(JsonNodeFactory.instance.objectNode().put("a", 1));
+  }
+
+  @Test
+  void readMany_skipsExpired() {
+    final List<String> entities = List.of(ENTITY, "other");
+    final JsonNode expired = JsonNodeFactory.instance.objectNode();
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.ttlAttribute()).thenReturn(Optional.of("ttl"));
+    when(tableDefinitionEngine.readMany(tenantTable, entities)).thenReturn(Map.of(ENTITY, jsonNode, "other", expired));
+    when(expiryEngine.isExpired(tenantTable, expired)).thenReturn(true);
+
+    assertThat(manager.readMany(identifier, entities))
+        .containsExactly(Map.entry(ENTITY, jsonNode));
+  }
+
   @Test
   void read_tableFound_noEngine() {
     when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
@@ -87,6 +189,103 @@ class TenantTableEntryManagerTest {
         .isThrownBy(() -> manager.read(identifier, ENTITY));
   }
 
+  @Test
+  void readMany_tableFound() {
+    final List<String> entities = List.of(ENTITY, "other");
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.readMany(tenantTable, entities)).thenReturn(Map.of(ENTITY, jsonNode));
+
+    assertThat(manager.readMany(identifier, entities))
+        .containsExactly(Map.entry(ENTITY, jsonNode));
+  }
+
+  @Test
+  void readMany_tableNotFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.empty());
+    assertThatExceptionOfType(NotFoundException.class)
+        .isThrownBy(() -> manager.readMany(identifier, List.of(ENTITY)));
+  }
+
+  @Test
+  void query_tableFound() {
+    final QueryRequest request = ImmutableQueryRequest.builder().partitionKey(ENTITY).limit(10).build();
+    final QueryResult result = ImmutableQueryResult.builder().putEntities(ENTITY, jsonNode).build();
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.supportsQuery()).thenReturn(true);
+    when(tableDefinitionEngine.query(tenantTable, request)).thenReturn(result);
+
+    assertThat(manager.query(identifier, request)).isEqualTo(result);
+  }
+
+  @Test
+  void query_notSupported() {
+    final QueryRequest request = ImmutableQueryRequest.builder().partitionKey(ENTITY).limit(10).build();
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> manager.query(identifier, request));
+    verify(tableDefinitionEngine, never()).query(tenantTable, request);
+  }
+
+  @Test
+  void query_tableNotFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.empty());
+    assertThatExceptionOfType(NotFoundException.class)
+        .isThrownBy(() -> manager.query(identifier, ImmutableQueryRequest.builder().partitionKey(ENTITY).limit(10).build()));
+  }
+
+  @Test
+  void lookup_indexFound() {
+    final QueryResult result = ImmutableQueryResult.builder().putEntities(ENTITY, jsonNode).build();
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.indexAttribute("byName")).thenReturn(Optional.of("name"));
+    when(tableDefinitionEngine.supportsLookup()).thenReturn(true);
+    when(tableDefinitionEngine.lookup(tenantTable, ImmutableIndexLookupRequest.builder()
+        .attribute("name").value(jsonNode).limit(10).build())).thenReturn(result);
+
+    assertThat(manager.lookup(identifier, "byName", jsonNode, 10, Optional.empty())).isEqualTo(result);
+  }
+
+  @Test
+  void lookup_notSupported() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.indexAttribute("byName")).thenReturn(Optional.of("name"));
+
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> manager.lookup(identifier, "byName", jsonNode, 10, Optional.empty()));
+  }
+
+  @Test
+  void lookup_indexNotFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.indexAttribute("byName")).thenReturn(Optional.empty());
+    assertThatExceptionOfType(NotFoundException.class)
+        .isThrownBy(() -> manager.lookup(identifier, "byName", jsonNode, 10, Optional.empty()));
+  }
+
+  @Test
+  void scan_tableFound() {
+    final ScanRequest request = ImmutableScanRequest.builder().limit(10).build();
+    final BiConsumer<String, JsonNode> consumer = (id, node) -> { };
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.scan(tenantTable, request, consumer)).thenReturn(Optional.empty());
+
+    assertThat(manager.scan(identifier, request).apply(consumer)).isEmpty();
+  }
+
+  @Test
+  void scan_tableNotFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.empty());
+    assertThatExceptionOfType(NotFoundException.class)
+        .isThrownBy(() -> manager.scan(identifier, ImmutableScanRequest.builder().limit(10).build()));
+  }
+
   @Test
   void write_tableFound() {
     when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
@@ -99,6 +298,108 @@ class TenantTableEntryManagerTest {
     assertThat(jsonNodeArgumentCaptor.getValue()).isEqualTo(jsonNode);
   }
 
+  @Test
+  void write_streamEnabled() {
+    final JsonNode before = JsonNodeFactory.instance.objectNode().put("a", 1);
+    final JsonNode after = JsonNodeFactory.instance.objectNode().put("a", 2);
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.streamEnabled()).thenReturn(true);
+    when(tableDefinitionEngine.readMany(tenantTable, List.of(ENTITY)))
+        .thenReturn(Map.of(ENTITY, before))
+        .thenReturn(Map.of(ENTITY, after));
+
+    manager.write(identifier, ENTITY, after);
+
+    verify(tableDefinitionEngine).write(tenantTable, ENTITY, after);
+    verify(changeStreamManager).append(identifier, ENTITY, Optional.of(before), Optional.of(after));
+  }
+
+  @Test
+  void delete_streamEnabled_nothingDeleted() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.streamEnabled()).thenReturn(true);
+    when(tableDefinitionEngine.readMany(tenantTable, List.of(ENTITY))).thenReturn(Map.of());
+
+    assertThat(manager.delete(identifier, ENTITY)).isFalse();
+
+    verifyNoInteractions(changeStreamManager);
+  }
+
+  @Test
+  void write_versioned() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.versionAttribute()).thenReturn(Optional.of("v"));
+    when(tableDefinitionEngine.readMany(tenantTable, List.of(ENTITY)))
+        .thenReturn(Map.of(ENTITY, JsonNodeFactory.instance.objectNode().put("a", 1).put("v", 3)));
+    final ObjectNode data = JsonNodeFactory.instance.objectNode().put("a", 2);
+
+    manager.write(identifier, ENTITY, data);
+
+    verify(tableDefinitionEngine).write(tenantTable, ENTITY, JsonNodeFactory.instance.objectNode().put("a", 2).put("v", 4L));
+    assertThat(data).isEqualTo(JsonNodeFactory.instance.objectNode().put("a", 2));
+    verifyNoInteractions(changeStreamManager);
+  }
+
+  @Test
+  void writeMany_versioned_newEntity() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.versionAttribute()).thenReturn(Optional.of("v"));
+    when(tableDefinitionEngine.readMany(tenantTable, Set.of(ENTITY))).thenReturn(Map.of());
+
+    manager.writeMany(identifier, Map.of(ENTITY, JsonNodeFactory.instance.objectNode().put("a", 1)), List.of());
+
+    verify(tableDefinitionEngine).writeMany(tenantTable,
+        Map.of(ENTITY, JsonNodeFactory.instance.objectNode().put("a", 1).put("v", 1L)), List.of());
+  }
+
+  @Test
+  void increment_versioned() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tenantTable.versionAttribute()).thenReturn(Optional.of("v"));
+    when(tableDefinitionEngine.readMany(tenantTable, List.of(ENTITY)))
+        .thenReturn(Map.of(ENTITY, JsonNodeFactory.instance.objectNode().put("count", 1).put("v", 7)));
+    when(tableDefinitionEngine.increment(tenantTable, ENTITY, "count", 2L,
+        JsonNodeFactory.instance.objectNode().put("v", 8L))).thenReturn(3L);
+
+    assertThat(manager.increment(identifier, ENTITY, "count", 2L)).isEqualTo(3L);
+
+    verify(tableDefinitionEngine, never()).update(any(), any(), any());
+  }
+
+  @Test
+  void increment_versionAttribute() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.versionAttribute()).thenReturn(Optional.of("v"));
+
+    assertThatExceptionOfType(InvalidAttributeException.class)
+        .isThrownBy(() -> manager.increment(identifier, ENTITY, "v", 1L));
+    verifyNoInteractions(tableDefinitionEngine);
+  }
+
+  @Test
+  void versionCondition() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.versionAttribute()).thenReturn(Optional.of("v"));
+
+    assertThat(manager.versionCondition(identifier, 0)).isEqualTo(Condition.notExists("v"));
+    assertThat(manager.versionCondition(identifier, 3)).isEqualTo(Condition.equalTo("v", IntNode.valueOf(3)));
+    assertThat(manager.versionCondition(identifier, 1L << 40))
+        .isEqualTo(Condition.equalTo("v", LongNode.valueOf(1L << 40)));
+  }
+
+  @Test
+  void versionCondition_notVersioned() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> manager.versionCondition(identifier, 1));
+  }
+
   @Test
   void write_tableFound_noEngine() {
     when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
@@ -115,6 +416,115 @@ class TenantTableEntryManagerTest {
         .isThrownBy(() -> manager.write(identifier, ENTITY, jsonNode));
   }
 
+  @Test
+  void writeMany_tableFound() {
+    final Map<String, JsonNode> writes = Map.of(ENTITY, jsonNode);
+    final List<String> deletes = List.of("other");
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+
+    manager.writeMany(identifier, writes, deletes);
+
+    verify(tableDefinitionEngine).writeMany(tenantTable, writes, deletes);
+  }
+
+  @Test
+  void writeMany_tableNotFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.empty());
+    assertThatExceptionOfType(NotFoundException.class)
+        .isThrownBy(() -> manager.writeMany(identifier, Map.of(ENTITY, jsonNode), List.of()));
+  }
+
+  @Test
+  void transact_tableFound() {
+    final List<TransactionItem> items = List.of(
+        ImmutableTransactionItem.builder().entity(ENTITY).put(jsonNode).build(),
+        ImmutableTransactionItem.builder().entity("other").delete(true).build());
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.supportsTransactions()).thenReturn(true);
+
+    manager.transact(identifier, items);
+
+    verify(tableDefinitionEngine).transact(tenantTable, items);
+  }
+
+  @Test
+  void transact_notSupported() {
+    final List<TransactionItem> items = List.of(ImmutableTransactionItem.builder().entity(ENTITY).put(jsonNode).build());
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> manager.transact(identifier, items));
+    verify(tableDefinitionEngine, never()).transact(tenantTable, items);
+  }
+
+  @Test
+  void transact_duplicateEntity() {
+    final List<TransactionItem> items = List.of(
+        ImmutableTransactionItem.builder().entity(ENTITY).put(jsonNode).build(),
+        ImmutableTransactionItem.builder().entity(ENTITY).delete(true).build());
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> manager.transact(identifier, items));
+    verify(tableDefinitionEngine, never()).transact(tenantTable, items);
+  }
+
+  @Test
+  void update_tableFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.update(tenantTable, ENTITY, jsonNode)).thenReturn(true);
+
+    assertThat(manager.update(identifier, ENTITY, jsonNode)).isTrue();
+  }
+
+  @Test
+  void update_tableNotFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.empty());
+    assertThatExceptionOfType(NotFoundException.class)
+        .isThrownBy(() -> manager.update(identifier, ENTITY, jsonNode));
+  }
+
+  @Test
+  void increment_tableFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.increment(tenantTable, ENTITY, "count", 5L)).thenReturn(7L);
+
+    assertThat(manager.increment(identifier, ENTITY, "count", 5L)).isEqualTo(7L);
+  }
+
+  @Test
+  void increment_tableNotFound() {
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.empty());
+    assertThatExceptionOfType(NotFoundException.class)
+        .isThrownBy(() -> manager.increment(identifier, ENTITY, "count", 5L));
+  }
+
+  @Test
+  void write_conditions_tableFound() {
+    final List<Condition> conditions = List.of(Condition.exists("a"));
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+
+    manager.write(identifier, ENTITY, jsonNode, conditions);
+
+    verify(tableDefinitionEngine).write(tenantTable, ENTITY, jsonNode, conditions);
+  }
+
+  @Test
+  void delete_conditions_tableFound() {
+    final List<Condition> conditions = List.of(Condition.exists("a"));
+    when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
+    when(tenantTable.tableVersion()).thenReturn(TABLE_VERSION);
+    when(tableDefinitionEngine.delete(tenantTable, ENTITY, conditions)).thenReturn(true);
+
+    assertThat(manager.delete(identifier, ENTITY, conditions)).isTrue();
+  }
+
   @Test
   void delete_tableFound() {
     when(tenantTableManager.get(identifier)).thenReturn(Optional.of(tenantTable));
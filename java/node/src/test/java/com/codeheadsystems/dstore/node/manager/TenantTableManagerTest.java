@@ -17,13 +17,24 @@
 package com.codeheadsystems.dstore.node.manager;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.codeheadsystems.dstore.common.crypt.AesGcmSivManager;
+import com.codeheadsystems.dstore.node.NodeConfiguration;
 import com.codeheadsystems.dstore.node.dao.TenantTableDao;
+import com.codeheadsystems.dstore.node.dao.TenantTablePropertiesDao;
 import com.codeheadsystems.dstore.node.engine.TableDefinitionEngine;
 import com.codeheadsystems.dstore.node.exception.ExceptionUtils;
+import com.codeheadsystems.dstore.node.exception.UnsupportedTableOperationException;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
 import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
 import com.codeheadsystems.metrics.test.BaseMetricTest;
 import java.util.List;
 import java.util.Map;
@@ -46,11 +57,15 @@ class TenantTableManagerTest extends BaseMetricTest {
   private final String PRIMARY_KEY = "primary_key";
 
   @Mock private TenantTableDao dao;
+  @Mock private TenantTablePropertiesDao propertiesDao;
   @Mock private AesGcmSivManager aesManager;
   @Mock private TableDefinitionEngine engine;
   @Mock private TenantTable tenantTable;
   @Mock private List<String> list;
   @Mock private DataSourceManager dataSourceManager;
+  @Mock private EntityFilterManager entityFilterManager;
+  @Mock private ChangeStreamManager changeStreamManager;
+  @Mock private EntityCacheManager entityCacheManager;
   @Captor private ArgumentCaptor<TenantTable> tenantTableArgumentCaptor;
   @Captor private ArgumentCaptor<String> stringArgumentCaptor;
 
@@ -60,7 +75,10 @@ class TenantTableManagerTest extends BaseMetricTest {
   @BeforeEach
   void setup() {
     tableDefinitionEngineMap = Map.of(ENGINE, engine);
-    manager = new TenantTableManager(metrics, dao, aesManager, tableDefinitionEngineMap, dataSourceManager, new ExceptionUtils());
+    final NodeConfiguration configuration = new NodeConfiguration();
+    configuration.setSharedTenants(List.of(TENANT_ID));
+    manager = new TenantTableManager(metrics, dao, propertiesDao, aesManager, tableDefinitionEngineMap, dataSourceManager,
+        entityFilterManager, changeStreamManager, entityCacheManager, new ExceptionUtils(), configuration);
   }
 
   @Test
@@ -69,6 +87,109 @@ class TenantTableManagerTest extends BaseMetricTest {
     assertThat(manager.get(TENANT_ID, TABLE_NAME)).isPresent().contains(tenantTable);
   }
 
+  @Test
+  void get_withProperties() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+    when(propertiesDao.read(table.identifier())).thenReturn(Map.of("index.byName", "name"));
+
+    assertThat(manager.get(TENANT_ID, TABLE_NAME))
+        .get()
+        .satisfies(result -> {
+          assertThat(result.indexes()).containsExactly(Map.entry("byName", "name"));
+          assertThat(result.indexAttribute("byName")).contains("name");
+          assertThat(result.indexAttribute("other")).isEmpty();
+        });
+  }
+
+  @Test
+  void createIndex() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+    when(propertiesDao.read(table.identifier()))
+        .thenReturn(Map.of("other", "value"))
+        .thenReturn(Map.of("other", "value", "index.byName", "name"));
+
+    assertThat(manager.createIndex(table.identifier(), "byName", "name").indexes())
+        .containsExactly(Map.entry("byName", "name"));
+    verify(propertiesDao).write(table.identifier(), Map.of("other", "value", "index.byName", "name"));
+  }
+
+  @Test
+  void deleteIndex() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+    when(propertiesDao.read(table.identifier()))
+        .thenReturn(Map.of("other", "value", "index.byName", "name"))
+        .thenReturn(Map.of("other", "value"));
+
+    assertThat(manager.deleteIndex(table.identifier(), "byName")).isTrue();
+    assertThat(manager.deleteIndex(table.identifier(), "byName")).isFalse();
+    verify(propertiesDao).write(table.identifier(), Map.of("other", "value"));
+  }
+
+  @Test
+  void ttlAttribute() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+    when(propertiesDao.read(table.identifier()))
+        .thenReturn(Map.of())
+        .thenReturn(Map.of("ttl.attribute", "expires"))
+        .thenReturn(Map.of());
+
+    assertThat(manager.ttlAttribute(table.identifier(), Optional.of("expires")).ttlAttribute()).contains("expires");
+    verify(propertiesDao).write(table.identifier(), Map.of("ttl.attribute", "expires"));
+    assertThat(manager.ttlAttribute(table.identifier(), Optional.empty()).ttlAttribute()).isEmpty();
+    verify(propertiesDao).write(table.identifier(), Map.of());
+  }
+
+  @Test
+  void versionAttribute() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+    when(propertiesDao.read(table.identifier()))
+        .thenReturn(Map.of())
+        .thenReturn(Map.of("version.attribute", "version"))
+        .thenReturn(Map.of());
+
+    assertThat(manager.versionAttribute(table.identifier(), Optional.of("version")).versionAttribute()).contains("version");
+    verify(propertiesDao).write(table.identifier(), Map.of("version.attribute", "version"));
+    assertThat(manager.versionAttribute(table.identifier(), Optional.empty()).versionAttribute()).isEmpty();
+    verify(propertiesDao).write(table.identifier(), Map.of());
+  }
+
+  @Test
+  void stream() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+    when(propertiesDao.read(table.identifier()))
+        .thenReturn(Map.of())
+        .thenReturn(Map.of("stream.enabled", "true"))
+        .thenReturn(Map.of());
+
+    assertThat(manager.stream(table.identifier(), true).streamEnabled()).isTrue();
+    verify(propertiesDao).write(table.identifier(), Map.of("stream.enabled", "true"));
+    assertThat(manager.stream(table.identifier(), false).streamEnabled()).isFalse();
+    verify(propertiesDao).write(table.identifier(), Map.of());
+  }
+
+  @Test
+  void cacheMaxBytes() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+    when(propertiesDao.read(table.identifier()))
+        .thenReturn(Map.of())
+        .thenReturn(Map.of("cache.maxBytes", "1024"))
+        .thenReturn(Map.of());
+
+    assertThat(manager.cacheMaxBytes(table.identifier(), Optional.of(1024L)).cacheMaxBytes()).isEqualTo(1024L);
+    verify(propertiesDao).write(table.identifier(), Map.of("cache.maxBytes", "1024"));
+    verify(entityCacheManager, never()).drop(table.identifier());
+    assertThat(manager.cacheMaxBytes(table.identifier(), Optional.empty()).cacheMaxBytes()).isZero();
+    verify(propertiesDao).write(table.identifier(), Map.of());
+    verify(entityCacheManager).drop(table.identifier());
+  }
+
   @Test
   void create() {
     when(aesManager.randomKeyBase64Encoded()).thenReturn(KEY);
@@ -85,6 +206,86 @@ class TenantTableManagerTest extends BaseMetricTest {
         .hasFieldOrPropertyWithValue("tableName", TABLE_NAME);
   }
 
+  @Test
+  void create_unknownVersion() {
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> manager.create(TENANT_ID, TABLE_NAME, "V9Unknown", PRIMARY_KEY));
+    verify(dao, never()).create(any());
+  }
+
+  @Test
+  void create_sharedStorage() {
+    final NodeConfiguration configuration = new NodeConfiguration();
+    configuration.setSharedStorage(true);
+    configuration.setSharedTenants(List.of(TENANT_ID));
+    manager = new TenantTableManager(metrics, dao, propertiesDao, aesManager, tableDefinitionEngineMap, dataSourceManager,
+        entityFilterManager, changeStreamManager, entityCacheManager, new ExceptionUtils(), configuration);
+    final TenantTableIdentifier identifier = TenantTableIdentifier.from(TENANT_ID, TABLE_NAME);
+    when(aesManager.randomKeyBase64Encoded()).thenReturn(KEY);
+    when(aesManager.randomNonceBase64Encoded()).thenReturn(NONCE);
+    when(dataSourceManager.shardFor(identifier)).thenReturn(3);
+    when(dao.create(tenantTableArgumentCaptor.capture())).thenReturn(tenantTable);
+
+    manager.create(TENANT_ID, TABLE_NAME, ENGINE, PRIMARY_KEY);
+
+    assertThat(tenantTableArgumentCaptor.getValue().storageShard()).contains(3);
+    verify(propertiesDao).write(identifier, Map.of(TenantTable.SHARD_PROPERTY, "3"));
+    verify(dataSourceManager).getDataSource(tenantTableArgumentCaptor.getValue());
+  }
+
+  @Test
+  void create_sharedStorage_tenantNotShared() {
+    final NodeConfiguration configuration = new NodeConfiguration();
+    configuration.setSharedStorage(true);
+    configuration.setSharedTenants(List.of("other"));
+    manager = new TenantTableManager(metrics, dao, propertiesDao, aesManager, tableDefinitionEngineMap, dataSourceManager,
+        entityFilterManager, changeStreamManager, entityCacheManager, new ExceptionUtils(), configuration);
+    when(aesManager.randomKeyBase64Encoded()).thenReturn(KEY);
+    when(aesManager.randomNonceBase64Encoded()).thenReturn(NONCE);
+    when(dao.create(tenantTableArgumentCaptor.capture())).thenReturn(tenantTable);
+
+    manager.create(TENANT_ID, TABLE_NAME, ENGINE, PRIMARY_KEY);
+
+    assertThat(tenantTableArgumentCaptor.getValue().storageShard()).isEmpty();
+    verify(dataSourceManager, never()).shardFor(any());
+    verifyNoInteractions(propertiesDao);
+  }
+
+  @Test
+  void storage_tenantNotShared() {
+    manager = new TenantTableManager(metrics, dao, propertiesDao, aesManager, tableDefinitionEngineMap, dataSourceManager,
+        entityFilterManager, changeStreamManager, entityCacheManager, new ExceptionUtils(), new NodeConfiguration());
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+
+    assertThatExceptionOfType(UnsupportedTableOperationException.class)
+        .isThrownBy(() -> manager.storage(table.identifier(), true));
+    verify(dataSourceManager, never()).migrate(any(), any(), any());
+  }
+
+  @Test
+  void storage() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+    when(propertiesDao.read(table.identifier()))
+        .thenReturn(Map.of())
+        .thenReturn(Map.of(TenantTable.SHARD_PROPERTY, "3"));
+    when(dataSourceManager.shardFor(table.identifier())).thenReturn(3);
+
+    assertThat(manager.storage(table.identifier(), true).storageShard()).contains(3);
+    verify(dataSourceManager).migrate(eq(table), tenantTableArgumentCaptor.capture(), any());
+    assertThat(tenantTableArgumentCaptor.getValue().storageShard()).contains(3);
+  }
+
+  @Test
+  void storage_alreadyThere() {
+    final TenantTable table = table();
+    when(dao.read(TENANT_ID, TABLE_NAME)).thenReturn(Optional.of(table));
+
+    assertThat(manager.storage(table.identifier(), false)).isEqualTo(table);
+    verify(dataSourceManager, never()).migrate(any(), any(), any());
+  }
+
   @Test
   void tenants() {
     when(dao.allTenantTables(TENANT_ID)).thenReturn(list);
@@ -97,5 +298,22 @@ class TenantTableManagerTest extends BaseMetricTest {
     manager.delete(TENANT_ID, TABLE_NAME);
     assertThat(stringArgumentCaptor.getAllValues())
         .containsExactly(TENANT_ID, TABLE_NAME);
+    verify(propertiesDao).delete(TenantTableIdentifier.from(TENANT_ID, TABLE_NAME));
+    verify(dataSourceManager).evict(TenantTableIdentifier.from(TENANT_ID, TABLE_NAME));
+    verify(entityFilterManager).drop(TenantTableIdentifier.from(TENANT_ID, TABLE_NAME));
+    verify(changeStreamManager).drop(TenantTableIdentifier.from(TENANT_ID, TABLE_NAME));
+    verify(entityCacheManager).drop(TenantTableIdentifier.from(TENANT_ID, TABLE_NAME));
+  }
+
+  private TenantTable table() {
+    return ImmutableTenantTable.builder()
+        .identifier(TenantTableIdentifier.from(TENANT_ID, TABLE_NAME))
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion(ENGINE)
+        .key(KEY)
+        .nonce(NONCE)
+        .primaryKey(PRIMARY_KEY)
+        .build();
   }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.manager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.codeheadsystems.dstore.node.NodeConfiguration;
+import com.codeheadsystems.dstore.node.dao.TenantTableAccessDao;
+import com.codeheadsystems.dstore.node.model.ImmutableTenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTable;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.metrics.test.BaseMetricTest;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TenantTableWarmupManagerTest extends BaseMetricTest {
+
+  private static final long NOW = 1000;
+  private static final TenantTableIdentifier HOT = TenantTableIdentifier.from("tenant", "hot");
+  private static final TenantTableIdentifier DELETED = TenantTableIdentifier.from("tenant", "deleted");
+  private static final TenantTableIdentifier BROKEN = TenantTableIdentifier.from("tenant", "broken");
+
+  @Mock private DataSourceManager dataSourceManager;
+  @Mock private TenantTableManager tenantTableManager;
+  @Mock private TenantTableAccessDao tenantTableAccessDao;
+
+  private NodeConfiguration configuration;
+  private TenantTableWarmupManager manager;
+
+  private static TenantTable table(final TenantTableIdentifier identifier) {
+    return ImmutableTenantTable.builder()
+        .identifier(identifier)
+        .estimatedQuantity(0)
+        .enabled(true)
+        .tableVersion("ENGINE")
+        .key("key")
+        .nonce("nonce")
+        .primaryKey("id")
+        .build();
+  }
+
+  @BeforeEach
+  void setup() {
+    configuration = new NodeConfiguration();
+    configuration.setTableAccessFlushSeconds(0);
+    manager = new TenantTableWarmupManager(dataSourceManager, tenantTableManager, tenantTableAccessDao,
+        Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC), metrics, configuration);
+  }
+
+  @AfterEach
+  void tearDown() throws Exception {
+    manager.stop();
+  }
+
+  private void awaitComplete() throws InterruptedException {
+    for (int i = 0; i < 100 && !manager.isComplete(); i++) {
+      Thread.sleep(10);
+    }
+  }
+
+  @Test
+  void start_opensTables() throws InterruptedException {
+    final TenantTable hot = table(HOT);
+    final TenantTable broken = table(BROKEN);
+    when(tenantTableAccessDao.mostRecent(configuration.getWarmupTableCount())).thenReturn(List.of(HOT, DELETED, BROKEN));
+    when(tenantTableManager.get(HOT)).thenReturn(Optional.of(hot));
+    when(tenantTableManager.get(DELETED)).thenReturn(Optional.empty());
+    when(tenantTableManager.get(BROKEN)).thenReturn(Optional.of(broken));
+    doThrow(new IllegalArgumentException("broken")).when(dataSourceManager).warm(broken);
+
+    manager.start();
+
+    verify(dataSourceManager, timeout(1000)).warm(hot);
+    verify(tenantTableAccessDao, timeout(1000)).delete(DELETED);
+    verify(dataSourceManager, timeout(1000)).warm(broken);
+    awaitComplete();
+    assertThat(manager.isComplete()).isTrue();
+    assertThat(manager.progress()).isEqualTo("2/3 tables opened, 1 failed");
+  }
+
+  @Test
+  void start_disabled() {
+    configuration.setWarmupTableCount(0);
+    manager = new TenantTableWarmupManager(dataSourceManager, tenantTableManager, tenantTableAccessDao,
+        Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC), metrics, configuration);
+
+    manager.start();
+
+    assertThat(manager.isComplete()).isTrue();
+    verify(tenantTableAccessDao, never()).mostRecent(0);
+  }
+
+  @Test
+  void flush() {
+    final Map<TenantTableIdentifier, Long> counts = Map.of(HOT, 3L);
+    when(dataSourceManager.drainAccessCounts()).thenReturn(counts);
+
+    manager.flush();
+
+    verify(tenantTableAccessDao).write(counts, NOW);
+  }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import org.junit.jupiter.api.Test;
+
+class ScanRequestTest {
+
+  @Test
+  void singleSegment_coversEverything() {
+    final ScanRequest request = ImmutableScanRequest.builder().limit(1).build();
+
+    assertThat(request.hashStart()).isEqualTo(Integer.MIN_VALUE);
+    assertThat(request.hashEnd()).isEqualTo(Integer.MAX_VALUE + 1L);
+  }
+
+  @Test
+  void segments_areContiguous() {
+    final int total = 7;
+    long expectedStart = Integer.MIN_VALUE;
+    for (int segment = 0; segment < total; segment++) {
+      final ScanRequest request = ImmutableScanRequest.builder().segment(segment).totalSegments(total).limit(1).build();
+      assertThat(request.hashStart()).isEqualTo(expectedStart);
+      assertThat(request.hashEnd()).isGreaterThan(request.hashStart());
+      expectedStart = request.hashEnd();
+    }
+    assertThat(expectedStart).isEqualTo(Integer.MAX_VALUE + 1L);
+  }
+
+  @Test
+  void badSegment() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> ImmutableScanRequest.builder().segment(2).totalSegments(2).limit(1).build());
+  }
+
+  @Test
+  void badLimit() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> ImmutableScanRequest.builder().limit(0).build());
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2023. Ned Wolpert
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.codeheadsystems.dstore.node.resource;
+
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.NO_CONTENT;
+import static javax.ws.rs.core.Response.Status.PRECONDITION_FAILED;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codeheadsystems.dstore.common.engine.JsonEngine;
+import com.codeheadsystems.dstore.node.api.ImmutableBatchWriteRequest;
+import com.codeheadsystems.dstore.node.api.ImmutableTransactWriteItem;
+import com.codeheadsystems.dstore.node.api.ImmutableTransactWriteRequest;
+import com.codeheadsystems.dstore.node.api.TransactWriteItem;
+import com.codeheadsystems.dstore.node.converter.ConditionConverter;
+import com.codeheadsystems.dstore.node.converter.ScanTokenConverter;
+import com.codeheadsystems.dstore.node.converter.TransactionItemConverter;
+import com.codeheadsystems.dstore.node.exception.ConditionFailedException;
+import com.codeheadsystems.dstore.node.manager.TenantTableEntryManager;
+import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
+import com.codeheadsystems.dstore.node.model.TransactionItem;
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import javax.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class TenantTableEntryResourceTest {
+
+  private static final String TENANT = "TENANT";
+  private static final String TABLE_NAME = "table name";
+  private static final TenantTableIdentifier IDENTIFIER = TenantTableIdentifier.from(TENANT, TABLE_NAME);
+  @Mock private TenantTableEntryManager tenantTableEntryManager;
+  @Mock private ScanTokenConverter scanTokenConverter;
+  @Mock private ConditionConverter conditionConverter;
+  @Mock private TransactionItemConverter transactionItemConverter;
+  @Mock private JsonEngine jsonEngine;
+  @Mock private JsonNode jsonNode;
+  @Mock private TransactionItem transactionItem;
+
+  @InjectMocks private TenantTableEntryResource resource;
+
+  @Test
+  void readMany_tooMany() {
+    final List<String> entries = ids(TenantTableEntryResource.MAX_BATCH_SIZE + 1);
+    assertThat(resource.readMany(TENANT, TABLE_NAME, entries))
+        .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
+    verifyNoInteractions(tenantTableEntryManager);
+  }
+
+  @Test
+  void readMany_atLimit() {
+    final List<String> entries = ids(TenantTableEntryResource.MAX_BATCH_SIZE);
+    assertThat(resource.readMany(TENANT, TABLE_NAME, entries))
+        .hasFieldOrPropertyWithValue("status", Response.Status.OK.getStatusCode());
+    verify(tenantTableEntryManager).readMany(IDENTIFIER, entries);
+  }
+
+  @Test
+  void writeMany_tooMany() {
+    final ImmutableBatchWriteRequest.Builder builder = ImmutableBatchWriteRequest.builder()
+        .delete(ids(TenantTableEntryResource.MAX_BATCH_SIZE));
+    builder.putPut("extra", jsonNode);
+    assertThat(resource.writeMany(TENANT, TABLE_NAME, builder.build()))
+        .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
+    verifyNoInteractions(tenantTableEntryManager);
+  }
+
+  @Test
+  void writeMany_atLimit() {
+    final List<String> deletes = ids(TenantTableEntryResource.MAX_BATCH_SIZE);
+    assertThat(resource.writeMany(TENANT, TABLE_NAME, ImmutableBatchWriteRequest.builder().delete(deletes).build()))
+        .hasFieldOrPropertyWithValue("status", NO_CONTENT.getStatusCode());
+    verify(tenantTableEntryManager).writeMany(IDENTIFIER, Map.of(), deletes);
+  }
+
+  @Test
+  void transact() {
+    final TransactWriteItem item = item("a");
+    when(transactionItemConverter.from(item)).thenReturn(transactionItem);
+    assertThat(resource.transact(TENANT, TABLE_NAME, ImmutableTransactWriteRequest.builder().addItems(item).build()))
+        .hasFieldOrPropertyWithValue("status", NO_CONTENT.getStatusCode());
+    verify(tenantTableEntryManager).transact(IDENTIFIER, List.of(transactionItem));
+  }
+
+  @Test
+  void transact_empty() {
+    assertThat(resource.transact(TENANT, TABLE_NAME, ImmutableTransactWriteRequest.builder().build()))
+        .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
+    verifyNoInteractions(tenantTableEntryManager, transactionItemConverter);
+  }
+
+  @Test
+  void transact_tooMany() {
+    final List<TransactWriteItem> items = ids(TenantTableEntryResource.MAX_TRANSACT_ITEMS + 1).stream()
+        .map(this::item)
+        .toList();
+    assertThat(resource.transact(TENANT, TABLE_NAME, ImmutableTransactWriteRequest.builder().items(items).build()))
+        .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
+    verifyNoInteractions(tenantTableEntryManager, transactionItemConverter);
+  }
+
+  @Test
+  void transact_duplicateIds() {
+    final ImmutableTransactWriteRequest request = ImmutableTransactWriteRequest.builder()
+        .addItems(item("a"), item("b"), item("a"))
+        .build();
+    assertThat(resource.transact(TENANT, TABLE_NAME, request))
+        .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
+    verifyNoInteractions(tenantTableEntryManager, transactionItemConverter);
+  }
+
+  @Test
+  void transact_badItem() {
+    when(transactionItemConverter.from(any())).thenThrow(new IllegalArgumentException("bad"));
+    assertThat(resource.transact(TENANT, TABLE_NAME, ImmutableTransactWriteRequest.builder().addItems(item("a")).build()))
+        .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
+    verifyNoInteractions(tenantTableEntryManager);
+  }
+
+  @Test
+  void transact_conditionFailed() {
+    final TransactWriteItem item = item("a");
+    when(transactionItemConverter.from(item)).thenReturn(transactionItem);
+    doThrow(new ConditionFailedException("failed")).when(tenantTableEntryManager).transact(IDENTIFIER, List.of(transactionItem));
+    final ConditionFailedExceptionMapper mapper = new ConditionFailedExceptionMapper(new MetricRegistry());
+
+    assertThatExceptionOfType(ConditionFailedException.class)
+        .isThrownBy(() -> resource.transact(TENANT, TABLE_NAME, ImmutableTransactWriteRequest.builder().addItems(item).build()))
+        .satisfies(e -> assertThat(mapper.toResponse(e))
+            .hasFieldOrPropertyWithValue("status", PRECONDITION_FAILED.getStatusCode()));
+  }
+
+  private TransactWriteItem item(final String id) {
+    return ImmutableTransactWriteItem.builder().id(id).delete(true).build();
+  }
+
+  private List<String> ids(final int count) {
+    return IntStream.range(0, count).mapToObj(i -> "entry" + i).toList();
+  }
+
+}
@@ -19,11 +19,14 @@ package com.codeheadsystems.dstore.node.resource;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import com.codeheadsystems.dstore.node.api.TenantTableInfo;
 import com.codeheadsystems.dstore.node.converter.TenantTableInfoConverter;
 import com.codeheadsystems.dstore.node.engine.impl.V1SingleEntryEngine;
+import com.codeheadsystems.dstore.node.engine.impl.V2SingleRowEngine;
 import com.codeheadsystems.dstore.node.manager.TenantTableManager;
 import com.codeheadsystems.dstore.node.model.TenantTable;
 import com.codeheadsystems.dstore.node.model.TenantTableIdentifier;
@@ -79,7 +82,7 @@ class TenantTableResourceTest {
   @Test
   void create_missingPrimaryKey() {
     assertThatExceptionOfType(WebApplicationException.class)
-        .isThrownBy(() -> resource.create(TENANT, TABLE_NAME, null))
+        .isThrownBy(() -> resource.create(TENANT, TABLE_NAME, null, null))
         .extracting("response")
         .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
   }
@@ -90,7 +93,17 @@ class TenantTableResourceTest {
         .thenReturn(tenantTable);
     when(tenantTable.identifier()).thenReturn(identifier);
     when(tenantTableInfoConverter.from(identifier)).thenReturn(tenantTableInfo);
-    assertThat(resource.create(TENANT, TABLE_NAME, PRIMARY_KEY))
+    assertThat(resource.create(TENANT, TABLE_NAME, PRIMARY_KEY, null))
+        .isEqualTo(tenantTableInfo);
+  }
+
+  @Test
+  void create_withTableVersion() {
+    when(tenantTableManager.create(TENANT, TABLE_NAME, V2SingleRowEngine.DEFINITION_NAME, PRIMARY_KEY))
+        .thenReturn(tenantTable);
+    when(tenantTable.identifier()).thenReturn(identifier);
+    when(tenantTableInfoConverter.from(identifier)).thenReturn(tenantTableInfo);
+    assertThat(resource.create(TENANT, TABLE_NAME, PRIMARY_KEY, V2SingleRowEngine.DEFINITION_NAME))
         .isEqualTo(tenantTableInfo);
   }
 
@@ -101,6 +114,30 @@ class TenantTableResourceTest {
         .hasFieldOrPropertyWithValue("status", Response.Status.NO_CONTENT.getStatusCode());
   }
 
+  @Test
+  void setCache() {
+    assertThat(resource.setCache(TENANT, TABLE_NAME, 1024L))
+        .hasFieldOrPropertyWithValue("status", Response.Status.NO_CONTENT.getStatusCode());
+    verify(tenantTableManager).cacheMaxBytes(TenantTableIdentifier.from(TENANT, TABLE_NAME), Optional.of(1024L));
+  }
+
+  @Test
+  void setCache_badSize() {
+    assertThat(resource.setCache(TENANT, TABLE_NAME, 0L))
+        .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
+    assertThat(resource.setCache(TENANT, TABLE_NAME, null))
+        .hasFieldOrPropertyWithValue("status", BAD_REQUEST.getStatusCode());
+    verifyNoInteractions(tenantTableManager);
+  }
+
+  @Test
+  void deleteCache() {
+    final TenantTableIdentifier tableIdentifier = TenantTableIdentifier.from(TENANT, TABLE_NAME);
+    assertThat(resource.deleteCache(TENANT, TABLE_NAME))
+        .hasFieldOrPropertyWithValue("status", Response.Status.NO_CONTENT.getStatusCode());
+    verify(tenantTableManager).cacheMaxBytes(tableIdentifier, Optional.empty());
+  }
+
   @Test
   void delete_notFound() {
     assertThat(resource.delete(TENANT, TABLE_NAME))